@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+import static org.junit.Assert.*;
+
+import java.util.Calendar;
+
+import org.junit.Test;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.util.DateTimeUtils;
+
+/**
+ * Compares the interpolated positions of the {@link AstroEphemeris} with the {@link SunCalc} and {@link MoonCalc}.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroEphemerisTest {
+    private static final double[][] LOCATIONS = { { 48.2, 16.37 }, { -23.0, -43.2 }, { 0.5, -78.0 },
+            { 69.6, 18.9 }, { -33.9, 151.2 } };
+    private static final double DEGREE_DELTA = 0.001;
+
+    private final SunCalc sunCalc = new SunCalc();
+    private final MoonCalc moonCalc = new MoonCalc();
+
+    @Test
+    public void testSunPositionMatchesSunCalc() {
+        for (double[] location : LOCATIONS) {
+            for (int dayOfYear = 1; dayOfYear < 365; dayOfYear += 30) {
+                Calendar day = getDay(dayOfYear);
+                AstroEphemeris ephemeris = new AstroEphemeris(day, location[0], location[1], 100);
+                for (int minute = 0; minute < 24 * 60; minute += 7) {
+                    Calendar time = (Calendar) day.clone();
+                    time.add(Calendar.MINUTE, minute);
+                    time.add(Calendar.SECOND, 13);
+
+                    Sun expected = new Sun();
+                    sunCalc.setPositionalInfo(time, location[0], location[1], 100, expected);
+                    Sun actual = new Sun();
+                    ephemeris.setSunPositionalInfo(time, actual);
+
+                    assertAngleEquals(expected.getPosition().getAzimuth(), actual.getPosition().getAzimuth());
+                    assertEquals(expected.getPosition().getElevation(), actual.getPosition().getElevation(),
+                            DEGREE_DELTA);
+                    assertEquals(expected.getRadiation().getTotal(), actual.getRadiation().getTotal(), 0.1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMoonPositionMatchesMoonCalc() {
+        for (double[] location : LOCATIONS) {
+            for (int dayOfYear = 1; dayOfYear < 365; dayOfYear += 30) {
+                Calendar day = getDay(dayOfYear);
+                AstroEphemeris ephemeris = new AstroEphemeris(day, location[0], location[1], null);
+                Moon expected = moonCalc.getMoonInfo(day, location[0], location[1]);
+                Moon actual = ephemeris.getMoonInfo();
+                for (int minute = 0; minute < 24 * 60; minute += 7) {
+                    Calendar time = (Calendar) day.clone();
+                    time.add(Calendar.MINUTE, minute);
+                    time.add(Calendar.SECOND, 13);
+
+                    moonCalc.setPositionalInfo(time, location[0], location[1], expected);
+                    ephemeris.setMoonPositionalInfo(time, actual);
+
+                    assertAngleEquals(expected.getPosition().getAzimuth(), actual.getPosition().getAzimuth());
+                    assertEquals(expected.getPosition().getElevation(), actual.getPosition().getElevation(),
+                            DEGREE_DELTA);
+                    assertEquals(expected.getPhase().getIllumination(), actual.getPhase().getIllumination(), 0.001);
+                    assertEquals(expected.getPhase().getAge(), actual.getPhase().getAge());
+                    assertEquals(expected.getPhase().getName(), actual.getPhase().getName());
+                    assertEquals(expected.getDistance().getKilometer(), actual.getDistance().getKilometer(), 1);
+                    assertEquals(expected.getZodiac().getSign(), actual.getZodiac().getSign());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDailyInfoMatchesSunCalc() {
+        Calendar day = getDay(172);
+        Sun expected = sunCalc.getSunInfo(day, 48.2, 16.37, 100);
+        Sun actual = new AstroEphemeris(day, 48.2, 16.37, 100).getSunInfo(day);
+
+        assertEquals(expected.getRise().getStart(), actual.getRise().getStart());
+        assertEquals(expected.getSet().getEnd(), actual.getSet().getEnd());
+        assertEquals(expected.getNight().getEnd(), actual.getNight().getEnd());
+        assertEquals(expected.getSeason().getName(), actual.getSeason().getName());
+    }
+
+    @Test
+    public void testEphemerisIsSharedByLocation() {
+        Calendar now = Calendar.getInstance();
+        AstroEphemeris ephemeris = AstroEphemeris.getInstance(now, 48.2, 16.37, 100);
+
+        assertSame(ephemeris, AstroEphemeris.getInstance(now, 48.2, 16.37, 100));
+        assertNotSame(ephemeris, AstroEphemeris.getInstance(now, 48.3, 16.37, 100));
+
+        Sun first = ephemeris.getSunInfo(now);
+        Sun second = ephemeris.getSunInfo(now);
+        assertNotSame(first.getPosition(), second.getPosition());
+        assertSame(first.getRise(), second.getRise());
+    }
+
+    @Test
+    public void testTimeOutsideOfDayIsCalculated() {
+        Calendar day = getDay(100);
+        AstroEphemeris ephemeris = new AstroEphemeris(day, 48.2, 16.37, 100);
+        Calendar tomorrow = (Calendar) day.clone();
+        tomorrow.add(Calendar.HOUR_OF_DAY, 30);
+
+        Sun expected = new Sun();
+        sunCalc.setPositionalInfo(tomorrow, 48.2, 16.37, 100, expected);
+        Sun actual = new Sun();
+        ephemeris.setSunPositionalInfo(tomorrow, actual);
+
+        assertEquals(expected.getPosition().getAzimuth(), actual.getPosition().getAzimuth(), 0);
+        assertEquals(expected.getPosition().getElevation(), actual.getPosition().getElevation(), 0);
+    }
+
+    private Calendar getDay(int dayOfYear) {
+        Calendar day = Calendar.getInstance();
+        day.set(2017, Calendar.JANUARY, 1);
+        day.set(Calendar.DAY_OF_YEAR, dayOfYear);
+        return DateTimeUtils.truncateToMidnight(day);
+    }
+
+    private void assertAngleEquals(double expected, double actual) {
+        double delta = Math.abs(expected - actual);
+        assertEquals(0, Math.min(delta, 360 - delta), DEGREE_DELTA);
+    }
+}
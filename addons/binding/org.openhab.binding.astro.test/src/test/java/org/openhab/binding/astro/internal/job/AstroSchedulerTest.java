@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.job;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.openhab.binding.astro.handler.AstroThingHandler;
+import org.openhab.binding.astro.internal.job.AstroScheduler.ScheduledJob;
+import org.openhab.binding.astro.internal.model.Planet;
+
+/**
+ * Tests the order and the replacement of the jobs in the {@link AstroScheduler}. The scheduler runs on a
+ * manual clock and its thread is not started, the test executes the due jobs.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroSchedulerTest {
+    private static final String THING_UID = "astro:sun:test";
+    private static final String OTHER_THING_UID = "astro:sun:other";
+    private static final long START = 1483228800000L;
+
+    private final ManualTime time = new ManualTime();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final AstroScheduler scheduler = new AstroScheduler(time, executor);
+    private final List<String> executed = new ArrayList<String>();
+
+    @Test
+    public void testJobsAreExecutedInOrderOfTime() {
+        scheduler.schedule(THING_UID, "job-3", getTime(300), new TestJob("job-3"));
+        scheduler.schedule(THING_UID, "job-1", getTime(100), new TestJob("job-1"));
+        scheduler.schedule(OTHER_THING_UID, "job-2", getTime(200), new TestJob("job-2"));
+
+        assertEquals(1, executor.started);
+        assertEquals(2, scheduler.getJobs(THING_UID).size());
+        assertEquals("job-1", scheduler.getJobs(null).get(0).getJobName());
+
+        time.now = START + 99;
+        assertTrue(scheduler.runDueJobs());
+        assertTrue(executed.isEmpty());
+
+        time.now = START + 200;
+        assertTrue(scheduler.runDueJobs());
+        assertEquals(Arrays.asList("job-1", "job-2"), executed);
+
+        time.now = START + 1000;
+        assertFalse(scheduler.runDueJobs());
+        assertEquals(Arrays.asList("job-1", "job-2", "job-3"), executed);
+        assertTrue(scheduler.getJobs(null).isEmpty());
+    }
+
+    @Test
+    public void testJobsOfTheSameTimeAreExecutedInOrderOfScheduling() {
+        scheduler.schedule(THING_UID, "job-b", getTime(100), new TestJob("job-b"));
+        scheduler.schedule(THING_UID, "job-a", getTime(100), new TestJob("job-a"));
+
+        time.now = START + 100;
+        scheduler.runDueJobs();
+
+        assertEquals(Arrays.asList("job-b", "job-a"), executed);
+    }
+
+    @Test
+    public void testJobWithSameNameIsReplaced() {
+        scheduler.schedule(THING_UID, "job-daily", getTime(100), new TestJob("first"));
+        scheduler.schedule(THING_UID, "job-daily", getTime(200), new TestJob("second"));
+
+        assertEquals(1, scheduler.getJobs(THING_UID).size());
+        time.now = START + 1000;
+        scheduler.runDueJobs();
+        assertEquals(Collections.singletonList("second"), executed);
+    }
+
+    @Test
+    public void testRemovedJobsAreNotExecuted() {
+        scheduler.schedule(THING_UID, "job-daily", getTime(200), new TestJob(THING_UID));
+        scheduler.schedule(OTHER_THING_UID, "job-daily", getTime(200), new TestJob(OTHER_THING_UID));
+        scheduler.removeJobs(THING_UID);
+        scheduler.scheduleFollowUp(THING_UID, "job-event", getTime(0), new TestJob("follow-up"));
+
+        time.now = START + 1000;
+        scheduler.runDueJobs();
+        assertEquals(Collections.singletonList(OTHER_THING_UID), executed);
+    }
+
+    @Test
+    public void testRepeatingJobIsRescheduled() {
+        scheduler.schedule(THING_UID, "job-positional", getTime(100), new TestJob("positional", 1000));
+
+        time.now = START + 100;
+        assertTrue(scheduler.runDueJobs());
+
+        List<ScheduledJob> jobs = scheduler.getJobs(THING_UID);
+        assertEquals(1, jobs.size());
+        assertEquals(START + 1100, jobs.get(0).getTime().getTimeInMillis());
+
+        time.now = START + 2100;
+        scheduler.runDueJobs();
+        assertEquals(Arrays.asList("positional", "positional", "positional"), executed);
+    }
+
+    @Test
+    public void testPositionalJobIsRescheduledByTheSchedulerClock() {
+        scheduler.schedule(THING_UID, "job-positional", getTime(100), new TestPositionalJob(60));
+
+        time.now = START + 100;
+        scheduler.runDueJobs();
+        assertEquals(START + 60100, scheduler.getJobs(THING_UID).get(0).getTime().getTimeInMillis());
+
+        // the clock has jumped ahead by ten minutes, the missed executions are skipped
+        time.now = START + 600000;
+        scheduler.runDueJobs();
+        assertEquals(Arrays.asList("positional", "positional"), executed);
+        assertEquals(START + 660000, scheduler.getJobs(THING_UID).get(0).getTime().getTimeInMillis());
+    }
+
+    @Test
+    public void testDailyJobIsRescheduledAtTheNextMidnightOfTheSchedulerClock() {
+        scheduler.schedule(THING_UID, "job-daily", getTime(100), new AbstractDailyJob(null) {
+            @Override
+            public void run() {
+                executed.add("daily");
+            }
+
+            @Override
+            protected void schedulePlanetEvents(String thingUid, AstroThingHandler handler, Planet planet) {
+            }
+        });
+
+        time.now = START + 3 * 3600000;
+        scheduler.runDueJobs();
+
+        Calendar midnight = getTime(3 * 3600000);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        midnight.add(Calendar.DAY_OF_MONTH, 1);
+        assertEquals(Collections.singletonList("daily"), executed);
+        assertEquals(midnight.getTimeInMillis(), scheduler.getJobs(THING_UID).get(0).getTime().getTimeInMillis());
+    }
+
+    @Test
+    public void testFailingJobDoesNotStopTheTimeline() {
+        scheduler.schedule(THING_UID, "job-1", getTime(100), new TestJob("job-1") {
+            @Override
+            protected void executeJob(String thingUid) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        scheduler.schedule(THING_UID, "job-2", getTime(100), new TestJob("job-2"));
+
+        time.now = START + 100;
+        assertFalse(scheduler.runDueJobs());
+        assertEquals(Collections.singletonList("job-2"), executed);
+    }
+
+    @Test
+    public void testThreadIsStartedAgainAfterTheLastJob() {
+        scheduler.schedule(THING_UID, "job-1", getTime(100), new TestJob("job-1"));
+        scheduler.schedule(THING_UID, "job-2", getTime(200), new TestJob("job-2"));
+        assertEquals(1, executor.started);
+
+        time.now = START + 200;
+        assertFalse(scheduler.runDueJobs());
+        scheduler.schedule(THING_UID, "job-3", getTime(300), new TestJob("job-3"));
+
+        assertEquals(2, executor.started);
+    }
+
+    @Test
+    public void testTimeOfAScheduledJobCannotBeChanged() {
+        Calendar jobTime = getTime(100);
+        scheduler.schedule(THING_UID, "job-1", jobTime, new TestJob("job-1"));
+        jobTime.setTimeInMillis(START + 500);
+
+        ScheduledJob scheduledJob = scheduler.getJobs(THING_UID).get(0);
+        scheduledJob.getTime().setTimeInMillis(START + 500);
+
+        assertEquals(START + 100, scheduledJob.getTime().getTimeInMillis());
+        time.now = START + 100;
+        scheduler.runDueJobs();
+        assertEquals(Collections.singletonList("job-1"), executed);
+    }
+
+    private Calendar getTime(long offset) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(START + offset);
+        return calendar;
+    }
+
+    /**
+     * A positional job which records its executions instead of publishing.
+     */
+    private class TestPositionalJob extends PositionalJob {
+        public TestPositionalJob(int interval) {
+            super(null, interval);
+        }
+
+        @Override
+        public void run() {
+            executed.add("positional");
+        }
+    }
+
+    private class TestJob extends AbstractBaseJob {
+        private final String name;
+        private final long interval;
+
+        public TestJob(String name) {
+            this(name, 0);
+        }
+
+        public TestJob(String name, long interval) {
+            super(null);
+            this.name = name;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run() {
+            executeJob(null);
+        }
+
+        @Override
+        protected Calendar getNextTime(Calendar time, long now) {
+            if (interval == 0) {
+                return null;
+            }
+            Calendar next = (Calendar) time.clone();
+            next.setTimeInMillis(time.getTimeInMillis() + interval);
+            return next;
+        }
+
+        @Override
+        protected void executeJob(String thingUid) {
+            executed.add(name);
+        }
+    }
+
+    private static class ManualTime implements AstroScheduler.TimeProvider {
+        private long now = START;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * Counts the started threads instead of starting them.
+     */
+    private static class ManualExecutor implements Executor {
+        private int started;
+
+        @Override
+        public void execute(Runnable command) {
+            started++;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Calendar;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.junit.Test;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.MoonPhaseName;
+import org.openhab.binding.astro.internal.model.Range;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.model.SunEclipse;
+
+/**
+ * Tests the property accessors of the channels.
+ *
+ * @author agent - Initial contribution
+ */
+public class PropertyUtilsTest {
+
+    @Test
+    public void testNestedProperties() {
+        Calendar start = Calendar.getInstance();
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.MINUTE, 90);
+        Sun sun = new Sun();
+        sun.setRise(new Range(start, end));
+        sun.getPosition().setAzimuth(123.4);
+        SunEclipse eclipse = new SunEclipse();
+        eclipse.setRing(end);
+        sun.setEclipse(eclipse);
+
+        assertSame(start, PropertyUtils.getPropertyValue(getChannelUID("sun", "rise#start"), sun));
+        assertEquals(90L, PropertyUtils.getPropertyValue(getChannelUID("sun", "rise#duration"), sun));
+        assertEquals(123.4, PropertyUtils.getPropertyValue(getChannelUID("sun", "position#azimuth"), sun));
+        assertSame(end, PropertyUtils.getPropertyValue(getChannelUID("sun", "eclipse#ring"), sun));
+
+        Moon moon = new Moon();
+        moon.setRise(new Range(start, end));
+        moon.getPhase().setName(MoonPhaseName.FULL);
+
+        assertSame(start, PropertyUtils.getPropertyValue(getChannelUID("moon", "rise#start"), moon));
+        assertEquals(MoonPhaseName.FULL, PropertyUtils.getPropertyValue(getChannelUID("moon", "phase#name"), moon));
+    }
+
+    @Test
+    public void testMissingValueIsUndefined() {
+        Sun sun = new Sun();
+        sun.setEclipse(null);
+
+        assertEquals(UnDefType.UNDEF, PropertyUtils.getState(getChannelUID("sun", "eclipse#total"), sun));
+        assertEquals(UnDefType.UNDEF, PropertyUtils.getState(getChannelUID("sun", "set#end"), sun));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProperty() {
+        PropertyUtils.getPropertyValue(getChannelUID("sun", "rise#unknown"), new Sun());
+    }
+
+    private ChannelUID getChannelUID(String thingTypeId, String channelId) {
+        return new ChannelUID("astro:" + thingTypeId + ":test:" + channelId);
+    }
+}
@@ -8,12 +8,7 @@
  */
 package org.openhab.binding.astro.handler;
 
-import static org.quartz.JobBuilder.newJob;
-import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
-import static org.quartz.TriggerBuilder.newTrigger;
-import static org.quartz.impl.matchers.GroupMatcher.jobGroupEquals;
-
-import java.util.Date;
+import java.util.Calendar;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -29,19 +24,11 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.astro.internal.config.AstroThingConfig;
-import org.openhab.binding.astro.internal.job.AbstractBaseJob;
 import org.openhab.binding.astro.internal.job.AbstractDailyJob;
+import org.openhab.binding.astro.internal.job.AstroScheduler;
 import org.openhab.binding.astro.internal.job.PositionalJob;
 import org.openhab.binding.astro.internal.model.Planet;
 import org.openhab.binding.astro.internal.util.PropertyUtils;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobKey;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.Trigger;
-import org.quartz.impl.StdSchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,11 +39,9 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AstroThingHandler extends BaseThingHandler {
     private static final Logger logger = LoggerFactory.getLogger(AstroThingHandler.class);
-    private Scheduler quartzScheduler;
     private ScheduledFuture<?> schedulerFuture;
     private int linkedPositionalChannels = 0;
     protected AstroThingConfig thingConfig;
-    private Object schedulerLock = new Object();
 
     public AstroThingHandler(Thing thing) {
         super(thing);
@@ -113,7 +98,6 @@ public abstract class AstroThingHandler extends BaseThingHandler {
             schedulerFuture = null;
         }
         stopJobs();
-        quartzScheduler = null;
         logger.debug("Thing {} disposed", getThing().getUID());
     }
 
@@ -180,55 +164,23 @@ public abstract class AstroThingHandler extends BaseThingHandler {
             public void run() {
                 stopJobs();
 
-                try {
-                    synchronized (schedulerLock) {
-                        if (quartzScheduler == null) {
-                            quartzScheduler = StdSchedulerFactory.getDefaultScheduler();
-                        }
-
-                        if (getThing().getStatus() == ThingStatus.ONLINE) {
-                            String thingUid = getThing().getUID().toString();
-                            String typeId = getThing().getThingTypeUID().getId();
-                            JobDataMap jobDataMap = new JobDataMap();
-                            jobDataMap.put(AbstractBaseJob.KEY_THING_UID, thingUid);
-                            jobDataMap.put(AbstractBaseJob.KEY_JOB_NAME, "job-daily");
-
-                            // dailyJob
-                            Trigger trigger = newTrigger().withIdentity("trigger-daily-" + typeId, thingUid)
-                                    .withSchedule(CronScheduleBuilder.cronSchedule("0 0 0 * * ?")).build();
-                            JobDetail jobDetail = newJob(getDailyJobClass())
-                                    .withIdentity("job-daily-" + typeId, thingUid).usingJobData(jobDataMap).build();
-                            quartzScheduler.scheduleJob(jobDetail, trigger);
-                            logger.info("Scheduled astro job-daily-{} at midnight for thing {}", typeId, thingUid);
-
-                            // startupJob
-                            trigger = newTrigger().withIdentity("trigger-daily-startup-" + typeId, thingUid).startNow()
-                                    .build();
-                            jobDetail = newJob(getDailyJobClass()).withIdentity("job-daily-startup-" + typeId, thingUid)
-                                    .usingJobData(jobDataMap).build();
-                            quartzScheduler.scheduleJob(jobDetail, trigger);
-
-                            if (isPositionalChannelLinked()) {
-                                // positional intervalJob
-                                jobDataMap = new JobDataMap();
-                                jobDataMap.put(AbstractBaseJob.KEY_THING_UID, thingUid);
-                                jobDataMap.put(AbstractBaseJob.KEY_JOB_NAME, "job-positional");
-
-                                Date start = new Date(System.currentTimeMillis() + (thingConfig.getInterval()) * 1000);
-                                trigger = newTrigger().withIdentity("trigger-positional", thingUid).startAt(start)
-                                        .withSchedule(simpleSchedule().repeatForever()
-                                                .withIntervalInSeconds(thingConfig.getInterval()))
-                                        .build();
-                                jobDetail = newJob(PositionalJob.class).withIdentity("job-positional", thingUid)
-                                        .usingJobData(jobDataMap).build();
-                                quartzScheduler.scheduleJob(jobDetail, trigger);
-                                logger.info("Scheduled astro job-positional with interval of {} seconds for thing {}",
-                                        thingConfig.getInterval(), thingUid);
-                            }
-                        }
+                if (getThing().getStatus() == ThingStatus.ONLINE) {
+                    String thingUid = getThing().getUID().toString();
+                    AstroScheduler astroScheduler = AstroScheduler.getInstance();
+
+                    // dailyJob, starts immediately and repeats at midnight
+                    astroScheduler.schedule(thingUid, "job-daily", Calendar.getInstance(), createDailyJob());
+                    logger.info("Scheduled astro job-daily at midnight for thing {}", thingUid);
+
+                    if (isPositionalChannelLinked()) {
+                        // positional intervalJob
+                        Calendar start = Calendar.getInstance();
+                        start.add(Calendar.SECOND, thingConfig.getInterval());
+                        astroScheduler.schedule(thingUid, "job-positional", start,
+                                new PositionalJob(AstroThingHandler.this, thingConfig.getInterval()));
+                        logger.info("Scheduled astro job-positional with interval of {} seconds for thing {}",
+                                thingConfig.getInterval(), thingUid);
                     }
-                } catch (SchedulerException ex) {
-                    logger.error(ex.getMessage(), ex);
                 }
             }
         }, 2000, TimeUnit.MILLISECONDS);
@@ -239,19 +191,7 @@ public abstract class AstroThingHandler extends BaseThingHandler {
      */
     private void stopJobs() {
         logger.debug("Stopping jobs for thing {}", getThing().getUID());
-        synchronized (schedulerLock) {
-            if (quartzScheduler != null) {
-                try {
-                    String thingUid = getThing().getUID().toString();
-                    for (JobKey jobKey : quartzScheduler.getJobKeys(jobGroupEquals(thingUid))) {
-                        logger.debug("Deleting astro {} for thing '{}'", jobKey.getName(), thingUid);
-                        quartzScheduler.deleteJob(jobKey);
-                    }
-                } catch (SchedulerException ex) {
-                    logger.error(ex.getMessage(), ex);
-                }
-            }
-        }
+        AstroScheduler.getInstance().removeJobs(getThing().getUID().toString());
     }
 
     /**
@@ -308,13 +248,6 @@ public abstract class AstroThingHandler extends BaseThingHandler {
         }
     }
 
-    /**
-     * Returns the scheduler for the astro jobs.
-     */
-    public Scheduler getScheduler() {
-        return quartzScheduler;
-    }
-
     /**
      * Calculates and publishes the daily astro data.
      */
@@ -336,7 +269,7 @@ public abstract class AstroThingHandler extends BaseThingHandler {
     protected abstract String[] getPositionalChannelIds();
 
     /**
-     * Returns the class for the daily calculation job.
+     * Creates the daily calculation job.
      */
-    protected abstract Class<? extends AbstractDailyJob> getDailyJobClass();
+    protected abstract AbstractDailyJob createDailyJob();
 }
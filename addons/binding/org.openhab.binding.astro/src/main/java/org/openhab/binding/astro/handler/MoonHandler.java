@@ -15,7 +15,7 @@ import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
-import org.openhab.binding.astro.internal.calc.MoonCalc;
+import org.openhab.binding.astro.internal.calc.AstroEphemeris;
 import org.openhab.binding.astro.internal.job.AbstractDailyJob;
 import org.openhab.binding.astro.internal.job.DailyJobMoon;
 import org.openhab.binding.astro.internal.model.Moon;
@@ -33,7 +33,6 @@ public class MoonHandler extends AstroThingHandler {
 
     private String[] positionalChannelIds = new String[] { "phase#name", "phase#age", "phase#illumination",
             "position#azimuth", "position#elevation", "zodiac#sign" };
-    private MoonCalc moonCalc = new MoonCalc();
     private Moon moon;
 
     public MoonHandler(Thing thing) {
@@ -45,7 +44,7 @@ public class MoonHandler extends AstroThingHandler {
      */
     @Override
     public void publishDailyInfo() {
-        moon = moonCalc.getMoonInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude());
+        moon = getEphemeris(Calendar.getInstance()).getMoonInfo();
         publishPositionalInfo();
     }
 
@@ -54,10 +53,19 @@ public class MoonHandler extends AstroThingHandler {
      */
     @Override
     public void publishPositionalInfo() {
-        moonCalc.setPositionalInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude(), moon);
+        Calendar now = Calendar.getInstance();
+        getEphemeris(now).setMoonPositionalInfo(now, moon);
         publishPlanet();
     }
 
+    /**
+     * Returns the shared ephemeris of the day at the location of the thing.
+     */
+    private AstroEphemeris getEphemeris(Calendar calendar) {
+        return AstroEphemeris.getInstance(calendar, thingConfig.getLatitude(), thingConfig.getLongitude(),
+                thingConfig.getAltitude());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -87,8 +95,8 @@ public class MoonHandler extends AstroThingHandler {
      * {@inheritDoc}
      */
     @Override
-    protected Class<? extends AbstractDailyJob> getDailyJobClass() {
-        return DailyJobMoon.class;
+    protected AbstractDailyJob createDailyJob() {
+        return new DailyJobMoon(this);
     }
 
 }
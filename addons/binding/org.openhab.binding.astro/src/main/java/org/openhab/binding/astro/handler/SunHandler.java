@@ -15,7 +15,7 @@ import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
-import org.openhab.binding.astro.internal.calc.SunCalc;
+import org.openhab.binding.astro.internal.calc.AstroEphemeris;
 import org.openhab.binding.astro.internal.job.AbstractDailyJob;
 import org.openhab.binding.astro.internal.job.DailyJobSun;
 import org.openhab.binding.astro.internal.model.Planet;
@@ -33,7 +33,6 @@ public class SunHandler extends AstroThingHandler {
 
     private String[] positionalChannelIds = new String[] { "position#azimuth", "position#elevation", "radiation#direct",
             "radiation#diffuse", "radiation#total" };
-    private SunCalc sunCalc = new SunCalc();
     private Sun sun;
 
     public SunHandler(Thing thing) {
@@ -45,8 +44,8 @@ public class SunHandler extends AstroThingHandler {
      */
     @Override
     public void publishDailyInfo() {
-        sun = sunCalc.getSunInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude(),
-                thingConfig.getAltitude());
+        Calendar now = Calendar.getInstance();
+        sun = getEphemeris(now).getSunInfo(now);
         publishPositionalInfo();
     }
 
@@ -55,11 +54,19 @@ public class SunHandler extends AstroThingHandler {
      */
     @Override
     public void publishPositionalInfo() {
-        sunCalc.setPositionalInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude(),
-                thingConfig.getAltitude(), sun);
+        Calendar now = Calendar.getInstance();
+        getEphemeris(now).setSunPositionalInfo(now, sun);
         publishPlanet();
     }
 
+    /**
+     * Returns the shared ephemeris of the day at the location of the thing.
+     */
+    private AstroEphemeris getEphemeris(Calendar calendar) {
+        return AstroEphemeris.getInstance(calendar, thingConfig.getLatitude(), thingConfig.getLongitude(),
+                thingConfig.getAltitude());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -89,8 +96,8 @@ public class SunHandler extends AstroThingHandler {
      * {@inheritDoc}
      */
     @Override
-    protected Class<? extends AbstractDailyJob> getDailyJobClass() {
-        return DailyJobSun.class;
+    protected AbstractDailyJob createDailyJob() {
+        return new DailyJobSun(this);
     }
 
 }
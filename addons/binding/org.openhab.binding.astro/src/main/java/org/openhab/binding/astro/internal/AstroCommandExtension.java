@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.binding.astro.internal.job.AstroScheduler;
+import org.openhab.binding.astro.internal.job.AstroScheduler.ScheduledJob;
+
+/**
+ * Console commands to show the scheduled astro jobs.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_EVENTS = "events";
+
+    public AstroCommandExtension() {
+        super("astro", "Show the scheduled jobs of the Astro binding.");
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length > 0 && SUBCMD_EVENTS.equals(args[0])) {
+            List<ScheduledJob> jobs = AstroScheduler.getInstance().getJobs(args.length > 1 ? args[1] : null);
+            for (ScheduledJob job : jobs) {
+                console.println(DateFormatUtils.ISO_DATETIME_FORMAT.format(job.getTime()) + " " + job.getThingUid()
+                        + " " + job.getJobName());
+            }
+            console.println(jobs.size() + " scheduled jobs");
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(new String[] {
+                buildCommandUsage(SUBCMD_EVENTS + " [<thingUID>]", "lists the upcoming jobs in order of execution") });
+    }
+}
@@ -10,8 +10,6 @@ package org.openhab.binding.astro.internal;
 
 import static org.openhab.binding.astro.AstroBindingConstants.*;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
@@ -32,7 +30,6 @@ import com.google.common.collect.Sets;
 public class AstroHandlerFactory extends BaseThingHandlerFactory {
     public static final Set<ThingTypeUID> SUPPORTED_THING_TYPES = Sets.union(SunHandler.SUPPORTED_THING_TYPES,
             MoonHandler.SUPPORTED_THING_TYPES);
-    private static final Map<String, AstroThingHandler> astroThingHandlers = new HashMap<String, AstroThingHandler>();
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -49,19 +46,6 @@ public class AstroHandlerFactory extends BaseThingHandlerFactory {
         } else if (thingTypeUID.equals(THING_TYPE_MOON)) {
             thingHandler = new MoonHandler(thing);
         }
-        if (thingHandler != null) {
-            astroThingHandlers.put(thing.getUID().toString(), thingHandler);
-        }
         return thingHandler;
     }
-
-    @Override
-    public void unregisterHandler(Thing thing) {
-        super.unregisterHandler(thing);
-        astroThingHandlers.remove(thing.getUID().toString());
-    }
-
-    public static AstroThingHandler getHandler(String thingUid) {
-        return astroThingHandlers.get(thingUid);
-    }
 }
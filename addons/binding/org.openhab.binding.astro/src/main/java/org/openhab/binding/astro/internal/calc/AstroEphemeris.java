@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.MoonDistance;
+import org.openhab.binding.astro.internal.model.MoonPhase;
+import org.openhab.binding.astro.internal.model.Position;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.model.Zodiac;
+import org.openhab.binding.astro.internal.util.DateTimeUtils;
+
+/**
+ * Holds the sun and moon data of one day at one location. The daily data is calculated once and the
+ * equatorial coordinates, which change slowly, are sampled in a fixed interval over the day. Positional
+ * queries interpolate between the samples and only transform the coordinates to the horizon of the
+ * location. The ephemeris is shared by all things with the same location.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroEphemeris {
+    /** interval of the position samples */
+    static final long SAMPLE_INTERVAL = 5 * 60 * 1000;
+
+    private static final Map<String, AstroEphemeris> ephemerides = new HashMap<String, AstroEphemeris>();
+
+    private final double latitude;
+    private final double longitude;
+    private final Integer altitude;
+    private final Calendar day;
+    private final long start;
+    private final long end;
+    private final int dayOfYear;
+    private final int daysInYear;
+
+    private final SunCalc sunCalc = new SunCalc();
+    private final MoonCalc moonCalc = new MoonCalc();
+
+    private Sun sun;
+    private double[] sunRightAscension;
+    private double[] sunDeclination;
+
+    private Moon moon;
+    private int moonAge;
+    private double moonAgeDays;
+    private double[] moonRightAscension;
+    private double[] moonDeclination;
+    private double[] moonCenterDistance;
+    private double[] moonLongitude;
+    private double[] moonIllumination;
+    private double[] moonDistance;
+
+    AstroEphemeris(Calendar calendar, double latitude, double longitude, Integer altitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.day = DateTimeUtils.truncateToMidnight(calendar);
+        Calendar nextDay = (Calendar) day.clone();
+        nextDay.add(Calendar.DAY_OF_MONTH, 1);
+        this.start = day.getTimeInMillis();
+        this.end = nextDay.getTimeInMillis();
+        this.dayOfYear = day.get(Calendar.DAY_OF_YEAR);
+        this.daysInYear = day.getActualMaximum(Calendar.DAY_OF_YEAR);
+    }
+
+    /**
+     * Returns the ephemeris of the day of the calendar at the specified location. Ephemerides of past days are
+     * removed.
+     */
+    public static AstroEphemeris getInstance(Calendar calendar, double latitude, double longitude,
+            Integer altitude) {
+        String key = latitude + ";" + longitude + ";" + altitude + ";" + calendar.getTimeZone().getID() + ";"
+                + calendar.get(Calendar.YEAR) + "-" + calendar.get(Calendar.DAY_OF_YEAR);
+        synchronized (ephemerides) {
+            AstroEphemeris ephemeris = ephemerides.get(key);
+            if (ephemeris == null) {
+                ephemeris = new AstroEphemeris(calendar, latitude, longitude, altitude);
+                for (Iterator<AstroEphemeris> iterator = ephemerides.values().iterator(); iterator.hasNext();) {
+                    if (iterator.next().end < ephemeris.start) {
+                        iterator.remove();
+                    }
+                }
+                ephemerides.put(key, ephemeris);
+            }
+            return ephemeris;
+        }
+    }
+
+    /**
+     * Returns the sun data of the day, with the phase at the time of the calendar.
+     */
+    public Sun getSunInfo(Calendar calendar) {
+        Sun daily = getSun();
+        Sun sun = new Sun();
+        sun.setRise(daily.getRise());
+        sun.setSet(daily.getSet());
+        sun.setNoon(daily.getNoon());
+        sun.setAstroDawn(daily.getAstroDawn());
+        sun.setNauticDawn(daily.getNauticDawn());
+        sun.setCivilDawn(daily.getCivilDawn());
+        sun.setCivilDusk(daily.getCivilDusk());
+        sun.setNauticDusk(daily.getNauticDusk());
+        sun.setAstroDusk(daily.getAstroDusk());
+        sun.setDaylight(daily.getDaylight());
+        sun.setMorningNight(daily.getMorningNight());
+        sun.setEveningNight(daily.getEveningNight());
+        sun.setNight(daily.getNight());
+        sun.setEclipse(daily.getEclipse());
+        sun.setZodiac(daily.getZodiac());
+        sun.setSeason(daily.getSeason());
+        sunCalc.setSunPhase(calendar, sun);
+        return sun;
+    }
+
+    /**
+     * Sets the sun position and radiation at the time of the calendar.
+     */
+    public void setSunPositionalInfo(Calendar calendar, Sun sun) {
+        long time = calendar.getTimeInMillis();
+        if (time < start || time >= end) {
+            sunCalc.setPositionalInfo(calendar, latitude, longitude, altitude, sun);
+            return;
+        }
+        getSun();
+        int index = getIndex(time);
+        double fraction = getFraction(time, index);
+
+        Position position = sun.getPosition();
+        sunCalc.setPosition(DateTimeUtils.dateToJulianDate(calendar),
+                interpolateAngle(sunRightAscension, index, fraction), interpolate(sunDeclination, index, fraction),
+                latitude, longitude, position);
+        sunCalc.setRadiationInfo(dayOfYear, daysInYear, position.getElevation(), altitude, sun);
+    }
+
+    /**
+     * Returns the moon data of the day.
+     */
+    public Moon getMoonInfo() {
+        Moon daily = getMoon();
+        Moon moon = new Moon();
+        moon.setRise(daily.getRise());
+        moon.setSet(daily.getSet());
+        moon.setApogee(daily.getApogee());
+        moon.setPerigee(daily.getPerigee());
+        moon.setEclipse(daily.getEclipse());
+        MoonPhase phase = moon.getPhase();
+        phase.setNew(daily.getPhase().getNew());
+        phase.setFirstQuarter(daily.getPhase().getFirstQuarter());
+        phase.setFull(daily.getPhase().getFull());
+        phase.setThirdQuarter(daily.getPhase().getThirdQuarter());
+        return moon;
+    }
+
+    /**
+     * Sets the moon phase, position, zodiac and distance at the time of the calendar.
+     */
+    public void setMoonPositionalInfo(Calendar calendar, Moon moon) {
+        long time = calendar.getTimeInMillis();
+        if (time < start || time >= end) {
+            moonCalc.setPositionalInfo(calendar, latitude, longitude, moon);
+            return;
+        }
+        getMoon();
+        int index = getIndex(time);
+        double fraction = getFraction(time, index);
+
+        MoonPhase phase = moon.getPhase();
+        phase.setAge(moonAge);
+        phase.setIllumination(interpolate(moonIllumination, index, fraction));
+        moonCalc.setMoonPhaseName(day, phase, moonAgeDays);
+
+        moonCalc.setPosition(DateTimeUtils.dateToJulianDate(calendar),
+                interpolateAngle(moonRightAscension, index, fraction), interpolate(moonDeclination, index, fraction),
+                interpolate(moonCenterDistance, index, fraction), latitude, longitude, moon.getPosition());
+        moon.setZodiac(new Zodiac(moonCalc.getZodiacSign(interpolateAngle(moonLongitude, index, fraction))));
+
+        MoonDistance distance = moon.getDistance();
+        distance.setDate(calendar);
+        distance.setKilometer(interpolate(moonDistance, index, fraction));
+    }
+
+    /**
+     * Calculates the sun data and samples the sun positions of the day on the first access.
+     */
+    private synchronized Sun getSun() {
+        if (sun == null) {
+            int count = getSampleCount();
+            double[] rightAscension = new double[count];
+            double[] declination = new double[count];
+            Calendar calendar = (Calendar) day.clone();
+            for (int i = 0; i < count; i++) {
+                calendar.setTimeInMillis(start + i * SAMPLE_INTERVAL);
+                double[] raDec = sunCalc.getEquatorialCoordinates(DateTimeUtils.dateToJulianDate(calendar));
+                rightAscension[i] = raDec[0];
+                declination[i] = raDec[1];
+            }
+            sunRightAscension = rightAscension;
+            sunDeclination = declination;
+            sun = sunCalc.getSunInfo((Calendar) day.clone(), latitude, longitude, altitude);
+        }
+        return sun;
+    }
+
+    /**
+     * Calculates the moon data and samples the moon positions of the day on the first access.
+     */
+    private synchronized Moon getMoon() {
+        if (moon == null) {
+            int count = getSampleCount();
+            double[] rightAscension = new double[count];
+            double[] declination = new double[count];
+            double[] centerDistance = new double[count];
+            double[] eclipticLongitude = new double[count];
+            double[] illumination = new double[count];
+            double[] distance = new double[count];
+            Calendar calendar = (Calendar) day.clone();
+            for (int i = 0; i < count; i++) {
+                calendar.setTimeInMillis(start + i * SAMPLE_INTERVAL);
+                double julianDate = DateTimeUtils.dateToJulianDate(calendar);
+                double[] coordinates = moonCalc.getEquatorialCoordinates(julianDate);
+                rightAscension[i] = coordinates[0];
+                declination[i] = coordinates[1];
+                centerDistance[i] = coordinates[2];
+                eclipticLongitude[i] = coordinates[3];
+                illumination[i] = moonCalc.getIllumination(julianDate);
+                distance[i] = moonCalc.getDistance(julianDate);
+            }
+            moonRightAscension = rightAscension;
+            moonDeclination = declination;
+            moonCenterDistance = centerDistance;
+            moonLongitude = eclipticLongitude;
+            moonIllumination = illumination;
+            moonDistance = distance;
+            moonAgeDays = moonCalc.getAge(day);
+            moonAge = (int) moonAgeDays;
+            moon = moonCalc.getMoonInfo((Calendar) day.clone(), latitude, longitude);
+        }
+        return moon;
+    }
+
+    /**
+     * Returns the number of samples, the last sample is at or after the end of the day.
+     */
+    private int getSampleCount() {
+        return (int) ((end - start + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL) + 1;
+    }
+
+    private int getIndex(long time) {
+        return (int) ((time - start) / SAMPLE_INTERVAL);
+    }
+
+    private double getFraction(long time, int index) {
+        return (double) (time - start - index * SAMPLE_INTERVAL) / SAMPLE_INTERVAL;
+    }
+
+    private double interpolate(double[] values, int index, double fraction) {
+        return values[index] + (values[index + 1] - values[index]) * fraction;
+    }
+
+    /**
+     * Interpolates an angle in radians across the full circle, the result is within 0 and 2 PI.
+     */
+    private double interpolateAngle(double[] values, int index, double fraction) {
+        double delta = values[index + 1] - values[index];
+        if (delta > Math.PI) {
+            delta -= 2 * Math.PI;
+        } else if (delta < -Math.PI) {
+            delta += 2 * Math.PI;
+        }
+        double angle = values[index] + delta * fraction;
+        if (angle < 0) {
+            angle += 2 * Math.PI;
+        } else if (angle >= 2 * Math.PI) {
+            angle -= 2 * Math.PI;
+        }
+        return angle;
+    }
+}
@@ -117,12 +117,25 @@ public class MoonCalc {
      */
     private void setMoonPhase(Calendar calendar, Moon moon) {
         MoonPhase phase = moon.getPhase();
-        double julianDateEndOfDay = DateTimeUtils.endOfDayDateToJulianDate(calendar);
-        double parentNewMoon = getPreviousPhase(calendar, julianDateEndOfDay, NEW_MOON);
-        double age = Math.abs(parentNewMoon - julianDateEndOfDay);
+        double age = getAge(calendar);
         phase.setAge((int) age);
         phase.setIllumination(getIllumination(DateTimeUtils.dateToJulianDate(calendar)));
+        setMoonPhaseName(calendar, phase, age);
+    }
+
+    /**
+     * Calculates the age of the moon at the end of the day in days.
+     */
+    double getAge(Calendar calendar) {
+        double julianDateEndOfDay = DateTimeUtils.endOfDayDateToJulianDate(calendar);
+        double parentNewMoon = getPreviousPhase(calendar, julianDateEndOfDay, NEW_MOON);
+        return Math.abs(parentNewMoon - julianDateEndOfDay);
+    }
 
+    /**
+     * Sets the name of the phase from the phase dates, the illumination and the age.
+     */
+    void setMoonPhaseName(Calendar calendar, MoonPhase phase, double age) {
         int illumination = (int) phase.getIllumination();
         boolean isWaxing = age < (29.530588853 / 2);
         if (DateTimeUtils.isSameDay(calendar, phase.getNew())) {
@@ -353,7 +366,7 @@ public class MoonCalc {
     /**
      * Calculates the illumination.
      */
-    private double getIllumination(double jd) {
+    double getIllumination(double jd) {
         double t = (jd - 2451545) / 36525;
         double d = 297.8502042 + 445267.11151686 * t - .00163 * t * t + t * t * t / 545868 - t * t * t * t / 113065000;
         double m = 357.5291092 + 35999.0502909 * t - .0001536 * t * t + t * t * t / 24490000;
@@ -472,7 +485,7 @@ public class MoonCalc {
     /**
      * Calculates the distance from the moon to earth.
      */
-    private double getDistance(double jd) {
+    double getDistance(double jd) {
         double t = (jd - 2451545) / 36525;
         double d = 297.8502042 + 445267.11151686 * t - .00163 * t * t + t * t * t / 545868 - t * t * t * t / 113065000;
         double m = 357.5291092 + 35999.0502909 * t - .0001536 * t * t + t * t * t / 24490000;
@@ -642,13 +655,18 @@ public class MoonCalc {
     /**
      * Sets the azimuth, elevation and zodiac in the moon object.
      */
-    private void setAzimuthElevationZodiac(double julianDate, double latitude, double longitude, Moon moon) {
-        double lat = latitude * SunCalc.DEG2RAD;
-        double lon = longitude * SunCalc.DEG2RAD;
-
-        double gmst = toGMST(julianDate);
-        double lmst = toLMST(gmst, lon) * 15. * SunCalc.DEG2RAD;
+    void setAzimuthElevationZodiac(double julianDate, double latitude, double longitude, Moon moon) {
+        double[] coordinates = getEquatorialCoordinates(julianDate);
+        setPosition(julianDate, coordinates[0], coordinates[1], coordinates[2], latitude, longitude,
+                moon.getPosition());
+        moon.setZodiac(new Zodiac(getZodiacSign(coordinates[3])));
+    }
 
+    /**
+     * Calculates the geocentric right ascension and declination in radians, the distance in kilometers and the
+     * ecliptic longitude in radians of the moon.
+     */
+    double[] getEquatorialCoordinates(double julianDate) {
         double d = julianDate - 2447891.5;
         double anomalyMean = 360 * SunCalc.DEG2RAD / 365.242191 * d + 4.87650757829735 - 4.935239984568769;
         double nu = anomalyMean + 360.0 * SunCalc.DEG2RAD / Math.PI * 0.016713 * Math.sin(anomalyMean);
@@ -680,14 +698,31 @@ public class MoonCalc {
 
         double distance = (1 - 0.00301401) / (1 + 0.054900 * Math.cos(mMoon2 + ec)) * 384401;
 
-        double raDecTopo[] = geoEqu2TopoEqu(raDec, distance, lat, lmst);
+        return new double[] { raDec[0], raDec[1], distance, moonLon };
+    }
+
+    /**
+     * Calculates the moon position (azimuth and elevation) from the geocentric equatorial coordinates.
+     */
+    void setPosition(double julianDate, double ra, double dec, double distance, double latitude, double longitude,
+            Position position) {
+        double lat = latitude * SunCalc.DEG2RAD;
+        double lon = longitude * SunCalc.DEG2RAD;
+
+        double gmst = toGMST(julianDate);
+        double lmst = toLMST(gmst, lon) * 15. * SunCalc.DEG2RAD;
+
+        double raDecTopo[] = geoEqu2TopoEqu(new double[] { ra, dec }, distance, lat, lmst);
         double azAlt[] = equ2AzAlt(raDecTopo[0], raDecTopo[1], lat, lmst);
 
-        Position position = moon.getPosition();
         position.setAzimuth(azAlt[0] * SunCalc.RAD2DEG);
         position.setElevation(azAlt[1] * SunCalc.RAD2DEG + refraction(azAlt[1]));
+    }
 
-        // zodiac
+    /**
+     * Returns the zodiac sign of the ecliptic longitude in radians.
+     */
+    ZodiacSign getZodiacSign(double moonLon) {
         double idxd = Math.floor(moonLon * SunCalc.RAD2DEG / 30);
         int idx = 0;
         if (idxd < 0) {
@@ -696,9 +731,7 @@ public class MoonCalc {
             idx = (int) (Math.floor(idxd));
         }
 
-        if (idx >= 0 || idx <= ZodiacSign.values().length) {
-            moon.setZodiac(new Zodiac(ZodiacSign.values()[idx]));
-        }
+        return ZodiacSign.values()[idx];
     }
 
     private double mod2Pi(double x) {
@@ -59,35 +59,51 @@ public class SunCalc {
      * Calculates the sun position (azimuth and elevation).
      */
     public void setPositionalInfo(Calendar calendar, double latitude, double longitude, Integer altitude, Sun sun) {
-        double lw = -longitude * DEG2RAD;
-        double phi = latitude * DEG2RAD;
-
         double j = DateTimeUtils.dateToJulianDate(calendar);
+        double[] raDec = getEquatorialCoordinates(j);
+        setPosition(j, raDec[0], raDec[1], latitude, longitude, sun.getPosition());
+
+        setRadiationInfo(calendar, sun.getPosition().getElevation(), altitude, sun);
+    }
+
+    /**
+     * Calculates the right ascension and declination of the sun in radians.
+     */
+    double[] getEquatorialCoordinates(double j) {
         double m = getSolarMeanAnomaly(j);
         double c = getEquationOfCenter(m);
         double lsun = getEclipticLongitude(m, c);
-        double d = getSunDeclination(lsun);
-        double a = getRightAscension(lsun);
+        return new double[] { getRightAscension(lsun), getSunDeclination(lsun) };
+    }
+
+    /**
+     * Calculates the sun position (azimuth and elevation) from the right ascension and declination.
+     */
+    void setPosition(double j, double a, double d, double latitude, double longitude, Position position) {
+        double lw = -longitude * DEG2RAD;
+        double phi = latitude * DEG2RAD;
         double th = getSiderealTime(j, lw);
 
         double azimuth = getAzimuth(th, a, phi, d) / DEG2RAD;
         double elevation = getElevation(th, a, phi, d) / DEG2RAD;
 
-        Position position = sun.getPosition();
         position.setAzimuth(azimuth + 180);
         position.setElevation(elevation);
-
-        setRadiationInfo(calendar, elevation, altitude, sun);
     }
 
     /**
      * Calculates sun radiation data.
      */
     public void setRadiationInfo(Calendar calendar, double elevation, Integer altitude, Sun sun) {
-        double sinAlpha = Math.sin(DEG2RAD * elevation);
+        setRadiationInfo(calendar.get(Calendar.DAY_OF_YEAR), calendar.getActualMaximum(Calendar.DAY_OF_YEAR),
+                elevation, altitude, sun);
+    }
 
-        int dayOfYear = calendar.get(Calendar.DAY_OF_YEAR);
-        int daysInYear = calendar.getActualMaximum(Calendar.DAY_OF_YEAR);
+    /**
+     * Calculates sun radiation data for the specified day of the year.
+     */
+    void setRadiationInfo(int dayOfYear, int daysInYear, double elevation, Integer altitude, Sun sun) {
+        double sinAlpha = Math.sin(DEG2RAD * elevation);
 
         // Direct Solar Radiation (in W/m²) at the atmosphere entry
         // At sunrise/sunset - calculations limits are reached
@@ -241,17 +257,23 @@ public class SunCalc {
         SeasonCalc seasonCalc = new SeasonCalc();
         sun.setSeason(seasonCalc.getSeason(calendar, latitude));
 
-        // phase
+        setSunPhase(Calendar.getInstance(), sun);
+
+        return sun;
+    }
+
+    /**
+     * Sets the name of the sun phase at the specified time.
+     */
+    void setSunPhase(Calendar calendar, Sun sun) {
         for (Entry<SunPhaseName, Range> rangeEntry : sun.getAllRanges().entrySet()) {
             SunPhaseName entryPhase = rangeEntry.getKey();
             if (entryPhase != SunPhaseName.MORNING_NIGHT && entryPhase != SunPhaseName.EVENING_NIGHT) {
-                if (rangeEntry.getValue().matches(Calendar.getInstance())) {
+                if (rangeEntry.getValue().matches(calendar)) {
                     sun.getPhase().setName(entryPhase);
                 }
             }
         }
-
-        return sun;
     }
 
     /**
@@ -9,44 +9,52 @@
 package org.openhab.binding.astro.internal.job;
 
 import static org.openhab.binding.astro.AstroBindingConstants.*;
-import static org.quartz.JobBuilder.newJob;
-import static org.quartz.TriggerBuilder.newTrigger;
 
 import java.math.BigDecimal;
 import java.util.Calendar;
 
 import org.apache.commons.lang.time.DateFormatUtils;
 import org.openhab.binding.astro.handler.AstroThingHandler;
-import org.openhab.binding.astro.internal.AstroHandlerFactory;
 import org.openhab.binding.astro.internal.model.Planet;
 import org.openhab.binding.astro.internal.model.Range;
 import org.openhab.binding.astro.internal.model.SunPhaseName;
 import org.openhab.binding.astro.internal.util.DateTimeUtils;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.Trigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Calculates and publishes the planet data and also schedules the events for the current day.
+ * Calculates and publishes the planet data and also schedules the events for the current day. The job repeats
+ * every day at midnight.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public abstract class AbstractDailyJob extends AbstractBaseJob {
     private static final Logger logger = LoggerFactory.getLogger(AbstractDailyJob.class);
 
+    public AbstractDailyJob(AstroThingHandler handler) {
+        super(handler);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    protected void executeJob(String thingUid, JobDataMap jobDataMap) {
-        AstroThingHandler handler = AstroHandlerFactory.getHandler(thingUid);
-        if (handler != null) {
-            handler.publishDailyInfo();
-            schedulePlanetEvents(thingUid, handler, handler.getPlanet());
-            logger.info("Scheduled astro event-jobs for thing {}", thingUid);
-        }
+    protected void executeJob(String thingUid) {
+        handler.publishDailyInfo();
+        schedulePlanetEvents(thingUid, handler, handler.getPlanet());
+        logger.info("Scheduled astro event-jobs for thing {}", thingUid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Calendar getNextTime(Calendar time, long now) {
+        Calendar today = Calendar.getInstance();
+        today.setTimeInMillis(now);
+        Calendar nextTime = DateTimeUtils.truncateToMidnight(today);
+        nextTime.add(Calendar.DAY_OF_MONTH, 1);
+        return nextTime;
     }
 
     /**
@@ -61,51 +69,33 @@ public abstract class AbstractDailyJob extends AbstractBaseJob {
 
     protected void scheduleEvent(String thingUid, AstroThingHandler astroHandler, Calendar eventAt, String event,
             String channelId) {
-        JobDataMap jobDataMap = new JobDataMap();
-        jobDataMap.put(KEY_THING_UID, thingUid);
-        jobDataMap.put(EventJob.KEY_EVENT, event);
-        jobDataMap.put(KEY_CHANNEL_ID, channelId);
-
-        eventAt = DateTimeUtils.addOffset(eventAt, getEventOffset(astroHandler, channelId));
-        schedule(astroHandler, EventJob.class, jobDataMap, "event-" + event.toLowerCase() + "-" + channelId, eventAt);
+        if (eventAt != null) {
+            eventAt = DateTimeUtils.addOffset(eventAt, getEventOffset(astroHandler, channelId));
+        }
+        schedule(thingUid, new EventJob(astroHandler, channelId, event),
+                "event-" + event.toLowerCase() + "-" + channelId, eventAt);
     }
 
     protected void schedulePublishPlanet(String thingUid, AstroThingHandler astroHandler, String jobKey,
             Calendar eventAt) {
-        JobDataMap jobDataMap = new JobDataMap();
-        jobDataMap.put(KEY_THING_UID, thingUid);
-
-        schedule(astroHandler, PublishPlanetJob.class, jobDataMap, "publish-" + jobKey, eventAt);
+        schedule(thingUid, new PublishPlanetJob(astroHandler), "publish-" + jobKey, eventAt);
     }
 
     protected void scheduleSunPhase(String thingUid, AstroThingHandler astroHandler, SunPhaseName phaseName,
             Calendar eventAt) {
-        JobDataMap jobDataMap = new JobDataMap();
-        jobDataMap.put(KEY_THING_UID, thingUid);
-        jobDataMap.put(KEY_PHASE_NAME, phaseName);
-
-        schedule(astroHandler, SunPhaseJob.class, jobDataMap, "sunPhase-" + phaseName.toString().toLowerCase(),
+        schedule(thingUid, new SunPhaseJob(astroHandler, phaseName), "sunPhase-" + phaseName.toString().toLowerCase(),
                 eventAt);
     }
 
-    private void schedule(AstroThingHandler astroHandler, Class<? extends AbstractBaseJob> clazz, JobDataMap jobDataMap,
-            String jobKey, Calendar eventAt) {
-        try {
-            Calendar today = Calendar.getInstance();
-            if (eventAt != null && DateTimeUtils.isSameDay(eventAt, today)
-                    && DateTimeUtils.isTimeGreaterEquals(eventAt, today)) {
-                jobDataMap.put(KEY_JOB_NAME, "job-" + jobKey);
-                String thingUid = jobDataMap.getString(KEY_THING_UID);
-                Trigger trigger = newTrigger().withIdentity("trigger-" + jobKey, thingUid).startAt(eventAt.getTime())
-                        .build();
-                JobDetail jobDetail = newJob(clazz).withIdentity("job-" + jobKey, thingUid).usingJobData(jobDataMap)
-                        .build();
-                astroHandler.getScheduler().scheduleJob(jobDetail, trigger);
-                logger.debug("Scheduled astro job-{} for thing {} at {}", jobKey, thingUid,
-                        DateFormatUtils.ISO_DATETIME_FORMAT.format(eventAt));
-            }
-        } catch (Exception ex) {
-            logger.error(ex.getMessage(), ex);
+    private void schedule(String thingUid, AbstractBaseJob job, String jobKey, Calendar eventAt) {
+        AstroScheduler scheduler = AstroScheduler.getInstance();
+        Calendar today = Calendar.getInstance();
+        today.setTimeInMillis(scheduler.currentTimeMillis());
+        if (eventAt != null && DateTimeUtils.isSameDay(eventAt, today)
+                && DateTimeUtils.isTimeGreaterEquals(eventAt, today)) {
+            scheduler.scheduleFollowUp(thingUid, "job-" + jobKey, eventAt, job);
+            logger.debug("Scheduled astro job-{} for thing {} at {}", jobKey, thingUid,
+                    DateFormatUtils.ISO_DATETIME_FORMAT.format(eventAt));
         }
     }
 
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.job;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The timeline of the astro jobs of all things. The jobs are kept in memory sorted by their time and are
+ * executed by a single thread, which is started with the first and stopped after the last job. The jobs of a
+ * thing are identified by their name, scheduling a job with the name of a scheduled job replaces it. The clock
+ * and the executor of the thread can be replaced, so that the timeline can be tested without waiting.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroScheduler implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(AstroScheduler.class);
+
+    /** the timeline checks the clock at least in this interval, to follow changes of the system time */
+    private static final long MAX_WAIT = 60000;
+
+    private static final TimeProvider SYSTEM_TIME = new TimeProvider() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static final Executor THREAD_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command, "Astro scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    };
+
+    private static AstroScheduler instance;
+
+    private final TimeProvider timeProvider;
+    private final Executor executor;
+    private final TreeSet<ScheduledJob> timeline = new TreeSet<ScheduledJob>();
+    private final Map<String, Map<String, ScheduledJob>> jobs = new HashMap<String, Map<String, ScheduledJob>>();
+    private long sequence;
+    private boolean running;
+
+    /**
+     * Returns the timeline shared by all things.
+     */
+    public static synchronized AstroScheduler getInstance() {
+        if (instance == null) {
+            instance = new AstroScheduler(SYSTEM_TIME, THREAD_EXECUTOR);
+        }
+        return instance;
+    }
+
+    /**
+     * @param timeProvider
+     *            the clock the jobs are due by
+     * @param executor
+     *            starts the thread which executes the jobs
+     */
+    AstroScheduler(TimeProvider timeProvider, Executor executor) {
+        this.timeProvider = timeProvider;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules a job of a thing at the specified time, a scheduled job with the same name is replaced.
+     */
+    public synchronized void schedule(String thingUid, String jobName, Calendar time, AbstractBaseJob job) {
+        Map<String, ScheduledJob> thingJobs = jobs.get(thingUid);
+        if (thingJobs == null) {
+            thingJobs = new HashMap<String, ScheduledJob>();
+            jobs.put(thingUid, thingJobs);
+        }
+        add(thingJobs, new ScheduledJob(thingUid, jobName, time, job, sequence++));
+    }
+
+    /**
+     * Schedules a job of a thing, if the jobs of the thing have not been removed meanwhile. The running jobs use
+     * this to schedule further jobs.
+     */
+    public synchronized void scheduleFollowUp(String thingUid, String jobName, Calendar time, AbstractBaseJob job) {
+        Map<String, ScheduledJob> thingJobs = jobs.get(thingUid);
+        if (thingJobs != null) {
+            add(thingJobs, new ScheduledJob(thingUid, jobName, time, job, sequence++));
+        }
+    }
+
+    private void add(Map<String, ScheduledJob> thingJobs, ScheduledJob scheduledJob) {
+        remove(thingJobs.put(scheduledJob.jobName, scheduledJob));
+        timeline.add(scheduledJob);
+        if (!running) {
+            running = true;
+            executor.execute(this);
+        } else if (timeline.first() == scheduledJob) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the current time in milliseconds by the clock of the timeline.
+     */
+    long currentTimeMillis() {
+        return timeProvider.currentTimeMillis();
+    }
+
+    /**
+     * Removes all jobs of a thing.
+     */
+    public synchronized void removeJobs(String thingUid) {
+        Map<String, ScheduledJob> thingJobs = jobs.remove(thingUid);
+        if (thingJobs != null) {
+            for (ScheduledJob scheduledJob : thingJobs.values()) {
+                remove(scheduledJob);
+            }
+        }
+    }
+
+    /**
+     * Returns the upcoming jobs of a thing or of all things if the thingUid is null, in the order of their
+     * execution.
+     */
+    public synchronized List<ScheduledJob> getJobs(String thingUid) {
+        List<ScheduledJob> result = new ArrayList<ScheduledJob>();
+        for (ScheduledJob scheduledJob : timeline) {
+            if (thingUid == null || scheduledJob.thingUid.equals(thingUid)) {
+                result.add(scheduledJob);
+            }
+        }
+        return result;
+    }
+
+    private void remove(ScheduledJob scheduledJob) {
+        if (scheduledJob != null) {
+            timeline.remove(scheduledJob);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (runDueJobs()) {
+            if (!waitForNextJob()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executes the jobs which are due, returns false if there is no job left. The thread executing the jobs stops
+     * then, the next scheduled job starts a new one.
+     */
+    boolean runDueJobs() {
+        ScheduledJob scheduledJob;
+        while ((scheduledJob = pollDueJob()) != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Starting astro {} for thing {}", scheduledJob.jobName, scheduledJob.thingUid);
+            }
+            try {
+                scheduledJob.job.run();
+            } catch (RuntimeException ex) {
+                logger.error("Astro {} for thing {} failed: {}", scheduledJob.jobName, scheduledJob.thingUid,
+                        ex.getMessage(), ex);
+            }
+            reschedule(scheduledJob);
+        }
+        synchronized (this) {
+            if (timeline.isEmpty()) {
+                logger.debug("Astro scheduler stopped, no jobs left");
+                running = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes the first job from the timeline if it is due.
+     */
+    private synchronized ScheduledJob pollDueJob() {
+        if (!timeline.isEmpty() && timeline.first().time.getTimeInMillis() <= timeProvider.currentTimeMillis()) {
+            return timeline.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * Waits until the first job is due or another job is scheduled before it, returns false if the thread has
+     * been interrupted.
+     */
+    private synchronized boolean waitForNextJob() {
+        if (timeline.isEmpty()) {
+            return true;
+        }
+        long delay = timeline.first().time.getTimeInMillis() - timeProvider.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                wait(Math.min(delay, MAX_WAIT));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the next run of a repeating job, unless the job has been removed or replaced meanwhile.
+     */
+    private synchronized void reschedule(ScheduledJob scheduledJob) {
+        Map<String, ScheduledJob> thingJobs = jobs.get(scheduledJob.thingUid);
+        if (thingJobs == null || thingJobs.get(scheduledJob.jobName) != scheduledJob) {
+            return;
+        }
+        Calendar nextTime = scheduledJob.job.getNextTime(scheduledJob.time, timeProvider.currentTimeMillis());
+        if (nextTime != null) {
+            add(thingJobs, new ScheduledJob(scheduledJob.thingUid, scheduledJob.jobName, nextTime, scheduledJob.job,
+                    sequence++));
+        } else {
+            // the map of the thing is kept until its jobs are removed, so running jobs can still schedule follow-ups
+            thingJobs.remove(scheduledJob.jobName);
+        }
+    }
+
+    /**
+     * A job in the timeline.
+     */
+    public static class ScheduledJob implements Comparable<ScheduledJob> {
+        private final String thingUid;
+        private final String jobName;
+        private final Calendar time;
+        private final AbstractBaseJob job;
+        private final long sequence;
+
+        private ScheduledJob(String thingUid, String jobName, Calendar time, AbstractBaseJob job, long sequence) {
+            this.thingUid = thingUid;
+            this.jobName = jobName;
+            this.time = (Calendar) time.clone();
+            this.job = job;
+            this.sequence = sequence;
+        }
+
+        public String getThingUid() {
+            return thingUid;
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public Calendar getTime() {
+            return (Calendar) time.clone();
+        }
+
+        @Override
+        public int compareTo(ScheduledJob other) {
+            int result = time.compareTo(other.time);
+            if (result == 0) {
+                result = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The clock of the timeline.
+     */
+    interface TimeProvider {
+        long currentTimeMillis();
+    }
+}
@@ -23,6 +23,10 @@ import org.openhab.binding.astro.internal.model.Planet;
  */
 public class DailyJobMoon extends AbstractDailyJob {
 
+    public DailyJobMoon(AstroThingHandler handler) {
+        super(handler);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -8,9 +8,9 @@
  */
 package org.openhab.binding.astro.internal.job;
 
+import java.util.Calendar;
+
 import org.openhab.binding.astro.handler.AstroThingHandler;
-import org.openhab.binding.astro.internal.AstroHandlerFactory;
-import org.quartz.JobDataMap;
 
 /**
  * Calculates and publishes astro positional data.
@@ -18,12 +18,33 @@ import org.quartz.JobDataMap;
  * @author Gerhard Riegler - Initial contribution
  */
 public class PositionalJob extends AbstractBaseJob {
+    private final int interval;
+
+    /**
+     * Creates a job which repeats in the specified interval in seconds.
+     */
+    public PositionalJob(AstroThingHandler handler, int interval) {
+        super(handler);
+        this.interval = interval;
+    }
+
+    @Override
+    protected void executeJob(String thingUid) {
+        handler.publishPositionalInfo();
+    }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    protected void executeJob(String thingUid, JobDataMap jobDataMap) {
-        AstroThingHandler astroHandler = AstroHandlerFactory.getHandler(thingUid);
-        if (astroHandler != null) {
-            astroHandler.publishPositionalInfo();
+    protected Calendar getNextTime(Calendar time, long now) {
+        Calendar nextTime = (Calendar) time.clone();
+        nextTime.add(Calendar.SECOND, interval);
+        if (nextTime.getTimeInMillis() <= now) {
+            // the job is late, skip the missed executions
+            nextTime.setTimeInMillis(now);
+            nextTime.add(Calendar.SECOND, interval);
         }
+        return nextTime;
     }
 }
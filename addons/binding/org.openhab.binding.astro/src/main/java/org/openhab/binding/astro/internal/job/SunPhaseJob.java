@@ -12,10 +12,8 @@ import static org.openhab.binding.astro.AstroBindingConstants.CHANNEL_ID_SUN_PHA
 
 import org.eclipse.smarthome.core.thing.Channel;
 import org.openhab.binding.astro.handler.AstroThingHandler;
-import org.openhab.binding.astro.internal.AstroHandlerFactory;
 import org.openhab.binding.astro.internal.model.Sun;
 import org.openhab.binding.astro.internal.model.SunPhaseName;
-import org.quartz.JobDataMap;
 
 /**
  * Job to publish the current sun phase.
@@ -23,18 +21,22 @@ import org.quartz.JobDataMap;
  * @author Gerhard Riegler - Initial contribution
  */
 public class SunPhaseJob extends AbstractBaseJob {
+    private final SunPhaseName phaseName;
+
+    public SunPhaseJob(AstroThingHandler handler, SunPhaseName phaseName) {
+        super(handler);
+        this.phaseName = phaseName;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected void executeJob(String thingUid, JobDataMap jobDataMap) {
-        AstroThingHandler astroHandler = AstroHandlerFactory.getHandler(thingUid);
-        Channel phaseNameChannel = astroHandler.getThing().getChannel(CHANNEL_ID_SUN_PHASE_NAME);
-        if (astroHandler != null && phaseNameChannel != null) {
-            SunPhaseName phaseName = (SunPhaseName) jobDataMap.get(KEY_PHASE_NAME);
-            ((Sun) astroHandler.getPlanet()).getPhase().setName(phaseName);
-            astroHandler.publishChannelIfLinked(phaseNameChannel.getUID());
+    protected void executeJob(String thingUid) {
+        Channel phaseNameChannel = handler.getThing().getChannel(CHANNEL_ID_SUN_PHASE_NAME);
+        if (phaseNameChannel != null) {
+            ((Sun) handler.getPlanet()).getPhase().setName(phaseName);
+            handler.publishChannelIfLinked(phaseNameChannel.getUID());
         }
     }
 }
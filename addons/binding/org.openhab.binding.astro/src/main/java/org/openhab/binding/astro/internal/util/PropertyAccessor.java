@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.util;
+
+/**
+ * Reads a property of a model object with a direct getter call.
+ *
+ * @author agent - Initial contribution
+ */
+public abstract class PropertyAccessor<T> {
+    private final Class<?> type;
+
+    /**
+     * Creates an accessor for a property of the given type.
+     */
+    public PropertyAccessor(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Returns the type of the property, nested properties are looked up in this type.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the value of the property.
+     */
+    public abstract Object getValue(T instance);
+}
@@ -8,30 +8,416 @@
  */
 package org.openhab.binding.astro.internal.util;
 
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.lang.StringUtils;
 import org.eclipse.smarthome.core.library.types.DateTimeType;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.StringType;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.UnDefType;
+import org.openhab.binding.astro.internal.model.Eclipse;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.MoonDistance;
+import org.openhab.binding.astro.internal.model.MoonPhase;
+import org.openhab.binding.astro.internal.model.MoonPhaseName;
+import org.openhab.binding.astro.internal.model.Position;
+import org.openhab.binding.astro.internal.model.Radiation;
+import org.openhab.binding.astro.internal.model.Range;
+import org.openhab.binding.astro.internal.model.RiseSet;
+import org.openhab.binding.astro.internal.model.Season;
+import org.openhab.binding.astro.internal.model.SeasonName;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.model.SunEclipse;
+import org.openhab.binding.astro.internal.model.SunPhase;
+import org.openhab.binding.astro.internal.model.SunPhaseName;
+import org.openhab.binding.astro.internal.model.SunZodiac;
+import org.openhab.binding.astro.internal.model.Zodiac;
+import org.openhab.binding.astro.internal.model.ZodiacSign;
 
 /**
- * Methods to get the value from a property of an object.
- * 
+ * Methods to get the value from a property of an object. The getters of the model classes are registered as
+ * {@link PropertyAccessor}s, the accessor chain of a channel is resolved once per class of the object.
+ *
  * @author Gerhard Riegler - Initial contribution
  */
 public class PropertyUtils {
+    private static final Map<Class<?>, Map<String, PropertyAccessor<?>>> accessors = new HashMap<Class<?>, Map<String, PropertyAccessor<?>>>();
+    private static final Map<Class<?>, Map<String, PropertyAccessor<?>[]>> chains = new ConcurrentHashMap<Class<?>, Map<String, PropertyAccessor<?>[]>>();
+
+    static {
+        register(RiseSet.class, "rise", new PropertyAccessor<RiseSet>(Range.class) {
+            @Override
+            public Object getValue(RiseSet instance) {
+                return instance.getRise();
+            }
+        });
+        register(RiseSet.class, "set", new PropertyAccessor<RiseSet>(Range.class) {
+            @Override
+            public Object getValue(RiseSet instance) {
+                return instance.getSet();
+            }
+        });
+
+        register(Sun.class, "astroDawn", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getAstroDawn();
+            }
+        });
+        register(Sun.class, "nauticDawn", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getNauticDawn();
+            }
+        });
+        register(Sun.class, "civilDawn", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getCivilDawn();
+            }
+        });
+        register(Sun.class, "civilDusk", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getCivilDusk();
+            }
+        });
+        register(Sun.class, "nauticDusk", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getNauticDusk();
+            }
+        });
+        register(Sun.class, "astroDusk", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getAstroDusk();
+            }
+        });
+        register(Sun.class, "noon", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getNoon();
+            }
+        });
+        register(Sun.class, "daylight", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getDaylight();
+            }
+        });
+        register(Sun.class, "morningNight", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getMorningNight();
+            }
+        });
+        register(Sun.class, "eveningNight", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getEveningNight();
+            }
+        });
+        register(Sun.class, "night", new PropertyAccessor<Sun>(Range.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getNight();
+            }
+        });
+        register(Sun.class, "position", new PropertyAccessor<Sun>(Position.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getPosition();
+            }
+        });
+        register(Sun.class, "radiation", new PropertyAccessor<Sun>(Radiation.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getRadiation();
+            }
+        });
+        register(Sun.class, "zodiac", new PropertyAccessor<Sun>(SunZodiac.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getZodiac();
+            }
+        });
+        register(Sun.class, "season", new PropertyAccessor<Sun>(Season.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getSeason();
+            }
+        });
+        register(Sun.class, "eclipse", new PropertyAccessor<Sun>(SunEclipse.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getEclipse();
+            }
+        });
+        register(Sun.class, "phase", new PropertyAccessor<Sun>(SunPhase.class) {
+            @Override
+            public Object getValue(Sun instance) {
+                return instance.getPhase();
+            }
+        });
+
+        register(Moon.class, "phase", new PropertyAccessor<Moon>(MoonPhase.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getPhase();
+            }
+        });
+        register(Moon.class, "apogee", new PropertyAccessor<Moon>(MoonDistance.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getApogee();
+            }
+        });
+        register(Moon.class, "perigee", new PropertyAccessor<Moon>(MoonDistance.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getPerigee();
+            }
+        });
+        register(Moon.class, "distance", new PropertyAccessor<Moon>(MoonDistance.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getDistance();
+            }
+        });
+        register(Moon.class, "eclipse", new PropertyAccessor<Moon>(Eclipse.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getEclipse();
+            }
+        });
+        register(Moon.class, "position", new PropertyAccessor<Moon>(Position.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getPosition();
+            }
+        });
+        register(Moon.class, "zodiac", new PropertyAccessor<Moon>(Zodiac.class) {
+            @Override
+            public Object getValue(Moon instance) {
+                return instance.getZodiac();
+            }
+        });
+
+        register(Range.class, "start", new PropertyAccessor<Range>(Calendar.class) {
+            @Override
+            public Object getValue(Range instance) {
+                return instance.getStart();
+            }
+        });
+        register(Range.class, "end", new PropertyAccessor<Range>(Calendar.class) {
+            @Override
+            public Object getValue(Range instance) {
+                return instance.getEnd();
+            }
+        });
+        register(Range.class, "duration", new PropertyAccessor<Range>(Long.class) {
+            @Override
+            public Object getValue(Range instance) {
+                return instance.getDuration();
+            }
+        });
+
+        register(Position.class, "azimuth", new PropertyAccessor<Position>(Double.class) {
+            @Override
+            public Object getValue(Position instance) {
+                return instance.getAzimuth();
+            }
+        });
+        register(Position.class, "elevation", new PropertyAccessor<Position>(Double.class) {
+            @Override
+            public Object getValue(Position instance) {
+                return instance.getElevation();
+            }
+        });
+
+        register(Radiation.class, "direct", new PropertyAccessor<Radiation>(Double.class) {
+            @Override
+            public Object getValue(Radiation instance) {
+                return instance.getDirect();
+            }
+        });
+        register(Radiation.class, "diffuse", new PropertyAccessor<Radiation>(Double.class) {
+            @Override
+            public Object getValue(Radiation instance) {
+                return instance.getDiffuse();
+            }
+        });
+        register(Radiation.class, "total", new PropertyAccessor<Radiation>(Double.class) {
+            @Override
+            public Object getValue(Radiation instance) {
+                return instance.getTotal();
+            }
+        });
+
+        register(Zodiac.class, "sign", new PropertyAccessor<Zodiac>(ZodiacSign.class) {
+            @Override
+            public Object getValue(Zodiac instance) {
+                return instance.getSign();
+            }
+        });
+        register(SunZodiac.class, "start", new PropertyAccessor<SunZodiac>(Calendar.class) {
+            @Override
+            public Object getValue(SunZodiac instance) {
+                return instance.getStart();
+            }
+        });
+        register(SunZodiac.class, "end", new PropertyAccessor<SunZodiac>(Calendar.class) {
+            @Override
+            public Object getValue(SunZodiac instance) {
+                return instance.getEnd();
+            }
+        });
+
+        register(Season.class, "name", new PropertyAccessor<Season>(SeasonName.class) {
+            @Override
+            public Object getValue(Season instance) {
+                return instance.getName();
+            }
+        });
+        register(Season.class, "spring", new PropertyAccessor<Season>(Calendar.class) {
+            @Override
+            public Object getValue(Season instance) {
+                return instance.getSpring();
+            }
+        });
+        register(Season.class, "summer", new PropertyAccessor<Season>(Calendar.class) {
+            @Override
+            public Object getValue(Season instance) {
+                return instance.getSummer();
+            }
+        });
+        register(Season.class, "autumn", new PropertyAccessor<Season>(Calendar.class) {
+            @Override
+            public Object getValue(Season instance) {
+                return instance.getAutumn();
+            }
+        });
+        register(Season.class, "winter", new PropertyAccessor<Season>(Calendar.class) {
+            @Override
+            public Object getValue(Season instance) {
+                return instance.getWinter();
+            }
+        });
+
+        register(Eclipse.class, "total", new PropertyAccessor<Eclipse>(Calendar.class) {
+            @Override
+            public Object getValue(Eclipse instance) {
+                return instance.getTotal();
+            }
+        });
+        register(Eclipse.class, "partial", new PropertyAccessor<Eclipse>(Calendar.class) {
+            @Override
+            public Object getValue(Eclipse instance) {
+                return instance.getPartial();
+            }
+        });
+        register(SunEclipse.class, "ring", new PropertyAccessor<SunEclipse>(Calendar.class) {
+            @Override
+            public Object getValue(SunEclipse instance) {
+                return instance.getRing();
+            }
+        });
+
+        register(SunPhase.class, "name", new PropertyAccessor<SunPhase>(SunPhaseName.class) {
+            @Override
+            public Object getValue(SunPhase instance) {
+                return instance.getName();
+            }
+        });
+
+        register(MoonPhase.class, "firstQuarter", new PropertyAccessor<MoonPhase>(Calendar.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getFirstQuarter();
+            }
+        });
+        register(MoonPhase.class, "thirdQuarter", new PropertyAccessor<MoonPhase>(Calendar.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getThirdQuarter();
+            }
+        });
+        register(MoonPhase.class, "full", new PropertyAccessor<MoonPhase>(Calendar.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getFull();
+            }
+        });
+        register(MoonPhase.class, "new", new PropertyAccessor<MoonPhase>(Calendar.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getNew();
+            }
+        });
+        register(MoonPhase.class, "age", new PropertyAccessor<MoonPhase>(Integer.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getAge();
+            }
+        });
+        register(MoonPhase.class, "illumination", new PropertyAccessor<MoonPhase>(Double.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getIllumination();
+            }
+        });
+        register(MoonPhase.class, "name", new PropertyAccessor<MoonPhase>(MoonPhaseName.class) {
+            @Override
+            public Object getValue(MoonPhase instance) {
+                return instance.getName();
+            }
+        });
+
+        register(MoonDistance.class, "date", new PropertyAccessor<MoonDistance>(Calendar.class) {
+            @Override
+            public Object getValue(MoonDistance instance) {
+                return instance.getDate();
+            }
+        });
+        register(MoonDistance.class, "kilometer", new PropertyAccessor<MoonDistance>(Double.class) {
+            @Override
+            public Object getValue(MoonDistance instance) {
+                return instance.getKilometer();
+            }
+        });
+        register(MoonDistance.class, "miles", new PropertyAccessor<MoonDistance>(Double.class) {
+            @Override
+            public Object getValue(MoonDistance instance) {
+                return instance.getMiles();
+            }
+        });
+    }
+
+    /**
+     * Registers the accessor of a property of a class.
+     */
+    private static <T> void register(Class<T> type, String propertyName, PropertyAccessor<T> accessor) {
+        Map<String, PropertyAccessor<?>> typeAccessors = accessors.get(type);
+        if (typeAccessors == null) {
+            typeAccessors = new HashMap<String, PropertyAccessor<?>>();
+            accessors.put(type, typeAccessors);
+        }
+        typeAccessors.put(propertyName, accessor);
+    }
 
     /**
      * Returns the state of the channel.
      */
-    public static State getState(ChannelUID channelUID, Object instance) throws Exception {
+    public static State getState(ChannelUID channelUID, Object instance) {
         Object value = getPropertyValue(channelUID, instance);
         if (value == null) {
             return UnDefType.UNDEF;
@@ -43,42 +429,69 @@ public class PropertyUtils {
         } else if (value instanceof String || value instanceof Enum) {
             return new StringType(value.toString());
         } else {
-            throw new RuntimeException("Unsupported value type " + value.getClass().getSimpleName());
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getSimpleName());
         }
     }
 
     /**
-     * Returns the property value from the object instance, nested properties are possible. If the propertyName is for
-     * example rise.start, the methods getRise().getStart() are called.
+     * Returns the property value from the object instance, nested properties are possible. If the channel id is for
+     * example rise#start, the methods getRise().getStart() are called. If a nested object is null, null is returned.
      */
-    public static Object getPropertyValue(ChannelUID channelUID, Object instance) throws Exception {
-        String[] properties = StringUtils.split(channelUID.getId(), "#");
-        return getPropertyValue(instance, properties, 0);
+    @SuppressWarnings("unchecked")
+    public static Object getPropertyValue(ChannelUID channelUID, Object instance) {
+        Object value = instance;
+        for (PropertyAccessor<?> accessor : getChain(instance.getClass(), channelUID.getId())) {
+            if (value == null) {
+                return null;
+            }
+            value = ((PropertyAccessor<Object>) accessor).getValue(value);
+        }
+        return value;
     }
 
     /**
-     * Iterates through the nested properties and returns the getter value.
+     * Returns the accessors of the nested properties of the channel id, the chain is resolved once per class.
      */
-    @SuppressWarnings("all")
-    private static Object getPropertyValue(Object instance, String[] properties, int nestedIndex) throws Exception {
-        String propertyName = properties[nestedIndex];
-        Method m = instance.getClass().getMethod(toGetterString(propertyName), null);
-        Object result = m.invoke(instance, (Object[]) null);
-        if (++nestedIndex < properties.length) {
-            return getPropertyValue(result, properties, nestedIndex);
+    private static PropertyAccessor<?>[] getChain(Class<?> type, String channelId) {
+        Map<String, PropertyAccessor<?>[]> typeChains = chains.get(type);
+        if (typeChains == null) {
+            typeChains = new ConcurrentHashMap<String, PropertyAccessor<?>[]>();
+            chains.put(type, typeChains);
+        }
+        PropertyAccessor<?>[] chain = typeChains.get(channelId);
+        if (chain == null) {
+            chain = resolveChain(type, channelId);
+            typeChains.put(channelId, chain);
+        }
+        return chain;
+    }
+
+    private static PropertyAccessor<?>[] resolveChain(Class<?> type, String channelId) {
+        List<PropertyAccessor<?>> chain = new ArrayList<PropertyAccessor<?>>();
+        Class<?> propertyType = type;
+        for (String propertyName : channelId.split("#")) {
+            PropertyAccessor<?> accessor = getAccessor(propertyType, propertyName);
+            if (accessor == null) {
+                throw new IllegalArgumentException(
+                        "Unknown property " + propertyName + " of " + propertyType.getSimpleName());
+            }
+            chain.add(accessor);
+            propertyType = accessor.getType();
         }
-        return result;
+        return chain.toArray(new PropertyAccessor<?>[chain.size()]);
     }
 
     /**
-     * Converts the string to a getter property.
+     * Returns the accessor of a property of the class or one of its superclasses.
      */
-    private static String toGetterString(String str) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("get");
-        sb.append(Character.toTitleCase(str.charAt(0)));
-        sb.append(str.substring(1));
-        return sb.toString();
+    private static PropertyAccessor<?> getAccessor(Class<?> type, String propertyName) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            Map<String, PropertyAccessor<?>> typeAccessors = accessors.get(current);
+            if (typeAccessors != null && typeAccessors.containsKey(propertyName)) {
+                return typeAccessors.get(propertyName);
+            }
+        }
+        return null;
     }
 
 }
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+
+/**
+ * Saves the {@link DeviceMetadataCache} to its gzipped binary file and loads it again.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMetadataCacheTest {
+    private static final String DIMMER = "DIMMER|2.9|1";
+    private static final String SWITCH = "SWITCH|1.1|1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "homematic/metadata.bin");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        DeviceMetadataCache cache = new DeviceMetadataCache(file);
+        cache.put(DIMMER, dimmerDatapoints());
+        cache.put(SWITCH, Arrays.asList(datapoint("STATE", HmParamsetType.VALUES, HmValueType.BOOL, null, null,
+                Boolean.FALSE)));
+        cache.save();
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertEquals((byte) 0x1f, content[0]);
+        assertEquals((byte) 0x8b, content[1]);
+
+        DeviceMetadataCache loaded = new DeviceMetadataCache(file);
+        assertEquals(2, loaded.size());
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(loaded.get(DIMMER));
+        assertEquals(4, datapoints.size());
+
+        // sorted by paramset type and name
+        HmDatapoint direction = datapoints.get(0);
+        assertEquals("DIRECTION", direction.getName());
+        assertEquals(HmValueType.ENUM, direction.getType());
+        assertArrayEquals(new String[] { "NONE", "UP", "DOWN" }, direction.getOptions());
+        assertEquals(Integer.valueOf(0), direction.getMinValue());
+        assertEquals(Integer.valueOf(3), direction.getMaxValue());
+        assertEquals("NONE", direction.getDefaultValue());
+        assertTrue(direction.isReadOnly());
+        assertNull(direction.getDescription());
+
+        HmDatapoint level = datapoints.get(1);
+        assertEquals("LEVEL", level.getName());
+        assertEquals(Double.valueOf(0.0), level.getMinValue());
+        assertEquals(Double.valueOf(1.0), level.getMaxValue());
+        assertEquals("100%", level.getUnit());
+        assertEquals("Dimmer level", level.getInfo());
+        assertEquals("Level", level.getDescription());
+        assertFalse(level.isReadOnly());
+        assertTrue(level.isReadable());
+
+        HmDatapoint working = datapoints.get(2);
+        assertEquals("WORKING", working.getName());
+        assertNull(working.getOptions());
+        assertEquals(Boolean.TRUE, working.getDefaultValue());
+
+        HmDatapoint rampTime = datapoints.get(3);
+        assertEquals("RAMP_TIME", rampTime.getName());
+        assertEquals(HmParamsetType.MASTER, rampTime.getParamsetType());
+        assertEquals(0.5f, rampTime.getDefaultValue());
+        assertEquals(Long.valueOf(85825945L), rampTime.getMaxValue());
+
+        assertEquals(Boolean.FALSE, loaded.get(SWITCH).iterator().next().getDefaultValue());
+    }
+
+    @Test
+    public void testVirtualDatapointsAreNotCached() {
+        DeviceMetadataCache cache = new DeviceMetadataCache(file);
+        HmDatapoint virtual = datapoint("RSSI", HmParamsetType.VALUES, HmValueType.INTEGER, null, null, null);
+        virtual.setVirtual(true);
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(dimmerDatapoints());
+        datapoints.add(virtual);
+
+        cache.put(DIMMER, datapoints);
+
+        assertEquals(4, cache.get(DIMMER).size());
+    }
+
+    @Test
+    public void testPutReportsChanges() {
+        DeviceMetadataCache cache = new DeviceMetadataCache(file);
+
+        assertFalse(cache.put(DIMMER, dimmerDatapoints()));
+        assertFalse(cache.put(DIMMER, dimmerDatapoints()));
+
+        Collection<HmDatapoint> changed = dimmerDatapoints();
+        changed.iterator().next().setMaxValue(2.0);
+        assertTrue(cache.put(DIMMER, changed));
+    }
+
+    @Test
+    public void testRetainAllIsSaved() {
+        DeviceMetadataCache cache = new DeviceMetadataCache(file);
+        cache.put(DIMMER, dimmerDatapoints());
+        cache.put(SWITCH, dimmerDatapoints());
+        cache.save();
+
+        cache.retainAll(Arrays.asList(SWITCH));
+        cache.save();
+
+        DeviceMetadataCache loaded = new DeviceMetadataCache(file);
+        assertEquals(1, loaded.size());
+        assertNull(loaded.get(DIMMER));
+    }
+
+    @Test
+    public void testUnknownFormatIsIgnored() throws IOException {
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(99);
+            out.writeInt(1);
+        }
+
+        assertEquals(0, new DeviceMetadataCache(file).size());
+    }
+
+    @Test
+    public void testBrokenFileIsIgnored() throws IOException {
+        DeviceMetadataCache cache = new DeviceMetadataCache(file);
+        cache.put(DIMMER, dimmerDatapoints());
+        cache.save();
+        byte[] content = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        DeviceMetadataCache loaded = new DeviceMetadataCache(file);
+        assertEquals(0, loaded.size());
+        assertNull(loaded.get(DIMMER));
+    }
+
+    private static Collection<HmDatapoint> dimmerDatapoints() {
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>();
+        HmDatapoint level = datapoint("LEVEL", HmParamsetType.VALUES, HmValueType.FLOAT, 0.0, 1.0, 0.0);
+        level.setDescription("Level");
+        level.setInfo("Dimmer level");
+        level.setUnit("100%");
+        datapoints.add(level);
+        HmDatapoint direction = datapoint("DIRECTION", HmParamsetType.VALUES, HmValueType.ENUM, 0, 3, "NONE");
+        direction.setOptions(new String[] { "NONE", "UP", "DOWN" });
+        direction.setReadOnly(true);
+        datapoints.add(direction);
+        datapoints.add(datapoint("WORKING", HmParamsetType.VALUES, HmValueType.BOOL, null, null, Boolean.TRUE));
+        datapoints.add(datapoint("RAMP_TIME", HmParamsetType.MASTER, HmValueType.FLOAT, 0, 85825945L, 0.5f));
+        return datapoints;
+    }
+
+    private static HmDatapoint datapoint(String name, HmParamsetType paramsetType, HmValueType type, Number min,
+            Number max, Object defaultValue) {
+        HmDatapoint dp = new HmDatapoint();
+        dp.setName(name);
+        dp.setParamsetType(paramsetType);
+        dp.setType(type);
+        dp.setMinValue(min);
+        dp.setMaxValue(max);
+        dp.setDefaultValue(defaultValue);
+        dp.setReadable(true);
+        return dp;
+    }
+}
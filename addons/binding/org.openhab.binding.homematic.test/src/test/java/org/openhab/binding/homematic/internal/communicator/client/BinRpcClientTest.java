@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.client;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
+import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
+
+/**
+ * Sends requests with the {@link BinRpcClient} to a fake BIN-RPC server on the loopback interface.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcClientTest {
+    private static final String ENCODING = "ISO-8859-1";
+
+    private FakeServer server;
+    private BinRpcClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        HomematicConfig config = new HomematicConfig();
+        config.setGatewayAddress("127.0.0.1");
+        config.setTimeout(1);
+        client = new BinRpcClient(config);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.dispose();
+        server.close();
+    }
+
+    @Test
+    public void testRequestFraming() throws Exception {
+        server.respondWith(response("ok"));
+        RpcRequest request = client.createRpcRequest("setValue");
+        request.addArg("KEQ0012345:1");
+        request.addArg("LEVEL");
+        request.addArg(0.5);
+
+        client.sendMessage(server.getPort(), request);
+
+        assertEquals(1, server.requests.size());
+        byte[] frame = server.requests.get(0);
+        assertArrayEquals(new byte[] { 'B', 'i', 'n', 0 }, Arrays.copyOf(frame, 4));
+        BinRpcMessage received = new BinRpcMessage(frame, true, ENCODING);
+        assertEquals("setValue", received.getMethodName());
+        assertArrayEquals(new Object[] { "KEQ0012345:1", "LEVEL", 0.5 }, received.getResponseData());
+    }
+
+    @Test
+    public void testResponseDecoding() throws Exception {
+        Map<String, Object> device = new HashMap<String, Object>();
+        device.put("ADDRESS", "KEQ0012345");
+        device.put("VERSION", 7);
+        server.respondWith(response(Arrays.asList(device)));
+
+        Object[] result = client.sendMessage(server.getPort(), client.createRpcRequest("listDevices"));
+
+        Object[] devices = (Object[]) result[0];
+        assertEquals(device, devices[0]);
+    }
+
+    @Test
+    public void testSocketIsReused() throws Exception {
+        server.respondWith(response("ok"));
+
+        client.sendMessage(server.getPort(), client.createRpcRequest("ping"));
+        client.sendMessage(server.getPort(), client.createRpcRequest("ping"));
+
+        assertEquals(2, server.requests.size());
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    public void testUnknownFailureIsNotRetried() throws Exception {
+        server.respondWith(response(fault(-1, "Failure")));
+
+        try {
+            client.sendMessage(server.getPort(), client.createRpcRequest("getValue"));
+            fail("UnknownRpcFailureException expected");
+        } catch (UnknownRpcFailureException ex) {
+            // expected
+        }
+        assertEquals(1, server.requests.size());
+    }
+
+    @Test
+    public void testFaultResponse() throws Exception {
+        server.respondWith(response(fault(-5, "Unknown device")));
+
+        try {
+            client.sendMessage(server.getPort(), client.createRpcRequest("getValue"));
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("-5 Unknown device"));
+        }
+    }
+
+    @Test
+    public void testTimeoutIsRetriedOnce() throws Exception {
+        server.respondWith(null);
+
+        long start = System.currentTimeMillis();
+        try {
+            client.sendMessage(server.getPort(), client.createRpcRequest("getValue"));
+            fail("SocketTimeoutException expected");
+        } catch (SocketTimeoutException ex) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start >= 2000);
+        assertEquals(2, server.requests.size());
+        assertEquals(2, server.connections.get());
+    }
+
+    @Test
+    public void testInitIsNotRetried() throws Exception {
+        server.respondWith(null);
+
+        try {
+            client.sendMessage(server.getPort(), client.createRpcRequest("init"));
+            fail("SocketTimeoutException expected");
+        } catch (SocketTimeoutException ex) {
+            // expected
+        }
+        assertEquals(1, server.requests.size());
+    }
+
+    private static byte[] response(Object value) {
+        BinRpcMessage response = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, ENCODING);
+        response.addArg(value);
+        return response.createMessage();
+    }
+
+    private static Map<String, Object> fault(int code, String message) {
+        Map<String, Object> fault = new HashMap<String, Object>();
+        fault.put("faultCode", code);
+        fault.put("faultString", message);
+        return fault;
+    }
+
+    /**
+     * Accepts connections and answers every request with the same response, or never if there is no response.
+     */
+    private static class FakeServer implements Runnable {
+        private final ServerSocket serverSocket;
+        private final List<byte[]> requests = new CopyOnWriteArrayList<byte[]>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+        private final AtomicInteger connections = new AtomicInteger();
+        private volatile byte[] response;
+
+        private FakeServer() throws IOException {
+            serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this, "fake-binrpc-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void respondWith(byte[] response) {
+            this.response = response;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    }, "fake-binrpc-connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            } catch (IOException ex) {
+                // closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    byte[] header = new byte[BinRpcMessage.HEADER_LENGTH];
+                    in.readFully(header);
+                    int length = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8)
+                            | (header[7] & 0xff);
+                    byte[] frame = Arrays.copyOf(header, header.length + length);
+                    in.readFully(frame, header.length, length);
+                    requests.add(frame);
+                    if (response != null) {
+                        out.write(response);
+                    }
+                }
+            } catch (IOException ex) {
+                // connection closed
+            }
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : new ArrayList<Socket>(sockets)) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.message;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Encodes BIN-RPC messages and decodes them again for every value type.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcMessageTest {
+    private static final String ENCODING = "ISO-8859-1";
+
+    @Test
+    public void testInteger() throws Exception {
+        assertEquals(Integer.valueOf(-42), roundTrip(-42));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), roundTrip(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testBoolean() throws Exception {
+        assertEquals(Boolean.TRUE, roundTrip(true));
+        assertEquals(Boolean.FALSE, roundTrip(false));
+    }
+
+    @Test
+    public void testString() throws Exception {
+        assertEquals("LEVEL", roundTrip("LEVEL"));
+        assertEquals("", roundTrip(""));
+        assertEquals("Küche", roundTrip("Küche"));
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        assertEquals(0.0, (Double) roundTrip(0.0), 0);
+        assertEquals(1.5, (Double) roundTrip(1.5), 0);
+        assertEquals(-0.25, (Double) roundTrip(-0.25), 0);
+        assertEquals(1234.5678, (Double) roundTrip(1234.5678), 0.000001);
+    }
+
+    @Test
+    public void testDate() throws Exception {
+        Date date = new Date(1500000000000L);
+        assertEquals(date, roundTrip(date));
+    }
+
+    @Test
+    public void testBase64() throws Exception {
+        byte[] data = { 0, 1, 2, (byte) 0xff, 'B', 'i', 'n' };
+        assertArrayEquals(data, (byte[]) roundTrip(data));
+        assertArrayEquals(new byte[0], (byte[]) roundTrip(new byte[0]));
+    }
+
+    @Test
+    public void testArray() throws Exception {
+        Object[] array = (Object[]) roundTrip(Arrays.asList(1, "two", true));
+        assertArrayEquals(new Object[] { 1, "two", true }, array);
+    }
+
+    @Test
+    public void testStruct() throws Exception {
+        Map<String, Object> struct = new HashMap<String, Object>();
+        struct.put("ADDRESS", "KEQ0012345:1");
+        struct.put("VERSION", 7);
+        struct.put("AES_ACTIVE", false);
+
+        assertEquals(struct, roundTrip(struct));
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        Map<String, Object> inner = new HashMap<String, Object>();
+        inner.put("PARAMSETS", Arrays.asList("MASTER", "VALUES"));
+        inner.put("FLAGS", 1);
+        Map<String, Object> outer = new HashMap<String, Object>();
+        outer.put("CHANNEL", inner);
+        outer.put("LEVELS", Arrays.asList(0.5, Arrays.asList(1, 2)));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) roundTrip(outer);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> resultInner = (Map<String, Object>) result.get("CHANNEL");
+        assertArrayEquals(new Object[] { "MASTER", "VALUES" }, (Object[]) resultInner.get("PARAMSETS"));
+        assertEquals(1, resultInner.get("FLAGS"));
+        Object[] levels = (Object[]) result.get("LEVELS");
+        assertEquals(0.5, levels[0]);
+        assertArrayEquals(new Object[] { 1, 2 }, (Object[]) levels[1]);
+    }
+
+    @Test
+    public void testRequestWithArguments() throws Exception {
+        BinRpcMessage request = new BinRpcMessage("setValue", ENCODING);
+        request.addArg("KEQ0012345:1");
+        request.addArg("LEVEL");
+        request.addArg(0.75);
+
+        BinRpcMessage decoded = new BinRpcMessage(request.createMessage(), true, ENCODING);
+
+        assertEquals("setValue", decoded.getMethodName());
+        assertArrayEquals(new Object[] { "KEQ0012345:1", "LEVEL", 0.75 }, decoded.getResponseData());
+    }
+
+    @Test
+    public void testEmptyResponse() throws Exception {
+        BinRpcMessage response = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, ENCODING);
+
+        BinRpcMessage decoded = new BinRpcMessage(response.createMessage(), false, ENCODING);
+
+        assertEquals(0, decoded.getResponseData().length);
+    }
+
+    @Test
+    public void testWriteToMatchesCreateMessage() throws Exception {
+        BinRpcMessage request = new BinRpcMessage("init", ENCODING);
+        request.addArg("binary://127.0.0.1:9126");
+        request.addArg(Arrays.asList(new byte[] { 1, 2, 3 }, "Grüße"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        request.writeTo(out);
+
+        byte[] message = request.createMessage();
+        assertArrayEquals(message, out.toByteArray());
+        assertEquals(message.length - BinRpcMessage.HEADER_LENGTH, ByteBuffer.wrap(message).getInt(4));
+    }
+
+    @Test
+    public void testLargeMessageFromStream() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        BinRpcMessage request = new BinRpcMessage("event", ENCODING);
+        request.addArg(large);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        request.writeTo(out);
+
+        BinRpcMessage decoded = new BinRpcMessage(new ByteArrayInputStream(out.toByteArray()), true, ENCODING);
+
+        assertEquals(large, decoded.getResponseData()[0]);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testIncompleteMessage() throws Exception {
+        BinRpcMessage request = new BinRpcMessage("event", ENCODING);
+        request.addArg("KEQ0012345:1");
+        byte[] message = request.createMessage();
+
+        new BinRpcMessage(Arrays.copyOf(message, message.length - 2), true, ENCODING);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTrailingBytes() throws Exception {
+        BinRpcMessage response = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, ENCODING);
+        response.addArg(1);
+        byte[] message = Arrays.copyOf(response.createMessage(), 20);
+        ByteBuffer.wrap(message).putInt(4, 12);
+
+        new BinRpcMessage(message, false, ENCODING);
+    }
+
+    /**
+     * Sends the value as single value of a response and returns the decoded value.
+     */
+    private Object roundTrip(Object value) throws Exception {
+        BinRpcMessage response = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, ENCODING);
+        response.addArg(value);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeTo(out);
+
+        BinRpcMessage decoded = new BinRpcMessage(new ByteArrayInputStream(out.toByteArray()), false, ENCODING);
+        assertEquals(1, decoded.getResponseData().length);
+        return decoded.getResponseData()[0];
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
+import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
+
+/**
+ * Sends BIN-RPC messages to the {@link BinRpcNetworkService} on the loopback interface.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcNetworkServiceTest {
+    private static final String ENCODING = "ISO-8859-1";
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+    /** Holds back the processing of the events until it is counted down */
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+    private BinRpcNetworkService service;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        HomematicConfig config = new HomematicConfig();
+        config.setBinCallbackPort(port);
+        service = new BinRpcNetworkService(new RpcEventListener() {
+            @Override
+            public void eventReceived(HmDatapointInfo dpInfo, Object newValue) {
+                try {
+                    hold.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                events.add(dpInfo.getAddress() + " " + dpInfo.getName() + "=" + newValue);
+            }
+
+            @Override
+            public void newDevices(List<String> adresses) {
+            }
+
+            @Override
+            public void deleteDevices(List<String> addresses) {
+            }
+        }, config);
+        Thread thread = new Thread(service, "test-binrpc-service");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testEventsAreAnswered() throws Exception {
+        try (Socket socket = connect()) {
+            BinRpcMessage first = event("KEQ0000001:1", "LEVEL", 0.5);
+            BinRpcMessage second = event("KEQ0000002:1", "STATE", true);
+            // both messages in one write, the second split in the middle
+            byte[] data = concat(first.createMessage(), second.createMessage());
+            socket.getOutputStream().write(data, 0, data.length - 5);
+            socket.getOutputStream().flush();
+            Thread.sleep(50);
+            socket.getOutputStream().write(data, data.length - 5, 5);
+
+            InputStream in = socket.getInputStream();
+            assertEquals("", new BinRpcMessage(in, false, ENCODING).getResponseData()[0]);
+            assertEquals("", new BinRpcMessage(in, false, ENCODING).getResponseData()[0]);
+            assertEquals("KEQ0000001 LEVEL=0.5", events.poll(5, TimeUnit.SECONDS));
+            assertEquals("KEQ0000002 STATE=true", events.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testMulticallOverTheQueueLimitIsNotDropped() throws Exception {
+        hold = new CountDownLatch(1);
+        int count = RpcEventDispatcher.DEFAULT_QUEUE_LIMIT * 3;
+        List<Object> calls = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> call = new HashMap<String, Object>();
+            call.put("methodName", "event");
+            call.put("params", Arrays.<Object> asList("openHAB-test", "KEQ0000001:1", "LEVEL", i));
+            calls.add(call);
+        }
+        BinRpcMessage multicall = new BinRpcMessage("system.multicall", ENCODING);
+        multicall.addArg(calls);
+
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(multicall.createMessage());
+            // the multicall is answered while the first event is still being processed
+            new BinRpcMessage(socket.getInputStream(), false, ENCODING);
+            hold.countDown();
+
+            for (int i = 0; i < count; i++) {
+                assertEquals("KEQ0000001 LEVEL=" + i, events.poll(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void testOversizedMessageClosesConnection() throws Exception {
+        try (Socket socket = connect()) {
+            ByteBuffer header = ByteBuffer.allocate(BinRpcMessage.HEADER_LENGTH);
+            header.put(new byte[] { 'B', 'i', 'n', 0 }).putInt(BinRpcMessage.MAX_MESSAGE_LENGTH);
+            socket.getOutputStream().write(header.array());
+
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static BinRpcMessage event(String address, String name, Object value) {
+        BinRpcMessage message = new BinRpcMessage("event", ENCODING);
+        message.addArg("openHAB-test");
+        message.addArg(address);
+        message.addArg(name);
+        message.addArg(value);
+        return message;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        return ByteBuffer.allocate(first.length + second.length).put(first).put(second).array();
+    }
+}
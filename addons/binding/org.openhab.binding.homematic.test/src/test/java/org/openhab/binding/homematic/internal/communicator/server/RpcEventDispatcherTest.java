@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the partitioning and the backpressure of the {@link RpcEventDispatcher}.
+ *
+ * @author agent - Initial contribution
+ */
+public class RpcEventDispatcherTest {
+    private ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testEventsOfADeviceAreProcessedInOrder() throws Exception {
+        RpcEventDispatcher dispatcher = new RpcEventDispatcher(pool);
+        final List<Integer> first = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> second = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(800);
+
+        for (int i = 0; i < 400; i++) {
+            dispatcher.dispatch("KEQ0000001", new Record(first, i, done));
+            dispatcher.dispatch("KEQ0000002", new Record(second, i, done));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 400; i++) {
+            assertEquals(i, first.get(i).intValue());
+            assertEquals(i, second.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testPartitionsAreProcessedInParallel() throws Exception {
+        RpcEventDispatcher dispatcher = new RpcEventDispatcher(pool, 2, 10);
+        String blockedAddress = "KEQ0000001";
+        String otherAddress = addressInOtherPartition(blockedAddress, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch processed = new CountDownLatch(1);
+
+        dispatcher.dispatch(blockedAddress, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        dispatcher.dispatch(otherAddress, new Runnable() {
+            @Override
+            public void run() {
+                processed.countDown();
+            }
+        });
+
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testBacklogAndDrain() {
+        ManualExecutor executor = new ManualExecutor();
+        RpcEventDispatcher dispatcher = new RpcEventDispatcher(executor, 1, 8);
+        final AtomicInteger drained = new AtomicInteger();
+        dispatcher.setDrainListener(new Runnable() {
+            @Override
+            public void run() {
+                drained.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 7; i++) {
+            dispatcher.dispatch("KEQ0000001", new Noop());
+        }
+        assertFalse(dispatcher.isBacklogged());
+        dispatcher.dispatch("KEQ0000001", new Noop());
+        assertTrue(dispatcher.isBacklogged());
+        assertEquals(1, dispatcher.getBacklogCount());
+
+        executor.runAll();
+
+        assertFalse(dispatcher.isBacklogged());
+        assertEquals(1, drained.get());
+        assertEquals(0, dispatcher.getQueuedCount());
+    }
+
+    @Test
+    public void testEventsOverTheLimitAreQueued() {
+        ManualExecutor executor = new ManualExecutor();
+        RpcEventDispatcher dispatcher = new RpcEventDispatcher(executor, 1, 8);
+        final AtomicInteger processed = new AtomicInteger();
+
+        // the events of a single multicall are admitted as a whole
+        for (int i = 0; i < 20; i++) {
+            dispatcher.dispatch("KEQ0000001", new Runnable() {
+                @Override
+                public void run() {
+                    processed.incrementAndGet();
+                }
+            });
+        }
+
+        assertTrue(dispatcher.isBacklogged());
+        assertEquals(20, dispatcher.getDispatchedCount());
+        assertEquals(20, dispatcher.getQueuedCount());
+        assertEquals(20, dispatcher.getMaxQueued());
+
+        executor.runAll();
+        assertEquals(20, processed.get());
+        assertFalse(dispatcher.isBacklogged());
+    }
+
+    private static String addressInOtherPartition(String address, int partitions) {
+        int partition = (address.hashCode() & Integer.MAX_VALUE) % partitions;
+        for (int i = 2;; i++) {
+            String other = String.format("KEQ%07d", i);
+            if ((other.hashCode() & Integer.MAX_VALUE) % partitions != partition) {
+                return other;
+            }
+        }
+    }
+
+    private static class Record implements Runnable {
+        private final List<Integer> events;
+        private final int event;
+        private final CountDownLatch done;
+
+        private Record(List<Integer> events, int event, CountDownLatch done) {
+            this.events = events;
+            this.event = event;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            events.add(event);
+            done.countDown();
+        }
+    }
+
+    private static class Noop implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    /**
+     * Collects the partitions which should be processed and runs them on request.
+     */
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        private void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+}
@@ -10,7 +10,9 @@ package org.openhab.binding.homematic.internal.communicator;
 
 import static org.openhab.binding.homematic.internal.misc.HomematicConstants.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -21,11 +23,18 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.openhab.binding.homematic.internal.communicator.client.BinRpcClient;
@@ -78,6 +87,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     public static final double DEFAULT_DISABLE_DELAY = 2.0;
     private static final long CONNECTION_TRACKER_INTERVAL_SECONDS = 15;
     private static final String GATEWAY_POOL_NAME = "homematicGateway";
+    private static final String METADATA_POOL_NAME = "homematicMetadata";
+    private static final String METADATA_CACHE_FOLDER = "homematic";
 
     private Map<TransferMode, RpcClient> rpcClients = new HashMap<TransferMode, RpcClient>();
     private Map<TransferMode, RpcServer> rpcServers = new HashMap<TransferMode, RpcServer>();
@@ -86,7 +97,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private String id;
     private HomematicGatewayListener eventListener;
     private long lastEventTime = System.currentTimeMillis();
-    private DelayedExecuter delayedExecutor = new DelayedExecuter();
+    private DelayedExecuter delayedExecutor = new DelayedExecuter(
+            ThreadPoolManager.getScheduledPool(GATEWAY_POOL_NAME));
     private Set<HmDatapointInfo> echoEvents = Collections.synchronizedSet(new HashSet<HmDatapointInfo>());
     private ScheduledFuture<?> eventTrackerThread;
     private ScheduledFuture<?> connectionTrackerThread;
@@ -94,7 +106,9 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private Map<String, HmDevice> devices = Collections.synchronizedMap(new HashMap<String, HmDevice>());
     private Map<HmInterface, TransferMode> availableInterfaces = new TreeMap<HmInterface, TransferMode>();
     private static List<VirtualDatapointHandler> virtualDatapointHandlers = new ArrayList<VirtualDatapointHandler>();
-    private boolean cancelLoadAllMetadata;
+    private volatile boolean cancelLoadAllMetadata;
+    private DeviceMetadataCache metadataCache;
+    private volatile Future<?> metadataValidation;
     private boolean initialized;
 
     static {
@@ -118,6 +132,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         this.id = id;
         this.config = config;
         this.eventListener = eventListener;
+        metadataCache = new DeviceMetadataCache(new File(
+                ConfigConstants.getUserDataFolder() + File.separator + METADATA_CACHE_FOLDER, id + ".metadata"));
     }
 
     /**
@@ -178,6 +194,11 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     @Override
     public void dispose() {
         initialized = false;
+        Future<?> validation = metadataValidation;
+        if (validation != null) {
+            validation.cancel(true);
+            metadataValidation = null;
+        }
         stopWatchdogs();
         delayedExecutor.stop();
         stopServers();
@@ -366,58 +387,142 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     @Override
     public void loadAllDeviceMetadata() throws IOException {
         cancelLoadAllMetadata = false;
+        Future<?> validation = metadataValidation;
+        if (validation != null) {
+            validation.cancel(true);
+        }
         // load all device descriptions
         List<HmDevice> deviceDescriptions = getDeviceDescriptions();
 
-        // loading datapoints for all channels
-        Set<String> loadedDevices = new HashSet<String>();
-        Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache = new HashMap<String, Collection<HmDatapoint>>();
-        for (HmDevice device : deviceDescriptions) {
-            if (!cancelLoadAllMetadata) {
-                try {
-                    logger.trace("Loading metadata for device '{}' of type '{}'", device.getAddress(),
-                            device.getType());
-                    if (device.isGatewayExtras()) {
-                        loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_VARIABLE));
-                        loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_SCRIPT));
-                    } else {
-                        for (HmChannel channel : device.getChannels()) {
-                            logger.trace("  Loading channel {}", channel);
-                            // speed up metadata generation a little bit for equal channels in the gateway devices
-                            if ((DEVICE_TYPE_VIRTUAL.equals(device.getType())
-                                    || DEVICE_TYPE_VIRTUAL_WIRED.equals(device.getType())) && channel.getNumber() > 1) {
-                                HmChannel previousChannel = device.getChannel(channel.getNumber() - 1);
-                                cloneAllDatapointsIntoChannel(channel, previousChannel.getDatapoints().values());
-                            } else {
-                                String channelId = String.format("%s:%s:%s", channel.getDevice().getType(),
-                                        channel.getDevice().getFirmware(), channel.getNumber());
-                                Collection<HmDatapoint> cachedDatapoints = datapointsByChannelIdCache.get(channelId);
-                                if (cachedDatapoints != null) {
-                                    // clone all datapoints
-                                    cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
-                                } else {
-                                    logger.trace("    Loading datapoints into channel {}", channel);
-                                    // load all datapoints from the gateway
-                                    HmInterface hmInterface = channel.getDevice().getHmInterface();
-                                    getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
-                                    getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
-
-                                    datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
-                                }
-                            }
-                        }
+        // loading datapoints for all channels, the devices are loaded in parallel
+        ExecutorService pool = ThreadPoolManager.getPool(METADATA_POOL_NAME);
+        final Map<String, CompletableFuture<Collection<HmDatapoint>>> datapointsByChannelId = new ConcurrentHashMap<>();
+        final Map<String, HmChannel> cachedChannels = new ConcurrentHashMap<>();
+        List<Future<?>> loaders = new ArrayList<Future<?>>(deviceDescriptions.size());
+        for (final HmDevice device : deviceDescriptions) {
+            loaders.add(pool.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    if (!cancelLoadAllMetadata) {
+                        loadDeviceMetadata(device, datapointsByChannelId, cachedChannels);
                     }
+                    return null;
+                }
+            }));
+        }
+
+        // the devices are prepared and published in the original order by this thread
+        Set<String> loadedDevices = new HashSet<String>();
+        for (int i = 0; i < deviceDescriptions.size(); i++) {
+            HmDevice device = deviceDescriptions.get(i);
+            try {
+                loaders.get(i).get();
+                if (!cancelLoadAllMetadata) {
                     prepareDevice(device);
                     loadedDevices.add(device.getAddress());
                     eventListener.onDeviceLoaded(device);
-                } catch (IOException ex) {
-                    logger.warn("Can't load device with address '{}' from gateway '{}': {}", device.getAddress(), id,
-                            ex.getMessage());
                 }
+            } catch (ExecutionException ex) {
+                logger.warn("Can't load device with address '{}' from gateway '{}': {}", device.getAddress(), id,
+                        ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                for (Future<?> loader : loaders) {
+                    loader.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading the metadata from gateway " + id);
             }
         }
         if (!cancelLoadAllMetadata) {
             devices.keySet().retainAll(loadedDevices);
+            metadataCache.retainAll(datapointsByChannelId.keySet());
+        }
+        metadataCache.save();
+
+        if (!cachedChannels.isEmpty() && !cancelLoadAllMetadata) {
+            logger.debug("Loaded metadata of {} channel types from the cache, validating it in the background",
+                    cachedChannels.size());
+            metadataValidation = pool.submit(new MetadataValidator(cachedChannels.values()));
+        }
+    }
+
+    /**
+     * Loads the datapoints for all channels of the device. Channels with the same type, firmware and number as a
+     * channel which is already loaded or currently loading by another thread get a copy of its datapoints. The
+     * datapoints of a channel type are taken from the metadata cache if available, one channel of each cached type is
+     * added to cachedChannels for validating the cache.
+     */
+    private void loadDeviceMetadata(HmDevice device,
+            Map<String, CompletableFuture<Collection<HmDatapoint>>> datapointsByChannelId,
+            Map<String, HmChannel> cachedChannels) throws IOException {
+        logger.trace("Loading metadata for device '{}' of type '{}'", device.getAddress(), device.getType());
+        if (device.isGatewayExtras()) {
+            loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_VARIABLE));
+            loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_SCRIPT));
+        } else {
+            for (HmChannel channel : device.getChannels()) {
+                logger.trace("  Loading channel {}", channel);
+                // speed up metadata generation a little bit for equal channels in the gateway devices
+                if ((DEVICE_TYPE_VIRTUAL.equals(device.getType()) || DEVICE_TYPE_VIRTUAL_WIRED.equals(device.getType()))
+                        && channel.getNumber() > 1) {
+                    HmChannel previousChannel = device.getChannel(channel.getNumber() - 1);
+                    cloneAllDatapointsIntoChannel(channel, previousChannel.getDatapoints().values());
+                } else {
+                    String channelId = getChannelId(channel);
+                    CompletableFuture<Collection<HmDatapoint>> loader = new CompletableFuture<>();
+                    CompletableFuture<Collection<HmDatapoint>> cached = datapointsByChannelId
+                            .putIfAbsent(channelId, loader);
+                    Collection<HmDatapoint> cachedDatapoints = cached == null ? null : awaitDatapoints(cached);
+                    if (cached == null) {
+                        cachedDatapoints = metadataCache.get(channelId);
+                        if (cachedDatapoints != null) {
+                            cachedChannels.put(channelId, channel);
+                            loader.complete(cachedDatapoints);
+                        }
+                    }
+                    if (cachedDatapoints != null) {
+                        // clone all datapoints
+                        cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
+                    } else {
+                        logger.trace("    Loading datapoints into channel {}", channel);
+                        // load all datapoints from the gateway
+                        HmInterface hmInterface = channel.getDevice().getHmInterface();
+                        try {
+                            getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
+                            getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
+                        } catch (IOException | RuntimeException ex) {
+                            loader.completeExceptionally(ex);
+                            throw ex;
+                        }
+                        Collection<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(channel.getDatapoints().values());
+                        metadataCache.put(channelId, datapoints);
+                        loader.complete(datapoints);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key for channels with equal datapoints.
+     */
+    private String getChannelId(HmChannel channel) {
+        return String.format("%s:%s:%s", channel.getDevice().getType(), channel.getDevice().getFirmware(),
+                channel.getNumber());
+    }
+
+    /**
+     * Waits for the datapoints which are loaded by another thread, returns null if loading them failed.
+     */
+    private Collection<HmDatapoint> awaitDatapoints(Future<Collection<HmDatapoint>> loader) throws IOException {
+        try {
+            return loader.get();
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for datapoints");
         }
     }
 
@@ -636,21 +741,29 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
      */
     @Override
     public void newDevices(List<String> adresses) {
-        if (initialized) {
+        if (initialized && !adresses.isEmpty()) {
+            // the device descriptions are loaded once for all addresses
+            Map<String, HmDevice> deviceDescriptions = new HashMap<String, HmDevice>();
+            try {
+                for (HmDevice device : getDeviceDescriptions()) {
+                    deviceDescriptions.put(device.getAddress(), device);
+                }
+            } catch (Exception ex) {
+                logger.error(ex.getMessage(), ex);
+                return;
+            }
             for (String address : adresses) {
                 try {
                     logger.debug("New device '{}' detected on gateway with id '{}'", address, id);
-                    List<HmDevice> deviceDescriptions = getDeviceDescriptions();
-                    for (HmDevice device : deviceDescriptions) {
-                        if (device.getAddress().equals(address)) {
-                            for (HmChannel channel : device.getChannels()) {
-                                HmInterface hmInterface = channel.getDevice().getHmInterface();
-                                getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
-                                getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
-                            }
-                            prepareDevice(device);
-                            eventListener.onNewDevice(device);
+                    HmDevice device = deviceDescriptions.get(address);
+                    if (device != null) {
+                        for (HmChannel channel : device.getChannels()) {
+                            HmInterface hmInterface = channel.getDevice().getHmInterface();
+                            getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.MASTER);
+                            getRpcClient(hmInterface).addChannelDatapoints(channel, HmParamsetType.VALUES);
                         }
+                        prepareDevice(device);
+                        eventListener.onNewDevice(device);
                     }
                 } catch (Exception ex) {
                     logger.error(ex.getMessage(), ex);
@@ -869,4 +982,63 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
             }
         }
     }
+
+    /**
+     * Loads the metadata of the channels which have been taken from the cache again from the gateway. If it has
+     * changed, the cache is updated and the devices with the changed channels are loaded again.
+     */
+    private class MetadataValidator implements Runnable {
+        private Collection<HmChannel> channels;
+
+        public MetadataValidator(Collection<HmChannel> channels) {
+            this.channels = new ArrayList<HmChannel>(channels);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            Set<String> changedChannelIds = new HashSet<String>();
+            for (HmChannel channel : channels) {
+                if (!initialized || cancelLoadAllMetadata || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                HmChannel gatewayChannel = new HmChannel();
+                gatewayChannel.setNumber(channel.getNumber());
+                gatewayChannel.setType(channel.getType());
+                gatewayChannel.setDevice(channel.getDevice());
+                try {
+                    HmInterface hmInterface = channel.getDevice().getHmInterface();
+                    getRpcClient(hmInterface).addChannelDatapoints(gatewayChannel, HmParamsetType.MASTER);
+                    getRpcClient(hmInterface).addChannelDatapoints(gatewayChannel, HmParamsetType.VALUES);
+                } catch (IOException ex) {
+                    logger.debug("Can't validate cached metadata of channel {}: {}", channel, ex.getMessage());
+                    continue;
+                }
+                String channelId = getChannelId(channel);
+                if (metadataCache.put(channelId, gatewayChannel.getDatapoints().values())) {
+                    logger.debug("Cached metadata of channel '{}' has changed on gateway '{}'", channelId, id);
+                    changedChannelIds.add(channelId);
+                }
+            }
+            metadataCache.save();
+
+            if (!changedChannelIds.isEmpty()) {
+                List<String> addresses = new ArrayList<String>();
+                synchronized (devices) {
+                    for (HmDevice device : devices.values()) {
+                        for (HmChannel channel : device.getChannels()) {
+                            if (changedChannelIds.contains(getChannelId(channel))) {
+                                addresses.add(device.getAddress());
+                                break;
+                            }
+                        }
+                    }
+                }
+                logger.debug("Reloading {} device(s) with changed metadata from gateway '{}'", addresses.size(), id);
+                newDevices(addresses);
+            }
+        }
+    }
 }
@@ -12,14 +12,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpHeader;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
@@ -27,6 +32,7 @@ import org.openhab.binding.homematic.internal.communicator.client.UnknownRpcFail
 import org.openhab.binding.homematic.internal.communicator.parser.CcuLoadDeviceNamesParser;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuValueParser;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuVariablesAndScriptsParser;
+import org.openhab.binding.homematic.internal.misc.HomematicClientException;
 import org.openhab.binding.homematic.internal.model.HmChannel;
 import org.openhab.binding.homematic.internal.model.HmDatapoint;
 import org.openhab.binding.homematic.internal.model.HmDevice;
@@ -48,10 +54,12 @@ import com.thoughtworks.xstream.io.xml.StaxDriver;
  */
 public class CcuGateway extends AbstractHomematicGateway {
     private static final Logger logger = LoggerFactory.getLogger(CcuGateway.class);
+    private static final int MAX_TCLREGA_CHANNELS = 100;
 
     private Map<String, String> tclregaScripts;
     private HttpClient httpClient;
     private XStream xStream = new XStream(new StaxDriver());
+    private Set<String> tclRegaDevices = Collections.synchronizedSet(new LinkedHashSet<String>());
 
     protected CcuGateway(String id, HomematicConfig config, HomematicGatewayListener eventListener) {
         super(id, config, eventListener);
@@ -88,6 +96,7 @@ public class CcuGateway extends AbstractHomematicGateway {
     protected void stopClients() {
         super.stopClients();
         tclregaScripts = null;
+        tclRegaDevices.clear();
         if (httpClient != null) {
             try {
                 httpClient.stop();
@@ -136,25 +145,75 @@ public class CcuGateway extends AbstractHomematicGateway {
             logger.debug(
                     "RpcMessage unknown RPC failure (-1 Failure), fetching values with TclRega script for device '{}'",
                     channel.getDevice().getAddress());
+            tclRegaDevices.add(channel.getDevice().getAddress());
+            loadChannelValuesWithTclRega(channel);
+        }
+    }
 
-            Collection<String> dpNames = new ArrayList<String>();
-            for (HmDatapoint dp : channel.getDatapoints().values()) {
-                if (!dp.isVirtual() && dp.isReadable() && dp.getParamsetType() == HmParamsetType.VALUES) {
-                    dpNames.add(dp.getName());
+    /**
+     * Loads the values of the given channel with a TclRega script. The values of the other uninitialized channels of
+     * the devices which can't be read with RPC are loaded with the same script, so that the single threaded ReGa
+     * engine of the CCU only has to handle one request instead of one per channel.
+     */
+    private void loadChannelValuesWithTclRega(HmChannel channel) throws IOException {
+        Map<String, HmChannel> channelsByName = new LinkedHashMap<String, HmChannel>();
+        Collection<String> dpNames = new ArrayList<String>();
+        addTclRegaChannel(channel, channelsByName, dpNames);
+        for (HmChannel otherChannel : channel.getDevice().getChannels()) {
+            addTclRegaChannel(otherChannel, channelsByName, dpNames);
+        }
+        synchronized (tclRegaDevices) {
+            for (String address : tclRegaDevices) {
+                if (channelsByName.size() >= MAX_TCLREGA_CHANNELS) {
+                    break;
+                }
+                try {
+                    for (HmChannel otherChannel : getDevice(address).getChannels()) {
+                        addTclRegaChannel(otherChannel, channelsByName, dpNames);
+                    }
+                } catch (HomematicClientException ex) {
+                    // device has been removed
                 }
             }
-            if (dpNames.size() > 0) {
-                HmDevice device = channel.getDevice();
-                String channelName = String.format("%s.%s:%s.", device.getHmInterface().getName(), device.getAddress(),
-                        channel.getNumber());
-                String datapointNames = StringUtils.join(dpNames.toArray(), "\\t");
-                TclScriptDataList resultList = sendScriptByName("getAllChannelValues", TclScriptDataList.class,
-                        new String[] { "channel_name", "datapoint_names" },
-                        new String[] { channelName, datapointNames });
-                new CcuValueParser(channel).parse(resultList);
-                channel.setInitialized(true);
+        }
+
+        if (dpNames.size() > 0) {
+            logger.debug("Loading values of {} channels with {} datapoints with TclRega script",
+                    channelsByName.size(), dpNames.size());
+            String datapointNames = StringUtils.join(dpNames.toArray(), "\\t");
+            TclScriptDataList resultList = sendScriptByName("getAllChannelValues", TclScriptDataList.class,
+                    new String[] { "datapoint_names" }, new String[] { datapointNames });
+            new CcuValueParser(channelsByName).parse(resultList);
+            for (HmChannel loadedChannel : channelsByName.values()) {
+                loadedChannel.setInitialized(true);
+            }
+        }
+    }
+
+    /**
+     * Adds the readable datapoints of the channel to the TclRega value request if the channel is not initialized.
+     */
+    private void addTclRegaChannel(HmChannel channel, Map<String, HmChannel> channelsByName,
+            Collection<String> dpNames) {
+        HmDevice device = channel.getDevice();
+        if (channel.isInitialized() || device.isGatewayExtras() || channelsByName.size() >= MAX_TCLREGA_CHANNELS) {
+            return;
+        }
+        String channelName = String.format("%s.%s:%s.", device.getHmInterface().getName(), device.getAddress(),
+                channel.getNumber());
+        if (channelsByName.containsKey(channelName)) {
+            return;
+        }
+        boolean hasValues = false;
+        for (HmDatapoint dp : channel.getDatapoints().values()) {
+            if (!dp.isVirtual() && dp.isReadable() && dp.getParamsetType() == HmParamsetType.VALUES) {
+                dpNames.add(channelName + dp.getName());
+                hasValues = true;
             }
         }
+        if (hasValues) {
+            channelsByName.put(channelName, channel);
+        }
     }
 
     /**
@@ -219,17 +278,21 @@ public class CcuGateway extends AbstractHomematicGateway {
             }
 
             StringContentProvider content = new StringContentProvider(script, config.getEncoding());
-            ContentResponse response = httpClient.POST(config.getTclRegaUrl()).content(content)
-                    .timeout(config.getTimeout(), TimeUnit.SECONDS)
-                    .header(HttpHeader.CONTENT_TYPE, "text/plain;charset=" + config.getEncoding()).send();
+            InputStreamResponseListener listener = new InputStreamResponseListener();
+            httpClient.POST(config.getTclRegaUrl()).content(content).timeout(config.getTimeout(), TimeUnit.SECONDS)
+                    .header(HttpHeader.CONTENT_TYPE, "text/plain;charset=" + config.getEncoding()).send(listener);
+            listener.get(config.getTimeout(), TimeUnit.SECONDS);
 
-            String result = new String(response.getContent(), config.getEncoding());
-            result = StringUtils.substringBeforeLast(result, "<xml><exec>");
-            if (logger.isTraceEnabled()) {
-                logger.trace("Result TclRegaScript: {}", result);
+            // the result is parsed while it is received, the XML parser stops at the end of the script output
+            try (InputStream result = listener.getInputStream()) {
+                if (logger.isTraceEnabled()) {
+                    String resultText = IOUtils.toString(result, config.getEncoding());
+                    logger.trace("Result TclRegaScript: {}",
+                            StringUtils.substringBeforeLast(resultText, "<xml><exec>"));
+                    return (T) xStream.fromXML(IOUtils.toInputStream(resultText, config.getEncoding()));
+                }
+                return (T) xStream.fromXML(result);
             }
-
-            return (T) xStream.fromXML(result);
         } catch (Exception ex) {
             throw new IOException(ex.getMessage(), ex);
         }
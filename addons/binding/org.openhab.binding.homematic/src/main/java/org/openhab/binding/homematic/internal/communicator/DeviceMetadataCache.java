@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the datapoint metadata of the channels on disk, so that a restart doesn't have to load it again from the
+ * gateway. The metadata is stored per channel type, firmware and number, the key used for cloning equal channels.
+ * The entries are kept encoded in memory, so comparing an entry with a fresh copy from the gateway is cheap.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceMetadataCache.class);
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_INTEGER = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_DOUBLE = 4;
+    private static final byte VALUE_STRING = 5;
+    private static final byte VALUE_FLOAT = 6;
+
+    private static final Comparator<HmDatapoint> DATAPOINT_ORDER = new Comparator<HmDatapoint>() {
+
+        @Override
+        public int compare(HmDatapoint dp1, HmDatapoint dp2) {
+            int result = dp1.getParamsetType().compareTo(dp2.getParamsetType());
+            return result != 0 ? result : dp1.getName().compareTo(dp2.getName());
+        }
+    };
+
+    private File file;
+    private Map<String, byte[]> entries = new HashMap<String, byte[]>();
+    private boolean loaded;
+    private boolean modified;
+
+    public DeviceMetadataCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the cached datapoints for the given channel key or null if the channel is not cached. The datapoints
+     * are not assigned to a channel, they must be cloned into the channel.
+     */
+    public synchronized Collection<HmDatapoint> get(String key) {
+        load();
+        byte[] entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return decode(entry);
+        } catch (IOException ex) {
+            logger.debug("Removing invalid metadata cache entry '{}': {}", key, ex.getMessage());
+            entries.remove(key);
+            modified = true;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the datapoints for the given channel key, returns true if they differ from the cached datapoints.
+     */
+    public synchronized boolean put(String key, Collection<HmDatapoint> datapoints) {
+        load();
+        byte[] entry;
+        try {
+            entry = encode(datapoints);
+        } catch (IOException ex) {
+            logger.debug("Can't cache metadata for '{}': {}", key, ex.getMessage());
+            return entries.remove(key) != null;
+        }
+        byte[] previous = entries.put(key, entry);
+        if (Arrays.equals(previous, entry)) {
+            return false;
+        }
+        modified = true;
+        return previous != null;
+    }
+
+    /**
+     * Removes all entries except the given channel keys.
+     */
+    public synchronized void retainAll(Collection<String> keys) {
+        load();
+        if (entries.keySet().retainAll(keys)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Removes all entries and deletes the cache file.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        modified = false;
+        if (file.exists() && !file.delete()) {
+            logger.debug("Can't delete metadata cache file '{}'", file);
+        }
+    }
+
+    /**
+     * Returns the number of cached channels.
+     */
+    public synchronized int size() {
+        load();
+        return entries.size();
+    }
+
+    /**
+     * Writes the entries to the cache file if they have been modified.
+     */
+    public synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            File folder = file.getParentFile();
+            if (folder != null && !folder.exists() && !folder.mkdirs()) {
+                throw new IOException("Can't create folder " + folder);
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Can't replace " + file);
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Can't rename " + tempFile + " to " + file);
+            }
+            modified = false;
+            logger.debug("Saved metadata of {} channels to '{}'", entries.size(), file);
+        } catch (IOException ex) {
+            logger.warn("Can't save metadata cache '{}': {}", file, ex.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Reads the cache file on first access, an unreadable file is ignored.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                logger.debug("Ignoring metadata cache '{}' with a different format", file);
+                return;
+            }
+            Map<String, byte[]> loadedEntries = new HashMap<String, byte[]>();
+            for (int count = in.readInt(); count > 0; count--) {
+                String key = in.readUTF();
+                byte[] entry = new byte[in.readInt()];
+                in.readFully(entry);
+                loadedEntries.put(key, entry);
+            }
+            entries.putAll(loadedEntries);
+            logger.debug("Loaded metadata of {} channels from '{}'", entries.size(), file);
+        } catch (FileNotFoundException ex) {
+            // no cache yet
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Ignoring unreadable metadata cache '{}': {}", file, ex.getMessage());
+        }
+    }
+
+    private byte[] encode(Collection<HmDatapoint> datapoints) throws IOException {
+        List<HmDatapoint> sorted = new ArrayList<HmDatapoint>();
+        for (HmDatapoint dp : datapoints) {
+            if (!dp.isVirtual()) {
+                sorted.add(dp);
+            }
+        }
+        Collections.sort(sorted, DATAPOINT_ORDER);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(sorted.size());
+        for (HmDatapoint dp : sorted) {
+            out.writeUTF(dp.getName());
+            writeString(out, dp.getDescription());
+            out.writeUTF(dp.getType().name());
+            out.writeUTF(dp.getParamsetType().name());
+            writeValue(out, dp.getMinValue());
+            writeValue(out, dp.getMaxValue());
+            writeValue(out, dp.getDefaultValue());
+            String[] options = dp.getOptions();
+            out.writeInt(options == null ? -1 : options.length);
+            if (options != null) {
+                for (String option : options) {
+                    writeString(out, option);
+                }
+            }
+            out.writeBoolean(dp.isReadOnly());
+            out.writeBoolean(dp.isReadable());
+            writeString(out, dp.getInfo());
+            writeString(out, dp.getUnit());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private Collection<HmDatapoint> decode(byte[] entry) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+        try {
+            int count = in.readInt();
+            List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(count);
+            for (int i = 0; i < count; i++) {
+                HmDatapoint dp = new HmDatapoint();
+                dp.setName(in.readUTF());
+                dp.setDescription(readString(in));
+                dp.setType(HmValueType.valueOf(in.readUTF()));
+                dp.setParamsetType(HmParamsetType.valueOf(in.readUTF()));
+                dp.setMinValue((Number) readValue(in));
+                dp.setMaxValue((Number) readValue(in));
+                dp.setDefaultValue(readValue(in));
+                int optionCount = in.readInt();
+                if (optionCount >= 0) {
+                    String[] options = new String[optionCount];
+                    for (int j = 0; j < optionCount; j++) {
+                        options[j] = readString(in);
+                    }
+                    dp.setOptions(options);
+                }
+                dp.setReadOnly(in.readBoolean());
+                dp.setReadable(in.readBoolean());
+                dp.setInfo(readString(in));
+                dp.setUnit(readString(in));
+                datapoints.add(dp);
+            }
+            return datapoints;
+        } catch (IllegalArgumentException | ClassCastException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Number) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF((String) value);
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass().getSimpleName());
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_STRING:
+                return in.readUTF();
+            case VALUE_FLOAT:
+                return in.readFloat();
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+}
@@ -9,24 +9,33 @@
 package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Simple socket cache class.
+ * Socket pool with a bounded number of sockets per port. A socket is used by one request at a time, concurrent
+ * requests to the same port use different sockets. Idle sockets are checked before they are handed out again.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class SocketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SocketHandler.class);
 
-    private Map<Integer, SocketInfo> socketsPerPort = new HashMap<Integer, SocketInfo>();
+    public static final int MAX_SOCKETS_PER_PORT = 4;
+
+    private Map<Integer, PortPool> poolsPerPort = new ConcurrentHashMap<Integer, PortPool>();
     private HomematicConfig config;
 
     public SocketHandler(HomematicConfig config) {
@@ -34,40 +43,71 @@ public class SocketHandler {
     }
 
     /**
-     * Returns a socket for the given port, (re)creates it if required.
+     * Returns a socket for the given port which is exclusively used by the caller, creates it if required. Waits if
+     * all sockets of the port are in use. The socket must be given back with {@link #returnSocket(int, SocketInfo)}
+     * or {@link #invalidateSocket(int, SocketInfo)}.
      */
-    public Socket getSocket(int port) throws IOException {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo == null) {
-            logger.trace("Creating new socket for port {}", port);
-            Socket socket = new Socket();
-            socket.setSoTimeout(config.getTimeout() * 1000);
-            socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
-            socketInfo = new SocketInfo(socket);
-            socketsPerPort.put(port, socketInfo);
-        } else {
-            boolean isMaxAliveReached = System.currentTimeMillis()
-                    - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000);
+    public SocketInfo borrowSocket(int port) throws IOException {
+        PortPool pool = getPool(port);
+        try {
+            if (!pool.permits.tryAcquire(config.getTimeout(), TimeUnit.SECONDS)) {
+                throw new SocketTimeoutException("No free socket for port " + port);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a socket for port " + port);
+        }
 
-            if (isMaxAliveReached) {
-                logger.debug("Max alive time reached for socket on port {}", port);
-                removeSocket(port);
-                return getSocket(port);
+        try {
+            SocketInfo socketInfo;
+            while ((socketInfo = pool.pollIdle()) != null) {
+                if (isUsable(port, socketInfo)) {
+                    logger.trace("Returning socket for port {}", port);
+                    return socketInfo;
+                }
+                closeSilent(socketInfo.getSocket());
             }
-            logger.trace("Returning socket for port {}", port);
+            return createSocket(port);
+        } catch (IOException | RuntimeException ex) {
+            pool.permits.release();
+            throw ex;
         }
-        return socketInfo.getSocket();
     }
 
     /**
-     * Removes the socket for the given port from the cache.
+     * Gives a socket back after a successful request, so that it can be used for the next request.
      */
-    public void removeSocket(int port) {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo != null) {
-            logger.trace("Closing Socket on port {}", port);
-            socketsPerPort.remove(port);
+    public void returnSocket(int port, SocketInfo socketInfo) {
+        PortPool pool = getPool(port);
+        if (socketInfo.getCreated() <= pool.flushed) {
             closeSilent(socketInfo.getSocket());
+        } else {
+            pool.offerIdle(socketInfo);
+        }
+        pool.permits.release();
+    }
+
+    /**
+     * Closes a socket after a failed request.
+     */
+    public void invalidateSocket(int port, SocketInfo socketInfo) {
+        logger.trace("Closing Socket on port {}", port);
+        closeSilent(socketInfo.getSocket());
+        getPool(port).permits.release();
+    }
+
+    /**
+     * Closes all idle sockets for the given port. Sockets which are in use are closed when they are given back.
+     */
+    public void removeSocket(int port) {
+        PortPool pool = poolsPerPort.get(port);
+        if (pool != null) {
+            pool.flushed = System.currentTimeMillis();
+            SocketInfo socketInfo;
+            while ((socketInfo = pool.pollIdle()) != null) {
+                logger.trace("Closing Socket on port {}", port);
+                closeSilent(socketInfo.getSocket());
+            }
         }
     }
 
@@ -75,12 +115,54 @@ public class SocketHandler {
      * Removes all cached sockets.
      */
     public void flush() {
-        synchronized (SocketHandler.class) {
-            Integer[] portsToRemove = socketsPerPort.keySet().toArray(new Integer[0]);
-            for (Integer key : portsToRemove) {
-                removeSocket(key);
+        for (Integer port : poolsPerPort.keySet()) {
+            removeSocket(port);
+        }
+    }
+
+    private PortPool getPool(int port) {
+        PortPool pool = poolsPerPort.get(port);
+        if (pool == null) {
+            PortPool newPool = new PortPool();
+            pool = poolsPerPort.putIfAbsent(port, newPool);
+            if (pool == null) {
+                pool = newPool;
             }
         }
+        return pool;
+    }
+
+    private SocketInfo createSocket(int port) throws IOException {
+        logger.trace("Creating new socket for port {}", port);
+        Socket socket = new Socket();
+        try {
+            socket.setSoTimeout(config.getTimeout() * 1000);
+            socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
+        } catch (IOException ex) {
+            closeSilent(socket);
+            throw ex;
+        }
+        return new SocketInfo(socket);
+    }
+
+    /**
+     * Checks if an idle socket can be used for the next request. A socket with unread data belongs to an aborted
+     * request and would return a wrong response.
+     */
+    private boolean isUsable(int port, SocketInfo socketInfo) {
+        Socket socket = socketInfo.getSocket();
+        if (System.currentTimeMillis() - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000)) {
+            logger.debug("Max alive time reached for socket on port {}", port);
+            return false;
+        }
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        try {
+            return socket.getInputStream().available() == 0;
+        } catch (IOException ex) {
+            return false;
+        }
     }
 
     /**
@@ -93,4 +175,21 @@ public class SocketHandler {
             // ignore
         }
     }
+
+    /**
+     * The sockets of one port.
+     */
+    private static class PortPool {
+        private final Semaphore permits = new Semaphore(MAX_SOCKETS_PER_PORT, true);
+        private final Deque<SocketInfo> idle = new ArrayDeque<SocketInfo>();
+        private volatile long flushed;
+
+        private synchronized SocketInfo pollIdle() {
+            return idle.pollFirst();
+        }
+
+        private synchronized void offerIdle(SocketInfo socketInfo) {
+            idle.addFirst(socketInfo);
+        }
+    }
 }
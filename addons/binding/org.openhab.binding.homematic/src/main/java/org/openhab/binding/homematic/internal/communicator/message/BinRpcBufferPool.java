@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.message;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of heap buffers for encoding and decoding BIN-RPC messages, so that the event bursts of a gateway don't
+ * allocate a new buffer for every message. Buffers which are too small for a message are replaced by larger ones, so
+ * the pool adapts to the message sizes of the gateway.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcBufferPool {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    public static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final BinRpcBufferPool instance = new BinRpcBufferPool();
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public static BinRpcBufferPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a cleared buffer with at least the given capacity. The buffer must be given back with
+     * {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            if (buffer.capacity() >= minCapacity) {
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocate(capacityFor(minCapacity));
+    }
+
+    /**
+     * Returns a buffer with at least the given capacity and the content of the given buffer up to its position. The
+     * given buffer is released.
+     */
+    public ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer larger = acquire(minCapacity);
+        buffer.flip();
+        larger.put(buffer);
+        release(buffer);
+        return larger;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE && pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    private static int capacityFor(int minCapacity) {
+        int capacity = DEFAULT_BUFFER_SIZE;
+        while (capacity < minCapacity && capacity > 0) {
+            capacity <<= 1;
+        }
+        return capacity > 0 ? capacity : minCapacity;
+    }
+}
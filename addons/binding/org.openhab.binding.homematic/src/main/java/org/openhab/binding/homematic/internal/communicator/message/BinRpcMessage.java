@@ -11,46 +11,58 @@ package org.openhab.binding.homematic.internal.communicator.message;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Handles BIN-RPC request and response messages to communicate with a Homematic gateway.
  *
+ * Received messages are read into a pooled buffer and the values are decoded directly from that buffer. Requests
+ * keep their arguments and are encoded each time the message is written, {@link #writeTo(OutputStream)} encodes into a
+ * pooled buffer and {@link #createMessage()} into an array of the exact message length.
+ *
  * @author Gerhard Riegler - Initial contribution
  */
 public class BinRpcMessage implements RpcRequest, RpcResponse {
     private final static Logger logger = LoggerFactory.getLogger(BinRpcMessage.class);
 
+    public static final int HEADER_LENGTH = 8;
+    /** Maximum length of a received message, a larger length can only come from a broken or hostile peer */
+    public static final int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+    private static final byte[] SIGNATURE = { 'B', 'i', 'n' };
+
     public enum TYPE {
         REQUEST,
         RESPONSE;
     }
 
+    private final BinRpcBufferPool pool = BinRpcBufferPool.getInstance();
+
     private Object[] messageData;
-    private byte binRpcData[];
-    private int offset;
+    private List<Object> arguments = new ArrayList<Object>();
+    private ByteBuffer out;
 
     private String methodName;
     private TYPE type;
-    private int args;
-    private String encoding;
+    private Charset charset;
 
     public BinRpcMessage(String methodName, String encoding) {
         this(methodName, TYPE.REQUEST, encoding);
@@ -62,33 +74,34 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
     public BinRpcMessage(String methodName, TYPE type, String encoding) {
         this.methodName = methodName;
         this.type = type;
-        this.encoding = encoding;
-        createHeader();
+        setEncoding(encoding);
     }
 
     /**
      * Decodes a BIN-RPC message from the given InputStream.
      */
     public BinRpcMessage(InputStream is, boolean methodHeader, String encoding) throws IOException {
-        this.encoding = encoding;
-        byte sig[] = new byte[8];
-        int length = is.read(sig, 0, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading signature");
-        }
-        validateBinXSignature(sig);
-        length = is.read(sig, 4, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading message length");
-        }
-        int datasize = (new BigInteger(ArrayUtils.subarray(sig, 4, 8))).intValue();
-        byte[] message = ArrayUtils.addAll(sig, IOUtils.toByteArray(is, datasize));
-        decodeMessage(message, methodHeader);
-    }
-
-    private void validateBinXSignature(byte[] sig) throws UnsupportedEncodingException {
-        if (sig[0] != 'B' || sig[1] != 'i' || sig[2] != 'n') {
-            throw new UnsupportedEncodingException("No BinX signature");
+        setEncoding(encoding);
+        ByteBuffer buffer = pool.acquire(BinRpcBufferPool.DEFAULT_BUFFER_SIZE);
+        try {
+            byte[] data = buffer.array();
+            readFully(is, data, 0, 4, "signature");
+            validateBinXSignature(data, 0);
+            readFully(is, data, 4, 4, "message length");
+            int datasize = buffer.getInt(4);
+            if (datasize < 0 || datasize > MAX_MESSAGE_LENGTH - HEADER_LENGTH) {
+                throw new IOException("Invalid message length " + datasize);
+            }
+            if (buffer.capacity() < HEADER_LENGTH + datasize) {
+                buffer.position(HEADER_LENGTH);
+                buffer = pool.grow(buffer, HEADER_LENGTH + datasize);
+                data = buffer.array();
+            }
+            readFully(is, data, HEADER_LENGTH, datasize, "message");
+            buffer.position(0).limit(HEADER_LENGTH + datasize);
+            decodeMessage(buffer, methodHeader);
+        } finally {
+            pool.release(buffer);
         }
     }
 
@@ -96,51 +109,86 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      * Decodes a BIN-RPC message from the given byte array.
      */
     public BinRpcMessage(byte[] message, boolean methodHeader, String encoding) throws IOException, ParseException {
-        this.encoding = encoding;
-        if (message.length < 8) {
-            throw new EOFException("Only " + message.length + " bytes received");
+        this(ByteBuffer.wrap(message), methodHeader, encoding);
+    }
+
+    /**
+     * Decodes a BIN-RPC message from the remaining content of the given buffer. The values are copied out of the
+     * buffer, it may be reused afterwards.
+     */
+    public BinRpcMessage(ByteBuffer message, boolean methodHeader, String encoding) throws IOException {
+        setEncoding(encoding);
+        if (message.remaining() < HEADER_LENGTH) {
+            throw new EOFException("Only " + message.remaining() + " bytes received");
         }
-        validateBinXSignature(message);
+        validateBinXSignature(message, message.position());
         decodeMessage(message, methodHeader);
     }
 
-    private void decodeMessage(byte[] message, boolean methodHeader) throws IOException {
-        binRpcData = message;
-
-        offset = 8;
+    private void setEncoding(String encoding) {
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unsupported encoding '{}', using the default encoding", encoding);
+            charset = Charset.defaultCharset();
+        }
+    }
 
-        if (methodHeader) {
-            methodName = readString();
-            readInt();
+    private static void readFully(InputStream is, byte[] data, int offset, int length, String part)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = is.read(data, offset + read, length - read);
+            if (count < 0) {
+                throw new EOFException("Only " + read + " bytes received reading " + part);
+            }
+            read += count;
         }
-        generateResponseData();
     }
 
-    public void setType(TYPE type) {
-        binRpcData[3] = type == TYPE.RESPONSE ? (byte) 1 : (byte) 0;
+    private void validateBinXSignature(byte[] sig, int offset) throws UnsupportedEncodingException {
+        if (sig[offset] != 'B' || sig[offset + 1] != 'i' || sig[offset + 2] != 'n') {
+            throw new UnsupportedEncodingException("No BinX signature");
+        }
     }
 
-    private void generateResponseData() throws IOException {
-        offset = 8 + (methodName != null ? methodName.length() + 8 : 0);
-        List<Object> values = new ArrayList<Object>();
-        while (offset < binRpcData.length) {
-            values.add(readRpcValue());
+    private void validateBinXSignature(ByteBuffer sig, int offset) throws UnsupportedEncodingException {
+        if (sig.get(offset) != 'B' || sig.get(offset + 1) != 'i' || sig.get(offset + 2) != 'n') {
+            throw new UnsupportedEncodingException("No BinX signature");
         }
-        messageData = values.toArray();
-        values.clear();
     }
 
-    private void createHeader() {
-        binRpcData = new byte[256];
-        addString("Bin ");
-        setType(type);
-        addInt(0); // placeholder content length
-        if (methodName != null) {
-            addInt(methodName.length());
-            addString(methodName);
-            addInt(0); // placeholder arguments
+    private void decodeMessage(ByteBuffer in, boolean methodHeader) throws IOException {
+        int start = in.position();
+        type = in.get(start + 3) == 1 ? TYPE.RESPONSE : TYPE.REQUEST;
+        int end = start + HEADER_LENGTH + in.getInt(start + 4);
+        if (end > in.limit()) {
+            throw new EOFException("Only " + (in.limit() - start) + " bytes received, expected " + (end - start));
+        }
+        in.position(start + HEADER_LENGTH);
+
+        try {
+            // a response contains a single value, if any
+            int valueCount = end > in.position() ? 1 : 0;
+            if (methodHeader) {
+                methodName = readString(in);
+                valueCount = readCount(in);
+            }
+
+            messageData = new Object[valueCount];
+            for (int i = 0; i < valueCount; i++) {
+                messageData[i] = readRpcValue(in);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Incomplete BIN-RPC message");
+        }
+        if (in.position() != end) {
+            throw new IOException("BIN-RPC message has " + (end - in.position()) + " bytes after the last value");
         }
-        setInt(4, offset - 8);
+    }
+
+    public void setType(TYPE type) {
+        this.type = type;
     }
 
     /**
@@ -148,16 +196,11 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      */
     @Override
     public void addArg(Object argument) {
-        addObject(argument);
-        setInt(4, offset - 8);
-
-        if (methodName != null) {
-            setInt(12 + methodName.length(), ++args);
-        }
+        arguments.add(argument);
     }
 
     public int getArgCount() {
-        return args;
+        return arguments.size();
     }
 
     @Override
@@ -170,14 +213,26 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      */
     @Override
     public byte[] createMessage() {
-        trimBinRpcData();
-        return binRpcData;
+        out = ByteBuffer.allocate(getMessageLength());
+        try {
+            encodeMessage();
+            return out.array();
+        } finally {
+            out = null;
+        }
     }
 
-    private void trimBinRpcData() {
-        byte[] trimmed = new byte[offset];
-        System.arraycopy(binRpcData, 0, trimmed, 0, offset);
-        binRpcData = trimmed;
+    /**
+     * Encodes the message into a pooled buffer and writes it to the given stream.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        out = pool.acquire(BinRpcBufferPool.DEFAULT_BUFFER_SIZE);
+        try {
+            encodeMessage();
+            os.write(out.array(), out.arrayOffset(), out.position());
+        } finally {
+            releaseOut();
+        }
     }
 
     /**
@@ -185,86 +240,157 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
      */
     @Override
     public Object[] getResponseData() {
-        return messageData;
+        return messageData != null ? messageData : arguments.toArray();
     }
 
     // read rpc values
-    private int readInt() {
-        byte bi[] = new byte[4];
-        System.arraycopy(binRpcData, offset, bi, 0, 4);
-        offset += 4;
-        return (new BigInteger(bi)).intValue();
+    private String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0 || len > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int position = in.position();
+        String string;
+        if (in.hasArray()) {
+            string = new String(in.array(), in.arrayOffset() + position, len, charset);
+        } else {
+            byte[] data = new byte[len];
+            in.get(data);
+            string = new String(data, charset);
+        }
+        in.position(position + len);
+        return string;
     }
 
-    private String readString() throws UnsupportedEncodingException {
-        int len = readInt();
-        offset += len;
-        return new String(binRpcData, offset - len, len, encoding);
+    /**
+     * Reads the number of elements of an array or struct. Each element needs at least four bytes, so a larger number
+     * can only come from a broken message.
+     */
+    private int readCount(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        return count;
     }
 
-    private Object readRpcValue() throws IOException {
-        int type = readInt();
+    private Object readRpcValue(ByteBuffer in) throws IOException {
+        int type = in.getInt();
         switch (type) {
             case 1:
-                return new Integer(readInt());
+                return new Integer(in.getInt());
             case 2:
-                return binRpcData[offset++] != 0 ? Boolean.TRUE : Boolean.FALSE;
+                return in.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
             case 3:
-                return readString();
+                return readString(in);
             case 4:
-                int mantissa = readInt();
-                int exponent = readInt();
+                int mantissa = in.getInt();
+                int exponent = in.getInt();
                 BigDecimal bd = new BigDecimal((double) mantissa / (double) (1 << 30) * Math.pow(2, exponent));
                 return bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue();
             case 5:
-                return new Date(readInt() * 1000);
+                return new Date(in.getInt() * 1000L);
+            case 0x11:
+                return Base64.getMimeDecoder().decode(readString(in));
             case 0x100:
                 // Array
-                int numElements = readInt();
-                Collection<Object> array = new ArrayList<Object>();
-                while (numElements-- > 0) {
-                    array.add(readRpcValue());
+                int numElements = readCount(in);
+                Object[] array = new Object[numElements];
+                for (int i = 0; i < numElements; i++) {
+                    array[i] = readRpcValue(in);
                 }
-                return array.toArray();
+                return array;
             case 0x101:
                 // Struct
-                numElements = readInt();
+                numElements = readCount(in);
                 Map<String, Object> struct = new TreeMap<String, Object>();
                 while (numElements-- > 0) {
-                    String name = readString();
-                    struct.put(name, readRpcValue());
+                    String name = readString(in);
+                    struct.put(name, readRpcValue(in));
                 }
                 return struct;
 
             default:
-                for (int i = 0; i < binRpcData.length; i++) {
-                    logger.info(Integer.toHexString(binRpcData[i]) + " " + (char) binRpcData[i]);
-                }
-                throw new IOException("Unknown data type " + type);
+                throw new IOException("Unknown data type " + type + " at position " + (in.position() - 4));
         }
     }
 
-    private void setInt(int position, int value) {
-        int temp = offset;
-        offset = position;
-        addInt(value);
-        offset = temp;
+    // write rpc values
+    private void encodeMessage() {
+        out.put(SIGNATURE);
+        out.put(type == TYPE.RESPONSE ? (byte) 1 : (byte) 0);
+        out.putInt(0); // placeholder content length
+        if (methodName != null) {
+            addString(methodName);
+            addInt(arguments.size());
+        }
+        for (Object argument : arguments) {
+            addObject(argument);
+        }
+        out.putInt(4, out.position() - HEADER_LENGTH);
     }
 
-    private void addByte(byte b) {
-        if (offset == binRpcData.length) {
-            byte newdata[] = new byte[binRpcData.length * 2];
-            System.arraycopy(binRpcData, 0, newdata, 0, binRpcData.length);
-            binRpcData = newdata;
+    /**
+     * Returns the length of the encoded message, it must match what {@link #encodeMessage()} writes.
+     */
+    private int getMessageLength() {
+        int length = HEADER_LENGTH;
+        if (methodName != null) {
+            length += 4 + methodName.getBytes(charset).length + 4;
+        }
+        for (Object argument : arguments) {
+            length += getLength(argument);
+        }
+        return length;
+    }
+
+    private int getLength(Object object) {
+        if (object.getClass() == String.class) {
+            return 8 + ((String) object).getBytes(charset).length;
+        } else if (object.getClass() == Boolean.class) {
+            return 5;
+        } else if (object.getClass() == Integer.class || object.getClass() == Date.class) {
+            return 8;
+        } else if (object.getClass() == Double.class || object.getClass() == Float.class
+                || object.getClass() == BigDecimal.class || object.getClass() == BigInteger.class) {
+            return 12;
+        } else if (object.getClass() == byte[].class) {
+            return 8 + (((byte[]) object).length + 2) / 3 * 4;
+        } else if (object instanceof List<?>) {
+            int length = 8;
+            for (Object element : (List<?>) object) {
+                length += getLength(element);
+            }
+            return length;
+        } else if (object instanceof Map<?, ?>) {
+            int length = 8;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                length += 4 + ((String) entry.getKey()).getBytes(charset).length + getLength(entry.getValue());
+            }
+            return length;
+        }
+        return 0;
+    }
+
+    private void releaseOut() {
+        pool.release(out);
+        out = null;
+    }
+
+    private void ensureCapacity(int length) {
+        if (out.remaining() < length) {
+            out = pool.grow(out, out.position() + length);
         }
-        binRpcData[offset++] = b;
+    }
+
+    private void addByte(byte b) {
+        ensureCapacity(1);
+        out.put(b);
     }
 
     private void addInt(int value) {
-        addByte((byte) (value >> 24));
-        addByte((byte) (value >> 16));
-        addByte((byte) (value >> 8));
-        addByte((byte) (value));
+        ensureCapacity(4);
+        out.putInt(value);
     }
 
     private void addDouble(double value) {
@@ -289,30 +415,20 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
         addInt(exp);
     }
 
+    /**
+     * Adds the length of the encoded string followed by the encoded string.
+     */
     private void addString(String string) {
-        byte sd[];
-        try {
-            sd = string.getBytes(encoding);
-        } catch (UnsupportedEncodingException use) {
-            sd = string.getBytes();
-        }
-        for (byte ch : sd) {
-            addByte(ch);
-        }
-    }
-
-    private void addList(Collection<?> collection) {
-        for (Object object : collection) {
-            addObject(object);
-        }
+        byte[] sd = string.getBytes(charset);
+        ensureCapacity(4 + sd.length);
+        out.putInt(sd.length);
+        out.put(sd);
     }
 
     private void addObject(Object object) {
         if (object.getClass() == String.class) {
             addInt(3);
-            String string = (String) object;
-            addInt(string.length());
-            addString(string);
+            addString((String) object);
         } else if (object.getClass() == Boolean.class) {
             addInt(2);
             addByte(((Boolean) object).booleanValue() ? (byte) 1 : (byte) 0);
@@ -334,21 +450,27 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
             addDouble(((BigInteger) object).doubleValue());
         } else if (object.getClass() == Date.class) {
             addInt(5);
-            addInt((int) ((Date) object).getTime() / 1000);
+            addInt((int) (((Date) object).getTime() / 1000));
+        } else if (object.getClass() == byte[].class) {
+            addInt(0x11);
+            byte[] base64 = Base64.getEncoder().encode((byte[]) object);
+            ensureCapacity(4 + base64.length);
+            out.putInt(base64.length);
+            out.put(base64);
         } else if (object instanceof List<?>) {
             Collection<?> list = (Collection<?>) object;
             addInt(0x100);
             addInt(list.size());
-            addList(list);
+            for (Object element : list) {
+                addObject(element);
+            }
         } else if (object instanceof Map<?, ?>) {
             Map<?, ?> map = (Map<?, ?>) object;
             addInt(0x101);
             addInt(map.size());
             for (Map.Entry<?, ?> entry : map.entrySet()) {
-                String key = (String) entry.getKey();
-                addInt(key.length());
-                addString(key);
-                addList(Collections.singleton(entry.getValue()));
+                addString((String) entry.getKey());
+                addObject(entry.getValue());
             }
         }
     }
@@ -359,12 +481,6 @@ public class BinRpcMessage implements RpcRequest, RpcResponse {
 
     @Override
     public String toString() {
-        try {
-            trimBinRpcData();
-            generateResponseData();
-            return RpcUtils.dumpRpcMessage(methodName, messageData);
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+        return RpcUtils.dumpRpcMessage(methodName, getResponseData());
     }
 }
@@ -9,7 +9,9 @@
 package org.openhab.binding.homematic.internal.communicator.parser;
 
 import java.io.IOException;
+import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.homematic.internal.model.HmChannel;
 import org.openhab.binding.homematic.internal.model.HmDatapoint;
 import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
@@ -19,17 +21,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Parses a TclRega script result containing datapoint values for a channel.
+ * Parses a TclRega script result containing datapoint values for one or more channels. The entries contain the full
+ * datapoint name with the interface, address and channel number.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class CcuValueParser extends CommonRpcParser<TclScriptDataList, Void> {
     private static final Logger logger = LoggerFactory.getLogger(CcuValueParser.class);
 
-    private HmChannel channel;
+    private Map<String, HmChannel> channelsByName;
 
-    public CcuValueParser(HmChannel channel) {
-        this.channel = channel;
+    /**
+     * Creates a parser for the channels mapped by their TclRega name including the trailing dot.
+     */
+    public CcuValueParser(Map<String, HmChannel> channelsByName) {
+        this.channelsByName = channelsByName;
     }
 
     /**
@@ -39,7 +45,14 @@ public class CcuValueParser extends CommonRpcParser<TclScriptDataList, Void> {
     public Void parse(TclScriptDataList resultList) throws IOException {
         if (resultList.getEntries() != null) {
             for (TclScriptDataEntry entry : resultList.getEntries()) {
-                HmDatapointInfo dpInfo = HmDatapointInfo.createValuesInfo(channel, entry.name);
+                String channelName = StringUtils.substringBeforeLast(entry.name, ".") + ".";
+                HmChannel channel = channelsByName.get(channelName);
+                if (channel == null) {
+                    logger.warn("Can't set value for unknown datapoint '{}'", entry.name);
+                    continue;
+                }
+                HmDatapointInfo dpInfo = HmDatapointInfo.createValuesInfo(channel,
+                        StringUtils.substringAfterLast(entry.name, "."));
                 HmDatapoint dp = channel.getDatapoint(dpInfo);
                 if (dp != null) {
                     dp.setValue(convertToType(dp, entry.value));
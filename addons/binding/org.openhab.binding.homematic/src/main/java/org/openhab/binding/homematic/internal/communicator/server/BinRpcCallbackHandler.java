@@ -10,9 +10,6 @@ package org.openhab.binding.homematic.internal.communicator.server;
 
 import static org.openhab.binding.homematic.internal.misc.HomematicConstants.*;
 
-import java.io.EOFException;
-import java.io.IOException;
-import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -26,11 +23,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Reads a BIN-RPC message from the socket and handles the method call.
+ * Handles the method calls of a BIN-RPC message. The response is created immediately, the events are handed to the
+ * listener through the {@link RpcEventDispatcher}.
  *
  * @author Gerhard Riegler - Initial contribution
  */
-public class BinRpcCallbackHandler implements Runnable {
+public class BinRpcCallbackHandler {
     private static final Logger logger = LoggerFactory.getLogger(BinRpcCallbackHandler.class);
 
     private static final byte BIN_EMPTY_STRING[] = { 'B', 'i', 'n', 1, 0, 0, 0, 8, 0, 0, 0, 3, 0, 0, 0, 0 };
@@ -38,47 +36,30 @@ public class BinRpcCallbackHandler implements Runnable {
     private static final byte BIN_EMPTY_EVENT_LIST[] = { 'B', 'i', 'n', 1, 0, 0, 0, 21, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0,
             3, 0, 0, 0, 5, 'e', 'v', 'e', 'n', 't' };
 
-    private Socket socket;
     private RpcEventListener listener;
-    private String encoding;
+    private RpcEventDispatcher dispatcher;
+    private byte[] listMethodsResponse;
 
-    public BinRpcCallbackHandler(Socket socket, RpcEventListener listener, String encoding) {
-        this.socket = socket;
+    public BinRpcCallbackHandler(RpcEventListener listener, RpcEventDispatcher dispatcher, String encoding) {
         this.listener = listener;
-        this.encoding = encoding;
+        this.dispatcher = dispatcher;
+        listMethodsResponse = createListMethodsResponse(encoding);
     }
 
     /**
-     * Reads the event from the Homematic gateway and handles the method call.
+     * Handles the method call of the message from the Homematic gateway and returns the response.
      */
-    @Override
-    public void run() {
-        try {
-            BinRpcMessage message = new BinRpcMessage(socket.getInputStream(), true, encoding);
-            if (logger.isTraceEnabled()) {
-                logger.trace("Event BinRpcMessage: {}", message.toString());
-            }
-            byte[] returnValue = handleMethodCall(message.getMethodName(), message.getResponseData());
-            if (returnValue != null) {
-                socket.getOutputStream().write(returnValue);
-            }
-        } catch (EOFException eof) {
-            // ignore
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
-        } finally {
-            try {
-                socket.close();
-            } catch (IOException ex) {
-                // ignore
-            }
+    public byte[] handleMessage(BinRpcMessage message) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Event BinRpcMessage: {}", message.toString());
         }
+        return handleMethodCall(message.getMethodName(), message.getResponseData());
     }
 
     /**
      * Returns a valid result of the method called by the Homematic gateway.
      */
-    private byte[] handleMethodCall(String methodName, Object[] responseData) throws IOException {
+    private byte[] handleMethodCall(String methodName, Object[] responseData) {
         if (RPC_METHODNAME_EVENT.equals(methodName)) {
             return handleEvent(responseData);
         } else if (RPC_METHODNAME_LIST_DEVICES.equals(methodName) || RPC_METHODNAME_UPDATE_DEVICE.equals(methodName)) {
@@ -88,7 +69,7 @@ public class BinRpcCallbackHandler implements Runnable {
         } else if (RPC_METHODNAME_NEW_DEVICES.equals(methodName)) {
             return handleNewDevice(responseData);
         } else if (RPC_METHODNAME_SYSTEM_LISTMETHODS.equals(methodName)) {
-            return handleListMethods();
+            return listMethodsResponse;
         } else if (RPC_METHODNAME_SYSTEM_MULTICALL.equals(methodName)) {
             for (Object o : (Object[]) responseData[0]) {
                 Map<?, ?> call = (Map<?, ?>) o;
@@ -106,7 +87,7 @@ public class BinRpcCallbackHandler implements Runnable {
     /**
      * Creates a BINRPC message with the supported method names.
      */
-    private byte[] handleListMethods() {
+    private static byte[] createListMethodsResponse(String encoding) {
         BinRpcMessage msg = new BinRpcMessage(null, BinRpcMessage.TYPE.RESPONSE, encoding);
         List<String> events = new ArrayList<String>();
         events.add(RPC_METHODNAME_SYSTEM_MULTICALL);
@@ -120,43 +101,72 @@ public class BinRpcCallbackHandler implements Runnable {
     /**
      * Populates the extracted event to the listener.
      */
-    @SuppressWarnings("finally")
-    private byte[] handleEvent(Object[] message) throws IOException {
+    private byte[] handleEvent(Object[] message) {
+        final HmDatapointInfo dpInfo;
+        final Object value;
         try {
             EventParser eventParser = new EventParser();
-            HmDatapointInfo dpInfo = eventParser.parse(message);
-            listener.eventReceived(dpInfo, eventParser.getValue());
-        } finally {
+            dpInfo = eventParser.parse(message);
+            value = eventParser.getValue();
+        } catch (Exception ex) {
+            logger.debug("Can't parse event: {}", ex.getMessage());
             return BIN_EMPTY_STRING;
         }
+
+        dispatcher.dispatch(dpInfo.getAddress(), new Runnable() {
+
+            @Override
+            public void run() {
+                listener.eventReceived(dpInfo, value);
+            }
+        });
+        return BIN_EMPTY_STRING;
     }
 
     /**
      * Calls the listener when a devices has been detected.
      */
-    @SuppressWarnings("finally")
-    private byte[] handleNewDevice(Object[] message) throws IOException {
+    private byte[] handleNewDevice(Object[] message) {
+        final List<String> adresses;
         try {
             NewDevicesParser ndParser = new NewDevicesParser();
-            List<String> adresses = ndParser.parse(message);
-            listener.newDevices(adresses);
-        } finally {
+            adresses = ndParser.parse(message);
+        } catch (Exception ex) {
+            logger.debug("Can't parse new devices: {}", ex.getMessage());
             return BIN_EMPTY_ARRAY;
         }
+
+        dispatcher.dispatch(adresses.isEmpty() ? null : adresses.get(0), new Runnable() {
+
+            @Override
+            public void run() {
+                listener.newDevices(adresses);
+            }
+        });
+        return BIN_EMPTY_ARRAY;
     }
 
     /**
      * Calls the listener when devices has been deleted.
      */
-    @SuppressWarnings("finally")
-    private byte[] handleDeleteDevice(Object[] message) throws IOException {
+    private byte[] handleDeleteDevice(Object[] message) {
+        final List<String> adresses;
         try {
             DeleteDevicesParser ddParser = new DeleteDevicesParser();
-            List<String> adresses = ddParser.parse(message);
-            listener.deleteDevices(adresses);
-        } finally {
+            adresses = ddParser.parse(message);
+        } catch (Exception ex) {
+            logger.debug("Can't parse deleted devices: {}", ex.getMessage());
             return BIN_EMPTY_ARRAY;
         }
+
+        dispatcher.dispatch(adresses.isEmpty() ? null : adresses.get(0), new Runnable() {
+
+            @Override
+            public void run() {
+                listener.deleteDevices(adresses);
+            }
+        });
+        return BIN_EMPTY_ARRAY;
     }
 
 }
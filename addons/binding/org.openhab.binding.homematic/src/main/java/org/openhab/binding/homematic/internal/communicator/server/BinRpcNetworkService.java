@@ -10,50 +10,322 @@ package org.openhab.binding.homematic.internal.communicator.server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcBufferPool;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Waits for a message from the Homematic gateway and starts the RpcCallbackHandler to handle the message.
+ * Receives the messages from the Homematic gateway with a single selector thread. A connection is kept open as long
+ * as the gateway wants, every complete message in the received data is decoded and answered immediately, the events
+ * are processed by the {@link RpcEventDispatcher}. While the dispatcher is backlogged no messages are read, so the
+ * gateway has to wait until the events are processed. The check is done before each message, all events of a message
+ * are queued, none is dropped.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class BinRpcNetworkService implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(BinRpcNetworkService.class);
     private static final String RPC_POOL_NAME = "homematicRpc";
-    private ServerSocket serverSocket;
-    private boolean accept = true;
-    private RpcEventListener listener;
+    private static final long IDLE_CHECK_INTERVAL = 10000;
+
+    private final BinRpcBufferPool pool = BinRpcBufferPool.getInstance();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean accept = true;
+    private RpcEventDispatcher dispatcher;
+    private BinRpcCallbackHandler callbackHandler;
     private HomematicConfig config;
+    private final List<SelectionKey> paused = new ArrayList<SelectionKey>();
 
     /**
      * Creates the socket for listening to events from the Homematic gateway.
      */
     public BinRpcNetworkService(RpcEventListener listener, HomematicConfig config) throws IOException {
-        this.listener = listener;
         this.config = config;
+        dispatcher = new RpcEventDispatcher(ThreadPoolManager.getPool(RPC_POOL_NAME));
+        dispatcher.setDrainListener(new Runnable() {
+
+            @Override
+            public void run() {
+                selector.wakeup();
+            }
+        });
+        callbackHandler = new BinRpcCallbackHandler(listener, dispatcher, config.getEncoding());
 
-        serverSocket = new ServerSocket();
-        serverSocket.setReuseAddress(true);
-        serverSocket.bind(new InetSocketAddress(config.getBinCallbackPort()));
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(config.getBinCallbackPort()));
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException ex) {
+            closeSilent();
+            throw ex;
+        }
     }
 
     /**
-     * Listening for events and starts the callbackHandler if a event received.
+     * Listening for events and handles the messages of all connections.
      */
     @Override
     public void run() {
-        while (accept) {
+        long lastIdleCheck = System.currentTimeMillis();
+        try {
+            while (accept) {
+                selector.select(IDLE_CHECK_INTERVAL);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            acceptConnection();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException ex) {
+                        logger.debug("Closing BIN-RPC connection: {}", ex.getMessage());
+                        close(key);
+                    }
+                }
+
+                if (!paused.isEmpty() && !dispatcher.isBacklogged()) {
+                    resumeConnections();
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= IDLE_CHECK_INTERVAL) {
+                    closeIdleConnections(now);
+                    lastIdleCheck = now;
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // shutdown
+        } catch (IOException ex) {
+            if (accept) {
+                logger.error(ex.getMessage(), ex);
+            }
+        } finally {
+            closeSilent();
+        }
+    }
+
+    /**
+     * Accepts a new connection from the Homematic gateway.
+     */
+    private void acceptConnection() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    /**
+     * Reads the available data and handles all complete messages.
+     */
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (channel.read(connection.in) < 0) {
+            close(key);
+            return;
+        }
+        connection.lastActivity = System.currentTimeMillis();
+        handleMessages(key);
+    }
+
+    /**
+     * Handles the complete messages in the receive buffer. Stops reading from the connection if the dispatcher is
+     * backlogged, the remaining messages are handled when the connection is resumed.
+     */
+    private void handleMessages(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer in = connection.in;
+        in.flip();
+        try {
+            while (in.remaining() >= BinRpcMessage.HEADER_LENGTH) {
+                if (dispatcher.isBacklogged()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    paused.add(key);
+                    break;
+                }
+                int start = in.position();
+                int messageLength = getMessageLength(in, start);
+                if (in.remaining() < messageLength) {
+                    break;
+                }
+
+                ByteBuffer frame = in.duplicate();
+                frame.limit(start + messageLength);
+                BinRpcMessage message = new BinRpcMessage(frame, true, config.getEncoding());
+                in.position(start + messageLength);
+
+                byte[] response = callbackHandler.handleMessage(message);
+                if (response != null) {
+                    send(key, ByteBuffer.wrap(response));
+                }
+            }
+        } finally {
+            in.compact();
+        }
+
+        if (in.position() >= BinRpcMessage.HEADER_LENGTH) {
+            int messageLength = getMessageLength(in, 0);
+            if (messageLength > in.capacity()) {
+                connection.in = pool.grow(in, messageLength);
+            }
+        }
+    }
+
+    /**
+     * Continues reading from the connections which were paused because the dispatcher was backlogged.
+     */
+    private void resumeConnections() {
+        List<SelectionKey> keys = new ArrayList<SelectionKey>(paused);
+        paused.clear();
+        for (SelectionKey key : keys) {
+            if (!key.isValid()) {
+                continue;
+            }
             try {
-                Socket cs = serverSocket.accept();
-                BinRpcCallbackHandler rpcHandler = new BinRpcCallbackHandler(cs, listener, config.getEncoding());
-                ThreadPoolManager.getPool(RPC_POOL_NAME).execute(rpcHandler);
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                ((Connection) key.attachment()).lastActivity = System.currentTimeMillis();
+                handleMessages(key);
             } catch (IOException ex) {
+                logger.debug("Closing BIN-RPC connection: {}", ex.getMessage());
+                close(key);
+            }
+        }
+    }
+
+    /**
+     * Validates the header of the message at the given position and returns the length of the message.
+     */
+    private int getMessageLength(ByteBuffer in, int start) throws IOException {
+        if (in.get(start) != 'B' || in.get(start + 1) != 'i' || in.get(start + 2) != 'n') {
+            throw new IOException("No BinX signature");
+        }
+        int datasize = in.getInt(start + 4);
+        if (datasize < 0 || datasize > BinRpcMessage.MAX_MESSAGE_LENGTH - BinRpcMessage.HEADER_LENGTH) {
+            throw new IOException("Invalid message length " + datasize);
+        }
+        return BinRpcMessage.HEADER_LENGTH + datasize;
+    }
+
+    /**
+     * Writes the response directly, the part which doesn't fit into the socket buffer is written when the socket
+     * becomes writable.
+     */
+    private void send(SelectionKey key, ByteBuffer response) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.out.isEmpty()) {
+            ((SocketChannel) key.channel()).write(response);
+            if (!response.hasRemaining()) {
+                return;
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+        connection.out.add(response);
+    }
+
+    /**
+     * Writes the pending responses.
+     */
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer response;
+        while ((response = connection.out.peek()) != null) {
+            channel.write(response);
+            if (response.hasRemaining()) {
+                return;
+            }
+            connection.out.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes the connections which haven't received data for the max alive time.
+     */
+    private void closeIdleConnections(long now) {
+        long maxIdle = config.getSocketMaxAlive() * 1000L;
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && now - connection.lastActivity > maxIdle) {
+                logger.debug("Closing idle BIN-RPC connection");
+                close(key);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection of the given key and gives its buffer back to the pool.
+     */
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            // ignore
+        }
+        Connection connection = (Connection) key.attachment();
+        if (connection != null && connection.in != null) {
+            pool.release(connection.in);
+            connection.in = null;
+        }
+    }
+
+    /**
+     * Closes all connections, the server socket and the selector.
+     */
+    private void closeSilent() {
+        if (selector.isOpen()) {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    close(key);
+                }
+            } catch (ClosedSelectorException ex) {
                 // ignore
             }
         }
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException ex) {
+            // ignore
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            // ignore
+        }
     }
 
     /**
@@ -61,11 +333,17 @@ public class BinRpcNetworkService implements Runnable {
      */
     public void shutdown() {
         accept = false;
-        try {
-            serverSocket.close();
-        } catch (IOException ioe) {
-            // ignore
-        }
+        selector.wakeup();
+        dispatcher.clear();
+    }
+
+    /**
+     * The receive buffer and the pending responses of a connection.
+     */
+    private class Connection {
+        private ByteBuffer in = pool.acquire(BinRpcBufferPool.DEFAULT_BUFFER_SIZE);
+        private final Deque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+        private long lastActivity = System.currentTimeMillis();
     }
 
 }
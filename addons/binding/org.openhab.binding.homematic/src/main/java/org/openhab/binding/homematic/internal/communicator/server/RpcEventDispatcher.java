@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.server;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the received events to the listener on a thread pool. The events are split into partitions by device
+ * address. The events of a partition are processed one after the other in the order they were received, different
+ * partitions are processed in parallel.
+ *
+ * Queuing an event never blocks the receiver and never drops an event. The queue limit is a soft bound: once a
+ * partition holds this many events the dispatcher is backlogged, the receiver should stop reading from the gateway
+ * until the drain listener is called, so that the gateway has to slow down through TCP. The events of the message
+ * which is handled at that time are still queued, so a large {@code system.multicall} is always admitted as a whole.
+ * The length of a message is limited, which bounds the events above the limit.
+ *
+ * @author agent - Initial contribution
+ */
+public class RpcEventDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(RpcEventDispatcher.class);
+
+    public static final int DEFAULT_PARTITIONS = 4;
+    public static final int DEFAULT_QUEUE_LIMIT = 500;
+
+    /** Maximum number of events a partition processes before it gives its thread back to the pool */
+    private static final int BATCH_SIZE = 256;
+    /** Minimum time between two reports of the backlogs */
+    private static final long REPORT_INTERVAL_IN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Executor executor;
+    private final Partition[] partitions;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private volatile Runnable drainListener;
+    private volatile boolean backlogged;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong backlogs = new AtomicLong();
+    private volatile int maxQueued;
+    private long reportedBacklogs;
+    private long lastReport = System.nanoTime() - REPORT_INTERVAL_IN_NANOS;
+
+    public RpcEventDispatcher(Executor executor) {
+        this(executor, DEFAULT_PARTITIONS, DEFAULT_QUEUE_LIMIT);
+    }
+
+    /**
+     * @param queueLimit The number of events in a partition from which on the dispatcher is backlogged
+     */
+    public RpcEventDispatcher(Executor executor, int partitionCount, int queueLimit) {
+        this.executor = executor;
+        highWatermark = Math.max(queueLimit, 1);
+        lowWatermark = queueLimit / 2;
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Sets the listener which is called when the dispatcher is no longer backlogged.
+     */
+    public void setDrainListener(Runnable drainListener) {
+        this.drainListener = drainListener;
+    }
+
+    /**
+     * Queues the task in the partition of the given device address. The task is queued even if the partition is over
+     * its limit, the receiver has to check {@link #isBacklogged()} before it reads the next message.
+     */
+    public void dispatch(String address, Runnable task) {
+        Partition partition = partitions[(address == null ? 0 : address.hashCode() & Integer.MAX_VALUE)
+                % partitions.length];
+        partition.queue.add(task);
+        dispatched.incrementAndGet();
+        int queued = partition.queue.size();
+        if (queued > maxQueued) {
+            maxQueued = queued;
+        }
+        if (queued >= highWatermark && !backlogged) {
+            backlogged = true;
+            backlogs.incrementAndGet();
+            logger.debug("Event queue is backlogged, pausing the gateway until events are processed");
+            reportBacklogs();
+        }
+        partition.schedule();
+    }
+
+    /**
+     * Reports the backlogs since the last report, at most once per interval. Called by the receiver only.
+     */
+    private void reportBacklogs() {
+        long now = System.nanoTime();
+        if (now - lastReport >= REPORT_INTERVAL_IN_NANOS) {
+            long count = backlogs.get();
+            logger.info("Paused the Homematic gateway {} times since the last report because of an event backlog, "
+                    + "max {} queued events", count - reportedBacklogs, maxQueued);
+            reportedBacklogs = count;
+            lastReport = now;
+        }
+    }
+
+    /**
+     * Returns true if the receiver should stop reading events until the drain listener is called.
+     */
+    public boolean isBacklogged() {
+        return backlogged;
+    }
+
+    /**
+     * Drops all queued events.
+     */
+    public void clear() {
+        for (Partition partition : partitions) {
+            partition.queue.clear();
+        }
+        backlogged = false;
+        logger.debug("Dispatched {} events, backlogged {} times, max {} queued events", getDispatchedCount(),
+                getBacklogCount(), getMaxQueued());
+    }
+
+    /**
+     * Returns the number of events which are waiting to be processed.
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Partition partition : partitions) {
+            queued += partition.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of dispatched events.
+     */
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    /**
+     * Returns how often the dispatcher became backlogged.
+     */
+    public long getBacklogCount() {
+        return backlogs.get();
+    }
+
+    /**
+     * Returns the maximum number of events which were queued in a single partition.
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Ends the backlog if all partitions are below the low watermark.
+     */
+    private void checkDrained() {
+        if (!backlogged) {
+            return;
+        }
+        for (Partition partition : partitions) {
+            if (partition.queue.size() > lowWatermark) {
+                return;
+            }
+        }
+        backlogged = false;
+        Runnable listener = drainListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * A queue of events which is processed by at most one thread at a time.
+     */
+    private class Partition implements Runnable {
+        private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    running.set(false);
+                    logger.warn("Can't process events: {}", ex.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Exception ex) {
+                    logger.error(ex.getMessage(), ex);
+                }
+            }
+            running.set(false);
+            checkDrained();
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
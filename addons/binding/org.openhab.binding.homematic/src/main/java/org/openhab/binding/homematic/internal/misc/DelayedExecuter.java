@@ -11,8 +11,9 @@ package org.openhab.binding.homematic.internal.misc;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
 import org.slf4j.Logger;
@@ -21,12 +22,27 @@ import org.slf4j.LoggerFactory;
 /**
  * Executes a callback method either immediately or after a given delay for a datapoint.
  *
+ * All delayed events share the given scheduler. If a new event for a datapoint arrives while one is still delayed,
+ * the new event replaces the pending one and the delay starts again. The pending task is not rescheduled for that,
+ * it is only moved when it fires before the new deadline. So a dimmer slider which sends many values only executes
+ * the last one and causes nearly no scheduler work.
+ *
  * @author Gerhard Riegler - Initial contribution
  */
 public class DelayedExecuter {
     private static final Logger logger = LoggerFactory.getLogger(DelayedExecuter.class);
 
-    private Map<HmDatapointInfo, Timer> delayedEvents = new HashMap<HmDatapointInfo, Timer>();
+    private final ScheduledExecutorService scheduler;
+    private Map<HmDatapointInfo, DelayedEvent> delayedEvents = new HashMap<HmDatapointInfo, DelayedEvent>();
+
+    private long executedCount;
+    private long suppressedCount;
+    private long totalLatency;
+    private long maxLatency;
+
+    public DelayedExecuter(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
 
     /**
      * Executes a callback method either immediately or after a given delay.
@@ -34,28 +50,27 @@ public class DelayedExecuter {
     public void start(final HmDatapointInfo dpInfo, final double delay, final DelayedExecuterCallback callback)
             throws IOException, HomematicClientException {
         if (delay > 0.0) {
-            synchronized (DelayedExecuter.class) {
-                logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
-
-                Timer timer = delayedEvents.get(dpInfo);
-                if (timer != null) {
-                    timer.cancel();
-                }
-
-                timer = new Timer();
-                delayedEvents.put(dpInfo, timer);
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        logger.debug("Executing delayed event for '{}'", dpInfo);
-                        delayedEvents.remove(dpInfo);
-                        try {
-                            callback.execute();
-                        } catch (Exception ex) {
-                            logger.error(ex.getMessage(), ex);
-                        }
+            long delayNanos = (long) (delay * TimeUnit.SECONDS.toNanos(1));
+            long now = System.nanoTime();
+            synchronized (this) {
+                DelayedEvent event = delayedEvents.get(dpInfo);
+                if (event != null) {
+                    logger.debug("Delaying event for {} seconds, replacing the pending event: '{}'", delay, dpInfo);
+                    event.callback = callback;
+                    event.suppressed++;
+                    suppressedCount++;
+                    boolean earlier = now + delayNanos - event.due < 0;
+                    event.due = now + delayNanos;
+                    if (!earlier) {
+                        return;
                     }
-                }, (long) (delay * 1000));
+                    event.future.cancel(false);
+                } else {
+                    logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
+                    event = new DelayedEvent(dpInfo, callback, now, now + delayNanos);
+                    delayedEvents.put(dpInfo, event);
+                }
+                event.future = scheduler.schedule(event, delayNanos, TimeUnit.NANOSECONDS);
             }
         } else {
             callback.execute();
@@ -65,11 +80,88 @@ public class DelayedExecuter {
     /**
      * Stops all delayed events.
      */
-    public void stop() {
-        for (Timer timer : delayedEvents.values()) {
-            timer.cancel();
+    public synchronized void stop() {
+        for (DelayedEvent event : delayedEvents.values()) {
+            event.future.cancel(false);
         }
         delayedEvents.clear();
+        logger.debug("Delayed events: {} executed, {} suppressed, average latency {} ms, max latency {} ms",
+                executedCount, suppressedCount, getAverageLatency(), getMaxLatency());
+    }
+
+    /**
+     * Returns the number of delayed events which have been executed.
+     */
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Returns the number of delayed events which have been replaced by a newer event for the same datapoint.
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * Returns the average time in milliseconds from the first event for a datapoint until an event was executed.
+     */
+    public synchronized long getAverageLatency() {
+        return executedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatency / executedCount);
+    }
+
+    /**
+     * Returns the maximum time in milliseconds from the first event for a datapoint until an event was executed.
+     */
+    public synchronized long getMaxLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency);
+    }
+
+    /**
+     * The pending event of a datapoint.
+     */
+    private class DelayedEvent implements Runnable {
+        private final HmDatapointInfo dpInfo;
+        private final long firstRequest;
+        private DelayedExecuterCallback callback;
+        private long due;
+        private int suppressed;
+        private ScheduledFuture<?> future;
+
+        public DelayedEvent(HmDatapointInfo dpInfo, DelayedExecuterCallback callback, long firstRequest, long due) {
+            this.dpInfo = dpInfo;
+            this.callback = callback;
+            this.firstRequest = firstRequest;
+            this.due = due;
+        }
+
+        @Override
+        public void run() {
+            long latency;
+            synchronized (DelayedExecuter.this) {
+                if (delayedEvents.get(dpInfo) != this) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (due - now > 0) {
+                    future = scheduler.schedule(this, due - now, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                delayedEvents.remove(dpInfo);
+                latency = now - firstRequest;
+                executedCount++;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+            }
+
+            logger.debug("Executing delayed event for '{}' after {} ms, {} events suppressed", dpInfo,
+                    TimeUnit.NANOSECONDS.toMillis(latency), suppressed);
+            try {
+                callback.execute();
+            } catch (Exception ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
     }
 
     /**
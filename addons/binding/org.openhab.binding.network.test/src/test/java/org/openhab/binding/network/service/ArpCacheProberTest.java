@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ArpCacheProber} against a fake neighbour table.
+ *
+ * @author agent - Initial contribution
+ */
+public class ArpCacheProberTest {
+    private static final String NEIGHBOURS = "192.168.0.1 dev eth0 lladdr 00:11:22:33:44:55 REACHABLE\n"
+            + "192.168.0.20 dev eth0  FAILED\n" + "192.168.0.21 dev wlan0 lladdr 66:77:88:99:aa:bb router DELAY\n"
+            + "192.168.0.22 dev eth0 lladdr 00:11:22:33:44:56 STALE\n" + "192.168.0.23 dev eth0  INCOMPLETE\n"
+            + "192.168.0.24 dev eth0 lladdr 00:11:22:33:44:57 PERMANENT\n"
+            + "127.0.0.1 dev lo lladdr 00:00:00:00:00:01 REACHABLE\n";
+
+    private File neighbours;
+
+    @Before
+    public void setUp() throws IOException {
+        neighbours = File.createTempFile("neigh", null);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(neighbours), StandardCharsets.US_ASCII)) {
+            writer.write(NEIGHBOURS);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        neighbours.delete();
+    }
+
+    @Test
+    public void readsOnlyConfirmedEntries() throws IOException {
+        Map<String, String> entries = newProber().readArpTable();
+
+        assertEquals(3, entries.size());
+        assertEquals("00:11:22:33:44:55", entries.get("192.168.0.1"));
+        assertEquals("66:77:88:99:aa:bb", entries.get("192.168.0.21"));
+        assertFalse("failed entry", entries.containsKey("192.168.0.20"));
+        assertFalse("stale entry", entries.containsKey("192.168.0.22"));
+        assertFalse("incomplete entry", entries.containsKey("192.168.0.23"));
+        assertFalse("static entry", entries.containsKey("192.168.0.24"));
+    }
+
+    @Test
+    public void looksUpAddresses() throws IOException {
+        ArpCacheProber prober = newProber();
+
+        assertTrue(prober.isInArpCache(InetAddress.getByName("192.168.0.1")));
+        assertFalse(prober.isInArpCache(InetAddress.getByName("192.168.0.22")));
+        assertFalse(prober.isInArpCache(InetAddress.getByName("192.168.0.99")));
+    }
+
+    @Test(expected = IOException.class)
+    public void doesNotStartWithoutProgram() throws IOException {
+        new ArpCacheProber(neighbours.getPath() + ".missing").start();
+    }
+
+    @Test
+    public void reportsProbeResultAfterTimeout() throws Exception {
+        ArpCacheProber prober = newProber();
+        prober.start();
+        try {
+            final CountDownLatch finished = new CountDownLatch(1);
+            final AtomicBoolean result = new AtomicBoolean();
+            prober.probe(InetAddress.getByName("127.0.0.1"), 0, 10, new ProbeListener() {
+                @Override
+                public void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos) {
+                    result.set(reachable);
+                    finished.countDown();
+                }
+            });
+
+            assertTrue("probe did not finish", finished.await(5, TimeUnit.SECONDS));
+            assertTrue(result.get());
+        } finally {
+            prober.stop();
+        }
+    }
+
+    private ArpCacheProber newProber() {
+        return new ArpCacheProber("cat", neighbours.getAbsolutePath());
+    }
+}
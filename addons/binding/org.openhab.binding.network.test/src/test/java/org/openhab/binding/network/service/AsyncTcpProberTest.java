@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AsyncTcpProber} against open and closed ports on the loopback interface.
+ *
+ * @author agent - Initial contribution
+ */
+public class AsyncTcpProberTest {
+    private AsyncTcpProber prober;
+    private InetAddress loopback;
+
+    @Before
+    public void setUp() throws IOException {
+        prober = new AsyncTcpProber("test-prober", 4, false);
+        prober.start();
+        loopback = InetAddress.getByName("127.0.0.1");
+    }
+
+    @After
+    public void tearDown() {
+        prober.stop();
+    }
+
+    @Test
+    public void openPortIsReachable() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, loopback)) {
+            assertTrue(probe(server.getLocalPort(), false));
+        }
+    }
+
+    @Test
+    public void closedPortIsNotReachable() throws Exception {
+        assertFalse(probe(closedPort(), false));
+    }
+
+    @Test
+    public void closedPortIsReachableForHostDiscovery() throws Exception {
+        assertTrue(probe(closedPort(), true));
+    }
+
+    private int closedPort() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, loopback)) {
+            return server.getLocalPort();
+        }
+    }
+
+    private boolean probe(int port, boolean refusedIsReachable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean result = new AtomicBoolean();
+        prober.probe(loopback, port, 2000, refusedIsReachable, new ProbeListener() {
+            @Override
+            public void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos) {
+                result.set(reachable);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link HelperProcessProber} with a shell script which prints the replies of {@code fping -l} for all
+ * targets except 10.0.0.2. Each start of the script appends its arguments to a file.
+ *
+ * @author agent - Initial contribution
+ */
+public class HelperProcessProberTest {
+    private static final String FAKE_FPING = "echo \"$@\" >> \"$0\"; while true; do for t in \"$@\"; do "
+            + "[ \"$t\" = 10.0.0.2 ] || echo \"$t : [0], 64 bytes, 0.50 ms (0.50 avg, 0% loss)\"; done; "
+            + "sleep 0.1; done";
+
+    private File starts;
+    private HelperProcessProber prober;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(SystemUtils.IS_OS_UNIX);
+        starts = File.createTempFile("fping", null);
+        prober = new HelperProcessProber("/bin/sh", "-c", FAKE_FPING, starts.getAbsolutePath());
+        prober.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (prober != null) {
+            prober.stop();
+            starts.delete();
+        }
+    }
+
+    @Test
+    public void repliesAndTimeoutsAreReported() throws Exception {
+        Map<String, Long> results = probe(500, "10.0.0.1", "10.0.0.2", "10.0.0.3");
+
+        assertEquals(Long.valueOf(500000), results.get("10.0.0.1"));
+        assertEquals(Long.valueOf(-1), results.get("10.0.0.2"));
+        assertEquals(Long.valueOf(500000), results.get("10.0.0.3"));
+    }
+
+    @Test
+    public void oneProcessServesAllProbes() throws Exception {
+        probe(500, "10.0.0.1", "10.0.0.3");
+        probe(500, "10.0.0.1", "10.0.0.3");
+        probe(500, "10.0.0.3");
+
+        assertEquals(1, Files.readAllLines(starts.toPath(), StandardCharsets.US_ASCII).size());
+    }
+
+    @Test
+    public void newTargetRestartsTheProcessOnce() throws Exception {
+        probe(500, "10.0.0.1");
+        probe(500, "10.0.0.1", "10.0.0.3", "10.0.0.4");
+
+        assertEquals(2, Files.readAllLines(starts.toPath(), StandardCharsets.US_ASCII).size());
+    }
+
+    @Test
+    public void periodIsHalfTheShortestInterval() throws Exception {
+        probe(500, 60000, "10.0.0.1");
+        probe(500, 10000, "10.0.0.3");
+
+        List<String> lines = Files.readAllLines(starts.toPath(), StandardCharsets.US_ASCII);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("-p 30000 "));
+        assertTrue(lines.get(1), lines.get(1).startsWith("-p 5000 "));
+    }
+
+    @Test
+    public void periodIsNotShorterThanTheMinimum() throws Exception {
+        probe(500, 100, "10.0.0.1");
+
+        List<String> lines = Files.readAllLines(starts.toPath(), StandardCharsets.US_ASCII);
+        assertEquals("-p " + HelperProcessProber.MIN_PERIOD_IN_MS + " 10.0.0.1", lines.get(0));
+    }
+
+    private Map<String, Long> probe(int timeout, String... addresses) throws Exception {
+        return probe(timeout, HelperProcessProber.MIN_PERIOD_IN_MS, addresses);
+    }
+
+    private Map<String, Long> probe(int timeout, long interval, String... addresses) throws Exception {
+        final Map<String, Long> results = new ConcurrentHashMap<>();
+        final CountDownLatch latch = new CountDownLatch(addresses.length);
+        for (String address : addresses) {
+            prober.probe(InetAddress.getByName(address), timeout, interval, new ProbeListener() {
+                @Override
+                public void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos) {
+                    results.put(address.getHostAddress(), latencyNanos);
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return results;
+    }
+}
@@ -40,6 +40,12 @@ public class NetworkBindingConstants {
     public final static String PARAMETER_REFRESH_INTERVAL = "refresh_interval";
     public final static String PARAMETER_USE_SYSTEM_PING = "use_system_ping";
 
+    // List of all discovery parameters
+    public final static String PARAMETER_PROBE_TIMEOUT = "probeTimeout";
+    public final static String PARAMETER_PROBE_RATE = "probeRate";
+    public final static String PARAMETER_MAX_CONCURRENT_PROBES = "maxConcurrentProbes";
+    public final static String PARAMETER_PROBE_PORTS = "probePorts";
+
     public final static Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.singleton(THING_TYPE_DEVICE);
 
 }
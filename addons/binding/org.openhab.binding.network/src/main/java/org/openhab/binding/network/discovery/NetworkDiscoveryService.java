@@ -10,18 +10,17 @@ package org.openhab.binding.network.discovery;
 
 import static org.openhab.binding.network.NetworkBindingConstants.*;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
 import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
 import org.eclipse.smarthome.core.thing.ThingUID;
+import org.openhab.binding.network.service.AsyncTcpProber;
 import org.openhab.binding.network.service.DiscoveryCallback;
 import org.openhab.binding.network.service.NetworkUtils;
 import org.slf4j.Logger;
@@ -31,58 +30,147 @@ import org.slf4j.LoggerFactory;
  * The {@link NetworkDiscoveryService} is responsible for discovering devices on
  * the current Network. It uses every Network Interface which is connected to a network.
  *
+ * The addresses are swept by non-blocking TCP connection attempts (see {@link AsyncTcpProber}). A device is found
+ * if it either accepts or refuses a connection on one of the probed ports. Results are reported as they arrive.
+ *
  * @author Marc Mettke - Initial contribution
  */
 public class NetworkDiscoveryService extends AbstractDiscoveryService implements DiscoveryCallback {
     private final Logger logger = LoggerFactory.getLogger(NetworkDiscoveryService.class);
-    private ExecutorService executorService = null;
-    final static int PING_TIMEOUT_IN_MS = 500;
-    private int scanningNetworkSize = 0;
+
+    final static int DEFAULT_PROBE_TIMEOUT_IN_MS = 500;
+    final static int DEFAULT_PROBE_RATE = 2000;
+    final static int DEFAULT_MAX_CONCURRENT_PROBES = 1000;
+    final static int[] DEFAULT_PROBE_PORTS = { 80, 443, 22, 445, 554 };
+
+    private int probeTimeout = DEFAULT_PROBE_TIMEOUT_IN_MS;
+    private int probeRate = DEFAULT_PROBE_RATE;
+    private int maxConcurrentProbes = DEFAULT_MAX_CONCURRENT_PROBES;
+    private int[] probePorts = DEFAULT_PROBE_PORTS;
+
+    private AsyncTcpProber prober = null;
+    private SubnetSweep sweep = null;
 
     public NetworkDiscoveryService() {
         super(SUPPORTED_THING_TYPES_UIDS, 900, false);
     }
 
+    @Override
+    protected void activate(Map<String, Object> configProperties) {
+        super.activate(configProperties);
+        applyConfig(configProperties);
+    }
+
+    @Override
+    protected void modified(Map<String, Object> configProperties) {
+        super.modified(configProperties);
+        applyConfig(configProperties);
+    }
+
+    @Override
+    protected void deactivate() {
+        stopScan();
+        super.deactivate();
+    }
+
+    private void applyConfig(Map<String, Object> configProperties) {
+        if (configProperties == null) {
+            return;
+        }
+        probeTimeout = confValueToInt(configProperties.get(PARAMETER_PROBE_TIMEOUT), DEFAULT_PROBE_TIMEOUT_IN_MS);
+        probeRate = confValueToInt(configProperties.get(PARAMETER_PROBE_RATE), DEFAULT_PROBE_RATE);
+        maxConcurrentProbes = confValueToInt(configProperties.get(PARAMETER_MAX_CONCURRENT_PROBES),
+                DEFAULT_MAX_CONCURRENT_PROBES);
+
+        probePorts = DEFAULT_PROBE_PORTS;
+        Object value = configProperties.get(PARAMETER_PROBE_PORTS);
+        if (value != null) {
+            try {
+                String[] parts = String.valueOf(value).split(",");
+                int[] ports = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    ports[i] = Integer.parseInt(parts[i].trim());
+                }
+                probePorts = ports;
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid probe ports '{}', using the defaults", value);
+            }
+        }
+    }
+
+    private int confValueToInt(Object value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = value instanceof Number ? ((Number) value).intValue()
+                    : Integer.parseInt(String.valueOf(value).trim());
+            return result > 0 ? result : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
-     * Starts the DiscoveryThread for each IP on each interface on the network
-     *
+     * Starts sweeping each IP on each interface on the network. Returns immediately, devices are reported
+     * while the sweep is running.
      */
     @Override
-    protected void startScan() {
-        if (executorService != null) {
-            stopScan();
+    protected synchronized void startScan() {
+        if (sweep != null) {
+            stopSweep();
         }
 
-        logger.debug("Starting Discovery");
         LinkedHashSet<String> networkIPs = NetworkUtils.getNetworkIPs(NetworkUtils.getInterfaceIPs());
-        scanningNetworkSize = networkIPs.size();
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 10);
+        logger.debug("Starting Discovery of {} addresses on ports {}", networkIPs.size(),
+                Arrays.toString(probePorts));
 
-        for (Iterator<String> it = networkIPs.iterator(); it.hasNext();) {
-            final String ip = it.next();
-            executorService.execute(new PingRunnable(ip, this));
+        prober = new AsyncTcpProber("network-discovery", maxConcurrentProbes, true);
+        try {
+            prober.start();
+        } catch (IOException e) {
+            logger.warn("Cannot start network discovery: {}", e.getMessage());
+            prober = null;
+            super.stopScan();
+            return;
         }
-        stopScan();
+
+        int maxHostsInFlight = Math.max(1, maxConcurrentProbes / probePorts.length);
+        sweep = new SubnetSweep(networkIPs.iterator(), probePorts, probeTimeout, probeRate, maxHostsInFlight, prober,
+                this);
+        sweep.start(scheduler);
     }
 
     @Override
     protected synchronized void stopScan() {
         super.stopScan();
-        if (executorService == null) {
-            return;
-        }
+        stopSweep();
+    }
 
-        try {
-            executorService.awaitTermination(PING_TIMEOUT_IN_MS * scanningNetworkSize, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
+    private void stopSweep() {
+        if (sweep != null) {
+            sweep.cancel();
+            sweep = null;
         }
-        executorService.shutdown();
-        executorService = null;
+        if (prober != null) {
+            prober.stop();
+            prober = null;
+        }
+    }
 
+    /**
+     * Called by the {@link SubnetSweep} after the last probe has finished.
+     */
+    synchronized void sweepFinished(SubnetSweep finishedSweep) {
+        if (finishedSweep != sweep) {
+            return;
+        }
+        logger.debug("Discovery finished");
+        stopScan();
     }
 
     /**
-     * Submit newly discovered devices. This method is called by the spawned threads in {@link startScan}.
+     * Submit newly discovered devices. This method is called by the {@link SubnetSweep} as soon as a device answers.
      *
      * @param ip The device IP, received by the
      */
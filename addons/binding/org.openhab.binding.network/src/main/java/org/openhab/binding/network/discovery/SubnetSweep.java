@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.discovery;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.binding.network.service.AsyncTcpProber;
+import org.openhab.binding.network.service.ProbeListener;
+
+/**
+ * Feeds the addresses of a subnet into an {@link AsyncTcpProber} and is used by the {@see NetworkDiscoveryService}.
+ *
+ * Every address is probed on all configured ports at once and reported as soon as the first port answers.
+ * The feeder runs as a short periodic task: On each tick it hands out as many new hosts as the configured probe
+ * rate allows, but never more than {@code maxHostsInFlight} hosts are probed at the same time. The sweep has
+ * finished if all addresses have been handed out and every probe has either answered or hit its deadline.
+ *
+ * @author agent - Initial contribution
+ */
+class SubnetSweep implements Runnable {
+    static final int TICK_IN_MS = 20;
+
+    private final Iterator<String> addresses;
+    private final int[] ports;
+    private final int probeTimeout;
+    private final int probeRate;
+    private final int maxHostsInFlight;
+    private final AsyncTcpProber prober;
+    private final NetworkDiscoveryService service;
+
+    private final AtomicInteger hostsInFlight = new AtomicInteger();
+    private ScheduledFuture<?> feederJob;
+    private long lastTick;
+    private double credit;
+    private volatile boolean finished;
+
+    /**
+     * Probe state of a single host. Only accessed by the prober thread.
+     */
+    private class HostProbe implements ProbeListener {
+        final String ip;
+        int remaining = ports.length;
+        boolean reported = false;
+
+        HostProbe(String ip) {
+            this.ip = ip;
+        }
+
+        @Override
+        public void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos) {
+            if (reachable && !reported) {
+                reported = true;
+                service.newDevice(ip);
+            }
+            if (--remaining == 0) {
+                hostsInFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param addresses The IPv4 addresses to probe
+     * @param ports The TCP ports which are probed on every address
+     * @param probeTimeout The deadline of a single probe in milliseconds
+     * @param probeRate The maximum number of hosts per second for which probing is started
+     * @param maxHostsInFlight The maximum number of hosts which are probed at the same time
+     * @param prober A running prober
+     * @param service Receives the found devices and is notified if the sweep has finished
+     */
+    public SubnetSweep(Iterator<String> addresses, int[] ports, int probeTimeout, int probeRate,
+            int maxHostsInFlight, AsyncTcpProber prober, NetworkDiscoveryService service) {
+        this.addresses = addresses;
+        this.ports = ports;
+        this.probeTimeout = probeTimeout;
+        this.probeRate = probeRate;
+        this.maxHostsInFlight = maxHostsInFlight;
+        this.prober = prober;
+        this.service = service;
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        lastTick = System.nanoTime();
+        credit = 1;
+        feederJob = scheduler.scheduleWithFixedDelay(this, 0, TICK_IN_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void cancel() {
+        finished = true;
+        if (feederJob != null) {
+            feederJob.cancel(false);
+            feederJob = null;
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            // Unused credit is capped to one tick, so that a stalled scheduler does not lead to a burst
+            credit = Math.min(credit + (now - lastTick) * probeRate / 1e9,
+                    Math.max(1, probeRate * TICK_IN_MS / 1000.0));
+            lastTick = now;
+
+            while (credit >= 1 && hostsInFlight.get() < maxHostsInFlight && addresses.hasNext()) {
+                String ip = addresses.next();
+                InetAddress address;
+                try {
+                    address = InetAddress.getByName(ip);
+                } catch (UnknownHostException e) {
+                    continue;
+                }
+                credit--;
+                hostsInFlight.incrementAndGet();
+                HostProbe hostProbe = new HostProbe(ip);
+                for (int port : ports) {
+                    prober.probe(address, port, probeTimeout, hostProbe);
+                }
+            }
+
+            if (addresses.hasNext() || hostsInFlight.get() > 0) {
+                return;
+            }
+            cancel();
+        }
+        service.sweepFinished(this);
+    }
+}
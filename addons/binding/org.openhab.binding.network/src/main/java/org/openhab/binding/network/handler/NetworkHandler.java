@@ -20,7 +20,6 @@ import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
-import org.openhab.binding.network.service.InvalidConfigurationException;
 import org.openhab.binding.network.service.NetworkService;
 import org.openhab.binding.network.service.StateUpdate;
 import org.slf4j.Logger;
@@ -50,20 +49,9 @@ public class NetworkHandler extends BaseThingHandler implements StateUpdate {
         if (command instanceof RefreshType) {
             switch (channelUID.getId()) {
                 case CHANNEL_ONLINE:
-                    try {
-                        State state = networkService.updateDeviceState() < 0 ? OnOffType.OFF : OnOffType.ON;
-                        updateState(CHANNEL_ONLINE, state);
-                    } catch (InvalidConfigurationException invalidConfigurationException) {
-                        updateStatus(ThingStatus.OFFLINE);
-                    }
-                    break;
                 case CHANNEL_TIME:
-                    try {
-                        State state = new DecimalType(networkService.updateDeviceState());
-                        updateState(CHANNEL_TIME, state);
-                    } catch (InvalidConfigurationException invalidConfigurationException) {
-                        updateStatus(ThingStatus.OFFLINE);
-                    }
+                    // the result is reported by newState()
+                    networkService.refresh();
                     break;
                 default:
                     logger.debug("Command received for an unknown channel: {}", channelUID.getId());
@@ -138,7 +126,7 @@ public class NetworkHandler extends BaseThingHandler implements StateUpdate {
             networkService.setUseSystemPing(confValueToBoolean(value));
         }
 
-        networkService.startAutomaticRefresh(scheduler, this);
+        networkService.startAutomaticRefresh(this);
     }
 
 }
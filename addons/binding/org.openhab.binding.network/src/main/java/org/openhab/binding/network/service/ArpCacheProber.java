@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Prober} for hosts in the local network which uses the ARP cache of the kernel. A probe sends a single
+ * UDP datagram to the discard port of the host. This makes the kernel resolve the hardware address of the host, or
+ * verify a cached one. After the timeout the neighbour table is read with {@code ip neigh}: The host is reachable if
+ * its entry has a hardware address and is in the state REACHABLE, or in the state DELAY, in which the kernel has just
+ * used the entry and waits for a confirmation. STALE entries are only remembered addresses and are not counted.
+ * Devices like phones often drop all packets on closed ports, but they always answer ARP requests.
+ *
+ * No time information is available, so reachable hosts are reported with a latency of 0.
+ *
+ * @author agent - Initial contribution
+ */
+public class ArpCacheProber implements Prober {
+    private final Logger logger = LoggerFactory.getLogger(ArpCacheProber.class);
+
+    static final String[] IP_NEIGH = { "ip", "-4", "neigh", "show" };
+    /** States of neighbour entries which were confirmed recently, see ip-neighbour(8) */
+    static final List<String> REACHABLE_STATES = Arrays.asList("REACHABLE", "DELAY");
+    static final int DISCARD_PORT = 9;
+    /** Probes which finish at nearly the same time share one read of the table */
+    static final long MAX_TABLE_AGE_IN_MS = 200;
+
+    private final List<String> command;
+    private Map<String, String> entries = Collections.emptyMap();
+    private long entriesRead = 0;
+    private DatagramChannel trigger;
+    private ScheduledExecutorService checker;
+
+    /**
+     * Creates a prober for the neighbour table of the linux kernel.
+     */
+    public ArpCacheProber() {
+        this(IP_NEIGH);
+    }
+
+    /**
+     * @param command The command line of a program which prints the neighbour table in the format of {@code ip neigh}
+     */
+    public ArpCacheProber(String... command) {
+        this.command = Arrays.asList(command);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (checker != null) {
+            return;
+        }
+        if (!NetworkUtils.isExecutable(command.get(0))) {
+            throw new IOException(command.get(0) + " is not installed");
+        }
+        trigger = DatagramChannel.open();
+        trigger.configureBlocking(false);
+        checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "network-arp-prober");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (checker != null) {
+            checker.shutdownNow();
+            checker = null;
+        }
+        if (trigger != null) {
+            try {
+                trigger.close();
+            } catch (IOException e) {
+            }
+            trigger = null;
+        }
+    }
+
+    @Override
+    public synchronized void probe(final InetAddress address, int port, int timeout, final ProbeListener listener) {
+        if (checker == null) {
+            listener.probeFinished(address, 0, false, -1);
+            return;
+        }
+        try {
+            trigger.send(ByteBuffer.wrap(new byte[1]), new InetSocketAddress(address, DISCARD_PORT));
+        } catch (IOException e) {
+            // The table is checked anyway, an existing entry still tells something
+            logger.trace("Cannot send ARP trigger to {}: {}", address, e.getMessage());
+        }
+        checker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean reachable = isInArpCache(address);
+                listener.probeFinished(address, 0, reachable, reachable ? 0 : -1);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return True if the ARP table contains a recently confirmed entry with a hardware address for the given address
+     */
+    public synchronized boolean isInArpCache(InetAddress address) {
+        long now = System.currentTimeMillis();
+        if (now - entriesRead > MAX_TABLE_AGE_IN_MS) {
+            try {
+                entries = readArpTable();
+            } catch (IOException e) {
+                logger.debug("Cannot read ARP table: {}", e.getMessage());
+                entries = Collections.emptyMap();
+            }
+            entriesRead = now;
+        }
+        return entries.containsKey(address.getHostAddress());
+    }
+
+    /**
+     * Reads all recently confirmed entries of the ARP table. A line of {@code ip neigh} looks like
+     * {@code 192.168.0.1 dev eth0 lladdr 00:11:22:33:44:55 REACHABLE}.
+     *
+     * @return The hardware address for each IP address
+     */
+    Map<String, String> readArpTable() throws IOException {
+        Map<String, String> result = new HashMap<>();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII))) {
+            process.getOutputStream().close();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length < 2 || !REACHABLE_STATES.contains(columns[columns.length - 1])) {
+                    continue;
+                }
+                for (int i = 1; i < columns.length - 2; i++) {
+                    if ("lladdr".equals(columns[i])) {
+                        result.put(columns[0], columns[i + 1]);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            process.destroy();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking TCP connect prober. All probes are multiplexed on a single {@link Selector} which is
+ * served by one thread, so thousands of connection attempts can be in flight at the same time.
+ *
+ * A probe is successful if the connection is established. For host discovery, where only the presence
+ * of the host matters and not the service behind the port, an actively refused connection (TCP RST) can
+ * be regarded as successful as well, because it proves that the host is up. A probe that neither
+ * connects nor gets refused before its deadline is reported as unreachable.
+ *
+ * At most {@code maxInFlight} sockets are open at the same time, further probes are queued and started
+ * as soon as earlier ones have finished. Listener callbacks are executed on the selector thread and
+ * must therefore return quickly.
+ *
+ * @author agent - Initial contribution
+ */
+public class AsyncTcpProber implements Prober {
+    private final Logger logger = LoggerFactory.getLogger(AsyncTcpProber.class);
+
+    private static class Probe implements Comparable<Probe> {
+        final InetSocketAddress target;
+        final int timeout;
+        final boolean refusedIsReachable;
+        final ProbeListener listener;
+        long started;
+        long deadline;
+        SocketChannel channel;
+        boolean finished;
+
+        Probe(InetSocketAddress target, int timeout, boolean refusedIsReachable, ProbeListener listener) {
+            this.target = target;
+            this.timeout = timeout;
+            this.refusedIsReachable = refusedIsReachable;
+            this.listener = listener;
+        }
+
+        @Override
+        public int compareTo(Probe o) {
+            return Long.compare(deadline, o.deadline);
+        }
+    }
+
+    private final String name;
+    private final int maxInFlight;
+    private final boolean refusedIsReachable;
+    private final Queue<Probe> submitted = new ConcurrentLinkedQueue<>();
+    private final Queue<Probe> pending = new ArrayDeque<>();
+    private final PriorityQueue<Probe> deadlines = new PriorityQueue<>();
+    private volatile Selector selector;
+    private volatile Thread thread;
+    private int inFlight = 0;
+
+    /**
+     * @param name The name of the selector thread
+     * @param maxInFlight The maximum number of simultaneously open connection attempts
+     * @param refusedIsReachable True if a refused connection is reported as reachable by
+     *            {@link #probe(InetAddress, int, int, ProbeListener)}
+     */
+    public AsyncTcpProber(String name, int maxInFlight, boolean refusedIsReachable) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.refusedIsReachable = refusedIsReachable;
+    }
+
+    /**
+     * Opens the selector and starts the prober thread. Does nothing if the prober is already running.
+     */
+    @Override
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        selector = Selector.open();
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                selectLoop();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the prober thread. Probes that have not finished yet are silently dropped.
+     */
+    @Override
+    public synchronized void stop() {
+        Thread t = thread;
+        if (t == null) {
+            return;
+        }
+        thread = null;
+        selector.wakeup();
+        try {
+            t.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Queues a connection attempt. This method is thread safe and never blocks.
+     *
+     * @param address The address to probe
+     * @param port The TCP port to connect to
+     * @param timeout The deadline of the probe in milliseconds, counted from the moment the connection attempt
+     *            actually starts
+     * @param listener Receives the result on the prober thread
+     */
+    @Override
+    public void probe(InetAddress address, int port, int timeout, ProbeListener listener) {
+        probe(address, port, timeout, refusedIsReachable, listener);
+    }
+
+    /**
+     * Queues a connection attempt. This method is thread safe and never blocks.
+     *
+     * @param address The address to probe
+     * @param port The TCP port to connect to
+     * @param timeout The deadline of the probe in milliseconds, counted from the moment the connection attempt
+     *            actually starts
+     * @param refusedIsReachable True if a refused connection is reported as reachable
+     * @param listener Receives the result on the prober thread
+     */
+    public void probe(InetAddress address, int port, int timeout, boolean refusedIsReachable,
+            ProbeListener listener) {
+        submitted.add(new Probe(new InetSocketAddress(address, port), timeout, refusedIsReachable, listener));
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    /**
+     * @return The number of probes that are queued but not yet finished
+     */
+    public int getBacklog() {
+        return submitted.size() + pending.size() + inFlight;
+    }
+
+    private void selectLoop() {
+        try {
+            while (thread != null) {
+                Probe probe;
+                while ((probe = submitted.poll()) != null) {
+                    pending.add(probe);
+                }
+                while (inFlight < maxInFlight && (probe = pending.poll()) != null) {
+                    connect(probe);
+                }
+
+                long timeout = 0;
+                Probe next = deadlines.peek();
+                if (next != null) {
+                    timeout = Math.max(1, (next.deadline - System.nanoTime()) / 1000000);
+                }
+                selector.select(timeout);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    finishConnect((Probe) key.attachment());
+                }
+
+                long now = System.nanoTime();
+                while ((next = deadlines.peek()) != null && next.deadline - now <= 0) {
+                    deadlines.poll();
+                    finish(next, false, now);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Prober '{}' stopped: {}", name, e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(((Probe) key.attachment()).channel);
+            }
+            closeQuietly(selector);
+            deadlines.clear();
+            pending.clear();
+            submitted.clear();
+            inFlight = 0;
+        }
+    }
+
+    private void connect(Probe probe) {
+        probe.started = System.nanoTime();
+        probe.deadline = probe.started + probe.timeout * 1000000L;
+        inFlight++;
+        try {
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+            if (probe.channel.connect(probe.target)) {
+                finish(probe, true, System.nanoTime());
+                return;
+            }
+            probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            deadlines.add(probe);
+        } catch (ConnectException e) {
+            finish(probe, probe.refusedIsReachable, System.nanoTime());
+        } catch (IOException e) {
+            // no route to host, network unreachable, ...
+            finish(probe, false, System.nanoTime());
+        }
+    }
+
+    private void finishConnect(Probe probe) {
+        boolean reachable;
+        try {
+            reachable = probe.channel.finishConnect();
+        } catch (ConnectException e) {
+            reachable = probe.refusedIsReachable;
+        } catch (IOException e) {
+            reachable = false;
+        }
+        // the deadline entry is dropped lazily once it expires
+        finish(probe, reachable, System.nanoTime());
+    }
+
+    private void finish(Probe probe, boolean reachable, long now) {
+        if (probe.finished) {
+            return;
+        }
+        probe.finished = true;
+        inFlight--;
+        closeQuietly(probe.channel);
+        try {
+            probe.listener.probeFinished(probe.target.getAddress(), probe.target.getPort(), reachable,
+                    reachable ? now - probe.started : -1);
+        } catch (RuntimeException e) {
+            logger.warn("Probe listener failed for {}", probe.target, e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+        }
+    }
+}
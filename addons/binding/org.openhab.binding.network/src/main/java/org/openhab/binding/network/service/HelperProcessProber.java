@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Prober} which sends the system pings through one long-lived {@code fping} process in loop mode, instead of
+ * starting a new ping process for every probe. {@code fping -l} pings all of its targets once per period and writes a
+ * line for each reply, so there is exactly one helper process, no matter how many probes are sent. The period is half
+ * the shortest refresh interval of the targets, so each probe is answered within half of its interval, but it is at
+ * least {@value #MIN_PERIOD_IN_MS} ms.
+ *
+ * A probe is answered by the first reply of its address which arrives after the probe was queued. If no reply arrives
+ * within the timeout of the probe plus one period, the host is reported as unreachable. The targets of {@code fping}
+ * are fixed at its start, so the process has to be restarted if an address is probed for the first time, or if an
+ * address has not been probed for {@value #TARGET_IDLE_IN_MS} ms. Such changes are collected for
+ * {@value #TARGET_BATCH_IN_MS} ms and applied with a single restart, the probes of new addresses wait for it.
+ *
+ * @author agent - Initial contribution
+ */
+public class HelperProcessProber implements Prober {
+    private final Logger logger = LoggerFactory.getLogger(HelperProcessProber.class);
+
+    static final String FPING = "fping";
+    /** Shortest interval in which each target is pinged by fping */
+    static final long MIN_PERIOD_IN_MS = 1000;
+    static final long TARGET_IDLE_IN_MS = 10 * 60 * 1000;
+    /** Time in which changes of the targets are collected before the helper is restarted */
+    static final long TARGET_BATCH_IN_MS = 2000;
+    static final int REAPER_INTERVAL_IN_MS = 100;
+    /** Minimum time before the helper is started again, after it terminated on its own */
+    static final long RESTART_BACKOFF_IN_MS = 5000;
+
+    /** A reply of fping in loop mode: {@code 192.168.0.1 : [3], 64 bytes, 0.42 ms (0.40 avg, 0% loss)} */
+    private static final Pattern REPLY = Pattern.compile("^(\\S+)\\s*:\\s*\\[\\d+\\],\\s*\\d+ bytes,\\s*([0-9.]+) ms");
+
+    private static class Pending {
+        final InetAddress address;
+        final int timeout;
+        final ProbeListener listener;
+        long deadline;
+
+        Pending(InetAddress address, int timeout, ProbeListener listener, long deadline) {
+            this.address = address;
+            this.timeout = timeout;
+            this.listener = listener;
+            this.deadline = deadline;
+        }
+    }
+
+    private static class Target {
+        long interval;
+        long lastProbe;
+
+        Target(long interval, long lastProbe) {
+            this.interval = interval;
+            this.lastProbe = lastProbe;
+        }
+    }
+
+    private final List<String> command;
+    /** The pending probes by address, guarded by this */
+    private final Map<String, List<Pending>> pending = new HashMap<>();
+    /** The probed targets with their refresh interval and the time they were probed the last time, guarded by this */
+    private final Map<String, Target> targets = new HashMap<>();
+    /** The targets of the last start of the helper, guarded by this */
+    private Set<String> processTargets = Collections.emptySet();
+    private long period = MIN_PERIOD_IN_MS;
+    private Process process;
+    private boolean restartNeeded;
+    private long nextStart;
+    private ScheduledExecutorService reaper;
+
+    /**
+     * Creates a prober which uses {@code fping} from the search path.
+     */
+    public HelperProcessProber() {
+        this(FPING, "-l");
+    }
+
+    /**
+     * @param command The command line of the helper process without the period and the targets, which are appended
+     */
+    public HelperProcessProber(String... command) {
+        this.command = Arrays.asList(command);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (reaper != null) {
+            return;
+        }
+        if (!SystemUtils.IS_OS_UNIX) {
+            throw new IOException("The ping helper process is only supported on unix systems");
+        }
+        if (!NetworkUtils.isExecutable(command.get(0))) {
+            throw new IOException(command.get(0) + " is not installed");
+        }
+        nextStart = System.nanoTime();
+        reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "network-ping-helper-reaper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reap();
+            }
+        }, REAPER_INTERVAL_IN_MS, REAPER_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+            reaper = null;
+        }
+        stopProcess();
+        pending.clear();
+        targets.clear();
+        processTargets = Collections.emptySet();
+    }
+
+    /**
+     * Queues a probe of a target which is pinged every {@value #MIN_PERIOD_IN_MS} ms.
+     */
+    @Override
+    public void probe(InetAddress address, int port, int timeout, ProbeListener listener) {
+        probe(address, timeout, MIN_PERIOD_IN_MS, listener);
+    }
+
+    /**
+     * Queues a probe.
+     *
+     * @param address The address to probe
+     * @param timeout The deadline of the probe in milliseconds, the helper needs up to one period more
+     * @param interval The interval in which the address is probed, the helper pings it twice as often
+     * @param listener Receives the result on a thread of the prober
+     */
+    public void probe(InetAddress address, int timeout, long interval, ProbeListener listener) {
+        String target = address.getHostAddress();
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (reaper != null) {
+                List<Pending> probes = pending.get(target);
+                if (probes == null) {
+                    probes = new ArrayList<>();
+                    pending.put(target, probes);
+                }
+                probes.add(new Pending(address, timeout, listener, now + (timeout + period) * 1000000L));
+                Target known = targets.get(target);
+                if (known == null) {
+                    targets.put(target, new Target(interval, now));
+                    targetsChanged(now);
+                } else {
+                    known.lastProbe = now;
+                    if (known.interval != interval) {
+                        known.interval = interval;
+                        targetsChanged(now);
+                    }
+                }
+                return;
+            }
+        }
+        listener.probeFinished(address, 0, false, -1);
+    }
+
+    /**
+     * Schedules a restart of the helper, unless one is already scheduled. Called with the lock held.
+     */
+    private void targetsChanged(long now) {
+        if (!restartNeeded) {
+            restartNeeded = true;
+            long batchEnd = now + TARGET_BATCH_IN_MS * 1000000L;
+            if (batchEnd - nextStart > 0) {
+                nextStart = batchEnd;
+            }
+        }
+    }
+
+    /**
+     * Restarts the helper if its targets changed and reports the probes which have not been answered in time.
+     */
+    private void reap() {
+        List<Pending> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<Map.Entry<String, Target>> it = targets.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, Target> entry = it.next();
+                if (now - entry.getValue().lastProbe > TARGET_IDLE_IN_MS * 1000000L
+                        && !pending.containsKey(entry.getKey())) {
+                    it.remove();
+                    targetsChanged(now);
+                }
+            }
+            if (restartNeeded && now - nextStart >= 0) {
+                restartProcess(now);
+            }
+
+            for (Iterator<Map.Entry<String, List<Pending>>> it = pending.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, List<Pending>> entry = it.next();
+                if (!processTargets.contains(entry.getKey())) {
+                    // the probes of a new target wait for the restart
+                    continue;
+                }
+                List<Pending> probes = entry.getValue();
+                for (Iterator<Pending> probeIt = probes.iterator(); probeIt.hasNext();) {
+                    Pending probe = probeIt.next();
+                    if (probe.deadline - now <= 0) {
+                        probeIt.remove();
+                        expired.add(probe);
+                    }
+                }
+                if (probes.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        for (Pending probe : expired) {
+            probe.listener.probeFinished(probe.address, 0, false, -1);
+        }
+    }
+
+    private void restartProcess(long now) {
+        stopProcess();
+        restartNeeded = false;
+        processTargets = new HashSet<>(targets.keySet());
+        if (targets.isEmpty()) {
+            return;
+        }
+        period = Long.MAX_VALUE;
+        for (Target target : targets.values()) {
+            period = Math.min(period, Math.max(MIN_PERIOD_IN_MS, target.interval / 2));
+        }
+        // the pending probes are answered from the first round of the new helper
+        for (List<Pending> probes : pending.values()) {
+            for (Pending probe : probes) {
+                probe.deadline = Math.max(probe.deadline, now + (probe.timeout + period) * 1000000L);
+            }
+        }
+
+        List<String> commandLine = new ArrayList<>(command);
+        commandLine.add("-p");
+        commandLine.add(String.valueOf(period));
+        commandLine.addAll(processTargets);
+        try {
+            final Process p = new ProcessBuilder(commandLine).redirectErrorStream(true).start();
+            p.getOutputStream().close();
+            process = p;
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readAnswers(p);
+                }
+            }, "network-ping-helper");
+            reader.setDaemon(true);
+            reader.start();
+            logger.debug("Started ping helper process for {} targets every {} ms", targets.size(), period);
+        } catch (IOException e) {
+            logger.debug("Ping helper process is not available: {}", e.getMessage());
+            restartNeeded = true;
+            nextStart = System.nanoTime() + RESTART_BACKOFF_IN_MS * 1000000L;
+        }
+    }
+
+    private void stopProcess() {
+        if (process != null) {
+            process.destroy();
+            process = null;
+        }
+    }
+
+    private void readAnswers(Process p) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(p.getInputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = REPLY.matcher(line);
+                if (!matcher.find()) {
+                    logger.trace("Ignoring output of the ping helper: {}", line);
+                    continue;
+                }
+                List<Pending> answered;
+                synchronized (this) {
+                    answered = pending.remove(matcher.group(1));
+                }
+                if (answered != null) {
+                    long latency = (long) (Double.parseDouble(matcher.group(2)) * 1000000);
+                    for (Pending probe : answered) {
+                        probe.listener.probeFinished(probe.address, 0, true, latency);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Reading from the ping helper process failed: {}", e.getMessage());
+        }
+
+        synchronized (this) {
+            if (process == p) {
+                logger.debug("Ping helper process terminated");
+                process = null;
+                restartNeeded = true;
+                nextStart = System.nanoTime() + RESTART_BACKOFF_IN_MS * 1000000L;
+            }
+        }
+    }
+}
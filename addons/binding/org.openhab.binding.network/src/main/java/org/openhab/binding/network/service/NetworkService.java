@@ -13,9 +13,6 @@ import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.model.script.actions.Ping;
 import org.openhab.binding.network.service.dhcp.ReceiveDHCPRequestPackets;
@@ -32,7 +29,7 @@ public class NetworkService {
 
     private static Logger logger = LoggerFactory.getLogger(NetworkService.class);
 
-    private ScheduledFuture<?> refreshJob;
+    private ProbedHost probedHost;
 
     private String hostname;
     private int port;
@@ -110,20 +107,17 @@ public class NetworkService {
         this.useSystemPing = useSystemPing;
     }
 
-    public void startAutomaticRefresh(ScheduledExecutorService scheduledExecutorService,
-            final StateUpdate stateUpdate) {
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    stateUpdate.newState(updateDeviceState());
-                } catch (InvalidConfigurationException e) {
-                    stateUpdate.invalidConfig();
-                }
-            }
-        };
-
-        refreshJob = scheduledExecutorService.scheduleAtFixedRate(runnable, 0, refreshInterval, TimeUnit.MILLISECONDS);
+    /**
+     * Registers this device at the {@link PresenceProbeScheduler}, which probes it every refresh interval and reports
+     * the results to the given {@link StateUpdate}.
+     */
+    public void startAutomaticRefresh(final StateUpdate stateUpdate) {
+        try {
+            probedHost = PresenceProbeScheduler.register(hostname, port, retry, timeout, refreshInterval,
+                    useSystemPing, stateUpdate);
+        } catch (IOException e) {
+            logger.error("Cannot start the presence prober: " + e.getMessage());
+        }
 
         if (dhcplisten) {
             try {
@@ -135,13 +129,26 @@ public class NetworkService {
     }
 
     public void stopAutomaticRefresh() {
-        refreshJob.cancel(true);
+        if (probedHost != null) {
+            PresenceProbeScheduler.unregister(probedHost);
+            probedHost = null;
+        }
         try {
             ReceiveDHCPRequestPackets.unregister(InetAddress.getByName(hostname).getHostAddress());
         } catch (UnknownHostException e) {
         }
     }
 
+    /**
+     * Probes the device as soon as possible. The result is reported asynchronously to the {@link StateUpdate}
+     * given to {@link #startAutomaticRefresh(StateUpdate)}.
+     */
+    public void refresh() {
+        if (probedHost != null) {
+            PresenceProbeScheduler.refresh(probedHost);
+        }
+    }
+
     /**
      * Updates one device to a new status
      */
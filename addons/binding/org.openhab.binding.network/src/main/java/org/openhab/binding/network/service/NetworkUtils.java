@@ -8,6 +8,7 @@
  */
 package org.openhab.binding.network.service;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -167,4 +168,22 @@ public class NetworkUtils {
         return exitValue == 0;
     }
 
+    /**
+     * @return True if the program is an executable file, or if it is found in the search path
+     */
+    static boolean isExecutable(String program) {
+        if (program.indexOf(File.separatorChar) >= 0) {
+            return new File(program).canExecute();
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            if (new File(dir, program).canExecute()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
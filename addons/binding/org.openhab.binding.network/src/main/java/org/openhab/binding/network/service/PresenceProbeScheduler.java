@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A singleton scheduler which probes all registered hosts of the network binding. If the first host is registered,
+ * the scheduler threads are started, if the last one is removed, they are stopped again.
+ *
+ * Due hosts are collected by a hashed timing wheel with a resolution of {@value #TICK_IN_MS} ms which is advanced by
+ * a single timer thread. The probes are handed to long-lived {@link Prober}s: TCP probes are multiplexed on one
+ * {@link AsyncTcpProber}, the system ping is sent through one {@link HelperProcessProber}, and hosts which do not
+ * answer a ping are looked up by the {@link ArpCacheProber}. The Java ping ({@link InetAddress#isReachable(int)}),
+ * and probes for which no prober is available on this system, are executed by a small fixed pool. So the number of
+ * threads stays the same, no matter how many things are configured.
+ *
+ * @author agent - Initial contribution
+ */
+public class PresenceProbeScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceProbeScheduler.class);
+
+    static final int TICK_IN_MS = 100;
+    static final int WHEEL_SIZE = 512;
+    static final int MAX_TCP_IN_FLIGHT = 256;
+    /** each Java ping blocks a thread of this pool for up to the timeout if the host does not answer */
+    static final int BLOCKING_PROBE_THREADS = 8;
+    /** Port of the TCP echo service, used by {@link InetAddress#isReachable(int)} if ICMP is not permitted */
+    static final int ECHO_PORT = 7;
+
+    /** Stages of a ping without a port, each one is tried if the previous one got no answer */
+    static final int STAGE_JAVA_PING = 0;
+    static final int STAGE_TCP_ECHO = 1;
+    static final int STAGE_ARP_CACHE = 2;
+
+    private static PresenceProbeScheduler instance;
+
+    private final List<List<ProbedHost>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long currentTick = 0;
+    private int hostCount = 0;
+
+    private final AsyncTcpProber tcpProber = new AsyncTcpProber("network-presence-prober", MAX_TCP_IN_FLIGHT, false);
+    private final HelperProcessProber systemPingProber;
+    private final ArpCacheProber arpProber;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService blockingProbes;
+
+    /**
+     * Registers a host for periodic probing. The first probe is started immediately.
+     *
+     * @return The handle which is needed to unregister the host again
+     */
+    public static synchronized ProbedHost register(String hostname, int port, int retry, int timeout,
+            long refreshInterval, boolean useSystemPing, StateUpdate stateUpdate) throws IOException {
+        if (instance == null) {
+            instance = new PresenceProbeScheduler();
+        }
+        ProbedHost host = new ProbedHost(hostname, port, retry, timeout, refreshInterval, useSystemPing,
+                stateUpdate);
+        instance.add(host);
+        return host;
+    }
+
+    public static synchronized void unregister(ProbedHost host) {
+        if (instance == null) {
+            return;
+        }
+        host.cancelled = true;
+        if (--instance.hostCount == 0) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Starts a probe of the given host right away, unless a probe is already running.
+     */
+    public static synchronized void refresh(final ProbedHost host) {
+        if (instance == null || host.cancelled) {
+            return;
+        }
+        final PresenceProbeScheduler scheduler = instance;
+        scheduler.timer.execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.dispatch(host);
+            }
+        });
+    }
+
+    private PresenceProbeScheduler() throws IOException {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<ProbedHost>());
+        }
+        tcpProber.start();
+        systemPingProber = startOptional(new HelperProcessProber());
+        arpProber = startOptional(new ArpCacheProber());
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("network-presence-timer"));
+        blockingProbes = Executors.newFixedThreadPool(BLOCKING_PROBE_THREADS,
+                new NamedThreadFactory("network-presence-blocking"));
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    logger.warn("Presence probe tick failed", e);
+                }
+            }
+        }, TICK_IN_MS, TICK_IN_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static <T extends Prober> T startOptional(T prober) {
+        try {
+            prober.start();
+            return prober;
+        } catch (IOException e) {
+            logger.debug("{} is not available: {}", prober.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void add(final ProbedHost host) {
+        hostCount++;
+        timer.execute(new Runnable() {
+            @Override
+            public void run() {
+                schedule(host, host.refreshInterval);
+                dispatch(host);
+            }
+        });
+    }
+
+    private void shutdown() {
+        timer.shutdownNow();
+        blockingProbes.shutdownNow();
+        tcpProber.stop();
+        if (systemPingProber != null) {
+            systemPingProber.stop();
+        }
+        if (arpProber != null) {
+            arpProber.stop();
+        }
+    }
+
+    /**
+     * Puts the host into the wheel slot of its next due time. Only called by the timer thread.
+     */
+    private void schedule(ProbedHost host, long delay) {
+        long ticks = Math.max(1, (delay + TICK_IN_MS - 1) / TICK_IN_MS);
+        host.dueTick = currentTick + ticks;
+        wheel.get((int) (host.dueTick % WHEEL_SIZE)).add(host);
+    }
+
+    /**
+     * Advances the wheel by one slot and starts the probes of all hosts which are due. Hosts which are due in a later
+     * revolution of the wheel stay in the slot.
+     */
+    private void tick() {
+        currentTick++;
+        List<ProbedHost> slot = wheel.get((int) (currentTick % WHEEL_SIZE));
+        if (slot.isEmpty()) {
+            return;
+        }
+
+        List<ProbedHost> due = null;
+        for (Iterator<ProbedHost> it = slot.iterator(); it.hasNext();) {
+            ProbedHost host = it.next();
+            if (host.cancelled) {
+                it.remove();
+            } else if (host.dueTick <= currentTick) {
+                it.remove();
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(host);
+            }
+        }
+        if (due == null) {
+            return;
+        }
+
+        for (ProbedHost host : due) {
+            schedule(host, host.refreshInterval);
+            dispatch(host);
+        }
+    }
+
+    private void dispatch(ProbedHost host) {
+        if (host.cancelled || !host.busy.compareAndSet(false, true)) {
+            // The previous probe of this host has not finished yet
+            return;
+        }
+        host.attempt = 0;
+        host.stage = STAGE_JAVA_PING;
+        host.started = System.nanoTime();
+        host.resolved = false;
+        probe(host);
+    }
+
+    /**
+     * Selects the prober for the current attempt of the host:
+     * <ul>
+     * <li>The system ping is sent through the ping helper process, or by starting the ping program if the helper is
+     * not available.</li>
+     * <li>With a port, a TCP connection attempt is made, only an established connection counts.</li>
+     * <li>Without a port, the Java ping is sent first, which uses ICMP where it is permitted. If the host does not
+     * answer, a connection to the TCP echo port is tried, a refused connection is an answer of the host as well.
+     * At last the ARP cache is checked, if it is available.</li>
+     * </ul>
+     * The hostname is resolved again on the blocking pool at the start of each probe cycle.
+     */
+    private void probe(final ProbedHost host) {
+        if (!host.resolved || isBlocking(host)) {
+            blockingProbes.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blockingProbe(host);
+                }
+            });
+            return;
+        }
+
+        ProbeListener listener = new ProbeListener() {
+            @Override
+            public void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos) {
+                attemptFinished(host, reachable, latencyNanos);
+            }
+        };
+        if (host.useSystemPing) {
+            systemPingProber.probe(host.address, host.timeout, host.refreshInterval, listener);
+        } else if (host.port > 0) {
+            tcpProber.probe(host.address, host.port, host.timeout, listener);
+        } else if (host.stage == STAGE_TCP_ECHO) {
+            tcpProber.probe(host.address, ECHO_PORT, host.timeout, true, listener);
+        } else {
+            arpProber.probe(host.address, 0, host.timeout, listener);
+        }
+    }
+
+    private boolean isBlocking(ProbedHost host) {
+        if (host.useSystemPing) {
+            return systemPingProber == null;
+        }
+        return host.port <= 0 && host.stage == STAGE_JAVA_PING;
+    }
+
+    private void blockingProbe(ProbedHost host) {
+        if (!host.resolved) {
+            try {
+                host.address = InetAddress.getByName(host.hostname);
+            } catch (UnknownHostException e) {
+                logger.debug("Unable to resolve host '{}'", host.hostname);
+                host.address = null;
+                attemptFinished(host, false, -1);
+                return;
+            }
+            host.resolved = true;
+            if (!isBlocking(host)) {
+                probe(host);
+                return;
+            }
+        }
+
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            if (host.useSystemPing) {
+                success = NetworkUtils.nativePing(host.hostname, host.port, host.timeout);
+            } else {
+                success = host.address.isReachable(host.timeout);
+            }
+        } catch (InvalidConfigurationException e) {
+            host.busy.set(false);
+            host.stateUpdate.invalidConfig();
+            return;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        attemptFinished(host, success, System.nanoTime() - started);
+    }
+
+    private void attemptFinished(ProbedHost host, boolean reachable, long latencyNanos) {
+        if (host.cancelled) {
+            host.busy.set(false);
+            return;
+        }
+        if (!reachable && host.address != null && !host.useSystemPing && host.port <= 0
+                && host.stage < (arpProber != null ? STAGE_ARP_CACHE : STAGE_TCP_ECHO)) {
+            host.stage++;
+            probe(host);
+            return;
+        }
+        if (!reachable && host.attempt++ < host.retry) {
+            host.stage = STAGE_JAVA_PING;
+            probe(host);
+            return;
+        }
+
+        double result = reachable ? latencyNanos / 1000000.0 : -1;
+        host.busy.set(false);
+        logger.trace("Probed host '{}' port '{}': {}", host.hostname, host.port, result);
+        try {
+            host.stateUpdate.newState(result);
+        } catch (RuntimeException e) {
+            logger.warn("State update of host '{}' failed", host.hostname, e);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.net.InetAddress;
+
+/**
+ * Receives the outcome of a single probe of a {@link Prober}.
+ *
+ * @author agent - Initial contribution
+ */
+public interface ProbeListener {
+    /**
+     * @param address The probed address
+     * @param port The probed port, 0 for probes which do not use a port
+     * @param reachable True if the host answered
+     * @param latencyNanos The time until the answer in nanoseconds, 0 if the host answered but no time information
+     *            is available or -1 if the host did not answer
+     */
+    void probeFinished(InetAddress address, int port, boolean reachable, long latencyNanos);
+}
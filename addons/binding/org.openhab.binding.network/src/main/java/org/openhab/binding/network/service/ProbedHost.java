@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A host which is periodically probed by the {@link PresenceProbeScheduler}. Besides the probe parameters it keeps
+ * the runtime state of the current probe.
+ *
+ * @author agent - Initial contribution
+ */
+public class ProbedHost {
+    final String hostname;
+    final int port;
+    final int retry;
+    final int timeout;
+    final long refreshInterval;
+    final boolean useSystemPing;
+    final StateUpdate stateUpdate;
+
+    volatile InetAddress address;
+    volatile boolean resolved;
+    volatile boolean cancelled = false;
+    final AtomicBoolean busy = new AtomicBoolean();
+    int attempt;
+    int stage;
+    long started;
+    long dueTick;
+
+    ProbedHost(String hostname, int port, int retry, int timeout, long refreshInterval, boolean useSystemPing,
+            StateUpdate stateUpdate) {
+        this.hostname = hostname;
+        this.port = port;
+        this.retry = retry;
+        this.timeout = timeout;
+        this.refreshInterval = refreshInterval;
+        this.useSystemPing = useSystemPing;
+        this.stateUpdate = stateUpdate;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    @Override
+    public String toString() {
+        return hostname + ";" + port;
+    }
+}
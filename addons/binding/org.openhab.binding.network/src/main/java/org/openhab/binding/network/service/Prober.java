@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * A backend which finds out whether a host is reachable. Probers are long-lived: They are started once and then
+ * serve any number of probes without blocking the caller. The result of a probe is always reported exactly once,
+ * at the latest after its timeout.
+ *
+ * @author agent - Initial contribution
+ */
+public interface Prober {
+    /**
+     * Allocates the resources of the prober. Does nothing if the prober is already running.
+     *
+     * @throws IOException If the prober cannot be used on this system
+     */
+    void start() throws IOException;
+
+    /**
+     * Releases the resources of the prober. Probes that have not finished yet are silently dropped.
+     */
+    void stop();
+
+    /**
+     * Queues a probe. This method is thread safe and never blocks.
+     *
+     * @param address The address to probe
+     * @param port The port to probe, ignored by probers which do not use ports
+     * @param timeout The deadline of the probe in milliseconds
+     * @param listener Receives the result, usually on a thread of the prober
+     */
+    void probe(InetAddress address, int port, int timeout, ProbeListener listener);
+}
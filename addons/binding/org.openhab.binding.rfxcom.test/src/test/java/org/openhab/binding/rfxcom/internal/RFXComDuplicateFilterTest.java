@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComException;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage;
+import org.openhab.binding.rfxcom.internal.messages.RFXComMessageFactory;
+
+/**
+ * Test for RFXCom-binding
+ *
+ * @author agent - Initial contribution
+ */
+public class RFXComDuplicateFilterTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RFXComDuplicateFilter filter = new RFXComDuplicateFilter(1000);
+
+    private static RFXComBaseMessage message(String hexMsg) throws RFXComException {
+        return (RFXComBaseMessage) RFXComMessageFactory.createMessage(DatatypeConverter.parseHexBinary(hexMsg));
+    }
+
+    @Test
+    public void testRepetitionIsDropped() throws RFXComException {
+        assertFalse(filter.isDuplicate(message("0850021DFB0100D770"), 0));
+        // same message, only the sequence number differs
+        assertTrue(filter.isDuplicate(message("0850021EFB0100D770"), 200 * MS));
+        assertTrue(filter.isDuplicate(message("0850021FFB0100D770"), 400 * MS));
+        assertEquals(2, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void testNewValuePasses() throws RFXComException {
+        assertFalse(filter.isDuplicate(message("0850021DFB0100D770"), 0));
+        assertFalse(filter.isDuplicate(message("0850021EFB0100D870"), 200 * MS));
+    }
+
+    @Test
+    public void testOtherDevicePasses() throws RFXComException {
+        assertFalse(filter.isDuplicate(message("08500110000180BC69"), 0));
+        assertFalse(filter.isDuplicate(message("08500111000280BC69"), 100 * MS));
+    }
+
+    @Test
+    public void testRepetitionAfterWindowPasses() throws RFXComException {
+        assertFalse(filter.isDuplicate(message("0850021DFB0100D770"), 0));
+        assertTrue(filter.isDuplicate(message("0850021EFB0100D770"), 900 * MS));
+        // the window starts with the first copy
+        assertFalse(filter.isDuplicate(message("0850021FFB0100D770"), 1100 * MS));
+    }
+
+    @Test
+    public void testReusedArrayOfTheCaller() throws RFXComException {
+        byte[] packet = DatatypeConverter.parseHexBinary("0850021DFB0100D770");
+        assertFalse(filter.isDuplicate((RFXComBaseMessage) RFXComMessageFactory.createMessage(packet), 0));
+
+        // the next frame of another device is decoded from the same array
+        System.arraycopy(DatatypeConverter.parseHexBinary("08500111000280BC69"), 0, packet, 0, packet.length);
+        assertFalse(filter.isDuplicate((RFXComBaseMessage) RFXComMessageFactory.createMessage(packet), 100 * MS));
+
+        assertTrue(filter.isDuplicate(message("0850021EFB0100D770"), 200 * MS));
+        assertTrue(filter.isDuplicate(message("08500112000280BC69"), 300 * MS));
+    }
+
+    @Test
+    public void testClear() throws RFXComException {
+        assertFalse(filter.isDuplicate(message("0850021DFB0100D770"), 0));
+        filter.clear();
+        assertFalse(filter.isDuplicate(message("0850021EFB0100D770"), 100 * MS));
+    }
+}
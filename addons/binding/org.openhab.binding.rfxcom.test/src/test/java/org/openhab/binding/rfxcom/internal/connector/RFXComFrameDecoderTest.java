@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal.connector;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+
+/**
+ * Test for the RFXCOM frame decoder
+ *
+ * @author agent - Initial contribution
+ */
+public class RFXComFrameDecoderTest {
+
+    private static final String TEMPERATURE = "0850010A770036013A";
+    private static final String WIND = "105601122F000087000000140000000079";
+
+    private static List<byte[]> chunks(String... hex) {
+        List<byte[]> result = new ArrayList<>();
+        for (String chunk : hex) {
+            result.add(DatatypeConverter.parseHexBinary(chunk));
+        }
+        return result;
+    }
+
+    private static List<String> decode(String... hex) {
+        List<String> result = new ArrayList<>();
+        for (byte[] frame : new RFXComReplayHarness().decode(chunks(hex))) {
+            result.add(DatatypeConverter.printHexBinary(frame));
+        }
+        return result;
+    }
+
+    @Test
+    public void testFramesInOneChunk() {
+        assertEquals(Arrays.asList(TEMPERATURE, WIND), decode(TEMPERATURE + WIND));
+    }
+
+    @Test
+    public void testFramesSplitOverChunks() {
+        String stream = TEMPERATURE + WIND + TEMPERATURE;
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < stream.length(); i += 2) {
+            chunks.add(stream.substring(i, i + 2));
+        }
+        assertEquals(Arrays.asList(TEMPERATURE, WIND, TEMPERATURE), decode(chunks.toArray(new String[0])));
+    }
+
+    @Test
+    public void testSkipsInvalidStartBytes() {
+        assertEquals(Arrays.asList(TEMPERATURE), decode("0000FF" + TEMPERATURE));
+    }
+
+    @Test
+    public void testFramesWrappingAroundTheRing() {
+        // 29 frames of 9 bytes do not fit into the ring without wrapping around its end
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < 29; i++) {
+            stream.append(TEMPERATURE);
+        }
+        List<String> frames = decode(stream.toString(), WIND);
+
+        assertEquals(30, frames.size());
+        for (int i = 0; i < 29; i++) {
+            assertEquals(TEMPERATURE, frames.get(i));
+        }
+        assertEquals(WIND, frames.get(29));
+    }
+
+    @Test
+    public void testReadFromStream() throws IOException {
+        final List<String> frames = new ArrayList<>();
+        RFXComFrameDecoder decoder = new RFXComFrameDecoder(new RFXComFrameDecoder.FrameListener() {
+            @Override
+            public void frameReceived(ByteBuffer frame) {
+                byte[] data = new byte[frame.remaining()];
+                frame.get(data);
+                frames.add(DatatypeConverter.printHexBinary(data));
+            }
+        });
+        InputStream in = new ByteArrayInputStream(DatatypeConverter.parseHexBinary(WIND + TEMPERATURE));
+
+        while (decoder.readFrom(in) >= 0) {
+        }
+
+        assertEquals(Arrays.asList(WIND, TEMPERATURE), frames);
+        assertEquals(2, decoder.getFrameCount());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testFramesAreReadOnly() {
+        byte[] data = DatatypeConverter.parseHexBinary(TEMPERATURE);
+        new RFXComFrameDecoder(new RFXComFrameDecoder.FrameListener() {
+            @Override
+            public void frameReceived(ByteBuffer frame) {
+                frame.put(frame.position(), (byte) 0);
+            }
+        }).feed(data, 0, data.length);
+    }
+
+    @Test
+    public void testReplayStream() throws IOException {
+        List<byte[]> stream;
+        try (InputStream in = getClass().getResourceAsStream("rfxcom-stream.hex")) {
+            stream = RFXComReplayHarness.readStream(in);
+        }
+
+        long streamBytes = 0;
+        for (byte[] chunk : stream) {
+            streamBytes += chunk.length;
+        }
+
+        RFXComReplayHarness harness = new RFXComReplayHarness();
+        RFXComReplayHarness.Result result = harness.replay(stream, 100);
+
+        assertEquals(116 * 100, result.frames);
+        assertEquals(2 * 100, result.skippedBytes);
+        assertEquals(streamBytes * 100, result.bytes);
+
+        // the decoder is in sync after the replay, the next pass yields the same frames
+        result = harness.replay(stream, 1);
+        assertEquals(116, result.frames);
+        assertEquals(2, result.skippedBytes);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal.connector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Replays RFXCOM byte streams through the {@link RFXComFrameDecoder} and counts the frames, bytes and time.
+ *
+ * A stream is a text file with one hex encoded chunk per line, each chunk is handed to the decoder like the data of
+ * one read of the port. Empty lines and lines starting with '#' are ignored.
+ *
+ * @author agent - Initial contribution
+ */
+public class RFXComReplayHarness implements RFXComFrameDecoder.FrameListener {
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class Result {
+        public long frames;
+        public long bytes;
+        public long skippedBytes;
+        public long elapsedNanos;
+        /** The longest time from handing a chunk to the decoder until one of its frames was dispatched */
+        public long worstFramingLatencyNanos;
+
+        public double framesPerSecond() {
+            return elapsedNanos > 0 ? frames * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames (%d bytes, %d skipped) in %.1f ms: %.0f frames/s, worst framing latency %.1f us",
+                    frames, bytes, skippedBytes, elapsedNanos / 1e6, framesPerSecond(), worstFramingLatencyNanos / 1e3);
+        }
+    }
+
+    private final RFXComFrameDecoder decoder = new RFXComFrameDecoder(this);
+    private final List<byte[]> frames = new ArrayList<>();
+    private boolean recordFrames = false;
+    private long chunkStarted;
+    private long worstLatency;
+
+    /**
+     * Reads a stream file.
+     *
+     * @return The chunks of the stream in the order they are fed
+     */
+    public static List<byte[]> readStream(InputStream in) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                chunks.add(DatatypeConverter.parseHexBinary(line));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Feeds all chunks into a decoder and keeps a copy of each dispatched frame.
+     *
+     * @return The dispatched frames
+     */
+    public List<byte[]> decode(List<byte[]> chunks) {
+        recordFrames = true;
+        frames.clear();
+        for (byte[] chunk : chunks) {
+            decoder.feed(chunk, 0, chunk.length);
+        }
+        recordFrames = false;
+        return new ArrayList<>(frames);
+    }
+
+    /**
+     * Feeds all chunks into the decoder the given number of times.
+     */
+    public Result replay(List<byte[]> chunks, int repetitions) {
+        long framesBefore = decoder.getFrameCount();
+        long skippedBefore = decoder.getSkippedBytes();
+        long bytes = 0;
+        worstLatency = 0;
+
+        long started = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            for (byte[] chunk : chunks) {
+                chunkStarted = System.nanoTime();
+                decoder.feed(chunk, 0, chunk.length);
+                bytes += chunk.length;
+            }
+        }
+
+        Result result = new Result();
+        result.elapsedNanos = System.nanoTime() - started;
+        result.frames = decoder.getFrameCount() - framesBefore;
+        result.skippedBytes = decoder.getSkippedBytes() - skippedBefore;
+        result.bytes = bytes;
+        result.worstFramingLatencyNanos = worstLatency;
+        return result;
+    }
+
+    @Override
+    public void frameReceived(ByteBuffer frame) {
+        if (recordFrames) {
+            byte[] copy = new byte[frame.remaining()];
+            frame.get(copy);
+            frames.add(copy);
+        } else {
+            long latency = System.nanoTime() - chunkStarted;
+            if (latency > worstLatency) {
+                worstLatency = latency;
+            }
+        }
+    }
+}
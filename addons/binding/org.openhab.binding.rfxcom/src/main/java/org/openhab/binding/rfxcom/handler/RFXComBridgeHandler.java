@@ -9,6 +9,7 @@
 package org.openhab.binding.rfxcom.handler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
@@ -24,6 +25,7 @@ import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.openhab.binding.rfxcom.RFXComBindingConstants;
 import org.openhab.binding.rfxcom.internal.DeviceMessageListener;
+import org.openhab.binding.rfxcom.internal.RFXComDuplicateFilter;
 import org.openhab.binding.rfxcom.internal.config.RFXComBridgeConfiguration;
 import org.openhab.binding.rfxcom.internal.connector.RFXComConnectorInterface;
 import org.openhab.binding.rfxcom.internal.connector.RFXComEventListener;
@@ -58,6 +60,7 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
 
     RFXComConnectorInterface connector = null;
     private MessageListener eventListener = new MessageListener();
+    private RFXComDuplicateFilter duplicateFilter = new RFXComDuplicateFilter();
 
     private List<DeviceMessageListener> deviceStatusListeners = new CopyOnWriteArrayList<>();
 
@@ -159,6 +162,7 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
 
             if (connector != null) {
                 connector.disconnect();
+                duplicateFilter.clear();
                 connector.connect(configuration);
 
                 logger.debug("Reset controller");
@@ -363,10 +367,25 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
         }
     }
 
+    /**
+     * Decodes the received frames. The frames are copied into an array which is reused for all frames of the same
+     * length, so the repetitions which are dropped by the duplicate filter are decoded without any copy. Only the
+     * messages which are passed on get a copy of their raw data.
+     */
     private class MessageListener implements RFXComEventListener {
 
+        /** The reused frames by length, accessed by the reader thread of the connector only */
+        private final byte[][] packets = new byte[Byte.MAX_VALUE + 2][];
+
         @Override
-        public void packetReceived(byte[] packet) {
+        public void packetReceived(ByteBuffer data) {
+            int length = data.remaining();
+            byte[] packet = packets[length];
+            if (packet == null) {
+                packet = new byte[length];
+                packets[length] = packet;
+            }
+            data.get(packet);
             try {
                 RFXComMessage message = RFXComMessageFactory.createMessage(packet);
                 logger.debug("Message received: {}", message);
@@ -379,6 +398,7 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
                     }
                 } else if (message instanceof RFXComTransmitterMessage) {
                     RFXComTransmitterMessage resp = (RFXComTransmitterMessage) message;
+                    detach(resp);
 
                     byte seqNbr = getSeqNumber();
                     if (resp.seqNbr == seqNbr) {
@@ -391,7 +411,11 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
                         logger.warn("Sequence number '{}' does not match, expecting number '{}'", resp.seqNbr, seqNbr);
                     }
 
+                } else if (duplicateFilter.isDuplicate((RFXComBaseMessage) message)) {
+                    logger.trace("Dropping repeated message: {}", message);
+
                 } else {
+                    detach((RFXComBaseMessage) message);
 
                     for (DeviceMessageListener deviceStatusListener : deviceStatusListeners) {
                         try {
@@ -411,6 +435,15 @@ public class RFXComBridgeHandler extends BaseBridgeHandler {
             updateStatus(ThingStatus.ONLINE);
         }
 
+        /**
+         * Gives a message which is kept after this call its own copy of the reused frame.
+         */
+        private void detach(RFXComBaseMessage message) {
+            if (message.rawMessage != null) {
+                message.rawMessage = message.rawMessage.clone();
+            }
+        }
+
         @Override
         public void errorOccurred(String error) {
             logger.error("Error occurred: {}", error);
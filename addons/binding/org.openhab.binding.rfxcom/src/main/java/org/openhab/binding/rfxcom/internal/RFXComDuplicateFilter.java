@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComException;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage;
+
+/**
+ * Most RF devices send every message several times in a row, and the RFXCOM transceiver passes on each copy that it
+ * receives. The {@link RFXComDuplicateFilter} detects these repetitions, so that the things are updated only once.
+ *
+ * Messages are grouped by packet type, sub type and device id. A message is a repetition if it is equal to the
+ * previous message of the same device, apart from the sequence number which the transceiver assigns, and arrives
+ * within the window after it. Messages with a different content, like a new sensor value, always pass.
+ *
+ * @author agent - Initial contribution
+ */
+public class RFXComDuplicateFilter {
+
+    public static final long DEFAULT_WINDOW_IN_MS = 1000;
+
+    /** Expired entries are removed only if there are more devices than this */
+    static final int PURGE_THRESHOLD = 64;
+
+    private static final int SEQ_NBR_INDEX = 3;
+
+    private static class LastMessage {
+        byte[] data;
+        long received;
+
+        LastMessage(byte[] data, long received) {
+            this.data = data;
+            this.received = received;
+        }
+    }
+
+    private final long windowInNanos;
+    private final Map<String, LastMessage> lastMessages = new HashMap<>();
+    private long suppressed = 0;
+
+    public RFXComDuplicateFilter() {
+        this(DEFAULT_WINDOW_IN_MS);
+    }
+
+    /**
+     * @param windowInMs The time in milliseconds after a message, in which the same message is a repetition
+     */
+    public RFXComDuplicateFilter(long windowInMs) {
+        this.windowInNanos = TimeUnit.MILLISECONDS.toNanos(windowInMs);
+    }
+
+    /**
+     * The filter keeps its own copy of the raw data, the caller may reuse the array of the message afterwards.
+     *
+     * @return True if the message repeats the previous message of the same device and should be dropped
+     */
+    public boolean isDuplicate(RFXComBaseMessage message) throws RFXComException {
+        return isDuplicate(message, System.nanoTime());
+    }
+
+    synchronized boolean isDuplicate(RFXComBaseMessage message, long now) throws RFXComException {
+        if (message.rawMessage == null) {
+            return false;
+        }
+
+        String key = message.packetId + "." + message.subType + "." + message.getDeviceId();
+        LastMessage last = lastMessages.get(key);
+        if (last != null && now - last.received <= windowInNanos && equalsIgnoringSeqNbr(last.data,
+                message.rawMessage)) {
+            // keep the time of the first copy, a device sending the same data all the time still passes regularly
+            suppressed++;
+            return true;
+        }
+
+        if (last == null) {
+            if (lastMessages.size() >= PURGE_THRESHOLD) {
+                purge(now);
+            }
+            lastMessages.put(key, new LastMessage(message.rawMessage.clone(), now));
+        } else if (last.data.length == message.rawMessage.length) {
+            // the raw data of the message may be reused by the caller, keep a copy in the array of the device
+            System.arraycopy(message.rawMessage, 0, last.data, 0, last.data.length);
+            last.received = now;
+        } else {
+            last.data = message.rawMessage.clone();
+            last.received = now;
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of messages which have been detected as repetition so far
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    public synchronized void clear() {
+        lastMessages.clear();
+    }
+
+    private void purge(long now) {
+        for (Iterator<LastMessage> it = lastMessages.values().iterator(); it.hasNext();) {
+            if (now - it.next().received > windowInNanos) {
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean equalsIgnoringSeqNbr(byte[] a, byte[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (i != SEQ_NBR_INDEX && a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,6 +8,7 @@
  */
 package org.openhab.binding.rfxcom.internal.connector;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -41,11 +42,17 @@ public abstract class RFXComBaseConnector implements RFXComConnectorInterface {
         _listeners.remove(listener);
     }
 
-    void sendMsgToListeners(byte[] msg) {
+    /**
+     * @param msg A read-only view of the message, which is only valid during the call
+     */
+    void sendMsgToListeners(ByteBuffer msg) {
+        int position = msg.position();
+        int limit = msg.limit();
         try {
             Iterator<RFXComEventListener> iterator = _listeners.iterator();
 
             while (iterator.hasNext()) {
+                msg.limit(limit).position(position);
                 iterator.next().packetReceived(msg);
             }
 
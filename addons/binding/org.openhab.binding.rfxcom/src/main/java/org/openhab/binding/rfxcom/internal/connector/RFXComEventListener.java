@@ -8,6 +8,8 @@
  */
 package org.openhab.binding.rfxcom.internal.connector;
 
+import java.nio.ByteBuffer;
+
 /**
  * This interface defines interface to receive data from RFXCOM controller.
  *
@@ -19,9 +21,11 @@ public interface RFXComEventListener {
      * Procedure for receive raw data from RFXCOM controller.
      * 
      * @param data
-     *            Received raw data.
+     *            Read-only view of the received raw data between position and
+     *            limit. The view is only valid during the call, so the data has
+     *            to be copied if it is needed later.
      */
-    void packetReceived(byte[] data);
+    void packetReceived(ByteBuffer data);
 
     /**
      * Procedure for receiving information fatal error.
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the byte stream of a RFXCOM transceiver into frames. Each frame starts with a length byte (1..127),
+ * followed by that number of bytes.
+ *
+ * Incoming data is read directly into a ring buffer and frames are handed to the {@link FrameListener} as read-only
+ * views into that buffer. Only frames which wrap around the end of the ring are copied, into a scratch buffer which
+ * is allocated once. So framing does not allocate any memory per frame.
+ *
+ * This class is not thread safe, it is meant to be used by a single reader thread.
+ *
+ * @author Pauli Anttila - Original read loop
+ * @author agent - Initial contribution
+ */
+public class RFXComFrameDecoder {
+
+    /**
+     * Receives the decoded frames.
+     */
+    public interface FrameListener {
+        /**
+         * @param frame A read-only view of the frame between position and limit, including the length byte. The
+         *            view and its content are only valid during the call.
+         */
+        void frameReceived(ByteBuffer frame);
+    }
+
+    /** Two maximum sized frames, must be a power of two */
+    static final int RING_SIZE = 256;
+    static final int MAX_FRAME_SIZE = Byte.MAX_VALUE + 1;
+
+    private static final int MASK = RING_SIZE - 1;
+
+    private final FrameListener listener;
+    private final byte[] ring = new byte[RING_SIZE];
+    private final byte[] scratch = new byte[MAX_FRAME_SIZE];
+    private final ByteBuffer ringView = ByteBuffer.wrap(ring).asReadOnlyBuffer();
+    private final ByteBuffer scratchView = ByteBuffer.wrap(scratch).asReadOnlyBuffer();
+
+    /** Index of the first byte which has not been consumed yet, not masked */
+    private int head = 0;
+    /** Number of bytes which have not been consumed yet */
+    private int used = 0;
+
+    private long frames = 0;
+    private long skippedBytes = 0;
+
+    public RFXComFrameDecoder(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reads once from the given stream and dispatches all frames which are complete afterwards. Blocks as long as
+     * the read of the stream blocks.
+     *
+     * @return The number of bytes read, or -1 if the end of the stream has been reached
+     */
+    public int readFrom(InputStream in) throws IOException {
+        int tail = (head + used) & MASK;
+        int free = Math.min(RING_SIZE - used, RING_SIZE - tail);
+        int len = in.read(ring, tail, free);
+        if (len > 0) {
+            used += len;
+            decode();
+        }
+        return len;
+    }
+
+    /**
+     * Copies the given data into the decoder and dispatches all frames which are complete afterwards.
+     */
+    public void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int tail = (head + used) & MASK;
+            int len = Math.min(length, Math.min(RING_SIZE - used, RING_SIZE - tail));
+            System.arraycopy(data, offset, ring, tail, len);
+            used += len;
+            offset += len;
+            length -= len;
+            decode();
+        }
+    }
+
+    /**
+     * @return The number of frames dispatched so far
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return The number of bytes which were skipped while searching for the start of a frame
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    private void decode() {
+        while (used > 0) {
+            int start = head & MASK;
+            int length = ring[start];
+            if (length <= 0) {
+                // not a valid length byte, try to find a new start
+                head++;
+                used--;
+                skippedBytes++;
+                continue;
+            }
+
+            int frameSize = length + 1;
+            if (used < frameSize) {
+                return;
+            }
+
+            ByteBuffer frame;
+            if (start + frameSize <= RING_SIZE) {
+                ringView.clear();
+                ringView.position(start).limit(start + frameSize);
+                frame = ringView;
+            } else {
+                int firstPart = RING_SIZE - start;
+                System.arraycopy(ring, start, scratch, 0, firstPart);
+                System.arraycopy(ring, 0, scratch, firstPart, frameSize - firstPart);
+                scratchView.clear();
+                scratchView.limit(frameSize);
+                frame = scratchView;
+            }
+
+            head += frameSize;
+            used -= frameSize;
+            frames++;
+            listener.frameReceived(frame);
+        }
+    }
+}
@@ -11,7 +11,7 @@ package org.openhab.binding.rfxcom.internal.connector;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -19,18 +19,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * RFXCOM stream reader to parse RFXCOM output into messages.
+ * RFXCOM stream reader to parse RFXCOM output into messages. The reader blocks on the input stream and hands each
+ * frame to the listeners of the connector as soon as it is complete, see {@link RFXComFrameDecoder}.
  *
  * @author James Hewitt-Thomas - New class
  * @author Pauli Anttila - Original read loop
  */
-public class RFXComStreamReader extends Thread {
+public class RFXComStreamReader extends Thread implements RFXComFrameDecoder.FrameListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RFXComStreamReader.class);
 
-    private boolean interrupted = false;
+    private volatile boolean interrupted = false;
     private RFXComBaseConnector connector;
     private InputStream in;
+    private RFXComFrameDecoder decoder = new RFXComFrameDecoder(this);
 
     public RFXComStreamReader(RFXComBaseConnector connector, InputStream in) {
         this.connector = connector;
@@ -49,79 +51,38 @@ public class RFXComStreamReader extends Thread {
 
     @Override
     public void run() {
-        final int dataBufferMaxLen = Byte.MAX_VALUE;
-
-        byte[] dataBuffer = new byte[dataBufferMaxLen];
-
-        int msgLen = 0;
-        int index = 0;
-        boolean start_found = false;
-
         logger.debug("Data listener started");
 
         try {
-
-            byte[] tmpData = new byte[20];
-            int len = -1;
-
+            // A read returning 0 bytes is a read timeout of the port, which already waited for data
             while (interrupted != true) {
-
-                if ((len = in.read(tmpData)) > 0) {
-
-                    byte[] logData = Arrays.copyOf(tmpData, len);
-                    logger.trace("Received data (len={}): {}", len, DatatypeConverter.printHexBinary(logData));
-
-                    for (int i = 0; i < len; i++) {
-
-                        if (index > dataBufferMaxLen) {
-                            // too many bytes received, try to find new
-                            // start
-                            start_found = false;
-                        }
-
-                        if (start_found == false && tmpData[i] > 0) {
-
-                            start_found = true;
-                            index = 0;
-                            dataBuffer[index++] = tmpData[i];
-                            msgLen = tmpData[i] + 1;
-
-                        } else if (start_found) {
-
-                            dataBuffer[index++] = tmpData[i];
-
-                            if (index == msgLen) {
-
-                                // whole message received, send an event
-
-                                byte[] msg = new byte[msgLen];
-
-                                for (int j = 0; j < msgLen; j++) {
-                                    msg[j] = dataBuffer[j];
-                                }
-
-                                connector.sendMsgToListeners(msg);
-
-                                // find new start
-                                start_found = false;
-                            }
-                        }
-                    }
-                } else {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
+                if (decoder.readFrom(in) < 0) {
+                    if (!interrupted) {
+                        connector.sendErrorToListeners("End of stream reached");
                     }
+                    break;
                 }
             }
         } catch (InterruptedIOException e) {
             Thread.currentThread().interrupt();
             logger.error("Interrupted via InterruptedIOException");
         } catch (IOException e) {
-            logger.error("Reading from serial port failed", e);
-            connector.sendErrorToListeners(e.getMessage());
+            if (!interrupted) {
+                logger.error("Reading from serial port failed", e);
+                connector.sendErrorToListeners(e.getMessage());
+            }
         }
 
         logger.debug("Data listener stopped");
     }
-}
\ No newline at end of file
+
+    @Override
+    public void frameReceived(ByteBuffer frame) {
+        if (logger.isTraceEnabled()) {
+            byte[] logData = new byte[frame.remaining()];
+            frame.duplicate().get(logData);
+            logger.trace("Received data (len={}): {}", logData.length, DatatypeConverter.printHexBinary(logData));
+        }
+        connector.sendMsgToListeners(frame);
+    }
+}
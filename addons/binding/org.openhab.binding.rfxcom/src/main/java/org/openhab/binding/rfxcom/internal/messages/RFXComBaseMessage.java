@@ -73,6 +73,14 @@ public abstract class RFXComBaseMessage implements RFXComMessage {
         FS20(114),
         IO_LINES(128);
 
+        private static final PacketType[] BY_VALUE = new PacketType[256];
+
+        static {
+            for (PacketType packetType : values()) {
+                BY_VALUE[packetType.packetType] = packetType;
+            }
+        }
+
         private final int packetType;
 
         PacketType(int packetType) {
@@ -84,10 +92,8 @@ public abstract class RFXComBaseMessage implements RFXComMessage {
         }
 
         public static PacketType fromByte(int input) throws RFXComUnsupportedValueException {
-            for (PacketType packetType : PacketType.values()) {
-                if (packetType.packetType == input) {
-                    return packetType;
-                }
+            if (input >= 0 && input < BY_VALUE.length && BY_VALUE[input] != null) {
+                return BY_VALUE[input];
             }
 
             throw new RFXComUnsupportedValueException(PacketType.class, input);
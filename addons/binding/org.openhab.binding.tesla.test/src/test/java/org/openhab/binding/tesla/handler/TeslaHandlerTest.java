@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.tesla.handler;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.tesla.TeslaBindingConstants.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Tests the decoding of recorded vehicle responses by the {@link TeslaHandler} and the updates sent for them.
+ *
+ * @author agent - Initial contribution
+ */
+public class TeslaHandlerTest {
+    private static final String CHARGE_STATE = "{\"charging_state\":\"Charging\",\"charge_limit_soc\":90,"
+            + "\"charge_to_max_range\":false,\"battery_heater_on\":false,\"not_enough_power_to_heat\":null,"
+            + "\"battery_range\":189.39,\"battery_level\":72,\"charge_energy_added\":12.5,\"charger_voltage\":230,"
+            + "\"charger_phases\":3,\"scheduled_charging_start_time\":null,\"eu_vehicle\":true}";
+
+    private static final String DRIVE_STATE = "{\"shift_state\":\"D\",\"speed\":54,\"latitude\":50.85,"
+            + "\"longitude\":4.35,\"heading\":182,\"gps_as_of\":1490000000,\"power\":12}";
+
+    private static final String VEHICLE_STATE = "{\"api_version\":3,\"car_version\":\"2.52.22\",\"locked\":true,"
+            + "\"odometer\":12345.6,\"vehicle_name\":\"Red\",\"media_state\":{\"remote_control_enabled\":true}}";
+
+    private static final String VEHICLE = "{\"color\":null,\"display_name\":\"Red\",\"id\":\"123\","
+            + "\"option_codes\":\"MS01,RENA\",\"vehicle_id\":\"456\",\"vin\":\"5YJS\",\"tokens\":[\"abc\",\"def\"],"
+            + "\"state\":\"online\"}";
+
+    private static final String FAILED_COMMAND = "{\"result\":false,\"reason\":\"could_not_wake_buses\"}";
+
+    private final RecordingHandler handler = new RecordingHandler(
+            ThingBuilder.create(THING_TYPE_MODELS, "test").build());
+
+    @Test
+    public void testFieldsAreReadAsStrings() throws IOException {
+        Map<String, String> fields = handler.readFields(VEHICLE, null);
+
+        assertEquals("Red", fields.get("display_name"));
+        assertEquals("MS01,RENA", fields.get("option_codes"));
+        assertTrue(fields.containsKey("color"));
+        assertNull(fields.get("color"));
+        // an array of more than one value can't be represented by a string
+        assertFalse(fields.containsKey("tokens"));
+
+        fields = handler.readFields(CHARGE_STATE, null);
+
+        assertEquals("72", fields.get("battery_level"));
+        assertEquals("189.39", fields.get("battery_range"));
+        assertEquals("false", fields.get("charge_to_max_range"));
+        assertEquals("true", fields.get("eu_vehicle"));
+    }
+
+    @Test
+    public void testSingleValueArrayIsReadAsString() throws IOException {
+        Map<String, String> fields = handler.readFields("{\"vin\":\"5YJS\",\"tokens\":[\"only\"]}", null);
+
+        assertEquals("only", fields.get("tokens"));
+    }
+
+    @Test
+    public void testNestedObjectsAreOnlyKeptInTheStateObject() throws IOException {
+        JsonObject stateObject = new JsonObject();
+        Map<String, String> fields = handler.readFields(VEHICLE_STATE, stateObject);
+
+        assertFalse(fields.containsKey("media_state"));
+        assertEquals(fields.size() + 1, stateObject.entrySet().size());
+        assertTrue(stateObject.getAsJsonObject("media_state").get("remote_control_enabled").getAsBoolean());
+        assertTrue(stateObject.get("locked").getAsBoolean());
+        assertEquals(12345.6, stateObject.get("odometer").getAsDouble(), 0);
+    }
+
+    @Test
+    public void testChargeStateUpdatesChannelsAndStateObject() {
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+
+        assertEquals(new DecimalType(72), handler.states.get("batterylevel"));
+        assertEquals(new StringType("Charging"), handler.states.get("chargingstate"));
+        assertEquals(OnOffType.OFF, handler.states.get("batteryheater"));
+        assertEquals(UnDefType.UNDEF, handler.states.get("notenoughpower"));
+        assertEquals(OnOffType.ON, handler.states.get(CHANNEL_CHARGE));
+        assertEquals(90, handler.chargeState.charge_limit_soc);
+    }
+
+    @Test
+    public void testDriveStateUpdatesChannelsAndStateObject() {
+        handler.parseAndUpdate(TESLA_DRIVE_STATE, null, DRIVE_STATE);
+
+        assertEquals(new StringType("D"), handler.states.get("shiftstate"));
+        assertEquals(new DecimalType(54), handler.states.get("speed"));
+        assertEquals("D", handler.driveState.shift_state);
+    }
+
+    @Test
+    public void testPropertiesAreUpdatedTogether() {
+        handler.parseAndUpdate("queryVehicle", null, VEHICLE);
+
+        assertEquals(1, handler.propertyUpdates);
+        assertEquals("5YJS", handler.properties.get("vin"));
+        assertEquals("Red", handler.properties.get("name"));
+        assertEquals("MS01,RENA", handler.properties.get("options"));
+        assertEquals(new StringType("online"), handler.states.get("state"));
+    }
+
+    @Test
+    public void testRepeatedResponseSendsNoUpdates() {
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+        handler.parseAndUpdate(TESLA_VEHICLE_STATE, null, VEHICLE_STATE);
+        handler.parseAndUpdate("queryVehicle", null, VEHICLE);
+        assertFalse(handler.updates.isEmpty());
+        assertTrue(handler.propertyUpdates > 0);
+
+        handler.updates.clear();
+        handler.propertyUpdates = 0;
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+        handler.parseAndUpdate(TESLA_VEHICLE_STATE, null, VEHICLE_STATE);
+        handler.parseAndUpdate("queryVehicle", null, VEHICLE);
+
+        assertTrue(handler.updates.isEmpty());
+        assertEquals(0, handler.propertyUpdates);
+    }
+
+    @Test
+    public void testOnlyChangedChannelsAreUpdated() {
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+        handler.updates.clear();
+
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null,
+                CHARGE_STATE.replace("\"battery_level\":72", "\"battery_level\":73"));
+
+        assertEquals(1, handler.updates.size());
+        assertEquals(new DecimalType(73), handler.updates.get("batterylevel"));
+    }
+
+    @Test
+    public void testFailedCommandSendsNoUpdates() {
+        handler.parseAndUpdate("command", null, FAILED_COMMAND);
+
+        assertTrue(handler.updates.isEmpty());
+        assertEquals(0, handler.propertyUpdates);
+    }
+
+    @Test
+    public void testStateIsSentAgainAfterRejectedCommand() {
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+        handler.updates.clear();
+
+        // autoupdate switches the item off, but the vehicle keeps charging
+        handler.handleCommand(new ChannelUID(handler.getThing().getUID(), CHANNEL_CHARGE), OnOffType.OFF);
+        handler.parseAndUpdate("command", null, FAILED_COMMAND);
+        handler.parseAndUpdate(TESLA_CHARGE_STATE, null, CHARGE_STATE);
+
+        assertEquals(1, handler.updates.size());
+        assertEquals(OnOffType.ON, handler.updates.get(CHANNEL_CHARGE));
+    }
+
+    /**
+     * Records the channel updates and keeps the properties instead of passing them to the framework.
+     */
+    private static class RecordingHandler extends TeslaHandler {
+        private final Map<String, State> states = new HashMap<String, State>();
+        private final Map<String, State> updates = new LinkedHashMap<String, State>();
+        private final Map<String, String> properties = new HashMap<String, String>();
+        private int propertyUpdates;
+
+        public RecordingHandler(Thing thing) {
+            super(thing);
+        }
+
+        @Override
+        protected void updateState(String channelID, State state) {
+            states.put(channelID, state);
+            updates.put(channelID, state);
+        }
+
+        @Override
+        protected Map<String, String> editProperties() {
+            return new HashMap<String, String>(properties);
+        }
+
+        @Override
+        protected void updateProperties(Map<String, String> properties) {
+            propertyUpdates++;
+            this.properties.clear();
+            this.properties.putAll(properties);
+        }
+    }
+}
@@ -14,12 +14,17 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -61,15 +66,20 @@ import org.openhab.binding.tesla.internal.protocol.GUIState;
 import org.openhab.binding.tesla.internal.protocol.TokenRequest;
 import org.openhab.binding.tesla.internal.protocol.Vehicle;
 import org.openhab.binding.tesla.internal.protocol.VehicleState;
-import org.openhab.binding.tesla.internal.throttler.QueueChannelThrottler;
-import org.openhab.binding.tesla.internal.throttler.Rate;
+import org.openhab.io.transport.throttler.Priority;
+import org.openhab.io.transport.throttler.Rate;
+import org.openhab.io.transport.throttler.Throttler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
 /**
  * The {@link TeslaHandler} is responsible for handling commands, which are sent
@@ -118,16 +128,33 @@ public class TeslaHandler extends BaseThingHandler {
     protected ScheduledFuture<?> eventJob;
     protected ScheduledFuture<?> fastStateJob;
     protected ScheduledFuture<?> slowStateJob;
-    protected QueueChannelThrottler stateThrottler;
+    protected Throttler stateThrottler;
 
     protected long intervalTimestamp = 0;
     protected int intervalErrors = 0;
     protected ReentrantLock lock;
 
+    // the requests whose responses are kept as state objects
+    private static final Set<String> STATE_REQUESTS = new HashSet<String>(Arrays.asList(TESLA_DRIVE_STATE,
+            TESLA_GUI_STATE, TESLA_VEHICLE_STATE, TESLA_CHARGE_STATE, TESLA_CLIMATE_STATE));
+
+    // the selectors of the values of an event, in the order of the event keys
+    private static final TeslaChannelSelector[] EVENT_SELECTORS = new TeslaChannelSelector[EventKeys.values().length];
+
+    static {
+        for (EventKeys key : EventKeys.values()) {
+            EVENT_SELECTORS[key.ordinal()] = TeslaChannelSelector.getValueSelectorFromRESTID(key.toString());
+        }
+    }
+
     protected Gson gson = new Gson();
+    protected TypeAdapter<JsonElement> jsonElementAdapter = gson.getAdapter(JsonElement.class);
     protected TeslaChannelSelectorProxy teslaChannelSelectorProxy = new TeslaChannelSelectorProxy();
     private JsonParser parser = new JsonParser();
 
+    // the last state sent for each channel
+    protected Map<String, State> channelStates = new ConcurrentHashMap<String, State>();
+
     public TeslaHandler(Thing thing) {
         super(thing);
     }
@@ -139,6 +166,7 @@ public class TeslaHandler extends BaseThingHandler {
 
         updateStatus(ThingStatus.UNKNOWN);
 
+        channelStates.clear();
         lock = new ReentrantLock();
 
         lock.lock();
@@ -153,14 +181,14 @@ public class TeslaHandler extends BaseThingHandler {
                         TimeUnit.MILLISECONDS);
             }
 
-            Map<Object, Rate> channels = new HashMap<Object, Rate>();
-            channels.put(TESLA_DATA_THROTTLE, new Rate(10, 10, TimeUnit.SECONDS));
-            channels.put(TESLA_COMMAND_THROTTLE, new Rate(20, 1, TimeUnit.MINUTES));
-
-            Rate firstRate = new Rate(20, 1, TimeUnit.MINUTES);
-            Rate secondRate = new Rate(200, 10, TimeUnit.MINUTES);
-            stateThrottler = new QueueChannelThrottler(firstRate, scheduler, channels);
-            stateThrottler.addRate(secondRate);
+            if (stateThrottler != null) {
+                stateThrottler.shutdown();
+            }
+            stateThrottler = new Throttler(scheduler);
+            stateThrottler.addRate(new Rate(20, 1, TimeUnit.MINUTES));
+            stateThrottler.addRate(new Rate(200, 10, TimeUnit.MINUTES));
+            stateThrottler.setRate(TESLA_DATA_THROTTLE, new Rate(10, 10, TimeUnit.SECONDS));
+            stateThrottler.setRate(TESLA_COMMAND_THROTTLE, new Rate(20, 1, TimeUnit.MINUTES));
 
             if (fastStateJob == null || fastStateJob.isCancelled()) {
                 fastStateJob = scheduler.scheduleWithFixedDelay(fastStateRunnable, 0, FAST_STATUS_REFRESH_INTERVAL,
@@ -202,6 +230,11 @@ public class TeslaHandler extends BaseThingHandler {
                 connectJob.cancel(true);
                 connectJob = null;
             }
+
+            if (stateThrottler != null) {
+                stateThrottler.shutdown();
+                stateThrottler = null;
+            }
         } finally {
             lock.unlock();
         }
@@ -214,6 +247,10 @@ public class TeslaHandler extends BaseThingHandler {
         String channelID = channelUID.getId();
         TeslaChannelSelector selector = TeslaChannelSelector.getValueSelectorFromChannelID(channelID);
 
+        // a command changes the item by autoupdate, so the next state of the vehicle has to be sent even if it is
+        // unchanged, e.g. when the vehicle rejected the command
+        channelStates.remove(channelID);
+
         if (command instanceof RefreshType) {
             if (isAwake()) {
                 // Request the state of all known variables. This is sub-optimal, but the requests get scheduled and
@@ -359,7 +396,12 @@ public class TeslaHandler extends BaseThingHandler {
     public void sendCommand(String command, String payLoad, WebTarget target) {
         Request request = new Request(command, payLoad, target);
         if (stateThrottler != null) {
-            stateThrottler.submit(TESLA_COMMAND_THROTTLE, request);
+            if (TESLA_COMMAND_WAKE_UP.equals(command)) {
+                // the jobs keep waking up a sleeping vehicle, a pending wake up is sufficient
+                stateThrottler.submit(TESLA_COMMAND_THROTTLE, Priority.NORMAL, command, request);
+            } else {
+                stateThrottler.submit(TESLA_COMMAND_THROTTLE, Priority.HIGH, request);
+            }
         }
     }
 
@@ -368,23 +410,18 @@ public class TeslaHandler extends BaseThingHandler {
     }
 
     public void sendCommand(String command, String payLoad) {
-        Request request = new Request(command, payLoad, commandTarget);
-        if (stateThrottler != null) {
-            stateThrottler.submit(TESLA_COMMAND_THROTTLE, request);
-        }
+        sendCommand(command, payLoad, commandTarget);
     }
 
     public void sendCommand(String command, WebTarget target) {
-        Request request = new Request(command, "{}", target);
-        if (stateThrottler != null) {
-            stateThrottler.submit(TESLA_COMMAND_THROTTLE, request);
-        }
+        sendCommand(command, "{}", target);
     }
 
     public void requestData(String command, String payLoad) {
         Request request = new Request(command, payLoad, dataRequestTarget);
         if (stateThrottler != null) {
-            stateThrottler.submit(TESLA_DATA_THROTTLE, request);
+            // a pending request of the same state already returns the latest data
+            stateThrottler.submit(TESLA_DATA_THROTTLE, Priority.NORMAL, command + " " + payLoad, request);
         }
     }
 
@@ -393,8 +430,10 @@ public class TeslaHandler extends BaseThingHandler {
     }
 
     public void queryVehicle(String parameter) {
-        WebTarget target = vehicleTarget.path(parameter);
-        sendCommand(parameter, null, target);
+        Request request = new Request(parameter, null, vehicleTarget.path(parameter));
+        if (stateThrottler != null) {
+            stateThrottler.submit(TESLA_COMMAND_THROTTLE, Priority.NORMAL, parameter, request);
+        }
     }
 
     protected String invokeAndParse(String command, String payLoad, WebTarget target) {
@@ -459,83 +498,58 @@ public class TeslaHandler extends BaseThingHandler {
 
     public void parseAndUpdate(String request, String payLoad, String result) {
 
-        JsonParser parser = new JsonParser();
-        JsonObject jsonObject = null;
-
         try {
-            if (request != null && result != null && result != "null") {
-                // first, update state objects
-                switch (request) {
-                    case TESLA_DRIVE_STATE: {
-                        driveState = gson.fromJson(result, DriveState.class);
-                        break;
-                    }
-                    case TESLA_GUI_STATE: {
-                        guiState = gson.fromJson(result, GUIState.class);
-                        break;
-                    }
-                    case TESLA_VEHICLE_STATE: {
-                        vehicleState = gson.fromJson(result, VehicleState.class);
-                        break;
-                    }
-                    case TESLA_CHARGE_STATE: {
-                        chargeState = gson.fromJson(result, ChargeState.class);
-                        if (chargeState.charging_state != null && chargeState.charging_state.equals("Charging")) {
-                            updateState(CHANNEL_CHARGE, OnOffType.ON);
-                        } else {
-                            updateState(CHANNEL_CHARGE, OnOffType.OFF);
-                        }
-
-                        break;
-                    }
-                    case TESLA_CLIMATE_STATE: {
-                        climateState = gson.fromJson(result, ClimateState.class);
-                        break;
-                    }
-                }
+            if (request != null && result != null && !result.equals("null")) {
+                Map<String, String> fields;
 
-                // secondly, reformat the response string to a JSON compliant
-                // object for some specific non-JSON compatible requests
+                // reformat the response string to a JSON compliant object
+                // for some specific non-JSON compatible requests
                 switch (request) {
                     case TESLA_MOBILE_ENABLED_STATE: {
-                        jsonObject = new JsonObject();
-                        jsonObject.addProperty(TESLA_MOBILE_ENABLED_STATE, result);
+                        fields = Collections.singletonMap(TESLA_MOBILE_ENABLED_STATE, result);
                         break;
                     }
                     default: {
-                        jsonObject = parser.parse(result).getAsJsonObject();
+                        // read the response in a single pass, the state objects are
+                        // bound from the fields collected while reading
+                        JsonObject stateObject = STATE_REQUESTS.contains(request) ? new JsonObject() : null;
+                        fields = readFields(result, stateObject);
+                        updateStateObject(request, stateObject);
                         break;
                     }
                 }
-            }
 
-            // process the result
-            if (jsonObject != null && result != null && !result.equals("null")) {
                 // deal with responses for "set" commands, which get confirmed
                 // positively, or negatively, in which case a reason for failure
                 // is provided
-                if (jsonObject.get("reason") != null && jsonObject.get("reason").getAsString() != null) {
-                    boolean requestResult = jsonObject.get("result").getAsBoolean();
+                if (fields.get("reason") != null) {
+                    boolean requestResult = Boolean.parseBoolean(fields.get("result"));
                     logger.debug("The request ({}) execution was {}, and reported '{}'", new Object[] { request,
-                            requestResult ? "successful" : "not successful", jsonObject.get("reason").getAsString() });
+                            requestResult ? "successful" : "not successful", fields.get("reason") });
                 } else {
-                    Set<Map.Entry<String, JsonElement>> entrySet = jsonObject.entrySet();
-                    for (Map.Entry<String, JsonElement> entry : entrySet) {
+                    Map<String, String> properties = editProperties();
+                    boolean propertiesChanged = false;
+                    for (Map.Entry<String, String> entry : fields.entrySet()) {
+                        TeslaChannelSelector selector = TeslaChannelSelector.getValueSelectorFromRESTID(entry.getKey());
+                        if (selector == null) {
+                            continue;
+                        }
                         try {
-                            TeslaChannelSelector selector = TeslaChannelSelector
-                                    .getValueSelectorFromRESTID(entry.getKey());
                             if (!selector.isProperty()) {
-                                if (!entry.getValue().isJsonNull()) {
-                                    updateState(selector.getChannelID(), teslaChannelSelectorProxy
-                                            .getState(entry.getValue().getAsString(), selector, editProperties()));
+                                if (entry.getValue() != null) {
+                                    State state = teslaChannelSelectorProxy.getState(entry.getValue(), selector,
+                                            properties);
+                                    if (state != null) {
+                                        updateChannelState(selector.getChannelID(), state);
+                                    }
                                 } else {
-                                    updateState(selector.getChannelID(), UnDefType.UNDEF);
+                                    updateChannelState(selector.getChannelID(), UnDefType.UNDEF);
                                 }
                             } else {
-                                if (!entry.getValue().isJsonNull()) {
-                                    Map<String, String> properties = editProperties();
-                                    properties.put(selector.getChannelID(), entry.getValue().getAsString());
-                                    updateProperties(properties);
+                                if (entry.getValue() != null
+                                        && !entry.getValue().equals(properties.get(selector.getChannelID()))) {
+                                    properties.put(selector.getChannelID(), entry.getValue());
+                                    propertiesChanged = true;
                                 }
                             }
                         } catch (Exception e) {
@@ -543,6 +557,9 @@ public class TeslaHandler extends BaseThingHandler {
                                     entry.getValue());
                         }
                     }
+                    if (propertiesChanged) {
+                        updateProperties(properties);
+                    }
                 }
             }
         } catch (Exception p) {
@@ -550,6 +567,101 @@ public class TeslaHandler extends BaseThingHandler {
         }
     }
 
+    /**
+     * Reads the fields of a JSON object in a single pass. The values are
+     * collected as strings, null values are kept as null. Nested objects and
+     * arrays are only kept if they can be represented by a string. If
+     * stateObject is not null, the fields are also added to it.
+     */
+    protected Map<String, String> readFields(String json, JsonObject stateObject) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonElement element = null;
+            switch (reader.peek()) {
+                case STRING:
+                case NUMBER: {
+                    String value = reader.nextString();
+                    fields.put(name, value);
+                    if (stateObject != null) {
+                        element = new JsonPrimitive(value);
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = reader.nextBoolean();
+                    fields.put(name, String.valueOf(value));
+                    if (stateObject != null) {
+                        element = new JsonPrimitive(value);
+                    }
+                    break;
+                }
+                case NULL: {
+                    reader.nextNull();
+                    fields.put(name, null);
+                    element = JsonNull.INSTANCE;
+                    break;
+                }
+                default: {
+                    element = jsonElementAdapter.read(reader);
+                    if (element.isJsonArray() && element.getAsJsonArray().size() == 1
+                            && element.getAsJsonArray().get(0).isJsonPrimitive()) {
+                        fields.put(name, element.getAsString());
+                    }
+                    break;
+                }
+            }
+            if (stateObject != null) {
+                stateObject.add(name, element);
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+
+    protected void updateStateObject(String request, JsonObject stateObject) {
+        switch (request) {
+            case TESLA_DRIVE_STATE: {
+                driveState = gson.fromJson(stateObject, DriveState.class);
+                break;
+            }
+            case TESLA_GUI_STATE: {
+                guiState = gson.fromJson(stateObject, GUIState.class);
+                break;
+            }
+            case TESLA_VEHICLE_STATE: {
+                vehicleState = gson.fromJson(stateObject, VehicleState.class);
+                break;
+            }
+            case TESLA_CHARGE_STATE: {
+                chargeState = gson.fromJson(stateObject, ChargeState.class);
+                if (chargeState.charging_state != null && chargeState.charging_state.equals("Charging")) {
+                    updateChannelState(CHANNEL_CHARGE, OnOffType.ON);
+                } else {
+                    updateChannelState(CHANNEL_CHARGE, OnOffType.OFF);
+                }
+
+                break;
+            }
+            case TESLA_CLIMATE_STATE: {
+                climateState = gson.fromJson(stateObject, ClimateState.class);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Updates the state of a channel, if it differs from the last state sent.
+     */
+    protected void updateChannelState(String channelID, State state) {
+        if (!state.equals(channelStates.put(channelID, state))) {
+            updateState(channelID, state);
+        }
+    }
+
     protected boolean isAwake() {
         return (vehicle != null) ? (vehicle.state != "asleep" && vehicle.vehicle_id != null) : false;
     }
@@ -888,24 +1000,26 @@ public class TeslaHandler extends BaseThingHandler {
                                     String vals[] = line.split(",");
                                     if (!vals[0].equals(lastEventTimeStamp)) {
                                         lastEventTimeStamp = vals[0];
-                                        for (int i = 0; i < EventKeys.values().length; i++) {
+                                        Map<String, String> properties = editProperties();
+                                        boolean propertiesChanged = false;
+                                        for (int i = 0; i < EVENT_SELECTORS.length; i++) {
                                             try {
-                                                TeslaChannelSelector selector = TeslaChannelSelector
-                                                        .getValueSelectorFromRESTID((EventKeys.values()[i]).toString());
+                                                TeslaChannelSelector selector = EVENT_SELECTORS[i];
                                                 if (!selector.isProperty()) {
                                                     State newState = teslaChannelSelectorProxy.getState(vals[i],
-                                                            selector, editProperties());
+                                                            selector, properties);
                                                     if (newState != null && !vals[i].equals("")) {
-                                                        updateState(selector.getChannelID(), newState);
+                                                        updateChannelState(selector.getChannelID(), newState);
                                                     } else {
-                                                        updateState(selector.getChannelID(), UnDefType.UNDEF);
+                                                        updateChannelState(selector.getChannelID(), UnDefType.UNDEF);
 
                                                     }
                                                 } else {
-                                                    Map<String, String> properties = editProperties();
-                                                    properties.put(selector.getChannelID(),
-                                                            (selector.getState(vals[i])).toString());
-                                                    updateProperties(properties);
+                                                    String value = (selector.getState(vals[i])).toString();
+                                                    if (!value.equals(properties.get(selector.getChannelID()))) {
+                                                        properties.put(selector.getChannelID(), value);
+                                                        propertiesChanged = true;
+                                                    }
                                                 }
                                             } catch (Exception e) {
                                                 logger.warn(
@@ -913,6 +1027,9 @@ public class TeslaHandler extends BaseThingHandler {
                                                         e.getMessage());
                                             }
                                         }
+                                        if (propertiesChanged) {
+                                            updateProperties(properties);
+                                        }
                                     }
                                 } else {
                                     emptyLineCounter++;
@@ -12,6 +12,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.smarthome.core.library.types.DateTimeType;
@@ -935,6 +936,20 @@ public class TeslaChannelSelectorProxy {
         },
         WHEEL_TYPE("wheel_type", "wheeltype", StringType.class, true);
 
+        private static final Map<String, TeslaChannelSelector> RESTID_SELECTORS = new HashMap<String, TeslaChannelSelector>();
+        private static final Map<String, TeslaChannelSelector> CHANNELID_SELECTORS = new HashMap<String, TeslaChannelSelector>();
+
+        static {
+            for (TeslaChannelSelector c : values()) {
+                if (c.RESTID != null && !RESTID_SELECTORS.containsKey(c.RESTID)) {
+                    RESTID_SELECTORS.put(c.RESTID, c);
+                }
+                if (!CHANNELID_SELECTORS.containsKey(c.channelID)) {
+                    CHANNELID_SELECTORS.put(c.channelID, c);
+                }
+            }
+        }
+
         private final String RESTID;
         private final String channelID;
         private Class<? extends Type> typeClass;
@@ -988,25 +1003,21 @@ public class TeslaChannelSelectorProxy {
         public static TeslaChannelSelector getValueSelectorFromChannelID(String valueSelectorText)
                 throws IllegalArgumentException {
 
-            for (TeslaChannelSelector c : TeslaChannelSelector.values()) {
-                if (c.channelID.equals(valueSelectorText)) {
-                    return c;
-                }
+            TeslaChannelSelector c = CHANNELID_SELECTORS.get(valueSelectorText);
+            if (c != null) {
+                return c;
             }
 
             throw new IllegalArgumentException("Not valid value selector");
         }
 
-        public static TeslaChannelSelector getValueSelectorFromRESTID(String valueSelectorText)
-                throws IllegalArgumentException {
-
-            for (TeslaChannelSelector c : TeslaChannelSelector.values()) {
-                if (c.RESTID != null && c.RESTID.equals(valueSelectorText)) {
-                    return c;
-                }
-            }
-
-            throw new IllegalArgumentException("Not valid value selector");
+        /**
+         * Returns the selector of a variable sent by the vehicle, or null if the variable is not mapped to a channel
+         * or property. The vehicle sends many variables which are not mapped, so they are not reported by an
+         * exception.
+         */
+        public static TeslaChannelSelector getValueSelectorFromRESTID(String valueSelectorText) {
+            return RESTID_SELECTORS.get(valueSelectorText);
         }
     }
 
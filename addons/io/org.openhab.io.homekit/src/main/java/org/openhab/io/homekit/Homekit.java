@@ -33,4 +33,11 @@ public interface Homekit {
      * @param allow boolean indicating whether or not to allow unauthenticated requests
      */
     void allowUnauthenticatedRequests(boolean allow);
+
+    /**
+     * Returns the counters of the characteristic change notifications sent to the HomeKit clients.
+     *
+     * @return the notification statistics
+     */
+    HomekitNotificationStatistics getNotificationStatistics();
 }
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit;
+
+/**
+ * Counters of the characteristic change notifications sent to the HomeKit clients
+ *
+ * @author agent - Initial contribution
+ */
+public class HomekitNotificationStatistics {
+
+    private final int queueDepth;
+    private final long notifiedCount;
+    private final long coalescedCount;
+    private final long batchCount;
+    private final long averageLatency;
+    private final long maxLatency;
+
+    public HomekitNotificationStatistics(int queueDepth, long notifiedCount, long coalescedCount, long batchCount,
+            long averageLatency, long maxLatency) {
+        this.queueDepth = queueDepth;
+        this.notifiedCount = notifiedCount;
+        this.coalescedCount = coalescedCount;
+        this.batchCount = batchCount;
+        this.averageLatency = averageLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Returns the number of changed characteristics waiting for the next batch
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of notifications sent
+     */
+    public long getNotifiedCount() {
+        return notifiedCount;
+    }
+
+    /**
+     * Returns the number of changes which were merged into an already queued notification
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Returns the number of batches sent
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the average time in milliseconds from the first change of a characteristic to its notification
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds from the first change of a characteristic to its notification
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+}
@@ -8,13 +8,19 @@
  */
 package org.openhab.io.homekit.internal;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.StateChangeListener;
 import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.homekit.HomekitNotificationStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,13 +32,32 @@ import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
  * Homekit library takes care of insuring only a single subscription exists for
  * each accessory.
  *
+ * The state changes only queue the changed characteristic, the Homekit clients are
+ * notified in batches from the Homekit thread pool once a frame has passed. A
+ * characteristic which changes several times within a frame is notified once.
+ *
  * @author Andy Lintner
  */
 public class HomekitAccessoryUpdater {
 
+    private static final String THREADPOOL_NAME = "homekit";
+
+    /** time in milliseconds the changes are collected before the clients are notified */
+    private static final long FRAME_DURATION = 50;
+
     private Logger logger = LoggerFactory.getLogger(HomekitAccessoryUpdater.class);
     private final ConcurrentMap<ItemKey, Subscription> subscriptionsByName = new ConcurrentHashMap<>();
 
+    /** the changed characteristics with the time of their first change in nanoseconds */
+    private Map<ItemKey, Long> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private long notifiedCount;
+    private long coalescedCount;
+    private long batchCount;
+    private long totalLatency;
+    private long maxLatency;
+
     public void subscribe(GenericItem item, HomekitCharacteristicChangeCallback callback) {
         subscribe(item, null, callback);
     }
@@ -42,18 +67,13 @@ public class HomekitAccessoryUpdater {
             return;
         }
         ItemKey itemKey = new ItemKey(item, key);
-        if (subscriptionsByName.containsKey(itemKey)) {
+        Subscription subscription = new Subscription(itemKey, callback);
+        Subscription previous = subscriptionsByName.put(itemKey, subscription);
+        if (previous != null) {
             logger.error("Received duplicate subscription on " + item.getName());
+            item.removeStateChangeListener(previous);
         }
-        subscriptionsByName.compute(itemKey, (k, v) -> {
-            if (v != null) {
-                logger.error("Received duplicate subscription on " + item.getName());
-                unsubscribe(item, key);
-            }
-            Subscription subscription = (changedItem, oldState, newState) -> callback.changed();
-            item.addStateChangeListener(subscription);
-            return subscription;
-        });
+        item.addStateChangeListener(subscription);
     }
 
     public void unsubscribe(GenericItem item) {
@@ -64,20 +84,92 @@ public class HomekitAccessoryUpdater {
         if (item == null) {
             return;
         }
-        subscriptionsByName.computeIfPresent(new ItemKey(item, key), (k, v) -> {
-            item.removeStateChangeListener(v);
-            return null;
-        });
+        Subscription subscription = subscriptionsByName.remove(new ItemKey(item, key));
+        if (subscription != null) {
+            item.removeStateChangeListener(subscription);
+        }
+    }
+
+    /**
+     * Returns the counters of the notifications sent since the start
+     */
+    public synchronized HomekitNotificationStatistics getStatistics() {
+        return new HomekitNotificationStatistics(pending.size(), notifiedCount, coalescedCount, batchCount,
+                notifiedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatency / notifiedCount),
+                TimeUnit.NANOSECONDS.toMillis(maxLatency));
+    }
+
+    /**
+     * Queues the notification of a changed characteristic, called on the event thread
+     */
+    private synchronized void queue(ItemKey itemKey) {
+        if (pending.containsKey(itemKey)) {
+            coalescedCount++;
+            return;
+        }
+        pending.put(itemKey, System.nanoTime());
+        if (!flushScheduled) {
+            flushScheduled = true;
+            ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(THREADPOOL_NAME);
+            scheduler.schedule(() -> flush(), FRAME_DURATION, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Notifies the clients about all characteristics which changed during the last frame
+     */
+    private void flush() {
+        Map<ItemKey, Long> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        long batchLatency = 0;
+        long batchMaxLatency = 0;
+        int notified = 0;
+        for (Map.Entry<ItemKey, Long> entry : batch.entrySet()) {
+            // the accessory may have been removed in the meantime
+            Subscription subscription = subscriptionsByName.get(entry.getKey());
+            if (subscription == null) {
+                continue;
+            }
+            try {
+                subscription.callback.changed();
+            } catch (Exception e) {
+                logger.debug("Could not notify Homekit clients about {}: {}", entry.getKey().item.getName(),
+                        e.getMessage());
+            }
+            long latency = System.nanoTime() - entry.getValue();
+            batchLatency += latency;
+            batchMaxLatency = Math.max(batchMaxLatency, latency);
+            notified++;
+        }
+        synchronized (this) {
+            notifiedCount += notified;
+            batchCount++;
+            totalLatency += batchLatency;
+            maxLatency = Math.max(maxLatency, batchMaxLatency);
+        }
+        logger.trace("Notified Homekit clients about {} changed characteristics", notified);
     }
 
-    @FunctionalInterface
-    private static interface Subscription extends StateChangeListener {
+    private class Subscription implements StateChangeListener {
+        private final ItemKey itemKey;
+        private final HomekitCharacteristicChangeCallback callback;
+
+        public Subscription(ItemKey itemKey, HomekitCharacteristicChangeCallback callback) {
+            this.itemKey = itemKey;
+            this.callback = callback;
+        }
 
         @Override
-        public abstract void stateChanged(Item item, State oldState, State newState);
+        public void stateChanged(Item item, State oldState, State newState) {
+            queue(itemKey);
+        }
 
         @Override
-        default public void stateUpdated(Item item, State state) {
+        public void stateUpdated(Item item, State state) {
             // Do nothing on non-change update
         }
     }
@@ -83,6 +83,10 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
         this.updater = updater;
     }
 
+    public HomekitAccessoryUpdater getUpdater() {
+        return updater;
+    }
+
     public void setSettings(HomekitSettings settings) {
         this.settings = settings;
     }
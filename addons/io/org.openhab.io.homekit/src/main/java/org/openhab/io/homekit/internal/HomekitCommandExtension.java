@@ -15,6 +15,7 @@ import org.eclipse.smarthome.core.storage.StorageService;
 import org.eclipse.smarthome.io.console.Console;
 import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
 import org.openhab.io.homekit.Homekit;
+import org.openhab.io.homekit.HomekitNotificationStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,7 @@ public class HomekitCommandExtension extends AbstractConsoleCommandExtension {
 
     private static final String SUBCMD_CLEAR_PAIRINGS = "clearPairings";
     private static final String SUBCMD_ALLOW_UNAUTHENTICATED = "allowUnauthenticated";
+    private static final String SUBCMD_NOTIFICATIONS = "notifications";
 
     private final Logger logger = LoggerFactory.getLogger(HomekitCommandExtension.class);
     private StorageService storageService;
@@ -54,6 +56,10 @@ public class HomekitCommandExtension extends AbstractConsoleCommandExtension {
                     }
                     break;
 
+                case SUBCMD_NOTIFICATIONS:
+                    printNotificationStatistics(console);
+                    break;
+
                 default:
                     console.println("Unknown command '" + subCommand + "'");
                     printUsage(console);
@@ -67,7 +73,9 @@ public class HomekitCommandExtension extends AbstractConsoleCommandExtension {
         return Arrays.asList(
                 new String[] { buildCommandUsage(SUBCMD_CLEAR_PAIRINGS, "removes all pairings with Homekit clients"),
                         buildCommandUsage(SUBCMD_ALLOW_UNAUTHENTICATED + " <boolean>",
-                                "enables or disables unauthenticated access to facilitate debugging") });
+                                "enables or disables unauthenticated access to facilitate debugging"),
+                        buildCommandUsage(SUBCMD_NOTIFICATIONS,
+                                "shows the queued and sent characteristic change notifications") });
     }
 
     public void setStorageService(StorageService storageService) {
@@ -93,4 +101,14 @@ public class HomekitCommandExtension extends AbstractConsoleCommandExtension {
         console.println((allow ? "Enabled " : "Disabled ") + "unauthenticated homekit access");
     }
 
+    private void printNotificationStatistics(Console console) {
+        HomekitNotificationStatistics statistics = homekit.getNotificationStatistics();
+        console.println("Queued notifications:    " + statistics.getQueueDepth());
+        console.println("Sent notifications:      " + statistics.getNotifiedCount());
+        console.println("Coalesced changes:       " + statistics.getCoalescedCount());
+        console.println("Sent batches:            " + statistics.getBatchCount());
+        console.println("Average latency (ms):    " + statistics.getAverageLatency());
+        console.println("Maximum latency (ms):    " + statistics.getMaxLatency());
+    }
+
 }
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.items.StateChangeListener;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueState;
+
+import com.google.gson.Gson;
+
+/**
+ * Keeps the items with a supported tag and the JSON of their Hue devices.
+ * The index is updated by the events of the item registry and the state
+ * changes of the tagged items, so a request for the lights only writes a
+ * prepared buffer instead of walking through the whole item registry.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class HueDeviceIndex implements ItemRegistryChangeListener, StateChangeListener {
+    private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting", "TargetTemperature" };
+
+    private final Gson gson;
+
+    /** the JSON of the Hue device by item name */
+    private final Map<String, String> devices = new TreeMap<String, String>();
+
+    /** the tagged items by name */
+    private final Map<String, Item> items = new TreeMap<String, Item>();
+
+    private ItemRegistry itemRegistry;
+
+    /** incremented on every change of the devices */
+    private long version;
+
+    private Snapshot snapshot;
+
+    public HueDeviceIndex(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Indexes all items of the registry and keeps the index up to date with
+     * the changes of the registry.
+     */
+    public void setItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry = itemRegistry;
+        itemRegistry.addRegistryChangeListener(this);
+        reindex();
+    }
+
+    public void unsetItemRegistry(ItemRegistry itemRegistry) {
+        itemRegistry.removeRegistryChangeListener(this);
+        this.itemRegistry = null;
+        reindex();
+    }
+
+    /**
+     * Returns true if the item has a supported tag
+     */
+    public static boolean isSupported(Item item) {
+        for (String tag : item.getTags()) {
+            if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the JSON of the Hue device of a tagged item or null if the item
+     * is not tagged.
+     */
+    public synchronized String getDevice(String itemName) {
+        return devices.get(itemName);
+    }
+
+    /**
+     * Returns the names of the tagged items
+     */
+    public synchronized String[] getItemNames() {
+        return items.keySet().toArray(new String[items.size()]);
+    }
+
+    /**
+     * Returns the current snapshot of the JSON documents which list the
+     * devices, it is only created again after a device has changed.
+     */
+    public synchronized Snapshot getSnapshot() {
+        if (snapshot == null || snapshot.version != version) {
+            Map<String, String> labels = new TreeMap<String, String>();
+            for (Item item : items.values()) {
+                labels.put(item.getName(), item.getLabel());
+            }
+            snapshot = new Snapshot(version, renderDataStore(), gson.toJson(labels).getBytes(StandardCharsets.UTF_8));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Converts an Item to a HueDevice
+     *
+     * @param item
+     * @return
+     *         HueDevice
+     */
+    public static HueDevice itemToDevice(Item item) {
+        State itemState = item.getState();
+        HueState hueState;
+        if (itemState instanceof HSBType) {
+            HSBType color = (HSBType) itemState;
+            hueState = new HueState(color);
+        } else if (itemState instanceof DecimalType) {
+            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
+            hueState = new HueState(bri);
+        } else if (itemState instanceof OnOffType) {
+            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
+            hueState = new HueState(bri);
+        } else {
+            hueState = new HueState((short) 0);
+        }
+
+        HueDevice d = new HueDevice(hueState, item.getLabel(), item.getName());
+        return d;
+    }
+
+    /**
+     * Joins the JSON of the devices to the JSON of the data store
+     */
+    private byte[] renderDataStore() {
+        StringBuilder json = new StringBuilder("{\"lights\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> device : devices.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(gson.toJson(device.getKey())).append(':').append(device.getValue());
+        }
+        json.append("}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private synchronized void reindex() {
+        for (Item item : items.values().toArray(new Item[items.size()])) {
+            remove(item);
+        }
+        if (itemRegistry != null) {
+            for (Item item : itemRegistry.getItems()) {
+                add(item);
+            }
+        }
+        version++;
+    }
+
+    private void add(Item item) {
+        if (!isSupported(item)) {
+            return;
+        }
+        devices.put(item.getName(), gson.toJson(itemToDevice(item)));
+        items.put(item.getName(), item);
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).addStateChangeListener(this);
+        }
+        version++;
+    }
+
+    private void remove(Item element) {
+        // the registry may pass a new instance of the removed item
+        Item item = items.remove(element.getName());
+        if (item == null) {
+            return;
+        }
+        devices.remove(item.getName());
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).removeStateChangeListener(this);
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized void added(Item element) {
+        add(element);
+    }
+
+    @Override
+    public synchronized void removed(Item element) {
+        remove(element);
+    }
+
+    @Override
+    public synchronized void updated(Item oldElement, Item element) {
+        remove(oldElement);
+        add(element);
+    }
+
+    @Override
+    public void allItemsChanged(Collection<String> oldItemNames) {
+        reindex();
+    }
+
+    @Override
+    public synchronized void stateChanged(Item item, State oldState, State newState) {
+        if (devices.containsKey(item.getName())) {
+            devices.put(item.getName(), gson.toJson(itemToDevice(item)));
+            version++;
+        }
+    }
+
+    @Override
+    public void stateUpdated(Item item, State state) {
+        // the device only changes with the state
+    }
+
+    /**
+     * the JSON documents of a version of the devices
+     */
+    public static class Snapshot {
+        public final long version;
+        public final byte[] dataStore;
+        public final byte[] lights;
+
+        public Snapshot(long version, byte[] dataStore, byte[] lights) {
+            this.version = version;
+            this.dataStore = dataStore;
+            this.lights = lights;
+        }
+    }
+}
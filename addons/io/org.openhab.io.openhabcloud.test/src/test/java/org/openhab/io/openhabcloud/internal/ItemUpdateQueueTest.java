@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.openhabcloud.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the batching and the deduplication of the {@link ItemUpdateQueue}. The socket.io connection of the
+ * CloudClient is replaced by a sender which records the emitted updates.
+ *
+ * @author agent - Initial contribution
+ */
+public class ItemUpdateQueueTest {
+    /** an interval which doesn't pass during a test, the updates are flushed by the test */
+    private static final long MANUAL = TimeUnit.HOURS.toMillis(1);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final RecordingSocket socket = new RecordingSocket();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testUpdatesWithinTheIntervalAreSentTogether() throws InterruptedException {
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, 50, scheduler);
+
+        queue.add("Light", "ON");
+        queue.add("Temperature", "20.5");
+        queue.add("Light", "OFF");
+        queue.add("Temperature", "21.0");
+
+        List<String[]> batch = socket.batches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertUpdate("Light", "OFF", batch.get(0));
+        assertUpdate("Temperature", "21.0", batch.get(1));
+        assertNull(socket.batches.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testUnchangedStatesAreNotSent() {
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, MANUAL, scheduler);
+        queue.add("Light", "ON");
+        queue.flush();
+        assertEquals(1, socket.updates().size());
+
+        queue.add("Light", "ON");
+        queue.flush();
+        assertEquals(1, socket.updates().size());
+
+        // the state is back to the sent one before the batch is sent
+        queue.add("Light", "OFF");
+        queue.add("Light", "ON");
+        queue.flush();
+        assertEquals(1, socket.updates().size());
+
+        queue.add("Light", "OFF");
+        queue.flush();
+        assertEquals(2, socket.updates().size());
+        assertUpdate("Light", "OFF", socket.updates().get(1));
+    }
+
+    @Test
+    public void testNothingIsSentWhileDisconnected() {
+        socket.connected = false;
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, MANUAL, scheduler);
+
+        queue.add("Light", "ON");
+        queue.flush();
+
+        assertTrue(socket.batches.isEmpty());
+    }
+
+    @Test
+    public void testBacklogIsSentInBatchesAfterConnect() throws InterruptedException {
+        socket.connected = false;
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, MANUAL, scheduler);
+        for (int i = 0; i < 250; i++) {
+            queue.add("Item" + i, "1");
+        }
+
+        socket.connected = true;
+        queue.connected();
+
+        int[] sizes = { 100, 100, 50 };
+        int index = 0;
+        for (int size : sizes) {
+            List<String[]> batch = socket.batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            assertEquals(size, batch.size());
+            for (String[] update : batch) {
+                assertUpdate("Item" + index++, "1", update);
+            }
+        }
+    }
+
+    @Test
+    public void testOldestItemsAreDroppedWhileDisconnected() {
+        socket.connected = false;
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, MANUAL, scheduler);
+        for (int i = 0; i < 1100; i++) {
+            queue.add("Item" + i, "1");
+        }
+        // a later update of a kept item keeps its position
+        queue.add("Item500", "2");
+
+        socket.connected = true;
+        queue.flush();
+
+        List<String[]> updates = socket.updates();
+        assertEquals(1000, updates.size());
+        assertUpdate("Item100", "1", updates.get(0));
+        assertUpdate("Item500", "2", updates.get(400));
+        assertUpdate("Item1099", "1", updates.get(999));
+    }
+
+    @Test
+    public void testStatesAreSentAgainAfterReconnect() {
+        ItemUpdateQueue queue = new ItemUpdateQueue(socket, MANUAL, scheduler);
+        queue.add("Light", "ON");
+        queue.flush();
+
+        socket.connected = false;
+        queue.disconnected();
+        queue.add("Light", "ON");
+        socket.connected = true;
+        queue.flush();
+
+        List<String[]> updates = socket.updates();
+        assertEquals(2, updates.size());
+        assertUpdate("Light", "ON", updates.get(1));
+    }
+
+    private static void assertUpdate(String itemName, String itemState, String[] update) {
+        assertEquals(itemName, update[0]);
+        assertEquals(itemState, update[1]);
+    }
+
+    /**
+     * Stands in for the socket.io connection of the CloudClient.
+     */
+    private static class RecordingSocket implements ItemUpdateQueue.Sender {
+        private final BlockingQueue<List<String[]>> batches = new LinkedBlockingQueue<List<String[]>>();
+        private volatile boolean connected = true;
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void sendItemUpdates(List<String[]> updates) {
+            batches.add(new ArrayList<String[]>(updates));
+        }
+
+        private List<String[]> updates() {
+            List<String[]> updates = new ArrayList<String[]>();
+            for (List<String[]> batch : batches) {
+                updates.addAll(batch);
+            }
+            return updates;
+        }
+    }
+}
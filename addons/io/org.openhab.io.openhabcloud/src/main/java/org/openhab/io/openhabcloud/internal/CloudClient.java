@@ -60,7 +60,7 @@ import io.socket.engineio.client.Transport;
  *
  */
 
-public class CloudClient {
+public class CloudClient implements ItemUpdateQueue.Sender {
     /*
      * Logger for this class
      */
@@ -110,7 +110,7 @@ public class CloudClient {
     /*
      * This variable indicates if connection to the openHAB Cloud is currently in an established state
      */
-    private boolean isConnected;
+    private volatile boolean isConnected;
 
     /*
      * This variable holds version of local openHAB
@@ -131,6 +131,11 @@ public class CloudClient {
     private boolean remoteAccessEnabled;
     private Set<String> exposedItems;
 
+    /*
+     * This variable holds the queue which collects the item updates sent to the openHAB Cloud
+     */
+    private final ItemUpdateQueue itemUpdateQueue;
+
     /**
      * Constructor of CloudClient
      *
@@ -138,16 +143,18 @@ public class CloudClient {
      * @param secret openHAB's Secret to connect to the openHAB Cloud
      * @param remoteAccessEnabled Allow the openHAB Cloud to be used as a remote proxy
      * @param exposedItems Items that are made available to apps connected to the openHAB Cloud
+     * @param updateInterval Time in milliseconds the item updates are collected before they are sent
      *
      */
     public CloudClient(String uuid, String secret, String baseURL, String localBaseUrl, boolean remoteAccessEnabled,
-            Set<String> exposedItems) {
+            Set<String> exposedItems, long updateInterval) {
         this.uuid = uuid;
         this.secret = secret;
         this.baseURL = baseURL;
         this.localBaseUrl = localBaseUrl;
         this.remoteAccessEnabled = remoteAccessEnabled;
         this.exposedItems = exposedItems;
+        this.itemUpdateQueue = new ItemUpdateQueue(this, updateInterval);
         runningRequests = new HashMap<Integer, Request>();
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
@@ -238,6 +245,8 @@ public class CloudClient {
                 logger.error("Could not start Jetty client: {}", e.getMessage());
             }
         }
+        // Send the item updates collected while the connection was down
+        itemUpdateQueue.connected();
     }
 
     /**
@@ -260,6 +269,8 @@ public class CloudClient {
         if (runningRequests != null) {
             runningRequests.clear();
         }
+        // The last item updates may not have reached the openHAB Cloud, send the next ones in any case
+        itemUpdateQueue.disconnected();
     }
 
     /**
@@ -483,31 +494,45 @@ public class CloudClient {
     }
 
     /**
-     * Send item update to openHAB Cloud
+     * Send item update to openHAB Cloud. The update is queued and sent with the next batch of
+     * updates, it is dropped if the item already has this state in the openHAB Cloud.
      *
      * @param itemName the name of the item
      * @param itemState updated item state
      *
      */
     public void sendItemUpdate(String itemName, String itemState) {
-        if (isConnected()) {
-            logger.debug("Sending update '{}' for item '{}'", itemState, itemName);
-            JSONObject itemUpdateMessage = new JSONObject();
-            try {
-                itemUpdateMessage.put("itemName", itemName);
-                itemUpdateMessage.put("itemStatus", itemState);
+        itemUpdateQueue.add(itemName, itemState);
+        if (!isConnected()) {
+            logger.debug("No connection, Item update is queued");
+        }
+    }
+
+    /**
+     * Send a batch of item updates to openHAB Cloud
+     *
+     * @param updates the names and states of the items
+     *
+     */
+    @Override
+    public void sendItemUpdates(List<String[]> updates) {
+        try {
+            for (String[] update : updates) {
+                logger.debug("Sending update '{}' for item '{}'", update[1], update[0]);
+                JSONObject itemUpdateMessage = new JSONObject();
+                itemUpdateMessage.put("itemName", update[0]);
+                itemUpdateMessage.put("itemStatus", update[1]);
                 socket.emit("itemupdate", itemUpdateMessage);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
             }
-        } else {
-            logger.debug("No connection, Item update is not sent");
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
         }
     }
 
     /**
      * Returns true if openHAB Cloud connection is active
      */
+    @Override
     public boolean isConnected() {
         return isConnected;
     }
@@ -60,8 +60,10 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
     private static final String CFG_EXPOSE = "expose";
     private static final String CFG_BASE_URL = "baseURL";
     private static final String CFG_MODE = "mode";
+    private static final String CFG_UPDATE_INTERVAL = "updateInterval";
     private static final String SECRET_FILE_NAME = "openhabcloud" + File.separator + "secret";
     private static final String DEFAULT_URL = "https://myopenhab.org/";
+    private static final long DEFAULT_UPDATE_INTERVAL = 1000;
 
     private Logger logger = LoggerFactory.getLogger(CloudService.class);
 
@@ -165,6 +167,18 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
             cloudBaseUrl = DEFAULT_URL;
         }
 
+        long updateInterval = DEFAULT_UPDATE_INTERVAL;
+        Object intervalCfg = config.get(CFG_UPDATE_INTERVAL);
+        if (intervalCfg instanceof Number) {
+            updateInterval = ((Number) intervalCfg).longValue();
+        } else if (intervalCfg instanceof String) {
+            try {
+                updateInterval = Long.parseLong(((String) intervalCfg).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid update interval '{}', using {} ms", intervalCfg, DEFAULT_UPDATE_INTERVAL);
+            }
+        }
+
         exposedItems = new HashSet<>();
         Object expCfg = config.get(CFG_EXPOSE);
         if (expCfg instanceof String) {
@@ -192,7 +206,7 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
 
         String localBaseUrl = "http://localhost:" + localPort;
         cloudClient = new CloudClient(InstanceUUID.get(), getSecret(), cloudBaseUrl, localBaseUrl, remoteAccessEnabled,
-                exposedItems);
+                exposedItems, updateInterval);
         cloudClient.setOpenHABVersion(OpenHAB.getVersion());
         cloudClient.connect();
         cloudClient.setListener(this);
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.openhabcloud.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class collects the item updates which are sent to the openHAB Cloud. Updates which do not
+ * change the last sent state of an item are dropped, and the updates of an item within the update
+ * interval are collapsed to its latest state. The collected updates are sent together once the
+ * interval has passed. While the connection is down, the latest state of each item is kept and sent
+ * after the next connect, the number of items kept is limited. The openHAB Cloud may have missed the
+ * last updates before a disconnect, so the sent states are forgotten on disconnect.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class ItemUpdateQueue {
+    /*
+     * Logger for this class
+     */
+    private static Logger logger = LoggerFactory.getLogger(ItemUpdateQueue.class);
+
+    private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
+
+    /*
+     * This constant defines the maximum number of items whose updates are kept while the
+     * connection is down, the items with the oldest updates are dropped first
+     */
+    private static final int MAX_PENDING_UPDATES = 1000;
+
+    /*
+     * This constant defines the maximum number of updates sent by a single flush
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /*
+     * This interface is implemented by the CloudClient to send the updates over its socket
+     */
+    public interface Sender {
+        boolean isConnected();
+
+        void sendItemUpdates(List<String[]> updates);
+    }
+
+    private final Sender sender;
+    private final long updateInterval;
+    private final ScheduledExecutorService scheduler;
+
+    /*
+     * The last state sent for each item
+     */
+    private final Map<String, String> sentStates = new HashMap<String, String>();
+
+    /*
+     * The latest state of the items with unsent updates, in the order of their first update
+     */
+    private final Map<String, String> pendingStates = new LinkedHashMap<String, String>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() > MAX_PENDING_UPDATES) {
+                droppedCount++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private boolean flushScheduled;
+    private long sentCount;
+    private long skippedCount;
+    private long droppedCount;
+
+    /**
+     * Constructor of ItemUpdateQueue
+     *
+     * @param sender the client which sends the updates
+     * @param updateInterval the time in milliseconds the updates are collected before they are sent
+     */
+    public ItemUpdateQueue(Sender sender, long updateInterval) {
+        this(sender, updateInterval, ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD));
+    }
+
+    ItemUpdateQueue(Sender sender, long updateInterval, ScheduledExecutorService scheduler) {
+        this.sender = sender;
+        this.updateInterval = Math.max(0, updateInterval);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues an item update, it is sent with the next batch unless the state equals the last sent
+     * state of the item
+     *
+     * @param itemName the name of the item
+     * @param itemState updated item state
+     */
+    public synchronized void add(String itemName, String itemState) {
+        if (itemState.equals(sentStates.get(itemName))) {
+            // an unsent update is obsolete if the state is back to the sent one
+            pendingStates.remove(itemName);
+            skippedCount++;
+            return;
+        }
+        if (pendingStates.put(itemName, itemState) != null) {
+            skippedCount++;
+        }
+        scheduleFlush(updateInterval);
+    }
+
+    /**
+     * Sends the updates which have been collected while the connection was down
+     */
+    public synchronized void connected() {
+        scheduleFlush(0);
+    }
+
+    /**
+     * Forgets the sent states, so that the next update of each item is sent, and logs the
+     * statistics of the connection
+     */
+    public synchronized void disconnected() {
+        logger.debug("Sent {} item updates, skipped {}, dropped {}, {} pending", sentCount, skippedCount,
+                droppedCount, pendingStates.size());
+        sentStates.clear();
+    }
+
+    private void scheduleFlush(long delay) {
+        if (flushScheduled || pendingStates.isEmpty() || !sender.isConnected()) {
+            return;
+        }
+        flushScheduled = true;
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the pending updates, a large backlog is sent in several batches
+     */
+    void flush() {
+        while (true) {
+            List<String[]> batch = new ArrayList<String[]>();
+            synchronized (this) {
+                if (pendingStates.isEmpty() || !sender.isConnected()) {
+                    flushScheduled = false;
+                    return;
+                }
+                Iterator<Map.Entry<String, String>> iterator = pendingStates.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                    Map.Entry<String, String> entry = iterator.next();
+                    batch.add(new String[] { entry.getKey(), entry.getValue() });
+                    sentStates.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+                sentCount += batch.size();
+            }
+            logger.debug("Sending {} item updates", batch.size());
+            sender.sendItemUpdates(batch);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Feeds M-SEARCH datagrams into the {@link SsdpResponder} and checks the responses.
+ *
+ * @author agent - Initial contribution
+ */
+public class SsdpResponderTest {
+    private static final String UUID = "2f402f80-da50-11e1-9b23-001788255acc";
+    private static final String DEVICE_TYPE = "urn:schemas-upnp-org:device:basic:1";
+    private static final long NOW = 1000000;
+
+    private final List<SsdpService> services = new ArrayList<SsdpService>();
+    private final SsdpResponder responder = new SsdpResponder(services);
+    private SsdpService service;
+
+    @Before
+    public void setUp() throws UnknownHostException {
+        service = new SsdpService(UUID, DEVICE_TYPE, 8080, "/api/discovery.xml");
+        service.addSearchTargets("urn:Belkin:device:**");
+        services.add(service);
+        responder.setLocalAddresses(Arrays.asList(new SsdpResponder.LocalAddress(address("192.168.1.2"), 24),
+                new SsdpResponder.LocalAddress(address("10.0.0.2"), 8)));
+    }
+
+    @Test
+    public void testSearchIsAnswered() throws UnknownHostException {
+        List<byte[]> responses = responder.respond(search("urn:Belkin:device:**"), address("192.168.1.50"), NOW);
+
+        assertEquals(1, responses.size());
+        String response = new String(responses.get(0), StandardCharsets.US_ASCII);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertEquals(DEVICE_TYPE, SsdpServer.getHeader(response, "ST"));
+        assertEquals("uuid:" + UUID + "::" + DEVICE_TYPE, SsdpServer.getHeader(response, "USN"));
+    }
+
+    @Test
+    public void testAllStandardSearchTargetsAreAnswered() throws UnknownHostException {
+        for (String target : new String[] { "ssdp:all", "upnp:rootdevice", "uuid:" + UUID, DEVICE_TYPE }) {
+            assertEquals(target, 1, responder.respond(search(target), address("192.168.1.50"), NOW).size());
+        }
+    }
+
+    @Test
+    public void testOtherSearchTargetsAreNotAnswered() throws UnknownHostException {
+        assertTrue(responder.respond(search("urn:schemas-upnp-org:device:MediaRenderer:1"), address("192.168.1.50"),
+                NOW).isEmpty());
+        assertTrue(responder.respond(search("uuid:other"), address("192.168.1.50"), NOW).isEmpty());
+    }
+
+    @Test
+    public void testOtherPacketsAreNotAnswered() throws UnknownHostException {
+        String notify = "NOTIFY * HTTP/1.1\r\nHOST: 239.255.255.250:1900\r\nNT: upnp:rootdevice\r\n"
+                + "NTS: ssdp:alive\r\nST: upnp:rootdevice\r\n\r\n";
+        assertTrue(responder.respond(packet(notify), address("192.168.1.50"), NOW).isEmpty());
+        assertTrue(responder.respond(packet("M-SEARCH * HTTP/1.1\r\nMX: 3\r\n\r\n"), address("192.168.1.50"), NOW)
+                .isEmpty());
+        assertTrue(responder.respond(packet("M-SE"), address("192.168.1.50"), NOW).isEmpty());
+    }
+
+    @Test
+    public void testLocationIsTheAddressInTheSubnetOfTheClient() throws UnknownHostException {
+        assertEquals("http://192.168.1.2:8080/api/discovery.xml", location(address("192.168.1.50")));
+        assertEquals("http://10.0.0.2:8080/api/discovery.xml", location(address("10.20.30.40")));
+        // the first address for clients in other networks
+        assertEquals("http://192.168.1.2:8080/api/discovery.xml", location(address("172.16.0.1")));
+    }
+
+    @Test
+    public void testConfiguredAddressIsUsedForAllClients() throws UnknownHostException {
+        service.setAddress(address("192.168.5.5"));
+
+        assertEquals("http://192.168.5.5:8080/api/discovery.xml", location(address("10.20.30.40")));
+        assertEquals("http://192.168.5.5:8080/api/discovery.xml", location(address("192.168.1.50")));
+    }
+
+    @Test
+    public void testNoResponseWithoutLocalAddress() throws UnknownHostException {
+        responder.setLocalAddresses(new ArrayList<SsdpResponder.LocalAddress>());
+
+        assertTrue(responder.respond(search("ssdp:all"), address("192.168.1.50"), NOW).isEmpty());
+    }
+
+    @Test
+    public void testResponsesPerClientAreLimited() throws UnknownHostException {
+        InetAddress client = address("192.168.1.50");
+        for (int i = 0; i < SsdpResponder.MAX_RESPONSES_PER_SECOND; i++) {
+            assertEquals(1, responder.respond(search("ssdp:all"), client, NOW + i).size());
+        }
+        assertTrue(responder.respond(search("ssdp:all"), client, NOW + 999).isEmpty());
+
+        // other clients are still answered
+        assertEquals(1, responder.respond(search("ssdp:all"), address("192.168.1.51"), NOW + 999).size());
+        // and the client again in the next second
+        assertEquals(1, responder.respond(search("ssdp:all"), client, NOW + 1000).size());
+    }
+
+    @Test
+    public void testLimitCountsTheResponsesOfAllServices() throws UnknownHostException {
+        services.add(new SsdpService("other", DEVICE_TYPE, 8081, "/description.xml"));
+        InetAddress client = address("192.168.1.50");
+        for (int i = 0; i < SsdpResponder.MAX_RESPONSES_PER_SECOND / 2; i++) {
+            assertEquals(2, responder.respond(search("ssdp:all"), client, NOW).size());
+        }
+        assertTrue(responder.respond(search("ssdp:all"), client, NOW).isEmpty());
+    }
+
+    private String location(InetAddress client) {
+        List<byte[]> responses = responder.respond(search("ssdp:all"), client, NOW);
+        assertEquals(1, responses.size());
+        return SsdpServer.getHeader(new String(responses.get(0), StandardCharsets.US_ASCII), "LOCATION");
+    }
+
+    private static ByteBuffer search(String searchTarget) {
+        return packet("M-SEARCH * HTTP/1.1\r\n" + "HOST: 239.255.255.250:1900\r\n" + "MAN: \"ssdp:discover\"\r\n"
+                + "MX: 3\r\n" + "ST: " + searchTarget + "\r\n" + "\r\n");
+    }
+
+    /**
+     * Returns the packet like it is received, at the start of a larger buffer
+     */
+    private static ByteBuffer packet(String data) {
+        ByteBuffer buffer = ByteBuffer.allocate(1500);
+        buffer.put(data.getBytes(StandardCharsets.US_ASCII));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static InetAddress address(String address) throws UnknownHostException {
+        return InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the M-SEARCH requests and the subnet matching of the {@link SsdpServer}.
+ *
+ * @author agent - Initial contribution
+ */
+public class SsdpServerTest {
+    private static final String SEARCH = "M-SEARCH * HTTP/1.1\r\n" + "HOST: 239.255.255.250:1900\r\n"
+            + "MAN: \"ssdp:discover\"\r\n" + "MX: 3\r\n" + "ST: urn:Belkin:device:**\r\n" + "\r\n";
+
+    @Test
+    public void testHeadersAreFound() {
+        assertEquals("urn:Belkin:device:**", SsdpServer.getHeader(SEARCH, "ST"));
+        assertEquals("239.255.255.250:1900", SsdpServer.getHeader(SEARCH, "HOST"));
+        assertEquals("\"ssdp:discover\"", SsdpServer.getHeader(SEARCH, "MAN"));
+        assertEquals("3", SsdpServer.getHeader(SEARCH, "MX"));
+    }
+
+    @Test
+    public void testHeaderNamesAreCaseInsensitive() {
+        String search = "M-SEARCH * HTTP/1.1\r\nst:ssdp:all\r\nMan : \"ssdp:discover\"\r\n\r\n";
+
+        assertEquals("ssdp:all", SsdpServer.getHeader(search, "ST"));
+        assertEquals("\"ssdp:discover\"", SsdpServer.getHeader(search, "man"));
+    }
+
+    @Test
+    public void testLastHeaderWithoutLineBreak() {
+        assertEquals("upnp:rootdevice", SsdpServer.getHeader("M-SEARCH * HTTP/1.1\r\nST: upnp:rootdevice", "ST"));
+    }
+
+    @Test
+    public void testMissingHeaders() {
+        assertNull(SsdpServer.getHeader(SEARCH, "USN"));
+        // a header name is only found at the start of a line
+        assertNull(SsdpServer.getHeader("M-SEARCH * HTTP/1.1\r\nX-ST: ssdp:all\r\n\r\n", "ST"));
+        assertNull(SsdpServer.getHeader("M-SEARCH * HTTP/1.1\r\nST\r\nMX: 3\r\n\r\n", "ST"));
+        assertNull(SsdpServer.getHeader("", "ST"));
+    }
+
+    @Test
+    public void testSameSubnet() throws UnknownHostException {
+        assertTrue(isSameSubnet("192.168.1.10", "192.168.1.200", 24));
+        assertFalse(isSameSubnet("192.168.1.10", "192.168.2.10", 24));
+        assertTrue(isSameSubnet("10.1.2.3", "10.200.0.1", 8));
+        assertFalse(isSameSubnet("10.1.2.3", "11.1.2.3", 8));
+        assertTrue(isSameSubnet("192.168.1.10", "10.0.0.1", 0));
+        assertTrue(isSameSubnet("192.168.1.10", "192.168.1.10", 32));
+        assertFalse(isSameSubnet("192.168.1.10", "192.168.1.11", 32));
+    }
+
+    @Test
+    public void testSameSubnetWithPartialBytes() throws UnknownHostException {
+        // 172.16.0.0/12 contains 172.16.0.0 - 172.31.255.255
+        assertTrue(isSameSubnet("172.16.0.1", "172.31.255.254", 12));
+        assertFalse(isSameSubnet("172.16.0.1", "172.32.0.1", 12));
+        // 192.168.1.64/26 contains 192.168.1.64 - 192.168.1.127
+        assertTrue(isSameSubnet("192.168.1.65", "192.168.1.127", 26));
+        assertFalse(isSameSubnet("192.168.1.65", "192.168.1.128", 26));
+        assertFalse(isSameSubnet("192.168.1.65", "192.168.1.63", 26));
+    }
+
+    @Test
+    public void testDifferentAddressFamilies() throws UnknownHostException {
+        assertFalse(isSameSubnet("192.168.1.10", "fe80::1", 0));
+    }
+
+    private static boolean isSameSubnet(String a, String b, int prefixLength) throws UnknownHostException {
+        return SsdpServer.isSameSubnet(InetAddress.getByName(a).getAddress(), InetAddress.getByName(b).getAddress(),
+                prefixLength);
+    }
+}
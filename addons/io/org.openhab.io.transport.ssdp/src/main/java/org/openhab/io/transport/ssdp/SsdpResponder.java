@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares the answers of the {@link SsdpServer} to the received packets.
+ * Only M-SEARCH requests for a search target of one of the services are
+ * answered. The location of a response uses the local address in the subnet
+ * of the client, and the number of responses per client is limited.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+class SsdpResponder {
+    private static final Logger logger = LoggerFactory.getLogger(SsdpResponder.class);
+
+    private static final byte[] M_SEARCH = "M-SEARCH".getBytes(StandardCharsets.US_ASCII);
+
+    /** maximum number of responses sent to a single client within a second */
+    static final int MAX_RESPONSES_PER_SECOND = 10;
+
+    /**
+     * A local address with the prefix length of its network
+     */
+    static class LocalAddress {
+        private final InetAddress address;
+        private final int prefixLength;
+
+        LocalAddress(InetAddress address, int prefixLength) {
+            this.address = address;
+            this.prefixLength = prefixLength;
+        }
+    }
+
+    private final List<SsdpService> services;
+    private volatile List<LocalAddress> localAddresses = Collections.emptyList();
+
+    private final Map<InetAddress, Integer> responseCounts = new HashMap<InetAddress, Integer>();
+    private long responseCountStart;
+
+    /**
+     * @param services
+     *            The services to answer for, the list is read on every request
+     */
+    SsdpResponder(List<SsdpService> services) {
+        this.services = services;
+    }
+
+    /**
+     * Sets the local addresses the server can be reached at
+     */
+    void setLocalAddresses(List<LocalAddress> localAddresses) {
+        this.localAddresses = localAddresses;
+    }
+
+    /**
+     * Returns the local addresses the server can be reached at
+     */
+    List<InetAddress> getLocalAddresses() {
+        List<InetAddress> addresses = new ArrayList<InetAddress>();
+        for (LocalAddress address : localAddresses) {
+            addresses.add(address.address);
+        }
+        return addresses;
+    }
+
+    /**
+     * Returns the responses to a received packet
+     *
+     * @param packet
+     *            The packet between position and limit
+     * @param client
+     *            The sender of the packet
+     * @param now
+     *            The current time in milliseconds
+     * @return The responses, which is empty if the packet is no search for
+     *         one of the services or if the client has received too many
+     *         responses
+     */
+    List<byte[]> respond(ByteBuffer packet, InetAddress client, long now) {
+        if (!isSearch(packet)) {
+            // NOTIFY announcements and responses of other devices
+            return Collections.emptyList();
+        }
+        String data = new String(packet.array(), packet.arrayOffset() + packet.position(), packet.remaining(),
+                StandardCharsets.US_ASCII);
+        String searchTarget = SsdpServer.getHeader(data, "ST");
+        if (searchTarget == null) {
+            return Collections.emptyList();
+        }
+        logger.trace("Got SSDP M-SEARCH for {} from {}", searchTarget, client);
+        List<byte[]> responses = new ArrayList<byte[]>();
+        for (SsdpService service : services) {
+            if (!service.matches(searchTarget)) {
+                continue;
+            }
+            if (!acquireResponse(client, now)) {
+                logger.trace("Too many SSDP requests from {}", client);
+                break;
+            }
+            InetAddress localAddress = service.getAddress() != null ? service.getAddress() : getLocalAddress(client);
+            if (localAddress == null) {
+                break;
+            }
+            responses.add(service.getResponse(localAddress));
+        }
+        return responses;
+    }
+
+    private boolean isSearch(ByteBuffer packet) {
+        if (packet.remaining() < M_SEARCH.length) {
+            return false;
+        }
+        for (int i = 0; i < M_SEARCH.length; i++) {
+            if (packet.get(packet.position() + i) != M_SEARCH[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts a response to the given client
+     *
+     * @return false if the client has received too many responses
+     */
+    private boolean acquireResponse(InetAddress client, long now) {
+        if (now - responseCountStart >= 1000) {
+            responseCounts.clear();
+            responseCountStart = now;
+        }
+        Integer count = responseCounts.get(client);
+        int value = count == null ? 1 : count + 1;
+        responseCounts.put(client, value);
+        return value <= MAX_RESPONSES_PER_SECOND;
+    }
+
+    /**
+     * Returns the local address in the subnet of the client, or the first
+     * local address if there is none
+     */
+    private InetAddress getLocalAddress(InetAddress client) {
+        List<LocalAddress> addresses = localAddresses;
+        if (addresses.isEmpty()) {
+            return null;
+        }
+        byte[] clientBytes = client.getAddress();
+        for (LocalAddress address : addresses) {
+            if (SsdpServer.isSameSubnet(address.address.getAddress(), clientBytes, address.prefixLength)) {
+                return address.address;
+            }
+        }
+        return addresses.get(0).address;
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers the SSDP M-SEARCH requests for the registered {@link SsdpService}s.
+ * One non-blocking channel joins the SSDP multicast group on all network
+ * interfaces and is served by a single thread. The received packets are
+ * answered by the {@link SsdpResponder}.
+ *
+ * The server is shared by all bundles, it is started with the first and
+ * stopped with the last registered service.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class SsdpServer implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(SsdpServer.class);
+
+    // jUPNP shares port 1900, but since this is multicast, we can also bind to it
+    static final int SSDP_PORT = 1900;
+    static final String MULTICAST_ADDRESS = "239.255.255.250";
+
+    /** interval to join the multicast group on new network interfaces */
+    private static final long INTERFACE_REFRESH_INTERVAL = 60000;
+
+    private static final long RETRY_DELAY = 3000;
+
+    private static SsdpServer instance;
+
+    private final List<SsdpService> services = new CopyOnWriteArrayList<SsdpService>();
+
+    private final SsdpResponder responder = new SsdpResponder(services);
+
+    private final Map<NetworkInterface, MembershipKey> memberships = new HashMap<NetworkInterface, MembershipKey>();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1500);
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile Selector selector;
+    private DatagramChannel channel;
+    // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
+    private DatagramChannel sendChannel;
+    private long nextInterfaceRefresh;
+
+    /**
+     * Returns the server shared by all services
+     */
+    public static synchronized SsdpServer getInstance() {
+        if (instance == null) {
+            instance = new SsdpServer();
+        }
+        return instance;
+    }
+
+    /**
+     * Announces a service, the server is started if it is not running
+     */
+    public synchronized void addService(SsdpService service) {
+        services.add(service);
+        if (thread == null) {
+            running = true;
+            thread = new Thread(this, "SSDP server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the announcement of a service, the server is stopped if there is
+     * no service left
+     */
+    public synchronized void removeService(SsdpService service) {
+        services.remove(service);
+        if (services.isEmpty()) {
+            stop();
+        }
+    }
+
+    /**
+     * Removes all services and stops the server, called when the bundle is
+     * stopped
+     */
+    public synchronized void shutdown() {
+        services.clear();
+        stop();
+    }
+
+    private void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+        thread.interrupt();
+        try {
+            // the next service may be added at once, wait until the sockets are closed
+            thread.join(RETRY_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns the local IPv4 addresses the server listens on
+     */
+    public List<InetAddress> getLocalAddresses() {
+        return responder.getLocalAddresses();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                open();
+                while (running) {
+                    long now = System.currentTimeMillis();
+                    if (now >= nextInterfaceRefresh) {
+                        refreshInterfaces();
+                        nextInterfaceRefresh = now + INTERFACE_REFRESH_INTERVAL;
+                    }
+                    selector.select(INTERFACE_REFRESH_INTERVAL);
+                    selector.selectedKeys().clear();
+                    receive();
+                }
+            } catch (IOException e) {
+                logger.error("IO Error with SSDP server", e);
+            } finally {
+                close();
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException e) {
+                    // stopped or retry at once
+                }
+            }
+        }
+        logger.debug("SSDP server stopped");
+    }
+
+    private void open() throws IOException {
+        selector = Selector.open();
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(SSDP_PORT));
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+        sendChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+        sendChannel.configureBlocking(false);
+        nextInterfaceRefresh = 0;
+    }
+
+    private void close() {
+        memberships.clear();
+        responder.setLocalAddresses(Collections.<SsdpResponder.LocalAddress> emptyList());
+        closeQuietly(channel);
+        closeQuietly(sendChannel);
+        closeQuietly(selector);
+        channel = null;
+        sendChannel = null;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            logger.trace("Error closing {}", closeable, e);
+        }
+    }
+
+    /**
+     * Joins the multicast group on the network interfaces which have been
+     * added since the last refresh and leaves it on the removed ones
+     */
+    private void refreshInterfaces() throws IOException {
+        InetAddress group = InetAddress.getByName(MULTICAST_ADDRESS);
+        Map<NetworkInterface, MembershipKey> joined = new HashMap<NetworkInterface, MembershipKey>();
+        List<SsdpResponder.LocalAddress> addresses = new ArrayList<SsdpResponder.LocalAddress>();
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces != null && interfaces.hasMoreElements()) {
+            NetworkInterface ni = interfaces.nextElement();
+            try {
+                if (!ni.isUp() || ni.isLoopback() || !ni.supportsMulticast()) {
+                    continue;
+                }
+                List<SsdpResponder.LocalAddress> niAddresses = new ArrayList<SsdpResponder.LocalAddress>();
+                for (InterfaceAddress address : ni.getInterfaceAddresses()) {
+                    if (address.getAddress() instanceof Inet4Address) {
+                        niAddresses.add(
+                                new SsdpResponder.LocalAddress(address.getAddress(), address.getNetworkPrefixLength()));
+                    }
+                }
+                if (niAddresses.isEmpty()) {
+                    continue;
+                }
+                MembershipKey key = memberships.remove(ni);
+                if (key == null || !key.isValid()) {
+                    key = channel.join(group, ni);
+                    logger.debug("Joined SSDP multicast group on {}", ni.getName());
+                }
+                joined.put(ni, key);
+                addresses.addAll(niAddresses);
+            } catch (IOException e) {
+                logger.debug("Cannot join SSDP multicast group on {}: {}", ni.getName(), e.getMessage());
+            }
+        }
+        for (MembershipKey key : memberships.values()) {
+            key.drop();
+        }
+        memberships.clear();
+        memberships.putAll(joined);
+        responder.setLocalAddresses(addresses);
+    }
+
+    /**
+     * Reads all pending packets
+     */
+    private void receive() throws IOException {
+        while (true) {
+            buffer.clear();
+            SocketAddress sender = channel.receive(buffer);
+            if (sender == null) {
+                return;
+            }
+            buffer.flip();
+            for (byte[] response : responder.respond(buffer, ((InetSocketAddress) sender).getAddress(),
+                    System.currentTimeMillis())) {
+                try {
+                    if (sendChannel.send(ByteBuffer.wrap(response), sender) == 0) {
+                        logger.trace("Dropped SSDP response to {}", sender);
+                    }
+                } catch (IOException e) {
+                    logger.debug("Could not send SSDP response to {}: {}", sender, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a header of the request or null
+     */
+    static String getHeader(String data, String name) {
+        int start = 0;
+        while (start < data.length()) {
+            int end = data.indexOf("\r\n", start);
+            if (end < 0) {
+                end = data.length();
+            }
+            int colon = data.indexOf(':', start);
+            if (colon > start && colon < end && data.substring(start, colon).trim().equalsIgnoreCase(name)) {
+                return data.substring(colon + 1, end).trim();
+            }
+            start = end + 2;
+        }
+        return null;
+    }
+
+    static boolean isSameSubnet(byte[] a, byte[] b, int prefixLength) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length && prefixLength > 0; i++, prefixLength -= 8) {
+            int mask = prefixLength >= 8 ? 0xff : (0xff << (8 - prefixLength)) & 0xff;
+            if ((a[i] & mask) != (b[i] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
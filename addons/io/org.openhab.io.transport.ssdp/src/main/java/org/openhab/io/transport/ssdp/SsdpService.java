@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A device which is announced by the {@link SsdpServer}. The server answers
+ * the M-SEARCH requests for one of the search targets of the device, the
+ * responses are prepared once for each local address.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class SsdpService {
+    static final String SSDP_ALL = "ssdp:all";
+    static final String ROOT_DEVICE = "upnp:rootdevice";
+
+    private final String uuid;
+    private final String deviceType;
+    private final int port;
+    private final String path;
+    private String usn;
+    private String server = "openHAB/2 UPnP/1.0";
+    private int maxAge = 100;
+    private InetAddress address;
+    private final Set<String> searchTargets = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Map<InetAddress, byte[]> responses = new ConcurrentHashMap<InetAddress, byte[]>();
+
+    /**
+     * @param uuid
+     *            The unique id of the device
+     * @param deviceType
+     *            The device type, sent as ST of the responses
+     * @param port
+     *            The HTTP port of the device description
+     * @param path
+     *            The URI path of the device description
+     */
+    public SsdpService(String uuid, String deviceType, int port, String path) {
+        this.uuid = uuid;
+        this.deviceType = deviceType;
+        this.port = port;
+        this.path = path;
+        this.usn = "uuid:" + uuid + "::" + deviceType;
+        searchTargets.add(SSDP_ALL);
+        searchTargets.add(ROOT_DEVICE);
+        searchTargets.add("uuid:" + uuid);
+        searchTargets.add(deviceType);
+    }
+
+    /**
+     * Sets the USN of the responses, "uuid:{uuid}::{deviceType}" by default
+     */
+    public void setUsn(String usn) {
+        this.usn = usn;
+        responses.clear();
+    }
+
+    /**
+     * Sets the SERVER header of the responses
+     */
+    public void setServer(String server) {
+        this.server = server;
+        responses.clear();
+    }
+
+    /**
+     * Sets the time in seconds the responses may be cached by the clients
+     */
+    public void setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+        responses.clear();
+    }
+
+    /**
+     * Adds search targets the device answers to, besides ssdp:all,
+     * upnp:rootdevice, its uuid and its device type
+     */
+    public void addSearchTargets(String... targets) {
+        searchTargets.addAll(Arrays.asList(targets));
+    }
+
+    /**
+     * Sets the address announced in the location of the device, by default the
+     * local address in the subnet of the client is used
+     */
+    public void setAddress(InetAddress address) {
+        this.address = address;
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Returns true if the device answers to the given search target
+     */
+    boolean matches(String searchTarget) {
+        return searchTargets.contains(searchTarget);
+    }
+
+    /**
+     * Returns the response for a client which reaches this host at the given
+     * local address
+     */
+    byte[] getResponse(InetAddress localAddress) {
+        byte[] response = responses.get(localAddress);
+        if (response == null) {
+            String location = "http://" + localAddress.getHostAddress() + ":" + port + path;
+            String msg = "HTTP/1.1 200 OK\r\n" + "CACHE-CONTROL: max-age=" + maxAge + "\r\n" + "EXT:\r\n"
+                    + "LOCATION: " + location + "\r\n" + "SERVER: " + server + "\r\n" + "ST: " + deviceType + "\r\n"
+                    + "USN: " + usn + "\r\n\r\n";
+            response = msg.getBytes(StandardCharsets.US_ASCII);
+            responses.put(localAddress, response);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.ssdp.internal;
+
+import org.openhab.io.transport.ssdp.SsdpServer;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Bundle activator for the SSDP transport, stops the shared server with the
+ * bundle.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class SsdpActivator implements BundleActivator {
+
+    @Override
+    public void start(BundleContext context) throws Exception {
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        SsdpServer.getInstance().shutdown();
+    }
+
+}
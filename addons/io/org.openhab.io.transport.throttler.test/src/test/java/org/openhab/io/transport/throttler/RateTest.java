@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.throttler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the sliding window of the {@link Rate}.
+ *
+ * @author agent - Initial contribution
+ */
+public class RateTest {
+
+    @Test
+    public void testCallsWithinRateAreNotDelayed() {
+        Rate rate = new Rate(3, 1, TimeUnit.SECONDS);
+        rate.addCall(0);
+        rate.addCall(100);
+
+        assertEquals(200, rate.callTime(200));
+    }
+
+    @Test
+    public void testCallIsDelayedUntilOldestCallLeavesWindow() {
+        Rate rate = new Rate(3, 1, TimeUnit.SECONDS);
+        rate.addCall(0);
+        rate.addCall(100);
+        rate.addCall(200);
+
+        assertEquals(1000, rate.callTime(300));
+        assertEquals(1500, rate.callTime(1500));
+
+        rate.addCall(1000);
+        assertEquals(1100, rate.callTime(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateNeedsCalls() {
+        new Rate(0, 1, TimeUnit.SECONDS);
+    }
+}
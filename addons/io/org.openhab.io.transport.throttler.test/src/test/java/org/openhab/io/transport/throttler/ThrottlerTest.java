@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.throttler;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Throttler} with a manual clock and a scheduler which runs the scheduled dispatches on demand.
+ *
+ * @author agent - Initial contribution
+ */
+public class ThrottlerTest {
+
+    private ManualScheduler scheduler;
+    private Throttler throttler;
+    private long now;
+    private final List<String> executed = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        throttler = newThrottler(Throttler.DEFAULT_QUEUE_LENGTH);
+    }
+
+    @Test
+    public void testGlobalRateDelaysRequests() {
+        throttler.addRate(new Rate(2, 1, TimeUnit.SECONDS));
+        submit(null, Priority.NORMAL, "a");
+        submit(null, Priority.NORMAL, "b");
+        submit(null, Priority.NORMAL, "c");
+
+        advance(0);
+        assertEquals(Arrays.asList("a", "b"), executed);
+
+        advance(999);
+        assertEquals(2, executed.size());
+
+        advance(1000);
+        assertEquals(Arrays.asList("a", "b", "c"), executed);
+        assertEquals(333, throttler.getAverageDelay());
+    }
+
+    @Test
+    public void testAllGlobalRatesApply() {
+        throttler.addRate(new Rate(2, 1, TimeUnit.SECONDS));
+        throttler.addRate(new Rate(3, 1, TimeUnit.MINUTES));
+        for (int i = 0; i < 4; i++) {
+            submit(null, Priority.NORMAL, "r" + i);
+        }
+
+        advance(0);
+        advance(1000);
+        assertEquals(3, executed.size());
+
+        advance(59999);
+        assertEquals(3, executed.size());
+
+        advance(60000);
+        assertEquals(4, executed.size());
+    }
+
+    @Test
+    public void testBlockedKeyDoesNotHoldUpOtherKeys() {
+        throttler.setRate("data", new Rate(1, 10, TimeUnit.SECONDS));
+        submit("data", Priority.NORMAL, "data1");
+        submit("data", Priority.NORMAL, "data2");
+        submit("command", Priority.NORMAL, "command1");
+
+        advance(0);
+        assertEquals(Arrays.asList("data1", "command1"), executed);
+
+        advance(10000);
+        assertEquals(Arrays.asList("data1", "command1", "data2"), executed);
+    }
+
+    @Test
+    public void testHigherPriorityIsExecutedFirst() {
+        throttler.addRate(new Rate(1, 1, TimeUnit.SECONDS));
+        submit(null, Priority.LOW, "low");
+        submit(null, Priority.NORMAL, "normal1");
+        submit(null, Priority.NORMAL, "normal2");
+        submit(null, Priority.HIGH, "high");
+
+        for (int i = 0; i < 4; i++) {
+            advance(i * 1000);
+        }
+        assertEquals(Arrays.asList("high", "normal1", "normal2", "low"), executed);
+    }
+
+    @Test
+    public void testPendingRequestIsDeduplicated() {
+        throttler.setRate("data", new Rate(1, 1, TimeUnit.SECONDS));
+        Future<?> first = submit("data", Priority.NORMAL, "first");
+        Future<?> pending = throttler.submit("data", Priority.NORMAL, "vehicle", new Request("pending"));
+        Future<?> duplicate = throttler.submit("data", Priority.NORMAL, "vehicle", new Request("duplicate"));
+
+        assertSame(pending, duplicate);
+        assertNotSame(first, pending);
+        assertEquals(1, throttler.getDeduplicatedCount());
+
+        advance(0);
+        advance(1000);
+        assertEquals(Arrays.asList("first", "pending"), executed);
+        assertTrue(pending.isDone());
+
+        throttler.submit("data", Priority.NORMAL, "vehicle", new Request("again"));
+        advance(2000);
+        assertEquals(Arrays.asList("first", "pending", "again"), executed);
+        assertEquals(3, throttler.getSubmittedCount());
+        assertEquals(3, throttler.getExecutedCount());
+    }
+
+    @Test
+    public void testCancelledRequestIsReplacedAndSkipped() {
+        throttler.addRate(new Rate(1, 1, TimeUnit.SECONDS));
+        submit(null, Priority.NORMAL, "first");
+        Future<?> cancelled = throttler.submit(null, Priority.NORMAL, "vehicle", new Request("cancelled"));
+        cancelled.cancel(false);
+        Future<?> replacement = throttler.submit(null, Priority.NORMAL, "vehicle", new Request("replacement"));
+        assertNotSame(cancelled, replacement);
+
+        advance(0);
+        advance(1000);
+        assertEquals(Arrays.asList("first", "replacement"), executed);
+        assertEquals(0, throttler.getQueueLength());
+    }
+
+    @Test
+    public void testFullQueueEvictsLowerPriority() {
+        throttler = newThrottler(2);
+        throttler.addRate(new Rate(1, 1, TimeUnit.SECONDS));
+        Future<?> low = submit(null, Priority.LOW, "low");
+        submit(null, Priority.NORMAL, "normal");
+        Future<?> high = submit(null, Priority.HIGH, "high");
+
+        assertTrue(low.isCancelled());
+        assertFalse(high.isCancelled());
+        assertEquals(2, throttler.getQueueLength());
+        assertEquals(1, throttler.getRejectedCount());
+
+        Future<?> rejected = submit(null, Priority.NORMAL, "rejected");
+        assertTrue(rejected.isCancelled());
+        assertEquals(2, throttler.getRejectedCount());
+
+        advance(0);
+        advance(1000);
+        assertEquals(Arrays.asList("high", "normal"), executed);
+    }
+
+    @Test
+    public void testShutdownCancelsPendingRequests() {
+        throttler.addRate(new Rate(1, 1, TimeUnit.SECONDS));
+        submit(null, Priority.NORMAL, "first");
+        Future<?> pending = submit(null, Priority.NORMAL, "pending");
+        advance(0);
+
+        throttler.shutdown();
+        assertTrue(pending.isCancelled());
+        assertEquals(0, throttler.getQueueLength());
+        assertTrue(submit(null, Priority.NORMAL, "late").isCancelled());
+
+        advance(1000);
+        assertEquals(Arrays.asList("first"), executed);
+    }
+
+    @Test
+    public void testBlockedSubmitsShareOneDispatch() {
+        throttler.addRate(new Rate(1, 1, TimeUnit.SECONDS));
+        submit(null, Priority.NORMAL, "first");
+        advance(0);
+        assertEquals(1, scheduler.scheduledCount);
+
+        // the scheduler runs in between the submits
+        for (int i = 0; i < 10; i++) {
+            submit(null, Priority.NORMAL, "r" + i);
+            advance(i * 10);
+        }
+        assertEquals(Arrays.asList("first"), executed);
+        assertEquals(2, scheduler.scheduledCount);
+        assertEquals(1, scheduler.scheduled.size());
+
+        advance(1000);
+        assertEquals(Arrays.asList("first", "r0"), executed);
+        assertEquals(3, scheduler.scheduledCount);
+        assertEquals(1, scheduler.scheduled.size());
+    }
+
+    @Test
+    public void testEarlierRequestReplacesTheDispatch() {
+        throttler.setRate("data", new Rate(1, 10, TimeUnit.SECONDS));
+        submit("data", Priority.NORMAL, "data1");
+        advance(0);
+        submit("data", Priority.NORMAL, "data2");
+        assertEquals(1, scheduler.scheduled.size());
+
+        submit("command", Priority.NORMAL, "command1");
+        assertEquals(1, scheduler.scheduled.size());
+
+        advance(0);
+        assertEquals(Arrays.asList("data1", "command1"), executed);
+        assertEquals(1, scheduler.scheduled.size());
+
+        advance(10000);
+        assertEquals(Arrays.asList("data1", "command1", "data2"), executed);
+        assertTrue(scheduler.scheduled.isEmpty());
+    }
+
+    private Throttler newThrottler(int maxQueueLength) {
+        return new Throttler(scheduler, new TimeProvider() {
+            @Override
+            public long getCurrentTimeInMillis() {
+                return now;
+            }
+        }, maxQueueLength);
+    }
+
+    private Future<?> submit(Object key, Priority priority, String name) {
+        return throttler.submit(key, priority, new Request(name));
+    }
+
+    /**
+     * Moves the clock to the given time and runs the dispatches which are due
+     */
+    private void advance(long time) {
+        now = time;
+        scheduler.runDue();
+    }
+
+    private class Request implements Runnable {
+        private final String name;
+
+        Request(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+    }
+
+    /**
+     * Records the scheduled dispatches with their due time and executes the requests immediately.
+     */
+    private class ManualScheduler extends ScheduledThreadPoolExecutor {
+        /** The dispatches which are neither run nor cancelled */
+        private final List<ScheduledJob> scheduled = new ArrayList<ScheduledJob>();
+        private int scheduledCount;
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            ScheduledJob job = new ScheduledJob(command, now + unit.toMillis(delay));
+            scheduled.add(job);
+            scheduledCount++;
+            return job;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        void runDue() {
+            for (int i = 0; i < scheduled.size(); i++) {
+                ScheduledJob job = scheduled.get(i);
+                if (job.dueTime <= now) {
+                    scheduled.remove(i--);
+                    job.run();
+                }
+            }
+        }
+
+        private class ScheduledJob extends FutureTask<Void> implements ScheduledFuture<Void> {
+            private final long dueTime;
+
+            ScheduledJob(Runnable command, long dueTime) {
+                super(command, null);
+                this.dueTime = dueTime;
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                scheduled.remove(this);
+                return super.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(dueTime - now, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed other) {
+                return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.throttler;
+
+/**
+ * The {@link Priority} defines the lanes of a {@link Throttler}. Pending
+ * requests of a higher priority are executed before the ones of a lower
+ * priority, requests of the same priority are executed in the order of
+ * their submission.
+ *
+ * @author agent - Initial contribution
+ */
+public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.throttler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Rate} defines a rate limiter that accepts a number of calls to be
+ * executed in a given time length. It works like a token bucket holding one
+ * token per call, a token used by a call returns to the bucket once the time
+ * length has passed. The times of the last calls are kept in a ring buffer,
+ * so no objects are allocated per call.
+ *
+ * A rate keeps the calls of a single throttler, it must not be shared.
+ *
+ * @author agent - Initial contribution
+ */
+public final class Rate {
+
+    private final int numberCalls;
+    private final long timeInMillis;
+    private final long[] callHistory;
+    private int oldest;
+    private int count;
+
+    public Rate(int numberCalls, int timeLength, TimeUnit timeUnit) {
+        if (numberCalls < 1) {
+            throw new IllegalArgumentException("The number of calls must be positive");
+        }
+        this.numberCalls = numberCalls;
+        this.timeInMillis = timeUnit.toMillis(timeLength);
+        this.callHistory = new long[numberCalls];
+    }
+
+    public int getNumberCalls() {
+        return numberCalls;
+    }
+
+    public long timeInMillis() {
+        return timeInMillis;
+    }
+
+    /**
+     * Returns the earliest time a call is accepted, which is the given time if
+     * a token is left
+     */
+    long callTime(long now) {
+        if (count < numberCalls) {
+            return now;
+        }
+        return Math.max(now, callHistory[oldest] + timeInMillis);
+    }
+
+    /**
+     * Records a call, the calls have to be added in the order of their times
+     */
+    void addCall(long callTime) {
+        if (count < numberCalls) {
+            callHistory[(oldest + count) % numberCalls] = callTime;
+            count++;
+        } else {
+            callHistory[oldest] = callTime;
+            oldest = (oldest + 1) % numberCalls;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.transport.throttler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Throttler} executes requests to a rate limited service. The
+ * requests have to respect all global rates of the throttler and the rate of
+ * their key, if one is set for the key.
+ *
+ * Pending requests are queued per {@link Priority}. A request which has to
+ * wait for the rate of its key does not hold up the requests of other keys.
+ * A request submitted with a request id is dropped, if a request with the
+ * same key and id is still pending, the future of the pending request is
+ * returned instead.
+ *
+ * The queue is processed by a single job on the scheduler, which is only
+ * scheduled when the next request is due, and which is replaced if a request
+ * is submitted which is due earlier. The requests are executed on the
+ * scheduler as well.
+ *
+ * @author agent - Initial contribution
+ */
+public class Throttler {
+
+    private final Logger logger = LoggerFactory.getLogger(Throttler.class);
+
+    public static final int DEFAULT_QUEUE_LENGTH = 150;
+
+    private final ScheduledExecutorService scheduler;
+    private final TimeProvider timeProvider;
+    private final int maxQueueLength;
+
+    private final List<Rate> rates = new ArrayList<Rate>();
+    private final Map<Object, Lane> lanes = new HashMap<Object, Lane>();
+    private final Lane defaultLane = new Lane();
+    private final List<ArrayDeque<ThrottledTask>> queues = new ArrayList<ArrayDeque<ThrottledTask>>();
+    private int queueLength;
+
+    private long nextDispatchTime = Long.MAX_VALUE;
+    private ScheduledFuture<?> dispatchJob;
+    private boolean isShutdown;
+
+    private long submittedCount;
+    private long executedCount;
+    private long deduplicatedCount;
+    private long rejectedCount;
+    private long totalDelay;
+
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    public Throttler(ScheduledExecutorService scheduler) {
+        this(scheduler, TimeProvider.SYSTEM_PROVIDER, DEFAULT_QUEUE_LENGTH);
+    }
+
+    public Throttler(ScheduledExecutorService scheduler, TimeProvider timeProvider, int maxQueueLength) {
+        this.scheduler = scheduler;
+        this.timeProvider = timeProvider;
+        this.maxQueueLength = maxQueueLength;
+        for (int i = 0; i < Priority.values().length; i++) {
+            queues.add(new ArrayDeque<ThrottledTask>());
+        }
+    }
+
+    /**
+     * Adds a rate which applies to all requests
+     */
+    public synchronized void addRate(Rate rate) {
+        rates.add(rate);
+    }
+
+    /**
+     * Sets the rate of the requests submitted with the given key
+     */
+    public synchronized void setRate(Object key, Rate rate) {
+        getLane(key).rate = rate;
+    }
+
+    public Future<?> submit(Runnable task) {
+        return submit(null, Priority.NORMAL, null, task);
+    }
+
+    public Future<?> submit(Object key, Runnable task) {
+        return submit(key, Priority.NORMAL, null, task);
+    }
+
+    public Future<?> submit(Object key, Priority priority, Runnable task) {
+        return submit(key, priority, null, task);
+    }
+
+    /**
+     * Queues a request
+     *
+     * @param key the key of the rate of the request, or null
+     * @param priority the priority of the request
+     * @param requestId identifies identical requests, or null if the request
+     *            is never dropped as duplicate
+     * @param task the request
+     * @return the future of the request, it is cancelled if the request has
+     *         been rejected
+     */
+    public synchronized Future<?> submit(Object key, Priority priority, Object requestId, Runnable task) {
+        Lane lane = getLane(key);
+        if (requestId != null && lane.pending != null) {
+            ThrottledTask pendingTask = lane.pending.get(requestId);
+            if (pendingTask != null && !pendingTask.isCancelled()) {
+                deduplicatedCount++;
+                return pendingTask;
+            }
+        }
+
+        long now = timeProvider.getCurrentTimeInMillis();
+        ThrottledTask throttledTask = new ThrottledTask(task, lane, requestId, now);
+        if (isShutdown || (queueLength >= maxQueueLength && !evict(priority))) {
+            logger.warn("The throttler can not take the task '{}' at this point in time", task);
+            rejectedCount++;
+            throttledTask.cancel(false);
+            return throttledTask;
+        }
+
+        queues.get(priority.ordinal()).addLast(throttledTask);
+        queueLength++;
+        if (requestId != null) {
+            if (lane.pending == null) {
+                lane.pending = new HashMap<Object, ThrottledTask>();
+            }
+            lane.pending.put(requestId, throttledTask);
+        }
+        submittedCount++;
+        long callTime = now;
+        for (Rate rate : rates) {
+            callTime = Math.max(callTime, rate.callTime(now));
+        }
+        if (lane.rate != null) {
+            callTime = Math.max(callTime, lane.rate.callTime(now));
+        }
+        scheduleDispatch(callTime, now);
+        return throttledTask;
+    }
+
+    /**
+     * Cancels all pending requests, further requests are rejected
+     */
+    public synchronized void shutdown() {
+        isShutdown = true;
+        for (ArrayDeque<ThrottledTask> queue : queues) {
+            for (ThrottledTask task : queue) {
+                task.cancel(false);
+            }
+            queue.clear();
+        }
+        for (Lane lane : lanes.values()) {
+            lane.pending = null;
+        }
+        defaultLane.pending = null;
+        queueLength = 0;
+        if (dispatchJob != null) {
+            dispatchJob.cancel(false);
+            dispatchJob = null;
+        }
+    }
+
+    /**
+     * Returns the number of pending requests
+     */
+    public synchronized int getQueueLength() {
+        return queueLength;
+    }
+
+    /**
+     * Returns the number of requests which have been queued
+     */
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * Returns the number of requests which have been started
+     */
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Returns the number of requests which were dropped as duplicate of a
+     * pending request
+     */
+    public synchronized long getDeduplicatedCount() {
+        return deduplicatedCount;
+    }
+
+    /**
+     * Returns the number of requests which were rejected or evicted because the
+     * queue was full
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns the average time in milliseconds the executed requests have been
+     * waiting in the queue
+     */
+    public synchronized long getAverageDelay() {
+        return executedCount == 0 ? 0 : totalDelay / executedCount;
+    }
+
+    private Lane getLane(Object key) {
+        if (key == null) {
+            return defaultLane;
+        }
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = new Lane();
+            lanes.put(key, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * Removes the latest request with a lower priority than the given one from
+     * the queue
+     *
+     * @return false if there is no request with a lower priority
+     */
+    private boolean evict(Priority priority) {
+        for (int i = queues.size() - 1; i > priority.ordinal(); i--) {
+            ThrottledTask task = queues.get(i).pollLast();
+            if (task != null) {
+                logger.debug("The throttler evicts the task '{}' of priority {}", task, Priority.values()[i]);
+                removePending(task);
+                task.cancel(false);
+                queueLength--;
+                rejectedCount++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removePending(ThrottledTask task) {
+        if (task.requestId != null && task.lane.pending != null && task.lane.pending.get(task.requestId) == task) {
+            task.lane.pending.remove(task.requestId);
+        }
+    }
+
+    /**
+     * Schedules the dispatch at the given time, unless it is already scheduled
+     * for an earlier time. A dispatch scheduled for a later time is cancelled.
+     */
+    private void scheduleDispatch(long time, long now) {
+        if (time < nextDispatchTime) {
+            if (dispatchJob != null) {
+                dispatchJob.cancel(false);
+            }
+            nextDispatchTime = time;
+            dispatchJob = scheduler.schedule(dispatchTask, time - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts the pending requests which are due and schedules the next
+     * dispatch for the remaining ones
+     */
+    private synchronized void dispatch() {
+        nextDispatchTime = Long.MAX_VALUE;
+        dispatchJob = null;
+        long now = timeProvider.getCurrentTimeInMillis();
+        while (queueLength > 0) {
+            long callTime = now;
+            for (Rate rate : rates) {
+                callTime = Math.max(callTime, rate.callTime(now));
+            }
+            if (callTime > now) {
+                scheduleDispatch(callTime, now);
+                return;
+            }
+
+            ThrottledTask next = null;
+            long nextLaneTime = Long.MAX_VALUE;
+            for (ArrayDeque<ThrottledTask> queue : queues) {
+                Iterator<ThrottledTask> iterator = queue.iterator();
+                while (next == null && iterator.hasNext()) {
+                    ThrottledTask task = iterator.next();
+                    long laneTime = task.lane.rate == null || task.isCancelled() ? now : task.lane.rate.callTime(now);
+                    if (laneTime <= now) {
+                        iterator.remove();
+                        next = task;
+                    } else {
+                        nextLaneTime = Math.min(nextLaneTime, laneTime);
+                    }
+                }
+                if (next != null) {
+                    break;
+                }
+            }
+            if (next == null) {
+                scheduleDispatch(nextLaneTime, now);
+                return;
+            }
+
+            queueLength--;
+            removePending(next);
+            if (next.isCancelled()) {
+                continue;
+            }
+            for (Rate rate : rates) {
+                rate.addCall(now);
+            }
+            if (next.lane.rate != null) {
+                next.lane.rate.addCall(now);
+            }
+            executedCount++;
+            totalDelay += now - next.submitTime;
+            scheduler.execute(next);
+        }
+    }
+
+    /**
+     * The requests of a key
+     */
+    private static class Lane {
+        private Rate rate;
+        private Map<Object, ThrottledTask> pending;
+    }
+
+    private static class ThrottledTask extends FutureTask<Void> {
+        private final Runnable task;
+        private final Lane lane;
+        private final Object requestId;
+        private final long submitTime;
+
+        ThrottledTask(Runnable task, Lane lane, Object requestId, long submitTime) {
+            super(task, null);
+            this.task = task;
+            this.lane = lane;
+            this.requestId = requestId;
+            this.submitTime = submitTime;
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.backend.beans.StateBean;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Connects hundreds of simulated SSE clients to the {@link ReadResource} and pushes bursts of state changes. The
+ * coalescing is driven by a manual scheduler, a burst ends when the scheduled flush is run.
+ *
+ * @author agent - Initial contribution
+ */
+public class ReadResourceLoadTest {
+    private static final int CLIENTS = 500;
+    private static final int ITEMS = 200;
+    private static final int ADDRESSES_PER_CLIENT = 20;
+    private static final int ROUNDS = 200;
+    private static final int ROUNDS_PER_BURST = 20;
+
+    private final List<RecordingEventOutput> outputs = new ArrayList<RecordingEventOutput>();
+    private final List<Set<String>> addresses = new ArrayList<Set<String>>();
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private ReadResource resource;
+
+    @Before
+    public void setUp() throws Exception {
+        resource = new ReadResource(scheduler) {
+            @Override
+            EventOutput createEventOutput() {
+                RecordingEventOutput output = new RecordingEventOutput();
+                outputs.add(output);
+                return output;
+            }
+        };
+
+        // every client shows one of 15 pages with 20 of the 200 items
+        Random random = new Random(1);
+        for (int c = 0; c < CLIENTS; c++) {
+            Set<String> clientAddresses = new HashSet<String>();
+            int page = random.nextInt(15);
+            for (int k = 0; k < ADDRESSES_PER_CLIENT; k++) {
+                clientAddresses.add("Item" + (page * 13 + k) % ITEMS);
+            }
+            addresses.add(clientAddresses);
+            resource.getStates(new ArrayList<String>(clientAddresses), 0, 0);
+        }
+    }
+
+    @Test
+    public void testBurstsAreCoalescedAndSentToSubscribersOnly() throws Exception {
+        // every tenth client has gone away
+        for (int c = 0; c < CLIENTS; c += 10) {
+            outputs.get(c).close();
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            for (int i = 0; i < ITEMS; i++) {
+                resource.broadcastEvent(state("Item" + i, round));
+            }
+            if (round % ROUNDS_PER_BURST == 0) {
+                // one flush per burst
+                assertEquals(1, scheduler.scheduled.size());
+                scheduler.runScheduled();
+            }
+        }
+        assertFinalStates(String.valueOf(ROUNDS));
+
+        Map<OutboundEvent, Integer> receivers = new IdentityHashMap<OutboundEvent, Integer>();
+        Map<String, Integer> subscribers = new HashMap<String, Integer>();
+        for (int c = 0; c < CLIENTS; c++) {
+            RecordingEventOutput output = outputs.get(c);
+            if (c % 10 == 0) {
+                assertTrue(output.closed);
+                continue;
+            }
+            for (String address : addresses.get(c)) {
+                Integer count = subscribers.get(address);
+                subscribers.put(address, count == null ? 1 : count + 1);
+            }
+            for (OutboundEvent event : output.events) {
+                Map<String, String> states = parse(event);
+                if (states.isEmpty()) {
+                    // the initial states without an item registry
+                    continue;
+                }
+                assertTrue(addresses.get(c).containsAll(states.keySet()));
+                Integer count = receivers.get(event);
+                receivers.put(event, count == null ? 1 : count + 1);
+            }
+        }
+
+        // every update has been serialized once and written to all subscribers of its address
+        for (Map.Entry<OutboundEvent, Integer> entry : receivers.entrySet()) {
+            String address = parse(entry.getKey()).keySet().iterator().next();
+            assertEquals(subscribers.get(address), entry.getValue());
+        }
+        // only the last state of a burst is sent
+        assertEquals(ROUNDS / ROUNDS_PER_BURST * subscribers.size(), receivers.size());
+    }
+
+    @Test
+    public void testFailingClientsAreDropped() throws Exception {
+        for (int c = 0; c < CLIENTS; c += 2) {
+            outputs.get(c).failing = true;
+        }
+
+        for (int i = 0; i < ITEMS; i++) {
+            resource.broadcastEvent(state("Item" + i, 1));
+        }
+        scheduler.runScheduled();
+        assertFinalStates("1");
+        for (int i = 0; i < ITEMS; i++) {
+            resource.broadcastEvent(state("Item" + i, 2));
+        }
+        scheduler.runScheduled();
+        assertFinalStates("2");
+
+        for (int c = 0; c < CLIENTS; c += 2) {
+            RecordingEventOutput output = outputs.get(c);
+            assertTrue(output.closed);
+            // one failed write per client, it is not written to afterwards
+            assertEquals(1, output.failedWrites);
+        }
+    }
+
+    /**
+     * Checks that every connected client has received the given state for all of its addresses.
+     */
+    private void assertFinalStates(String state) {
+        for (int c = 0; c < CLIENTS; c++) {
+            RecordingEventOutput output = outputs.get(c);
+            if (output.closed || output.failing) {
+                continue;
+            }
+            Map<String, String> lastStates = new HashMap<String, String>();
+            for (OutboundEvent event : output.events) {
+                lastStates.putAll(parse(event));
+            }
+            for (String address : addresses.get(c)) {
+                assertEquals("state of " + address + " at client " + c, state, lastStates.get(address));
+            }
+        }
+    }
+
+    private static StateBean state(String name, int value) {
+        StateBean state = new StateBean();
+        state.name = name;
+        state.state = String.valueOf(value);
+        return state;
+    }
+
+    private static Map<String, String> parse(OutboundEvent event) {
+        Map<String, String> states = new HashMap<String, String>();
+        for (Map.Entry<String, JsonElement> entry : new JsonParser().parse((String) event.getData())
+                .getAsJsonObject().getAsJsonObject("d").entrySet()) {
+            states.put(entry.getKey(), entry.getValue().getAsString());
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Records the events instead of writing them to a connection.
+     */
+    private static class RecordingEventOutput extends EventOutput {
+        private final List<OutboundEvent> events = new ArrayList<OutboundEvent>();
+        private boolean closed;
+        private boolean failing;
+        private int failedWrites;
+
+        @Override
+        public void write(OutboundEvent event) throws IOException {
+            if (closed || failing) {
+                failedWrites++;
+                throw new IOException("Connection closed");
+            }
+            events.add(event);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Runs the executed tasks immediately and keeps the scheduled ones until they are run by the test.
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> scheduled = new ArrayList<Runnable>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            scheduled.add(command);
+            return null;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        void runScheduled() {
+            List<Runnable> due = new ArrayList<Runnable>(scheduled);
+            scheduled.clear();
+            for (Runnable command : due) {
+                command.run();
+            }
+        }
+    }
+}
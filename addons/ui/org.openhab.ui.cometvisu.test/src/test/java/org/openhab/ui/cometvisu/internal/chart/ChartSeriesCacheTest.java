@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.chart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Test;
+import org.rrd4j.ConsolFun;
+
+/**
+ * Tests which samples the {@link ChartSeriesCache} queries again.
+ *
+ * @author agent - Initial contribution
+ */
+public class ChartSeriesCacheTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    /** a window in the past, so that its end is not moved to the current time */
+    private static final long END = System.currentTimeMillis() / HOUR * HOUR - 24 * HOUR;
+
+    private final MinuteService service = new MinuteService();
+    private final ChartSeriesCache cache = new ChartSeriesCache();
+
+    @Test
+    public void testSameWindowIsQueriedOnce() {
+        ChartSeries.Points first = cache.getPoints(service, "Temperature", ConsolFun.AVERAGE, END - HOUR, END,
+                MINUTE, 1000);
+        ChartSeries.Points second = cache.getPoints(service, "Temperature", ConsolFun.AVERAGE, END - HOUR, END,
+                MINUTE, 1000);
+
+        assertEquals(1, service.queries.size());
+        assertEquals(61, first.size);
+        assertArrayEquals(first.times, second.times);
+    }
+
+    @Test
+    public void testMovingWindowQueriesTheLastBucket() {
+        cache.getPoints(service, "Temperature", ConsolFun.AVERAGE, END - 2 * HOUR, END - HOUR, MINUTE, 1000);
+        ChartSeries.Points points = cache.getPoints(service, "Temperature", ConsolFun.AVERAGE,
+                END - 2 * HOUR + 10 * MINUTE, END - HOUR + 10 * MINUTE, MINUTE, 1000);
+
+        assertEquals(2, service.queries.size());
+        assertEquals(END - HOUR, service.queries.get(1).getBeginDate().getTime());
+        assertEquals(61, points.size);
+        assertEquals(END - 2 * HOUR + 10 * MINUTE, points.times[0]);
+        assertEquals(END - HOUR + 10 * MINUTE, points.times[60]);
+    }
+
+    @Test
+    public void testWindowsOfDifferentLengthAreCachedSeparately() {
+        for (int i = 0; i < 3; i++) {
+            ChartSeries.Points day = cache.getPoints(service, "Temperature", ConsolFun.AVERAGE, END - 24 * HOUR,
+                    END, MINUTE, 100000);
+            ChartSeries.Points hour = cache.getPoints(service, "Temperature", ConsolFun.AVERAGE, END - HOUR, END,
+                    MINUTE, 100000);
+            assertEquals(24 * 60 + 1, day.size);
+            assertEquals(61, hour.size);
+        }
+
+        // the shorter window doesn't drop the buckets of the longer one
+        assertEquals(2, service.queries.size());
+    }
+
+    @Test
+    public void testItemsAndFunctionsAreCachedSeparately() {
+        ChartSeries.Points temperature = cache.getPoints(service, "Temperature", ConsolFun.MAX, END - HOUR, END,
+                HOUR, 1000);
+        ChartSeries.Points humidity = cache.getPoints(service, "Humidity", ConsolFun.MAX, END - HOUR, END, HOUR,
+                1000);
+        ChartSeries.Points minimum = cache.getPoints(service, "Temperature", ConsolFun.MIN, END - HOUR, END, HOUR,
+                1000);
+
+        assertEquals(3, service.queries.size());
+        assertEquals(59, temperature.values[0], 0);
+        assertEquals(159, humidity.values[0], 0);
+        assertEquals(0, minimum.values[0], 0);
+    }
+
+    /**
+     * A persistence service with a sample at every minute, the value is the minute of the hour. The samples of
+     * the humidity item are offset by 100.
+     */
+    private static class MinuteService implements QueryablePersistenceService {
+        private final List<FilterCriteria> queries = new ArrayList<FilterCriteria>();
+
+        @Override
+        public String getId() {
+            return "minutes";
+        }
+
+        @Override
+        public String getLabel(Locale locale) {
+            return "Minutes";
+        }
+
+        @Override
+        public void store(Item item) {
+        }
+
+        @Override
+        public void store(Item item, String alias) {
+        }
+
+        @Override
+        public Iterable<HistoricItem> query(FilterCriteria filter) {
+            queries.add(filter);
+            final String name = filter.getItemName();
+            final double offset = "Humidity".equals(name) ? 100 : 0;
+            List<HistoricItem> items = new ArrayList<HistoricItem>();
+            long first = (filter.getBeginDate().getTime() + MINUTE - 1) / MINUTE * MINUTE;
+            for (long time = first; time <= filter.getEndDate().getTime(); time += MINUTE) {
+                final long timestamp = time;
+                items.add(new HistoricItem() {
+                    @Override
+                    public Date getTimestamp() {
+                        return new Date(timestamp);
+                    }
+
+                    @Override
+                    public State getState() {
+                        return new DecimalType(offset + timestamp % HOUR / MINUTE);
+                    }
+
+                    @Override
+                    public String getName() {
+                        return name;
+                    }
+                });
+            }
+            return items;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.chart;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.rrd4j.ConsolFun;
+
+/**
+ * Tests the consolidation into buckets and the downsampling of the {@link ChartSeries}.
+ *
+ * @author agent - Initial contribution
+ */
+public class ChartSeriesTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testSamplesAreConsolidatedIntoBuckets() {
+        ChartSeries average = new ChartSeries(ConsolFun.AVERAGE, 1000);
+        ChartSeries max = new ChartSeries(ConsolFun.MAX, 1000);
+        long[] times = { 0, 400, 999, 1000, 2500 };
+        double[] values = { 1, 2, 6, 4, Double.NaN };
+        for (int i = 0; i < times.length; i++) {
+            average.add(times[i], values[i]);
+            max.add(times[i], values[i]);
+        }
+
+        ChartSeries.Points points = average.getPoints(0, 3000, 100);
+        assertEquals(2, points.size);
+        assertEquals(0, points.times[0]);
+        assertEquals(3, points.values[0], DELTA);
+        assertEquals(1000, points.times[1]);
+        assertEquals(4, points.values[1], DELTA);
+        assertEquals(6, max.getPoints(0, 3000, 100).values[0], DELTA);
+    }
+
+    @Test
+    public void testBucketsStartAtMultiplesOfTheBucketSize() {
+        ChartSeries series = new ChartSeries(ConsolFun.AVERAGE, 1000);
+
+        assertEquals(5000, series.getBucketStart(5999));
+        assertEquals(-1000, series.getBucketStart(-1));
+        assertEquals(-1000, series.getBucketStart(-1000));
+    }
+
+    @Test
+    public void testPointsOfTheWindow() {
+        ChartSeries series = new ChartSeries(ConsolFun.LAST, 10);
+        for (int i = 0; i < 100; i++) {
+            series.add(i * 10, i);
+        }
+
+        ChartSeries.Points points = series.getPoints(205, 500, 1000);
+        assertEquals(31, points.size);
+        assertEquals(200, points.times[0]);
+        assertEquals(500, points.times[30]);
+    }
+
+    @Test
+    public void testDownsamplingIsBoundedByTheMaximumNumberOfPoints() {
+        Random random = new Random(1);
+        int[] lengths = { 4, 10, 101, 1000, 4321 };
+        int[] thresholds = { 3, 7, 100, 999 };
+        for (int length : lengths) {
+            ChartSeries series = new ChartSeries(ConsolFun.AVERAGE, 1);
+            for (int i = 0; i < length; i++) {
+                series.add(i, random.nextGaussian());
+            }
+            for (int threshold : thresholds) {
+                ChartSeries.Points points = series.getPoints(0, length, threshold);
+                assertEquals(Math.min(length, threshold), points.size);
+                for (int i = 1; i < points.size; i++) {
+                    assertTrue(points.times[i] > points.times[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDownsamplingKeepsTheFirstAndTheLastPoint() {
+        long[] times = new long[500];
+        double[] values = new double[500];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i * 60000L;
+            values[i] = Math.sin(i / 10.0);
+        }
+
+        ChartSeries.Points points = ChartSeries.downsample(times, values, 50);
+
+        assertEquals(50, points.size);
+        assertEquals(times[0], points.times[0]);
+        assertEquals(values[0], points.values[0], DELTA);
+        assertEquals(times[499], points.times[49]);
+        assertEquals(values[499], points.values[49], DELTA);
+    }
+
+    @Test
+    public void testDownsamplingKeepsTheExtremes() {
+        long[] times = new long[1000];
+        double[] values = new double[1000];
+        Random random = new Random(2);
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i;
+            values[i] = 20 + random.nextDouble() * 0.1;
+        }
+        values[333] = 80;
+        values[777] = -40;
+
+        ChartSeries.Points points = ChartSeries.downsample(times, values, 20);
+
+        assertEquals(20, points.size);
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < points.size; i++) {
+            min = Math.min(min, points.values[i]);
+            max = Math.max(max, points.values[i]);
+            if (points.values[i] == 80) {
+                assertEquals(333, points.times[i]);
+            }
+        }
+        assertEquals(80, max, DELTA);
+        assertEquals(-40, min, DELTA);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogStore.LogEntry;
+
+/**
+ * Replays and compacts the journal files of the {@link RssLogStore}.
+ *
+ * @author agent - Initial contribution
+ */
+public class RssLogStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private long now;
+
+    @Before
+    public void setUp() {
+        root = new File(folder.getRoot(), "rsslog");
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void testJournalIsReplayed() {
+        RssLogStore store = new RssLogStore(root);
+        long first = store.append("alarms", now - 3000, "Door", "opened", "0").id;
+        long second = store.append("alarms", now - 2000, "Window", "opened", "0").id;
+        long third = store.append("alarms", now - 1000, "Smoke", "detected", "0").id;
+        store.append("info", now, "Hello", "world", null);
+        store.updateState("alarms", second, "1");
+        store.delete("alarms", third);
+        store.create("empty");
+
+        RssLogStore loaded = new RssLogStore(root);
+
+        List<LogEntry> entries = loaded.getEntries("alarms", 0, 0, 10);
+        assertEquals(2, entries.size());
+        assertEquals(second, entries.get(0).id);
+        assertEquals("Window", entries.get(0).title);
+        assertEquals("opened", entries.get(0).content);
+        assertEquals("1", entries.get(0).state);
+        assertEquals(now - 2000, entries.get(0).time);
+        assertEquals(first, entries.get(1).id);
+        assertEquals("0", entries.get(1).state);
+        assertEquals(1, loaded.getEntries("info", 0, 0, 10).size());
+        assertFalse(loaded.contains("empty"));
+    }
+
+    @Test
+    public void testOldMessagesAreNotReplayed() {
+        RssLogStore store = new RssLogStore(root);
+        store.append("alarms", now - RssLogStore.MAX_AGE - 1000, "Old", "message", null);
+        store.append("alarms", now - 3000, "Door", "opened", null);
+        store.append("alarms", now - 2000, "Window", "opened", null);
+        store.deleteBefore("alarms", now - 2500);
+
+        List<LogEntry> entries = new RssLogStore(root).getEntries("alarms", 0, 0, 10);
+
+        assertEquals(1, entries.size());
+        assertEquals("Window", entries.get(0).title);
+    }
+
+    @Test
+    public void testInvalidRecordsAreIgnored() throws IOException {
+        RssLogStore store = new RssLogStore(root);
+        store.append("alarms", now - 1000, "Door", "opened", null);
+        Files.write(journal("alarms").toPath(), "{\"op\":\"a\",\"id\":\n\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        RssLogStore loaded = new RssLogStore(root);
+
+        assertEquals(1, loaded.getEntries("alarms", 0, 0, 10).size());
+        assertEquals(2, loaded.append("alarms", now, "Window", "opened", null).id);
+    }
+
+    @Test
+    public void testCompactionOnLoadKeepsTheLastId() throws IOException {
+        RssLogStore store = new RssLogStore(root);
+        store.append("alarms", now - 3000, "Door", "opened", null);
+        long second = store.append("alarms", now - 2000, "Window", "opened", null).id;
+        long third = store.append("alarms", now - 1000, "Smoke", "detected", null).id;
+        store.delete("alarms", third);
+        store.delete("alarms", second);
+
+        // most of the five records are outdated, the journal is rewritten
+        new RssLogStore(root);
+        assertEquals(2, lines(journal("alarms")).size());
+
+        RssLogStore loaded = new RssLogStore(root);
+        assertEquals(1, loaded.getEntries("alarms", 0, 0, 10).size());
+        // a client which has seen the deleted message must see the next one
+        assertEquals(third + 1, loaded.append("alarms", now, "Water", "detected", null).id);
+    }
+
+    @Test
+    public void testCompactionOnWriteKeepsTheLastId() throws IOException {
+        RssLogStore store = new RssLogStore(root);
+        long first = store.append("alarms", now - 2000, "Door", "opened", null).id;
+        long second = store.append("alarms", now - 1000, "Window", "opened", null).id;
+        store.delete("alarms", second);
+        for (int i = 0; i < RssLogStore.MAX_ENTRIES; i++) {
+            store.updateState("alarms", first, Integer.toString(i));
+        }
+        assertTrue(lines(journal("alarms")).size() < 10);
+
+        RssLogStore loaded = new RssLogStore(root);
+        List<LogEntry> entries = loaded.getEntries("alarms", 0, 0, 10);
+        assertEquals(1, entries.size());
+        assertEquals(Integer.toString(RssLogStore.MAX_ENTRIES - 1), entries.get(0).state);
+        assertEquals(second + 1, loaded.append("alarms", now, "Water", "detected", null).id);
+    }
+
+    @Test
+    public void testIdsAreUniqueOverAllLogs() {
+        RssLogStore store = new RssLogStore(root);
+        store.append("alarms", now, "Door", "opened", null);
+        long last = store.append("info", now, "Hello", "world", null).id;
+
+        RssLogStore loaded = new RssLogStore(root);
+
+        assertEquals(last + 1, loaded.append("alarms", now, "Window", "opened", null).id);
+        assertEquals(last + 2, loaded.append("info", now, "Hello", "again", null).id);
+    }
+
+    @Test
+    public void testInvalidLogNamesAreRejected() {
+        RssLogStore store = new RssLogStore(root);
+
+        assertNull(store.append("../alarms", now, "Door", "opened", null));
+        assertFalse(store.create("a b"));
+        assertFalse(store.contains("../alarms"));
+    }
+
+    private File journal(String logName) {
+        return new File(root, logName + ".log");
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -8,9 +8,14 @@
  */
 package org.openhab.ui.cometvisu.backend;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -31,20 +36,19 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.eclipse.smarthome.core.items.ItemRegistry;
-import org.eclipse.smarthome.core.library.types.DecimalType;
-import org.eclipse.smarthome.core.persistence.FilterCriteria;
-import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
-import org.eclipse.smarthome.core.persistence.HistoricItem;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.chart.ChartSeries;
+import org.openhab.ui.cometvisu.internal.chart.ChartSeriesCache;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
@@ -70,6 +74,9 @@ public class ChartResource implements RESTResource {
 
     static final DecimalFormat df;
 
+    /** maximum number of points returned for a chart without a resolution */
+    static final int MAX_POINTS = 1000;
+
     protected final static String RRD_FOLDER = org.eclipse.smarthome.config.core.ConfigConstants.getUserDataFolder()
             + File.separator + "persistence" + File.separator + "rrd4j";
 
@@ -83,6 +90,8 @@ public class ChartResource implements RESTResource {
 
     private ItemRegistry itemRegistry;
 
+    private static final ChartSeriesCache seriesCache = new ChartSeriesCache();
+
     @Context
     private UriInfo uriInfo;
 
@@ -94,6 +103,7 @@ public class ChartResource implements RESTResource {
 
     public void removePersistenceService(PersistenceService service) {
         persistenceServices.remove(service.getId());
+        seriesCache.clear();
     }
 
     static public Map<String, QueryablePersistenceService> getPersistenceServices() {
@@ -161,7 +171,8 @@ public class ChartResource implements RESTResource {
             if (persistenceService.getId().equals("rrd4j")) {
                 data = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution);
             } else {
-                data = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution);
+                data = getPersistenceSeries(persistenceService, item, consilidationFunction, startTime, endTime,
+                        resolution);
             }
             return Response.ok(data, responseType).build();
         } catch (ItemNotFoundException e1) {
@@ -171,36 +182,54 @@ public class ChartResource implements RESTResource {
         return Response.serverError().build();
     }
 
-    public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item, Date timeBegin,
-            Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new HashMap<Long, ArrayList<String>>();
-
-        // Define the data filter
-        FilterCriteria filter = new FilterCriteria();
-        filter.setBeginDate(timeBegin);
-        filter.setEndDate(timeEnd);
-        filter.setItemName(item.getName());
-        filter.setOrdering(Ordering.ASCENDING);
-
-        // Get the data from the persistence store
-        Iterable<HistoricItem> result = persistenceService.query(filter);
-        Iterator<HistoricItem> it = result.iterator();
-
-        // Iterate through the data
-        int dataCounter = 0;
-        while (it.hasNext()) {
-            dataCounter++;
-            HistoricItem historicItem = it.next();
-            org.eclipse.smarthome.core.types.State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                ArrayList<String> vals = new ArrayList<String>();
-                vals.add(formatDouble(((DecimalType) state).doubleValue(), "null", true));
-                data.put(historicItem.getTimestamp().getTime(), vals);
+    /**
+     * returns the series of a persistence service consolidated to the given
+     * resolution, the JSON array of [[timestamp,[data]]] is written directly to
+     * the response
+     *
+     * @param persistenceService
+     * @param item
+     * @param consilidationFunction
+     * @param timeBegin
+     * @param timeEnd
+     * @param resolution
+     *            - the resolution in seconds, if 0 the resolution is chosen to
+     *            return at most {@link #MAX_POINTS} points
+     * @return
+     */
+    public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item,
+            ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) {
+        long begin = timeBegin.getTime();
+        long end = timeEnd.getTime();
+        long bucketSize = resolution > 0 ? resolution * 1000L
+                : Math.max(1, (end - begin) / MAX_POINTS / 1000 + 1) * 1000L;
+
+        final ChartSeries.Points points = seriesCache.getPoints(persistenceService, item.getName(),
+                consilidationFunction, begin, end, bucketSize, MAX_POINTS);
+        logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' points", persistenceService.getId(),
+                item.getName(), timeBegin, timeEnd, points.size);
+
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                // DecimalFormat is not thread safe
+                DecimalFormat format = (DecimalFormat) df.clone();
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                writer.write('[');
+                for (int i = 0; i < points.size; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write('[');
+                    writer.write(Long.toString(points.times[i]));
+                    writer.write(",[\"");
+                    writer.write(format.format(points.values[i]));
+                    writer.write("\"]]");
+                }
+                writer.write(']');
+                writer.flush();
             }
-        }
-        logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
-                filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
-        return convertToRrd(data);
+        };
     }
 
     /**
@@ -235,10 +264,12 @@ public class ChartResource implements RESTResource {
         } catch (FileNotFoundException e) {
             // rrd file does not exist, fallback to generic persistance service
             logger.debug("no rrd file found '{}'", (RRD_FOLDER + File.separator + item.getName() + ".rrd"));
-            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
+            return getPersistenceSeries(persistenceService, item, consilidationFunction, timeBegin, timeEnd,
+                    resolution);
         } catch (Exception e) {
             logger.error(e.getLocalizedMessage() + ": fallback to generic persistance service");
-            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
+            return getPersistenceSeries(persistenceService, item, consilidationFunction, timeBegin, timeEnd,
+                    resolution);
         }
         return convertToRrd(data);
     }
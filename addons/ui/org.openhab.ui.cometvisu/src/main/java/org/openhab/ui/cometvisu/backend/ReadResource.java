@@ -11,12 +11,18 @@ package org.openhab.ui.cometvisu.backend;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,7 +41,7 @@ import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
+import org.glassfish.jersey.media.sse.OutboundEvent;
 import org.glassfish.jersey.media.sse.SseFeature;
 import org.openhab.ui.cometvisu.backend.beans.StateBean;
 import org.openhab.ui.cometvisu.internal.Config;
@@ -48,6 +54,11 @@ import org.slf4j.LoggerFactory;
  * handles read request from the CometVisu client every request initializes a
  * SSE communication
  *
+ * Every connection has its own subscriptions, the clients are indexed by the
+ * addresses they requested, so that a state change is only sent to the
+ * clients which are interested in it. Rapid state changes of an address are
+ * coalesced and every state update is serialized once for all clients.
+ *
  * @author Tobias Bräutigam
  * @since 2.0.0
  */
@@ -55,16 +66,25 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private static final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
+    /** time in milliseconds in which state changes of an address are coalesced */
+    private static final long COALESCE_WINDOW = 50;
 
-    private final ExecutorService executorService;
+    private final ScheduledExecutorService executorService;
 
     private ItemRegistry itemRegistry;
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
+    private final Set<SseClient> clients = Collections.newSetFromMap(new ConcurrentHashMap<SseClient, Boolean>());
+
+    /** subscriptions by the address used by the CometVisu client */
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<String, Subscription>();
+
+    /** requested addresses and state types by item name, the maps are replaced on every change */
+    private final Map<String, Map<String, Class<? extends State>>> items = new ConcurrentHashMap<String, Map<String, Class<? extends State>>>();
+
+    private final Map<String, StateBean> pendingStates = new LinkedHashMap<String, StateBean>();
+    private boolean flushScheduled;
 
     @Context
     private UriInfo uriInfo;
@@ -78,7 +98,14 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
     public ReadResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        this(Executors.newSingleThreadScheduledExecutor());
+    }
+
+    /**
+     * @param executorService sends the updates and coalesces the state changes
+     */
+    ReadResource(ScheduledExecutorService executorService) {
+        this.executorService = executorService;
         this.stateEventListener = new StateEventListener();
         this.stateEventListener.setEventBroadcaster(this);
     }
@@ -113,38 +140,30 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     @Produces(SseFeature.SERVER_SENT_EVENTS)
     public Object getStates(@QueryParam("a") List<String> itemNames, @QueryParam("i") long index,
             @QueryParam("t") long time) throws IOException, InterruptedException {
-        final EventOutput eventOutput = new EventOutput();
-
-        this.itemNames = itemNames;
+        final EventOutput eventOutput = createEventOutput();
+        SseClient client = new SseClient(eventOutput);
+        removeClosedClients();
 
-        broadcaster.add(eventOutput);
+        // send the current states of all requested items to the client
+        List<StateBean> states = new ArrayList<StateBean>();
+        for (String cvItemName : itemNames) {
+            String[] parts = cvItemName.split(":");
+            String ohItemName = cvItemName;
+            Class<? extends State> stateClass = null;
+            if (parts.length == 2) {
+                String classPrefix = parts[0].toLowerCase();
+                if (Config.itemTypeMapper.containsKey(classPrefix)) {
+                    stateClass = Config.itemTypeMapper.get(classPrefix);
+                } else {
+                    logger.debug("no type found for '{}'", classPrefix);
+                }
+                ohItemName = parts[1];
+            }
+            subscribe(client, cvItemName, ohItemName, stateClass);
 
-        // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
-        // send the current states of all items to the client
-        if (this.itemRegistry != null) {
-            List<StateBean> states = new ArrayList<StateBean>();
-            for (String cvItemName : itemNames) {
+            if (this.itemRegistry != null) {
                 try {
-                    String[] parts = cvItemName.split(":");
-                    String ohItemName = cvItemName;
-                    Class<? extends State> stateClass = null;
-                    if (parts.length == 2) {
-                        String classPrefix = parts[0].toLowerCase();
-                        if (Config.itemTypeMapper.containsKey(classPrefix)) {
-                            stateClass = Config.itemTypeMapper.get(classPrefix);
-                            classPrefix += ":";
-                        } else {
-                            logger.debug("no type found for '{}'", classPrefix);
-                            classPrefix = "";
-                        }
-                        ohItemName = parts[1];
-                    }
                     Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
-                    }
-                    items.get(item).put(cvItemName, stateClass);
                     StateBean itemState = new StateBean();
                     itemState.name = cvItemName;
 
@@ -159,23 +178,126 @@ public class ReadResource implements EventBroadcaster, RESTResource {
                     logger.error(e.getLocalizedMessage());
                 }
             }
-            logger.debug("initially broadcasting " + states.size() + "/" + itemNames.size() + " item states");
-            broadcaster.broadcast(SseUtil.buildEvent(states));
         }
+        clients.add(client);
+        logger.debug("initially sending {}/{} item states, {} clients connected", states.size(), itemNames.size(),
+                clients.size());
+        sendInitialStates(client, states);
+
         // listen to state changes of the requested items
         registerItems();
 
         return eventOutput;
     }
 
+    /**
+     * Creates the event output of a new connection.
+     */
+    EventOutput createEventOutput() {
+        return new EventOutput();
+    }
+
+    /**
+     * Sends the initial states on the thread which sends the updates, so that
+     * a newer state can't be overwritten by the initial one.
+     */
+    private void sendInitialStates(final SseClient client, final List<StateBean> states) {
+        executorService.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                client.send(SseUtil.buildEvent(states));
+            }
+        });
+    }
+
+    /**
+     * Adds the address to the subscriptions of the client.
+     */
+    private void subscribe(SseClient client, String cvItemName, String ohItemName, Class<? extends State> stateClass) {
+        synchronized (subscriptions) {
+            Subscription subscription = subscriptions.get(cvItemName);
+            if (subscription == null) {
+                subscription = new Subscription(cvItemName, ohItemName);
+                subscriptions.put(cvItemName, subscription);
+
+                Map<String, Class<? extends State>> itemStates = items.get(ohItemName);
+                itemStates = itemStates == null ? new HashMap<String, Class<? extends State>>()
+                        : new HashMap<String, Class<? extends State>>(itemStates);
+                itemStates.put(cvItemName, stateClass);
+                items.put(ohItemName, itemStates);
+            }
+            subscription.clients.add(client);
+            client.subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Removes all subscriptions of the client, stops listening to items nobody is interested in.
+     */
+    private void unsubscribe(SseClient client) {
+        if (!clients.remove(client)) {
+            return;
+        }
+        List<String> unusedItemNames = new ArrayList<String>();
+        synchronized (subscriptions) {
+            for (Subscription subscription : client.subscriptions) {
+                subscription.clients.remove(client);
+                if (subscription.clients.isEmpty()) {
+                    subscriptions.remove(subscription.name);
+
+                    Map<String, Class<? extends State>> itemStates = new HashMap<String, Class<? extends State>>(
+                            items.get(subscription.itemName));
+                    itemStates.remove(subscription.name);
+                    if (itemStates.isEmpty()) {
+                        items.remove(subscription.itemName);
+                        unusedItemNames.add(subscription.itemName);
+                    } else {
+                        items.put(subscription.itemName, itemStates);
+                    }
+                }
+            }
+        }
+        logger.debug("client disconnected, {} clients connected", clients.size());
+
+        if (this.itemRegistry != null) {
+            for (String itemName : unusedItemNames) {
+                try {
+                    Item item = this.itemRegistry.getItem(itemName);
+                    if (item instanceof GenericItem && !items.containsKey(itemName)) {
+                        ((GenericItem) item).removeStateChangeListener(stateEventListener);
+                    }
+                } catch (ItemNotFoundException e) {
+                    // item has been removed
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the clients which have closed their connection.
+     */
+    private void removeClosedClients() {
+        for (SseClient client : clients) {
+            if (client.eventOutput.isClosed()) {
+                unsubscribe(client);
+            }
+        }
+    }
+
     /**
      * listen for state changes from the requested items
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
-            if (item instanceof GenericItem) {
-                ((GenericItem) item).addStateChangeListener(stateEventListener);
+        if (this.itemRegistry == null) {
+            return;
+        }
+        for (String itemName : items.keySet()) {
+            try {
+                registerItem(this.itemRegistry.getItem(itemName));
+            } catch (ItemNotFoundException e) {
+                // registered when the item is added
             }
         }
     }
@@ -189,33 +311,32 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
+        if (item == null || !items.containsKey(item.getName())) {
             return;
+        }
         if (item instanceof GenericItem) {
             ((GenericItem) item).addStateChangeListener(stateEventListener);
         }
     }
 
     /**
-     * listens to state changes of the given item, if it is part of the
-     * requested items
+     * stops listening to state changes of the given item, the subscriptions
+     * of the clients are kept in case the item is added again
      *
      * @param item
-     *            - the new item, that should be listened to
+     *            - the item, that should not be listened to anymore
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
-            return;
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
      * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * listening clients. State updates are collected for a short time, only
+     * the last state of an address is sent to the clients which requested it.
      *
      * @param item
      *            - the item which has changed
@@ -224,17 +345,105 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void broadcastEvent(final Object eventObject) {
-        executorService.execute(new Runnable() {
+        if (eventObject instanceof StateBean) {
+            StateBean stateBean = (StateBean) eventObject;
+            if (!subscriptions.containsKey(stateBean.name)) {
+                return;
+            }
+            synchronized (pendingStates) {
+                pendingStates.put(stateBean.name, stateBean);
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    executorService.schedule(new Runnable() {
 
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+                        @Override
+                        public void run() {
+                            flushStates();
+                        }
+                    }, COALESCE_WINDOW, TimeUnit.MILLISECONDS);
+                }
             }
-        });
+        } else {
+            executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    OutboundEvent event = SseUtil.buildEvent(eventObject);
+                    for (SseClient client : clients) {
+                        client.send(event);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends the collected states to the clients, every state is serialized
+     * once and written to all clients which requested its address.
+     */
+    private void flushStates() {
+        List<StateBean> states;
+        synchronized (pendingStates) {
+            states = new ArrayList<StateBean>(pendingStates.values());
+            pendingStates.clear();
+            flushScheduled = false;
+        }
+        for (StateBean state : states) {
+            Subscription subscription = subscriptions.get(state.name);
+            if (subscription != null) {
+                OutboundEvent event = SseUtil.buildEvent(state);
+                for (SseClient client : subscription.clients) {
+                    client.send(event);
+                }
+            }
+        }
     }
 
     @Override
     public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+        return items.get(item.getName());
+    }
+
+    /**
+     * the clients which requested an address
+     */
+    private static class Subscription {
+        private final String name;
+        private final String itemName;
+        private final Set<SseClient> clients = new CopyOnWriteArraySet<SseClient>();
+
+        public Subscription(String name, String itemName) {
+            this.name = name;
+            this.itemName = itemName;
+        }
+    }
+
+    /**
+     * a connected client with its subscriptions
+     */
+    private class SseClient {
+        private final EventOutput eventOutput;
+        private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+
+        public SseClient(EventOutput eventOutput) {
+            this.eventOutput = eventOutput;
+        }
+
+        /**
+         * Writes the event to the client, a client which can't be written to is removed.
+         */
+        public void send(OutboundEvent event) {
+            try {
+                eventOutput.write(event);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("removing client: {}", e.getMessage());
+                try {
+                    eventOutput.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+                unsubscribe(this);
+            }
+        }
     }
 }
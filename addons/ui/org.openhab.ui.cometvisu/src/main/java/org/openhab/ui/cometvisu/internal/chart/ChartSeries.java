@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.chart;
+
+import java.util.Arrays;
+
+import org.rrd4j.ConsolFun;
+
+/**
+ * A chart series which consolidates the added samples into buckets of a fixed
+ * size while they are added, like an RRD archive does. The buckets start at
+ * multiples of the bucket size, so that the buckets of a series can be reused
+ * for overlapping time windows. The series is stored in primitive arrays.
+ *
+ * @author agent - Initial contribution
+ */
+public class ChartSeries {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ConsolFun function;
+    private final long bucketSize;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param function
+     *            - the function used to consolidate the samples of a bucket
+     * @param bucketSize
+     *            - the size of a bucket in milliseconds
+     */
+    public ChartSeries(ConsolFun function, long bucketSize) {
+        this.function = function;
+        this.bucketSize = Math.max(1, bucketSize);
+    }
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Returns the start of the bucket the given time belongs to.
+     */
+    public long getBucketStart(long time) {
+        long offset = time % bucketSize;
+        return offset < 0 ? time - offset - bucketSize : time - offset;
+    }
+
+    /**
+     * Returns the number of buckets.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a sample to its bucket, the samples must be added in ascending
+     * order.
+     */
+    public void add(long time, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        long bucket = getBucketStart(time);
+        if (size > 0 && bucket <= times[size - 1]) {
+            // a sample out of order is consolidated into the last bucket
+            int index = size - 1;
+            switch (function) {
+                case MIN:
+                    values[index] = Math.min(values[index], value);
+                    break;
+                case MAX:
+                    values[index] = Math.max(values[index], value);
+                    break;
+                case FIRST:
+                    break;
+                case LAST:
+                    values[index] = value;
+                    break;
+                default:
+                    // AVERAGE and TOTAL sum up the values
+                    values[index] += value;
+                    break;
+            }
+            counts[index]++;
+        } else {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                values = Arrays.copyOf(values, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            times[size] = bucket;
+            values[size] = value;
+            counts[size] = 1;
+            size++;
+        }
+    }
+
+    /**
+     * Returns the start of the last bucket or <code>Long.MIN_VALUE</code> if
+     * the series is empty.
+     */
+    public long getLastTime() {
+        return size == 0 ? Long.MIN_VALUE : times[size - 1];
+    }
+
+    /**
+     * Removes all buckets which start at or after the given time.
+     */
+    public void removeFrom(long time) {
+        while (size > 0 && times[size - 1] >= time) {
+            size--;
+        }
+    }
+
+    /**
+     * Removes all buckets which start before the given time.
+     */
+    public void removeBefore(long time) {
+        int first = 0;
+        while (first < size && times[first] < time) {
+            first++;
+        }
+        if (first > 0) {
+            System.arraycopy(times, first, times, 0, size - first);
+            System.arraycopy(values, first, values, 0, size - first);
+            System.arraycopy(counts, first, counts, 0, size - first);
+            size -= first;
+        }
+    }
+
+    /**
+     * Returns the consolidated points of the buckets in the given time
+     * window. If there are more buckets than the given maximum number of
+     * points, they are reduced with the Largest-Triangle-Three-Buckets
+     * algorithm, which keeps the visual shape of the series.
+     *
+     * @return the times in the first and the values in the second array
+     */
+    public Points getPoints(long begin, long end, int maxPoints) {
+        int from = 0;
+        while (from < size && times[from] < getBucketStart(begin)) {
+            from++;
+        }
+        int to = from;
+        while (to < size && times[to] <= end) {
+            to++;
+        }
+        int count = to - from;
+        long[] pointTimes = Arrays.copyOfRange(times, from, to);
+        double[] pointValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            pointValues[i] = getValue(from + i);
+        }
+        if (maxPoints >= 3 && count > maxPoints) {
+            return downsample(pointTimes, pointValues, maxPoints);
+        }
+        return new Points(pointTimes, pointValues, count);
+    }
+
+    private double getValue(int index) {
+        return function == ConsolFun.AVERAGE ? values[index] / counts[index] : values[index];
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling (Sveinn Steinarsson, 2013).
+     */
+    static Points downsample(long[] times, double[] values, int threshold) {
+        int length = times.length;
+        long[] sampledTimes = new long[threshold];
+        double[] sampledValues = new double[threshold];
+        int sampled = 0;
+
+        double every = (double) (length - 2) / (threshold - 2);
+        int a = 0;
+        sampledTimes[sampled] = times[a];
+        sampledValues[sampled++] = values[a];
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // average point of the next bucket
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, length);
+            double avgTime = 0;
+            double avgValue = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgTime += times[j];
+                avgValue += values[j];
+            }
+            int avgLength = avgEnd - avgStart;
+            avgTime /= avgLength;
+            avgValue /= avgLength;
+
+            // the point of the current bucket with the largest triangle
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double pointATime = times[a];
+            double pointAValue = values[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((pointATime - avgTime) * (values[j] - pointAValue)
+                        - (pointATime - times[j]) * (avgValue - pointAValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampledTimes[sampled] = times[next];
+            sampledValues[sampled++] = values[next];
+            a = next;
+        }
+
+        sampledTimes[sampled] = times[length - 1];
+        sampledValues[sampled++] = values[length - 1];
+        return new Points(sampledTimes, sampledValues, sampled);
+    }
+
+    /**
+     * consolidated points of a series
+     */
+    public static class Points {
+        public final long[] times;
+        public final double[] values;
+        public final int size;
+
+        public Points(long[] times, double[] values, int size) {
+            this.times = times;
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.chart;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.rrd4j.ConsolFun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads consolidated chart series from a persistence service and keeps the
+ * recently requested series. Charts are refreshed periodically with a time
+ * window which moves with the current time, so only the samples after the
+ * last complete bucket of a cached series are queried again. Charts of the
+ * same item with different windows are cached separately.
+ *
+ * @author agent - Initial contribution
+ */
+public class ChartSeriesCache {
+    private static final Logger logger = LoggerFactory.getLogger(ChartSeriesCache.class);
+
+    /** number of samples queried at once */
+    private static final int PAGE_SIZE = 10000;
+
+    private static final int MAX_ENTRIES = 32;
+
+    /** cached series are reloaded completely after this time, to include corrected values */
+    private static final long MAX_AGE = 60 * 60 * 1000L;
+
+    private final Map<String, CachedSeries> entries = new LinkedHashMap<String, CachedSeries>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSeries> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the consolidated points of the item in the given time window.
+     *
+     * @param persistenceService
+     *            - the service to query
+     * @param itemName
+     *            - the name of the item
+     * @param function
+     *            - the function used to consolidate the samples of a bucket
+     * @param begin
+     *            - begin of the time window in milliseconds
+     * @param end
+     *            - end of the time window in milliseconds
+     * @param bucketSize
+     *            - the size of a bucket in milliseconds
+     * @param maxPoints
+     *            - the maximum number of returned points
+     */
+    public ChartSeries.Points getPoints(QueryablePersistenceService persistenceService, String itemName,
+            ConsolFun function, long begin, long end, long bucketSize, int maxPoints) {
+        // a chart moves its window with the current time, so the window is identified by its length
+        String key = persistenceService.getId() + ":" + itemName + ":" + function + ":" + bucketSize + ":"
+                + (end - begin);
+        CachedSeries entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new CachedSeries(function, bucketSize);
+                entries.put(key, entry);
+            }
+        }
+
+        synchronized (entry) {
+            ChartSeries series = entry.series;
+            long now = System.currentTimeMillis();
+            long from = series.getBucketStart(begin);
+            if (entry.loadedFrom > from || entry.loadedTo < from || now - entry.created > MAX_AGE) {
+                // no usable buckets, load the whole window
+                series.removeFrom(Long.MIN_VALUE);
+                entry.created = now;
+                entry.loadedFrom = from;
+                entry.loadedTo = from;
+            }
+            if (end > entry.loadedTo) {
+                // the last bucket may be incomplete, load it again
+                long tail = series.getBucketStart(entry.loadedTo);
+                series.removeFrom(tail);
+                int count = load(series, persistenceService, itemName, Math.max(tail, from), end);
+                entry.loadedTo = Math.min(end, now);
+                logger.debug("loaded {} samples of '{}' from '{}', series has {} buckets", count, itemName,
+                        persistenceService.getId(), series.size());
+            }
+            // the window moves forward, the older buckets are not needed anymore
+            series.removeBefore(from);
+            entry.loadedFrom = from;
+
+            return series.getPoints(begin, end, maxPoints);
+        }
+    }
+
+    /**
+     * Removes all cached series.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Adds the samples of the time window to the series, the samples are
+     * queried in pages, if the persistence service supports it.
+     *
+     * @return the number of samples
+     */
+    private int load(ChartSeries series, QueryablePersistenceService persistenceService, String itemName,
+            long begin, long end) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setBeginDate(new Date(begin));
+        filter.setEndDate(new Date(end));
+        filter.setItemName(itemName);
+        filter.setOrdering(Ordering.ASCENDING);
+        filter.setPageSize(PAGE_SIZE);
+
+        int total = 0;
+        long lastTime = Long.MIN_VALUE;
+        for (int page = 0;; page++) {
+            filter.setPageNumber(page);
+            int count = 0;
+            int added = 0;
+            for (HistoricItem historicItem : persistenceService.query(filter)) {
+                count++;
+                long time = historicItem.getTimestamp().getTime();
+                if (page > 0 && time <= lastTime) {
+                    // the service doesn't support paging and returns the first page again
+                    continue;
+                }
+                State state = historicItem.getState();
+                if (state instanceof DecimalType) {
+                    series.add(time, ((DecimalType) state).doubleValue());
+                }
+                lastTime = time;
+                added++;
+            }
+            total += added;
+            // a service which doesn't support paging returns all samples at once
+            if (count != PAGE_SIZE || added == 0) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * a cached series with the time window its samples have been loaded for
+     */
+    private static class CachedSeries {
+        private final ChartSeries series;
+        private long loadedFrom;
+        private long loadedTo = Long.MIN_VALUE;
+        private long created;
+
+        public CachedSeries(ConsolFun function, long bucketSize) {
+            series = new ChartSeries(function, bucketSize);
+        }
+    }
+}
@@ -12,6 +12,10 @@ import java.io.File;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.XMLConstants;
@@ -78,6 +82,13 @@ import org.xml.sax.SAXException;
 public class VisuConfig {
     private final Logger logger = LoggerFactory.getLogger(VisuConfig.class);
 
+    /**
+     * JAXB contexts and schemas are expensive to create and thread safe, so
+     * they are shared by all generated configs
+     */
+    private static final Map<Class<?>, JAXBContext> jaxbContexts = new ConcurrentHashMap<>();
+    private static final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+
     private Sitemap sitemap;
 
     /**
@@ -92,6 +103,8 @@ public class VisuConfig {
 
     private ObjectFactory factory = new ObjectFactory();
 
+    private Set<String> itemNames = new HashSet<>();
+
     public VisuConfig(Sitemap sitemap, CometVisuApp app, File rootFolder) {
         this.sitemap = sitemap;
         this.app = app;
@@ -131,13 +144,44 @@ public class VisuConfig {
         return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
     }
 
+    /**
+     * the names of all items referenced by the sitemap, available after the
+     * config has been generated
+     */
+    public Set<String> getItemNames() {
+        return itemNames;
+    }
+
+    private JAXBContext getJaxbContext(Class<?> beanClass) throws JAXBException {
+        JAXBContext jaxbContext = jaxbContexts.get(beanClass);
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(beanClass);
+            jaxbContexts.put(beanClass, jaxbContext);
+        }
+        return jaxbContext;
+    }
+
+    private Schema getSchema(String xsdSchema) throws SAXException {
+        if (xsdSchema == null || xsdSchema.trim().length() == 0) {
+            return null;
+        }
+        File xsdFile = new File(xsdSchema);
+        // a changed schema file (e.g. after an update of the CometVisu) gets a new entry
+        String key = xsdSchema + "@" + xsdFile.lastModified();
+        Schema schema = schemas.get(key);
+        if (schema == null) {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = schemaFactory.newSchema(xsdFile);
+            schemas.put(key, schema);
+        }
+        return schema;
+    }
+
     private String marshal(Pages bean, String xsdSchema) {
         String res = "";
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(bean.getClass());
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = (xsdSchema == null || xsdSchema.trim().length() == 0) ? null
-                    : schemaFactory.newSchema(new File(xsdSchema));
+            JAXBContext jaxbContext = getJaxbContext(bean.getClass());
+            Schema schema = getSchema(xsdSchema);
             Marshaller marshaller = jaxbContext.createMarshaller();
             marshaller.setSchema(schema);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
@@ -189,6 +233,7 @@ public class VisuConfig {
     private void processWidget(Object rootPage, Widget widget, Pages pages, int level) {
         Item item = null;
         if (widget.getItem() != null) {
+            itemNames.add(widget.getItem());
             try {
                 item = app.getItemUIRegistry().getItem(widget.getItem());
             } catch (ItemNotFoundException e) {
@@ -382,6 +427,7 @@ public class VisuConfig {
 
             if (item instanceof GroupItem) {
                 for (Item member : ((GroupItem) item).getMembers()) {
+                    itemNames.add(member.getName());
                     Rrd rrd = new Rrd();
                     rrd.setValue(member.getName());
                     if (member instanceof NumberItem) {
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.config;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.model.sitemap.Sitemap;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the configs generated from the sitemaps. A cached config is used as
+ * long as the content of its sitemap has not changed and none of the items
+ * referenced by the sitemap has been added, removed or updated in the item
+ * registry.
+ *
+ * @author agent - Initial contribution
+ */
+public class VisuConfigCache implements ItemRegistryChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(VisuConfigCache.class);
+
+    private final CometVisuApp app;
+
+    /** the generated configs by request path */
+    private final Map<String, CachedConfig> configs = new ConcurrentHashMap<>();
+
+    /** incremented on every item registry change */
+    private final AtomicLong revision = new AtomicLong();
+
+    public VisuConfigCache(CometVisuApp app) {
+        this.app = app;
+    }
+
+    /**
+     * Returns the config generated from the given sitemap, the config is only
+     * generated if there is no valid cached one for the requested path.
+     *
+     * @param sitemap
+     *            - the sitemap the config is generated from
+     * @param req
+     *            - the request for the config
+     * @param rootFolder
+     *            - the folder of the CometVisu files
+     */
+    public CachedConfig getConfig(Sitemap sitemap, HttpServletRequest req, File rootFolder) {
+        // the request path defines the relative location of the XSD file in the config
+        String key = req.getPathInfo();
+        long sitemapHash = getContentHash(sitemap);
+        CachedConfig config = configs.get(key);
+        if (config != null && config.sitemapHash == sitemapHash) {
+            return config;
+        }
+
+        // all clients reload at the same time after a restart, generate each config only once
+        synchronized (this) {
+            config = configs.get(key);
+            if (config != null && config.sitemapHash == sitemapHash) {
+                return config;
+            }
+            long startRevision = revision.get();
+            long start = System.currentTimeMillis();
+            VisuConfig visuConfig = new VisuConfig(sitemap, app, rootFolder);
+            byte[] xml = visuConfig.getConfigXml(req).getBytes(StandardCharsets.UTF_8);
+            config = new CachedConfig(sitemapHash, xml, visuConfig.getItemNames());
+            logger.debug("generated config for sitemap '{}' in {} ms", sitemap.getName(),
+                    System.currentTimeMillis() - start);
+
+            // a config generated while the items changed may already be outdated
+            if (revision.get() == startRevision) {
+                configs.put(key, config);
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Removes all cached configs.
+     */
+    public void clear() {
+        revision.incrementAndGet();
+        configs.clear();
+    }
+
+    /**
+     * Calculates a hash of the sitemap content, including all its widgets.
+     */
+    private long getContentHash(Sitemap sitemap) {
+        long hash = getContentHash(sitemap, 17);
+        TreeIterator<EObject> it = sitemap.eAllContents();
+        while (it.hasNext()) {
+            hash = getContentHash(it.next(), hash);
+        }
+        return hash;
+    }
+
+    private long getContentHash(EObject object, long hash) {
+        hash = 31 * hash + object.eClass().getName().hashCode();
+        for (EAttribute attribute : object.eClass().getEAllAttributes()) {
+            Object value = object.eGet(attribute);
+            hash = 31 * hash + (value == null ? 0 : value.hashCode());
+        }
+        return hash;
+    }
+
+    /**
+     * Removes the cached configs which reference one of the given items or
+     * one of their groups.
+     */
+    private void invalidate(Item... items) {
+        revision.incrementAndGet();
+        Iterator<CachedConfig> it = configs.values().iterator();
+        while (it.hasNext()) {
+            CachedConfig config = it.next();
+            for (Item item : items) {
+                if (config.references(item)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void added(Item element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void removed(Item element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void updated(Item oldElement, Item element) {
+        invalidate(oldElement, element);
+    }
+
+    @Override
+    public void allItemsChanged(Collection<String> oldItemNames) {
+        clear();
+    }
+
+    /**
+     * a generated config with the information needed to validate it
+     */
+    public static class CachedConfig {
+        private final long sitemapHash;
+        private final byte[] xml;
+        private final String eTag;
+        private final Set<String> itemNames;
+
+        public CachedConfig(long sitemapHash, byte[] xml, Set<String> itemNames) {
+            this.sitemapHash = sitemapHash;
+            this.xml = xml;
+            this.itemNames = itemNames;
+            this.eTag = "\"" + md5(xml) + "\"";
+        }
+
+        public byte[] getXml() {
+            return xml;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        private boolean references(Item item) {
+            if (itemNames.contains(item.getName())) {
+                return true;
+            }
+            // group widgets show the members of their group item
+            List<String> groupNames = item.getGroupNames();
+            for (String groupName : groupNames) {
+                if (itemNames.contains(groupName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String md5(byte[] content) {
+            try {
+                StringBuilder sb = new StringBuilder();
+                for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                    sb.append(String.format("%02x", b & 0xff));
+                }
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                return content.length + "_" + Arrays.hashCode(content);
+            }
+        }
+    }
+}
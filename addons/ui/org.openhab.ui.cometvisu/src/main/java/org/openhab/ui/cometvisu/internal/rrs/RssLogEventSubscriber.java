@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventFilter;
+import org.eclipse.smarthome.core.events.EventSubscriber;
+import org.eclipse.smarthome.core.items.events.ItemStateEvent;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+
+/**
+ * Adds the state updates of the items used as rsslogs to the
+ * {@link RssLogStore}, so messages sent by rules show up in the log too.
+ *
+ * @author agent - Initial contribution
+ */
+public class RssLogEventSubscriber implements EventSubscriber {
+
+    private CometVisuApp cometVisuApp;
+
+    protected void setCometVisuApp(CometVisuApp cometVisuApp) {
+        this.cometVisuApp = cometVisuApp;
+    }
+
+    protected void unsetCometVisuApp(CometVisuApp cometVisuApp) {
+        this.cometVisuApp = null;
+    }
+
+    @Override
+    public Set<String> getSubscribedEventTypes() {
+        return Collections.singleton(ItemStateEvent.TYPE);
+    }
+
+    @Override
+    public EventFilter getEventFilter() {
+        return null;
+    }
+
+    @Override
+    public void receive(Event event) {
+        ItemStateEvent stateEvent = (ItemStateEvent) event;
+        CometVisuApp app = cometVisuApp;
+        if (app == null || !app.getRssLogStore().contains(stateEvent.getItemName())) {
+            return;
+        }
+        State state = stateEvent.getItemState();
+        if (state == null || state instanceof UnDefType || state.toString().isEmpty()) {
+            return;
+        }
+        app.getRssLogStore().appendMessage(stateEvent.getItemName(), System.currentTimeMillis(), state.toString());
+    }
+}
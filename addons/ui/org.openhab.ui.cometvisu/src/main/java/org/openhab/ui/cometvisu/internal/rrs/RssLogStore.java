@@ -0,0 +1,547 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Stores the messages of the CometVisu rsslog plugin. Each log keeps its
+ * latest messages in a ring buffer ordered by id and time, so a poll only
+ * touches the messages it returns. The changes of a log are appended to a
+ * journal file, which is replayed when the store is created and rewritten
+ * when it contains too many outdated records. A rewritten journal starts with
+ * the last id, so that the ids of deleted messages are not given out again.
+ *
+ * @author agent - Initial contribution
+ */
+public class RssLogStore {
+    private static final Logger logger = LoggerFactory.getLogger(RssLogStore.class);
+
+    /** maximum number of messages kept per log */
+    public static final int MAX_ENTRIES = 1000;
+
+    /** messages older than this are removed */
+    public static final long MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+
+    /** separates title, content, state and tags in the state of a log item */
+    public static final String MESSAGE_SEPARATOR = "|";
+
+    private static final String JOURNAL_EXTENSION = ".log";
+
+    private static final Pattern LOG_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]+");
+
+    private static final String ADD = "a";
+    private static final String UPDATE = "u";
+    private static final String DELETE = "d";
+    private static final String REMOVE_BEFORE = "r";
+    private static final String LAST_ID = "h";
+
+    private final Gson gson = new Gson();
+
+    private final File folder;
+
+    private final ConcurrentHashMap<String, Log> logs = new ConcurrentHashMap<>();
+
+    /** the ids are unique over all logs, so a message can be addressed by its id alone */
+    private final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * @param folder
+     *            - the folder of the journal files
+     */
+    public RssLogStore(File folder) {
+        this.folder = folder;
+        File[] journals = folder.listFiles();
+        if (journals != null) {
+            for (File journal : journals) {
+                String name = journal.getName();
+                if (name.endsWith(JOURNAL_EXTENSION)) {
+                    // all journals are read at once, new ids have to be greater than the existing ones
+                    Log log = getLog(name.substring(0, name.length() - JOURNAL_EXTENSION.length()), false);
+                    if (log != null) {
+                        synchronized (log) {
+                            log.load();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if a log with the given name exists.
+     */
+    public boolean contains(String logName) {
+        return logs.containsKey(logName);
+    }
+
+    /**
+     * Creates the log with the given name if it does not exist yet.
+     *
+     * @return true if the log has been created
+     */
+    public boolean create(String logName) {
+        if (logs.containsKey(logName)) {
+            return false;
+        }
+        return getLog(logName, true) != null;
+    }
+
+    /**
+     * Appends a message with the current time to a log, the log is created if
+     * it does not exist.
+     *
+     * @return the new message or null if the log name is invalid
+     */
+    public LogEntry append(String logName, String title, String content, String state) {
+        return append(logName, System.currentTimeMillis(), title, content, state);
+    }
+
+    /**
+     * Appends a message to a log, the log is created if it does not exist. A
+     * message older than the last one of the log gets the time of the last
+     * one, to keep the messages ordered by time.
+     *
+     * @return the new message or null if the log name is invalid
+     */
+    public LogEntry append(String logName, long time, String title, String content, String state) {
+        Log log = getLog(logName, true);
+        if (log == null) {
+            return null;
+        }
+        synchronized (log) {
+            log.load();
+            if (log.size > 0) {
+                time = Math.max(time, log.get(log.size - 1).time);
+            }
+            LogEntry entry = new LogEntry(lastId.incrementAndGet(), time, title, content, state);
+            log.add(entry);
+            log.removeBefore(System.currentTimeMillis() - MAX_AGE);
+            log.write(new Record(ADD, entry));
+            return entry;
+        }
+    }
+
+    /**
+     * Appends a message in the format of a log item state
+     * (title|content|state|tags) to a log. The tags are ignored, they are the
+     * name of the log.
+     *
+     * @return the new message or null if the log name is invalid
+     */
+    public LogEntry appendMessage(String logName, long time, String message) {
+        String[] parts = StringUtils.splitPreserveAllTokens(message, MESSAGE_SEPARATOR);
+        if (parts.length < 2) {
+            return append(logName, time, null, message, null);
+        }
+        return append(logName, time, parts[0], parts[1], parts.length > 2 ? parts[2] : null);
+    }
+
+    /**
+     * Formats a message in the format of a log item state.
+     */
+    public static String formatMessage(String logName, String title, String content, String state) {
+        return title + MESSAGE_SEPARATOR + content + MESSAGE_SEPARATOR + state + MESSAGE_SEPARATOR + logName;
+    }
+
+    /**
+     * Returns the newest messages of a log, the newest message first.
+     *
+     * @param logName
+     *            - the name of the log
+     * @param sinceId
+     *            - only messages with a greater id are returned
+     * @param sinceTime
+     *            - only messages of this time or newer are returned
+     * @param limit
+     *            - the maximum number of returned messages
+     */
+    public List<LogEntry> getEntries(String logName, long sinceId, long sinceTime, int limit) {
+        List<LogEntry> entries = new ArrayList<>();
+        Log log = logs.get(logName);
+        if (log == null) {
+            return entries;
+        }
+        synchronized (log) {
+            log.load();
+            log.removeBefore(System.currentTimeMillis() - MAX_AGE);
+            int first = Math.max(log.indexAfterId(sinceId), log.indexOfTime(sinceTime));
+            for (int i = log.size - 1; i >= first && entries.size() < limit; i--) {
+                entries.add(log.get(i));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Changes the state of the message with the given id.
+     *
+     * @return true if the message has been found
+     */
+    public boolean updateState(String logName, long id, String state) {
+        Log log = logs.get(logName);
+        if (log == null) {
+            return false;
+        }
+        synchronized (log) {
+            log.load();
+            int index = log.indexOfId(id);
+            if (index < 0) {
+                return false;
+            }
+            LogEntry entry = log.get(index);
+            log.set(index, new LogEntry(entry.id, entry.time, entry.title, entry.content, state));
+            Record record = new Record(UPDATE, id);
+            record.state = state;
+            log.write(record);
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the message with the given id.
+     *
+     * @return true if the message has been found
+     */
+    public boolean delete(String logName, long id) {
+        Log log = logs.get(logName);
+        if (log == null) {
+            return false;
+        }
+        synchronized (log) {
+            log.load();
+            int index = log.indexOfId(id);
+            if (index < 0) {
+                return false;
+            }
+            log.remove(index);
+            log.write(new Record(DELETE, id));
+            return true;
+        }
+    }
+
+    /**
+     * Deletes all messages of a log which are older than the given time.
+     *
+     * @return the number of deleted messages
+     */
+    public int deleteBefore(String logName, long time) {
+        Log log = logs.get(logName);
+        if (log == null) {
+            return 0;
+        }
+        synchronized (log) {
+            log.load();
+            int removed = log.removeBefore(time);
+            if (removed > 0) {
+                Record record = new Record(REMOVE_BEFORE, 0);
+                record.time = time;
+                log.write(record);
+            }
+            return removed;
+        }
+    }
+
+    private Log getLog(String logName, boolean create) {
+        Log log = logs.get(logName);
+        if (log == null) {
+            if (logName == null || !LOG_NAME_PATTERN.matcher(logName).matches()) {
+                logger.debug("invalid rsslog name '{}'", logName);
+                return null;
+            }
+            File journal = new File(folder, logName + JOURNAL_EXTENSION);
+            if (!create && !journal.exists()) {
+                return null;
+            }
+            log = new Log(journal);
+            Log existing = logs.putIfAbsent(logName, log);
+            if (existing != null) {
+                log = existing;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * a message of a log
+     */
+    public static class LogEntry {
+        public final long id;
+        public final long time;
+        public final String title;
+        public final String content;
+        public final String state;
+
+        public LogEntry(long id, long time, String title, String content, String state) {
+            this.id = id;
+            this.time = time;
+            this.title = title;
+            this.content = content;
+            this.state = state;
+        }
+    }
+
+    /**
+     * a line of the journal file
+     */
+    private static class Record {
+        private String op;
+        private long id;
+        private long time;
+        private String title;
+        private String content;
+        private String state;
+
+        private Record(String op, long id) {
+            this.op = op;
+            this.id = id;
+        }
+
+        private Record(String op, LogEntry entry) {
+            this(op, entry.id);
+            time = entry.time;
+            title = entry.title;
+            content = entry.content;
+            state = entry.state;
+        }
+    }
+
+    /**
+     * the messages of a log in a ring buffer, the oldest message first
+     */
+    private class Log {
+        private final File journal;
+        private final LogEntry[] entries = new LogEntry[MAX_ENTRIES];
+        private int head;
+        private int size;
+        private boolean loaded;
+        private int journalRecords;
+
+        private Log(File journal) {
+            this.journal = journal;
+        }
+
+        private LogEntry get(int index) {
+            return entries[(head + index) % entries.length];
+        }
+
+        private void set(int index, LogEntry entry) {
+            entries[(head + index) % entries.length] = entry;
+        }
+
+        private void add(LogEntry entry) {
+            if (size == entries.length) {
+                // the buffer is full, overwrite the oldest message
+                entries[head] = entry;
+                head = (head + 1) % entries.length;
+            } else {
+                set(size++, entry);
+            }
+        }
+
+        private void remove(int index) {
+            for (int i = index; i < size - 1; i++) {
+                set(i, get(i + 1));
+            }
+            set(--size, null);
+        }
+
+        /**
+         * Removes the messages older than the given time.
+         *
+         * @return the number of removed messages
+         */
+        private int removeBefore(long time) {
+            int count = indexOfTime(time);
+            for (int i = 0; i < count; i++) {
+                entries[head] = null;
+                head = (head + 1) % entries.length;
+            }
+            size -= count;
+            return count;
+        }
+
+        /**
+         * Returns the index of the first message of the given time or newer.
+         */
+        private int indexOfTime(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).time < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the index of the first message with a greater id.
+         */
+        private int indexAfterId(long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).id <= id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int indexOfId(long id) {
+            int index = indexAfterId(id - 1);
+            return index < size && get(index).id == id ? index : -1;
+        }
+
+        /**
+         * Replays the journal file, if it has not been read yet.
+         */
+        private void load() {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!journal.exists()) {
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    journalRecords++;
+                    try {
+                        replay(gson.fromJson(line, Record.class));
+                    } catch (JsonParseException e) {
+                        logger.debug("ignoring invalid record in '{}': {}", journal, e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("cannot read rsslog journal '{}': {}", journal, e.getMessage());
+            }
+            removeBefore(System.currentTimeMillis() - MAX_AGE);
+            if (journalRecords > size * 2 + 1) {
+                compact();
+            }
+        }
+
+        private void replay(Record record) {
+            if (record == null || record.op == null) {
+                return;
+            }
+            switch (record.op) {
+                case ADD:
+                    if (size == 0 || record.id > get(size - 1).id) {
+                        add(new LogEntry(record.id, record.time, record.title, record.content, record.state));
+                    }
+                    break;
+                case UPDATE:
+                    int index = indexOfId(record.id);
+                    if (index >= 0) {
+                        LogEntry entry = get(index);
+                        set(index, new LogEntry(entry.id, entry.time, entry.title, entry.content, record.state));
+                    }
+                    break;
+                case DELETE:
+                    index = indexOfId(record.id);
+                    if (index >= 0) {
+                        remove(index);
+                    }
+                    break;
+                case REMOVE_BEFORE:
+                    removeBefore(record.time);
+                    break;
+                default:
+                    // LAST_ID only raises the last id
+                    break;
+            }
+            long id = lastId.get();
+            while (record.id > id && !lastId.compareAndSet(id, record.id)) {
+                id = lastId.get();
+            }
+        }
+
+        /**
+         * Appends a record to the journal file, the file is rewritten with the
+         * current messages if most of its records are outdated.
+         */
+        private void write(Record record) {
+            if (journalRecords >= Math.max(MAX_ENTRIES, size * 2)) {
+                compact();
+                return;
+            }
+            try (Writer writer = open(journal, true)) {
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+                journalRecords++;
+            } catch (IOException e) {
+                logger.warn("cannot write rsslog journal '{}': {}", journal, e.getMessage());
+            }
+        }
+
+        private void compact() {
+            File tmp = new File(journal.getPath() + ".tmp");
+            try (Writer writer = open(tmp, false)) {
+                // the records of deleted messages are dropped, keep their ids
+                writer.write(gson.toJson(new Record(LAST_ID, lastId.get())));
+                writer.write('\n');
+                for (int i = 0; i < size; i++) {
+                    writer.write(gson.toJson(new Record(ADD, get(i))));
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                logger.warn("cannot write rsslog journal '{}': {}", tmp, e.getMessage());
+                return;
+            }
+            if (journal.exists() && !journal.delete() || !tmp.renameTo(journal)) {
+                logger.warn("cannot replace rsslog journal '{}'", journal);
+                return;
+            }
+            journalRecords = size + 1;
+        }
+
+        private Writer open(File file, boolean append) throws IOException {
+            if (!folder.exists() && !folder.mkdirs()) {
+                throw new IOException("cannot create folder " + folder);
+            }
+            return new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -8,6 +8,7 @@
  */
 package org.openhab.ui.cometvisu.servlet;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.HashMap;
@@ -19,6 +20,7 @@ import java.util.Set;
 
 import javax.servlet.ServletException;
 
+import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.core.events.EventPublisher;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
@@ -27,6 +29,8 @@ import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.eclipse.smarthome.ui.icon.IconProvider;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogStore;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
@@ -61,6 +65,11 @@ public class CometVisuApp {
 
     private PHProvider phpProvider;
 
+    private VisuConfigCache configCache = new VisuConfigCache(this);
+
+    private RssLogStore rssLogStore = new RssLogStore(
+            new File(ConfigConstants.getUserDataFolder(), "cometvisu" + File.separator + "rsslog"));
+
     static protected Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
     protected void setEventPublisher(EventPublisher eventPublisher) {
@@ -103,6 +112,7 @@ public class CometVisuApp {
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        this.itemRegistry.addRegistryChangeListener(configCache);
     }
 
     public ItemRegistry getItemRegistry() {
@@ -110,7 +120,9 @@ public class CometVisuApp {
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry.removeRegistryChangeListener(configCache);
         this.itemRegistry = null;
+        configCache.clear();
     }
 
     public void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
@@ -137,6 +149,14 @@ public class CometVisuApp {
         return sitemapProviders;
     }
 
+    public VisuConfigCache getConfigCache() {
+        return configCache;
+    }
+
+    public RssLogStore getRssLogStore() {
+        return rssLogStore;
+    }
+
     protected void setHttpService(HttpService httpService) {
         this.httpService = httpService;
     }
@@ -24,13 +24,10 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -55,9 +52,11 @@ import org.eclipse.smarthome.model.sitemap.Sitemap;
 import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.openhab.ui.cometvisu.internal.Config;
 import org.openhab.ui.cometvisu.internal.config.ConfigHelper.Transform;
-import org.openhab.ui.cometvisu.internal.config.VisuConfig;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache.CachedConfig;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.ItemBean;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogStore;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogStore.LogEntry;
 import org.openhab.ui.cometvisu.internal.rrs.beans.Feed;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.slf4j.Logger;
@@ -81,12 +80,13 @@ public class CometVisuServlet extends HttpServlet {
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; // ..ms = 1
                                                                 // week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+    private static final String COMPRESSED_FOLDER = "cometvisu" + File.separator + "compressed";
+    private static final int RSS_LOG_LIMIT = 25; // ..messages per log
 
     private Pattern sitemapPattern = Pattern.compile(".*/visu_config_(oh_)?([^\\.]+)\\.xml");
     private Pattern configStorePattern = Pattern.compile("config/visu_config_oh_([a-z0-9_]+)\\.xml");
 
     private String rrsLogPath = "/plugins/rsslog/rsslog_oh.php";
-    private final String rssLogMessageSeparator = "\\|";
     private DateFormat rssPubDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
     protected String root;
@@ -102,6 +102,8 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private StaticAssetStore assetStore;
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -109,6 +111,8 @@ public class CometVisuServlet extends HttpServlet {
                 + Config.COMETVISU_WEBAPP_USERFILE_FOLDER);
         defaultUserDir = System.getProperty("user.dir");
         this.cometVisuApp = cometVisuApp;
+        assetStore = new StaticAssetStore(rootFolder,
+                new File(org.eclipse.smarthome.config.core.ConfigConstants.getUserDataFolder(), COMPRESSED_FOLDER));
 
         PHProvider prov = cometVisuApp.getPHProvider();
         if (prov != null) {
@@ -153,6 +157,15 @@ public class CometVisuServlet extends HttpServlet {
             this.engine.init(rootFolder.getAbsolutePath(), defaultUserDir, _servletContext);
             phpEnabled = true;
         }
+
+        // compress the static files once
+        assetStore.start();
+    }
+
+    @Override
+    public void destroy() {
+        assetStore.dispose();
+        super.destroy();
     }
 
     /**
@@ -207,11 +220,18 @@ public class CometVisuServlet extends HttpServlet {
                 Sitemap sitemap = getSitemap(matcher.group(2));
                 if (sitemap != null) {
                     logger.debug("reading sitemap '{}'", sitemap);
-                    VisuConfig config = new VisuConfig(sitemap, cometVisuApp, rootFolder);
+                    CachedConfig config = cometVisuApp.getConfigCache().getConfig(sitemap, req, rootFolder);
 
-                    // logger.info("response: "+config.getConfigXml());
+                    resp.setHeader("ETag", config.getETag());
+                    String ifNoneMatch = req.getHeader("If-None-Match");
+                    if (ifNoneMatch != null && matches(ifNoneMatch, config.getETag())) {
+                        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
                     resp.setContentType(MediaType.APPLICATION_XML);
-                    resp.getWriter().write(config.getConfigXml(req));
+                    resp.setCharacterEncoding("UTF-8");
+                    resp.setContentLength(config.getXml().length);
+                    resp.getOutputStream().write(config.getXml());
                     resp.flushBuffer();
 
                     return;
@@ -278,8 +298,9 @@ public class CometVisuServlet extends HttpServlet {
     }
 
     /**
-     * serves an RSS-Feed from a persisted string item backend for the CometVisu
-     * rrslog-plugin
+     * serves an RSS-Feed from the {@link RssLogStore} for the CometVisu
+     * rrslog-plugin, the messages of a log are taken over from the
+     * persistence services when it is used for the first time
      *
      * @param file
      * @param request
@@ -305,9 +326,11 @@ public class CometVisuServlet extends HttpServlet {
         }
 
         if (items.size() > 0) {
-            // Fallback to first persistenceService from list
-            if (!CometVisuApp.getPersistenceServices().entrySet().iterator().hasNext()) {
-                throw new IllegalArgumentException("No Persistence service found.");
+            RssLogStore store = cometVisuApp.getRssLogStore();
+            for (Item item : items) {
+                if (store.create(item.getName())) {
+                    importPersistedRssLog(store, item);
+                }
             }
 
             if (request.getParameter("c") != null) {
@@ -317,10 +340,9 @@ public class CometVisuServlet extends HttpServlet {
                     String message = request.getParameter("c");
                     String state = request.getParameter("state");
                     // Build message
-                    Command command = new StringType(title + rssLogMessageSeparator + message + rssLogMessageSeparator
-                            + state + rssLogMessageSeparator + items.get(0).getName());
-                    // Use the event publisher to store the item in the defined
-                    // persistance services
+                    Command command = new StringType(
+                            RssLogStore.formatMessage(items.get(0).getName(), title, message, state));
+                    // Use the event publisher to update the item, the state update is added to the log
                     cometVisuApp.getEventPublisher()
                             .post(ItemEventFactory.createCommandEvent(items.get(0).getName(), command));
                 }
@@ -330,24 +352,35 @@ public class CometVisuServlet extends HttpServlet {
                 response.flushBuffer();
             } else if (request.getParameter("dump") != null) {
             } else if (request.getParameter("r") != null) {
-                // delete all log lines older than the timestamp and optional a
-                // filter
-                // => not possible to remove data from persistence service
+                // delete all log lines older than the timestamp (in seconds)
+                long time = parseLong(request.getParameter("r"), 0) * 1000L;
+                for (Item item : items) {
+                    store.deleteBefore(item.getName(), time);
+                }
                 response.setContentType("text/plain");
-                response.getWriter().write(
-                        "Cannot execute query: It is not possible to delete data from openHAB PersistenceService");
+                response.getWriter().write("");
                 response.flushBuffer();
             } else if (request.getParameter("u") != null) {
                 // update state
+                long id = parseLong(request.getParameter("u"), -1);
+                for (Item item : items) {
+                    if (store.updateState(item.getName(), id, request.getParameter("state"))) {
+                        break;
+                    }
+                }
                 response.setContentType("text/plain");
-                response.getWriter().write(
-                        "Cannot execute query: It is not possible to update data from openHAB PersistenceService");
+                response.getWriter().write("");
                 response.flushBuffer();
             } else if (request.getParameter("d") != null) {
-                // update state
+                // delete entry
+                long id = parseLong(request.getParameter("d"), -1);
+                for (Item item : items) {
+                    if (store.delete(item.getName(), id)) {
+                        break;
+                    }
+                }
                 response.setContentType("text/plain");
-                response.getWriter().write(
-                        "Cannot execute query: It is not possible to delete data from openHAB PersistenceService");
+                response.getWriter().write("");
                 response.flushBuffer();
             } else {
                 Feed feed = new Feed();
@@ -357,88 +390,34 @@ public class CometVisuServlet extends HttpServlet {
                 feed.author = "";
                 feed.description = "RSS supplied logs";
                 feed.type = "rss20";
-                // Define the data filter
-                FilterCriteria filter = new FilterCriteria();
-                Calendar start = Calendar.getInstance();
-                // retrieve only the historic states from the last 7 days + BeginDate is required for RRD4j service
-                start.add(Calendar.DAY_OF_YEAR, -7);
-                // Date end = new Date();
-                filter.setBeginDate(start.getTime());
-                // filter.setEndDate(end);
-                filter.setPageSize(25);
-                filter.setOrdering(Ordering.DESCENDING);
 
-                for (Item item : items) {
-                    filter.setItemName(item.getName());
-                    Iterator<Entry<String, QueryablePersistenceService>> pit = CometVisuApp.getPersistenceServices()
-                            .entrySet().iterator();
-                    QueryablePersistenceService persistenceService = pit.next().getValue();
-                    // Get the data from the persistence store
-                    Iterable<HistoricItem> result = persistenceService.query(filter);
-                    Iterator<HistoricItem> it = result.iterator();
-                    boolean forceStop = false;
-                    while (!forceStop && !it.hasNext()) {
-                        if (pit.hasNext()) {
-                            persistenceService = pit.next().getValue();
-                            result = persistenceService.query(filter);
-                        } else {
-                            // no persisted data found for this item in any of
-                            // the available persistence services
-                            forceStop = true;
-                        }
-                    }
-                    if (it.hasNext()) {
-                        logger.debug("persisted data for item {} found in service {}", item.getName(),
-                                persistenceService.getId());
-                    }
+                // clients which know the newest id only fetch the new messages
+                long sinceId = parseLong(request.getParameter("since"), 0);
+                int limit = (int) parseLong(request.getParameter("limit"), RSS_LOG_LIMIT);
 
-                    // Iterate through the data
-                    int i = 0;
-                    while (it.hasNext()) {
-                        i++;
-                        HistoricItem historicItem = it.next();
-                        if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
-                            continue;
-                        }
+                for (Item item : items) {
+                    List<LogEntry> entries = store.getEntries(item.getName(), sinceId, 0, limit);
+                    for (LogEntry logEntry : entries) {
                         org.openhab.ui.cometvisu.internal.rrs.beans.Entry entry = new org.openhab.ui.cometvisu.internal.rrs.beans.Entry();
-                        entry.publishedDate = historicItem.getTimestamp().getTime();
-                        logger.info(rssPubDateFormat.format(entry.publishedDate) + ": " + historicItem.getState());
-                        entry.tags = historicItem.getName();
-                        String[] content = historicItem.getState().toString().split(rssLogMessageSeparator);
-                        if (content.length == 0) {
-                            entry.content = historicItem.getState().toString();
-                        } else if (content.length == 1) {
-                            entry.content = content[0];
-                        } else if (content.length == 2) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                        } else if (content.length == 3) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                        } else if (content.length == 4) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                            // ignore tags in content[3] as is is already known
-                            // by item name
-                        }
+                        entry.id = String.valueOf(logEntry.id);
+                        entry.publishedDate = logEntry.time;
+                        entry.tags = item.getName();
+                        entry.title = logEntry.title;
+                        entry.content = logEntry.content;
+                        entry.state = logEntry.state;
                         feed.entries.add(entry);
                     }
-                    if ("rrd4j".equals(persistenceService.getId())
-                            && FilterCriteria.Ordering.DESCENDING.equals(filter.getOrdering())) {
-                        // the RRD4j PersistenceService does not support descending ordering so we do it manually
-                        Collections.sort(feed.entries,
-                                new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
-                                    @Override
-                                    public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
-                                            org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
-                                        return Long.compare(o2.publishedDate, o1.publishedDate);
-                                    }
-                                });
-                    }
-                    logger.debug("querying {} item from {} to {} => {} results on service {}", filter.getItemName(),
-                            filter.getBeginDate(), filter.getEndDate(), i, persistenceService.getId());
+                    logger.debug("rsslog '{}' since id {} => {} results", item.getName(), sinceId, entries.size());
+                }
+                if (items.size() > 1) {
+                    // the newest messages of all logs first
+                    Collections.sort(feed.entries, new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
+                        @Override
+                        public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
+                                org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
+                            return Long.compare(o2.publishedDate, o1.publishedDate);
+                        }
+                    });
                 }
                 if (request.getParameter("j") != null) {
                     // request data in JSON format
@@ -475,6 +454,58 @@ public class CometVisuServlet extends HttpServlet {
 
     }
 
+    /**
+     * Adds the messages of an item stored by the first persistence service
+     * which has some to the log of the item.
+     */
+    private void importPersistedRssLog(RssLogStore store, Item item) {
+        FilterCriteria filter = new FilterCriteria();
+        Calendar start = Calendar.getInstance();
+        // retrieve only the historic states within the retention time + BeginDate is required for RRD4j service
+        start.setTimeInMillis(start.getTimeInMillis() - RssLogStore.MAX_AGE);
+        filter.setBeginDate(start.getTime());
+        filter.setItemName(item.getName());
+        filter.setPageSize(RssLogStore.MAX_ENTRIES);
+        filter.setOrdering(Ordering.DESCENDING);
+
+        for (QueryablePersistenceService persistenceService : CometVisuApp.getPersistenceServices().values()) {
+            List<HistoricItem> historicItems = new ArrayList<HistoricItem>();
+            for (HistoricItem historicItem : persistenceService.query(filter)) {
+                if (historicItem.getState() != null && !historicItem.getState().toString().isEmpty()) {
+                    historicItems.add(historicItem);
+                }
+            }
+            if (historicItems.isEmpty()) {
+                continue;
+            }
+            // not all services support descending ordering
+            Collections.sort(historicItems, new Comparator<HistoricItem>() {
+                @Override
+                public int compare(HistoricItem o1, HistoricItem o2) {
+                    return o1.getTimestamp().compareTo(o2.getTimestamp());
+                }
+            });
+            for (HistoricItem historicItem : historicItems) {
+                store.appendMessage(item.getName(), historicItem.getTimestamp().getTime(),
+                        historicItem.getState().toString());
+            }
+            logger.debug("imported {} persisted messages of rsslog '{}' from service {}", historicItems.size(),
+                    item.getName(), persistenceService.getId());
+            return;
+        }
+    }
+
+    private long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      * Process the actual request.
      *
@@ -656,7 +687,6 @@ public class CometVisuServlet extends HttpServlet {
         // Get content type by file name and set default GZIP support and
         // content disposition.
         String contentType = getServletContext().getMimeType(fileName);
-        boolean acceptsGzip = false;
         String disposition = "inline";
 
         // If content type is unknown, then set the default value.
@@ -667,13 +697,9 @@ public class CometVisuServlet extends HttpServlet {
             contentType = "application/octet-stream";
         }
 
-        // If content type is text, then determine whether GZIP content encoding
-        // is supported by
-        // the browser and expand content type with the one and right character
-        // encoding.
+        // If content type is text, then expand content type with the one and
+        // right character encoding.
         if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
-            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
             contentType += ";charset=UTF-8";
         }
 
@@ -686,6 +712,17 @@ public class CometVisuServlet extends HttpServlet {
             disposition = accept != null && accepts(accept, contentType) ? "inline" : "attachment";
         }
 
+        // If the file can be compressed, then determine whether GZIP content
+        // encoding is supported by the browser and use the precompressed file.
+        File compressedFile = null;
+        if (assetStore.isCompressible(file)) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            if (acceptEncoding != null && accepts(acceptEncoding, "gzip")) {
+                compressedFile = assetStore.getCompressed(file);
+            }
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
         response.setBufferSize(DEFAULT_BUFFER_SIZE);
         response.setHeader("Content-Disposition", disposition + ";filename=\"" + fileName + "\"");
         response.setHeader("Accept-Ranges", "bytes");
@@ -705,28 +742,32 @@ public class CometVisuServlet extends HttpServlet {
             input = new RandomAccessFile(file, "r");
             output = response.getOutputStream();
 
-            if (ranges.isEmpty() || ranges.get(0) == full) {
+            if ((ranges.isEmpty() || ranges.get(0) == full) && compressedFile != null) {
+
+                // Return the full file compressed, the browser accepts GZIP.
+                close(input);
+                input = new RandomAccessFile(compressedFile, "r");
+                long compressedLength = input.length();
+                response.setContentType(contentType);
+                response.setHeader("Content-Encoding", "gzip");
+                response.setHeader("Content-Length", String.valueOf(compressedLength));
+
+                if (content) {
+                    // Copy full compressed file.
+                    StaticAssetStore.transfer(input.getChannel(), output, 0, compressedLength, true);
+                }
+
+            } else if (ranges.isEmpty() || ranges.get(0) == full) {
 
                 // Return full file.
                 Range r = full;
                 response.setContentType(contentType);
                 response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
+                response.setHeader("Content-Length", String.valueOf(r.length));
 
                 if (content) {
-                    if (acceptsGzip) {
-                        // The browser accepts GZIP, so GZIP the content.
-                        response.setHeader("Content-Encoding", "gzip");
-                        output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
-                    } else {
-                        // Content length is not directly predictable in case of
-                        // GZIP.
-                        // So only add it if there is no means of GZIP, else
-                        // browser will hang.
-                        response.setHeader("Content-Length", String.valueOf(r.length));
-                    }
-
                     // Copy full range.
-                    copy(input, output, r.start, r.length);
+                    StaticAssetStore.transfer(input.getChannel(), output, r.start, r.length, true);
                 }
 
             } else if (ranges.size() == 1) {
@@ -740,7 +781,7 @@ public class CometVisuServlet extends HttpServlet {
 
                 if (content) {
                     // Copy single part range.
-                    copy(input, output, r.start, r.length);
+                    StaticAssetStore.transfer(input.getChannel(), output, r.start, r.length, true);
                 }
 
             } else {
@@ -764,7 +805,7 @@ public class CometVisuServlet extends HttpServlet {
                         sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
                         // Copy single part range of multi part range.
-                        copy(input, output, r.start, r.length);
+                        StaticAssetStore.transfer(input.getChannel(), output, r.start, r.length, false);
                     }
 
                     // End with multipart boundary.
@@ -988,45 +1029,6 @@ public class CometVisuServlet extends HttpServlet {
         return (substring.length() > 0) ? Long.parseLong(substring) : -1;
     }
 
-    /**
-     * Copy the given byte range of the given input to the given output.
-     *
-     * @param input
-     *            The input to copy the given range to the given output for.
-     * @param output
-     *            The output to copy the given range from the given input for.
-     * @param start
-     *            Start of the byte range.
-     * @param length
-     *            Length of the byte range.
-     * @throws IOException
-     *             If something fails at I/O level.
-     */
-    private static void copy(RandomAccessFile input, OutputStream output, long start, long length) throws IOException {
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
-            }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
-
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
-            }
-        }
-    }
-
     /**
      * Close the given resource.
      *
@@ -0,0 +1,446 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores gzip compressed copies of the static CometVisu files, so that they
+ * are compressed once instead of on every request. The files of the root
+ * folder are compressed with the best compression in the background, a file
+ * which is requested before it has been compressed is compressed with the
+ * fastest compression level and recompressed in the background later on. The
+ * root folder is watched, changed files are compressed again.
+ *
+ * @author agent - Initial contribution
+ */
+public class StaticAssetStore {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetStore.class);
+
+    /** files smaller than this are not worth to be compressed */
+    private static final long MIN_COMPRESS_SIZE = 1024;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = new HashSet<>(
+            Arrays.asList("js", "css", "html", "htm", "json", "xml", "xsd", "svg", "txt", "map"));
+
+    private final File rootFolder;
+    private final File cacheFolder;
+
+    private final ExecutorService executor;
+    private final Set<File> pending = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    /** the method of the container output stream which writes a buffer without copying it, if available */
+    private static final Map<Class<?>, Method> sendContentMethods = new ConcurrentHashMap<>();
+    private static final Method NO_METHOD;
+
+    static {
+        try {
+            NO_METHOD = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public StaticAssetStore(File rootFolder, File cacheFolder) {
+        this.rootFolder = rootFolder;
+        this.cacheFolder = cacheFolder;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CometVisu asset compression");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts compressing the files of the root folder and watching it for
+     * changes.
+     */
+    public void start() {
+        if (!cacheFolder.exists() && !cacheFolder.mkdirs()) {
+            logger.warn("Can't create folder '{}', static files are not compressed", cacheFolder);
+            return;
+        }
+        try {
+            watchService = rootFolder.toPath().getFileSystem().newWatchService();
+        } catch (IOException e) {
+            logger.debug("Can't watch folder '{}': {}", rootFolder, e.getMessage());
+        }
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                int count = compressFolder(rootFolder.toPath());
+                logger.debug("compressed {} static files in {} ms", count, System.currentTimeMillis() - start);
+            }
+        });
+        if (watchService != null) {
+            Thread watcher = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "CometVisu asset watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Stops the background compression and the watching of the root folder.
+     */
+    public void dispose() {
+        running = false;
+        executor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Returns true if the file is a text file which should be compressed.
+     */
+    public boolean isCompressible(File file) {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        return index > 0 && COMPRESSIBLE_EXTENSIONS.contains(name.substring(index + 1).toLowerCase())
+                && file.length() >= MIN_COMPRESS_SIZE;
+    }
+
+    /**
+     * Returns the gzip compressed copy of the given file, compresses the file
+     * if there is no up to date copy. Returns null if the file can't be
+     * compressed.
+     */
+    public File getCompressed(File file) {
+        File compressed = getCompressedFile(file);
+        if (compressed == null) {
+            return null;
+        }
+        if (isUpToDate(file, compressed)) {
+            return compressed;
+        }
+        if (compress(file, compressed, Deflater.BEST_SPEED)) {
+            // a better compressed copy is stored later on
+            schedule(file);
+            return compressed;
+        }
+        return null;
+    }
+
+    /**
+     * Writes the given range of the file to the output. If the output of the
+     * container can write a buffer without copying it, the range is mapped
+     * into memory and written directly, the response is completed then.
+     * Otherwise the range is transferred to the output by the file channel.
+     *
+     * @param channel
+     *            - the channel of the file to write
+     * @param output
+     *            - the output stream of the response
+     * @param start
+     *            - start of the range
+     * @param length
+     *            - length of the range
+     * @param complete
+     *            - true if the range is the last content of the response
+     */
+    public static void transfer(FileChannel channel, OutputStream output, long start, long length,
+            boolean complete) throws IOException {
+        if (complete && length > 0) {
+            Method sendContent = getSendContentMethod(output.getClass());
+            if (sendContent != NO_METHOD) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                try {
+                    sendContent.invoke(output, buffer);
+                    return;
+                } catch (IllegalAccessException e) {
+                    sendContentMethods.put(output.getClass(), NO_METHOD);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+        }
+        WritableByteChannel target = Channels.newChannel(output);
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException("Can't read from file at position " + position);
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Jetty writes buffers given to <code>sendContent</code> directly to the
+     * connection.
+     */
+    private static Method getSendContentMethod(Class<?> outputClass) {
+        Method method = sendContentMethods.get(outputClass);
+        if (method == null) {
+            try {
+                method = outputClass.getMethod("sendContent", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                method = NO_METHOD;
+            }
+            sendContentMethods.put(outputClass, method);
+        }
+        return method;
+    }
+
+    private File getCompressedFile(File file) {
+        if (!cacheFolder.exists()) {
+            return null;
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(file.getAbsolutePath().getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return new File(cacheFolder, sb.toString() + ".gz");
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The compressed copy gets the modification time of the original file, so
+     * that a changed file is recognized.
+     */
+    private boolean isUpToDate(File file, File compressed) {
+        return compressed.exists() && compressed.lastModified() == file.lastModified();
+    }
+
+    private void schedule(final File file) {
+        if (!running || !pending.add(file)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    pending.remove(file);
+                    File compressed = getCompressedFile(file);
+                    if (compressed != null && file.exists()) {
+                        compress(file, compressed, Deflater.BEST_COMPRESSION);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(file);
+        }
+    }
+
+    /**
+     * Compresses the file into a temporary file, which replaces the
+     * compressed copy when it is complete.
+     */
+    private boolean compress(File file, File compressed, final int level) {
+        long lastModified = file.lastModified();
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(compressed.getName(), ".tmp", cacheFolder);
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+                    OutputStream out = new GZIPOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE) {
+                        {
+                            def.setLevel(level);
+                        }
+                    }) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (!tempFile.setLastModified(lastModified)) {
+                throw new IOException("Can't set modification time of " + tempFile);
+            }
+            Files.move(tempFile.toPath(), compressed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            logger.debug("Can't compress '{}': {}", file, e.getMessage());
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Compresses all files of the folder which have no up to date copy and
+     * registers the folder and its sub folders at the watch service.
+     */
+    private int compressFolder(Path folder) {
+        final int[] count = new int[1];
+        try {
+            Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!running) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                    File file = path.toFile();
+                    if (isCompressible(file)) {
+                        File compressed = getCompressedFile(file);
+                        if (compressed != null && !isUpToDate(file, compressed)
+                                && compress(file, compressed, Deflater.BEST_COMPRESSION)) {
+                            count[0]++;
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.debug("Can't compress files of '{}': {}", folder, e.getMessage());
+        }
+        return count[0];
+    }
+
+    private void register(Path folder) {
+        if (watchService != null) {
+            try {
+                watchedFolders.put(folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), folder);
+            } catch (IOException e) {
+                logger.debug("Can't watch folder '{}': {}", folder, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compresses created and modified files again and removes the copies of
+     * deleted files.
+     */
+    private void watch() {
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                Path folder = watchedFolders.get(key);
+                if (folder != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            // some events are lost, check all files
+                            executor.execute(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    compressFolder(rootFolder.toPath());
+                                }
+                            });
+                            continue;
+                        }
+                        final Path path = folder.resolve((Path) event.context());
+                        File file = path.toFile();
+                        if (event.kind() == ENTRY_DELETE) {
+                            File compressed = getCompressedFile(file);
+                            if (compressed != null && compressed.exists() && !file.exists()) {
+                                compressed.delete();
+                            }
+                        } else if (file.isDirectory()) {
+                            if (event.kind() == ENTRY_CREATE) {
+                                executor.execute(new Runnable() {
+
+                                    @Override
+                                    public void run() {
+                                        compressFolder(path);
+                                    }
+                                });
+                            }
+                        } else if (isCompressible(file)) {
+                            schedule(file);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    watchedFolders.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            // disposed
+        } catch (RuntimeException e) {
+            if (running) {
+                logger.debug("Stopped watching folder '{}': {}", rootFolder, e.getMessage());
+            }
+        }
+    }
+}